@@ -0,0 +1,90 @@
+package com.revolut.interview.account;
+
+import com.google.inject.Guice;
+import com.google.inject.Provider;
+import com.revolut.interview.money.Money;
+import com.revolut.interview.persistence.PersistenceModule;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccountShardsIntegrationTest {
+
+    private AccountsDAO accountsDAO;
+    private AccountShardsDAO accountShardsDAO;
+    private AccountShards accountShards;
+    private Provider<Session> sessionProvider;
+
+    @BeforeEach
+    void setUp() {
+        var injector = Guice.createInjector(new PersistenceModule());
+
+        this.accountsDAO = injector.getInstance(AccountsDAO.class);
+        this.accountShardsDAO = injector.getInstance(AccountShardsDAO.class);
+        this.accountShards = injector.getInstance(AccountShards.class);
+        this.sessionProvider = injector.getProvider(Session.class);
+    }
+
+    @Test
+    void creditsShouldLandOnShardsAndAddUpToTheBalance() {
+        var accountId = accountsDAO.save(new AccountEntity(Money.of("100"))).getId();
+        assertTrue(accountShards.reshard(accountId, 4));
+
+        for (int i = 0; i < 20; i++) {
+            assertTrue(inDbTransaction(() -> accountShards.credit(accountId, Money.of("1"))));
+        }
+
+        var account = accountsDAO.findById(accountId).orElseThrow();
+        assertEquals(4, account.getShardCount());
+        assertEquals(Money.of("100"), account.getBalance());
+        assertEquals(Money.of("120"), accountShards.balanceOf(account));
+    }
+
+    @Test
+    void debitShouldSweepShardsWhenTheAccountRowIsShort() {
+        var accountId = accountsDAO.save(new AccountEntity(Money.of("5"))).getId();
+        accountShards.reshard(accountId, 2);
+        accountShardsDAO.credit(accountId, 0, Money.of("10"));
+        accountShardsDAO.credit(accountId, 1, Money.of("10"));
+
+        assertTrue(inDbTransaction(() -> accountShards.debit(accountId, Money.of("20"))));
+        assertFalse(inDbTransaction(() -> accountShards.debit(accountId, Money.of("6"))));
+
+        var account = accountsDAO.findById(accountId).orElseThrow();
+        assertEquals(Money.of("5"), accountShards.balanceOf(account));
+        assertEquals(Money.ZERO, accountShardsDAO.sumBalances(accountId));
+    }
+
+    @Test
+    void reshardShouldKeepTheBalance() {
+        var accountId = accountsDAO.save(new AccountEntity(Money.of("1"))).getId();
+        accountShards.reshard(accountId, 3);
+        accountShardsDAO.credit(accountId, 2, Money.of("10"));
+
+        accountShards.reshard(accountId, 0);
+
+        var account = accountsDAO.findById(accountId).orElseThrow();
+        assertEquals(0, account.getShardCount());
+        assertEquals(Money.of("11"), account.getBalance());
+        assertTrue(accountShardsDAO.findBalances(accountId).isEmpty());
+    }
+
+    @Test
+    void reshardShouldReturnFalseForUnknownAccount() {
+        assertFalse(accountShards.reshard(10_000L, 2));
+    }
+
+    private boolean inDbTransaction(BooleanSupplier work) {
+        var dbTransaction = sessionProvider.get().beginTransaction();
+        var result = work.getAsBoolean();
+        dbTransaction.commit();
+
+        return result;
+    }
+}
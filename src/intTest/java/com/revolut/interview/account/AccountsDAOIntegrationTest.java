@@ -2,13 +2,13 @@ package com.revolut.interview.account;
 
 import com.google.inject.Guice;
 import com.google.inject.Provider;
+import com.revolut.interview.money.Money;
 import com.revolut.interview.persistence.PersistenceModule;
 import org.hibernate.Session;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import javax.persistence.OptimisticLockException;
-import java.math.BigDecimal;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -16,6 +16,7 @@ import java.util.concurrent.TimeUnit;
 import static javax.persistence.LockModeType.READ;
 import static javax.persistence.LockModeType.WRITE;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -35,7 +36,7 @@ class AccountsDAOIntegrationTest {
 
     @Test
     void findByIdShouldReturnExpectedEntity() {
-        var toSave = new AccountEntity(BigDecimal.valueOf(10.3));
+        var toSave = new AccountEntity(Money.of("10.3"));
         var savedEntity = accountsDAO.save(toSave);
 
         var accountEntityById = accountsDAO.findById(savedEntity.getId())
@@ -46,7 +47,7 @@ class AccountsDAOIntegrationTest {
 
     @Test
     void findByIdShouldReturnExpectedEntityWhenTransactionIsRunningOutside() {
-        var toSave = new AccountEntity(BigDecimal.valueOf(10.3));
+        var toSave = new AccountEntity(Money.of("10.3"));
 
         var session = sessionProvider.get();
         session.getTransaction().begin();
@@ -62,7 +63,7 @@ class AccountsDAOIntegrationTest {
 
     @Test
     void findByIdWithLockModeShouldReturnExpectedEntity() {
-        var toSave = new AccountEntity(BigDecimal.valueOf(10.3));
+        var toSave = new AccountEntity(Money.of("10.3"));
 
         var savedEntity = accountsDAO.save(toSave);
         var accountEntityById = accountsDAO.findById(savedEntity.getId(), READ)
@@ -73,7 +74,7 @@ class AccountsDAOIntegrationTest {
 
     @Test
     void findByIdWithLockModeShouldReturnExpectedEntityWhenTransactionIsRunningOutside() {
-        var toSave = new AccountEntity(BigDecimal.valueOf(10.3));
+        var toSave = new AccountEntity(Money.of("10.3"));
         var savedEntity = accountsDAO.save(toSave);
 
         var session = sessionProvider.get();
@@ -89,13 +90,13 @@ class AccountsDAOIntegrationTest {
 
     @Test
     void updateShouldUpdateEntity() {
-        var toSave = new AccountEntity(BigDecimal.valueOf(10.3));
+        var toSave = new AccountEntity(Money.of("10.3"));
         var savedEntity = accountsDAO.save(toSave);
 
         var accountEntityById = accountsDAO.findById(savedEntity.getId(), WRITE)
                 .orElseThrow();
 
-        accountEntityById.setBalance(BigDecimal.ZERO);
+        accountEntityById.setBalance(Money.ZERO);
         accountsDAO.update(accountEntityById);
 
         var updatedFindById = accountsDAO.findById(savedEntity.getId())
@@ -105,7 +106,7 @@ class AccountsDAOIntegrationTest {
 
     @Test
     void updateSuccessfullyWhenTransactionIsRunningOutside() {
-        var toSave = new AccountEntity(BigDecimal.valueOf(10.3));
+        var toSave = new AccountEntity(Money.of("10.3"));
         var savedEntity = accountsDAO.save(toSave);
 
         var session = sessionProvider.get();
@@ -114,7 +115,7 @@ class AccountsDAOIntegrationTest {
         var accountEntityById = accountsDAO.findById(savedEntity.getId(), WRITE)
                 .orElseThrow();
 
-        accountEntityById.setBalance(BigDecimal.ZERO);
+        accountEntityById.setBalance(Money.ZERO);
         accountsDAO.update(accountEntityById);
 
         session.getTransaction().commit();
@@ -126,7 +127,7 @@ class AccountsDAOIntegrationTest {
 
     @Test
     void shouldThrowExceptionWhenMultipleTransactionsTryToUpdateAndAccessSameAccount() throws InterruptedException {
-        var toSave = new AccountEntity(BigDecimal.valueOf(10.3));
+        var toSave = new AccountEntity(Money.of("10.3"));
         var savedEntityId = accountsDAO.save(toSave)
                 .getId();
 
@@ -146,7 +147,7 @@ class AccountsDAOIntegrationTest {
                 fail("Test failed due to ", e);
             }
 
-            accountEntityById.setBalance(BigDecimal.ZERO);
+            accountEntityById.setBalance(Money.ZERO);
             accountsDAO.update(accountEntityById);
 
             session.getTransaction().commit();
@@ -162,8 +163,8 @@ class AccountsDAOIntegrationTest {
 
     @Test
     void shouldNotThrowAnyExceptionWhenMultipleTransactionsTryToUpdateAndAccessDifferentAccounts() throws InterruptedException, ExecutionException {
-        var toSave1 = new AccountEntity(BigDecimal.valueOf(10.3));
-        var toSave2 = new AccountEntity(BigDecimal.valueOf(10.3));
+        var toSave1 = new AccountEntity(Money.of("10.3"));
+        var toSave2 = new AccountEntity(Money.of("10.3"));
 
         var savedEntity1Id = accountsDAO.save(toSave1).getId();
         var savedEntity2Id = accountsDAO.save(toSave2).getId();
@@ -183,7 +184,7 @@ class AccountsDAOIntegrationTest {
                 fail("Test failed due to error ", e);
             }
 
-            accountEntityById.setBalance(BigDecimal.ZERO);
+            accountEntityById.setBalance(Money.ZERO);
             accountsDAO.update(accountEntityById);
 
             session.getTransaction().commit();
@@ -193,10 +194,52 @@ class AccountsDAOIntegrationTest {
         executorService.awaitTermination(1, TimeUnit.MINUTES);
     }
 
+    @Test
+    void debitIfSufficientShouldOnlyDebitWhenBalanceCoversTheAmount() {
+        var savedEntityId = accountsDAO.save(new AccountEntity(Money.of("10"))).getId();
+
+        assertTrue(accountsDAO.debitIfSufficient(savedEntityId, Money.of("4")));
+        assertFalse(accountsDAO.debitIfSufficient(savedEntityId, Money.of("7")));
+
+        var accountEntityById = accountsDAO.findById(savedEntityId)
+                .orElseThrow();
+        assertEquals(Money.of("6"), accountEntityById.getBalance());
+    }
+
+    @Test
+    void creditShouldReturnFalseWhenAccountDoesNotExist() {
+        assertFalse(accountsDAO.credit(-1L, Money.of("10")));
+    }
+
+    @Test
+    void conditionalUpdatesShouldBumpVersionSoStaleEntitiesCannotOverwriteThem() {
+        var savedEntityId = accountsDAO.save(new AccountEntity(Money.of("10"))).getId();
+
+        var session = sessionProvider.get();
+        session.getTransaction().begin();
+
+        var staleEntity = accountsDAO.findById(savedEntityId, WRITE)
+                .orElseThrow();
+
+        var executorService = Executors.newSingleThreadExecutor();
+        try {
+            executorService.submit(() -> accountsDAO.credit(savedEntityId, Money.of("1"))).get();
+        } catch (InterruptedException | ExecutionException e) {
+            fail("Test failed due to ", e);
+        } finally {
+            executorService.shutdown();
+        }
+
+        staleEntity.setBalance(Money.ZERO);
+        accountsDAO.update(staleEntity);
+
+        assertThrows(OptimisticLockException.class, () -> session.getTransaction().commit());
+    }
+
     //This behaviour is intentional as we don't want reading of accounts to fail when money is deposited to the bank account.
     @Test
     void accountShouldBeReadWithoutExceptionsEvenWhenMultipleTransactionsAreUpdatingTheSameAccount() throws InterruptedException, ExecutionException {
-        var accountEntityToSave = new AccountEntity(BigDecimal.valueOf(1));
+        var accountEntityToSave = new AccountEntity(Money.of("1"));
         var savedAccountEntityId = accountsDAO.save(accountEntityToSave).getId();
 
         var executorService = Executors.newFixedThreadPool(2);
@@ -226,7 +269,7 @@ class AccountsDAOIntegrationTest {
         var accountEntityById = accountsDAO.findById(entityId, WRITE)
                 .orElseThrow();
 
-        accountEntityById.setBalance(BigDecimal.valueOf(Math.random()));
+        accountEntityById.setBalance(accountEntityById.getBalance().plus(Money.ofMinor(1)));
         accountsDAO.update(accountEntityById);
 
         session.getTransaction().commit();
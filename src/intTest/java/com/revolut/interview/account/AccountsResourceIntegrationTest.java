@@ -1,9 +1,14 @@
 package com.revolut.interview.account;
 
+import com.google.gson.Gson;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import com.revolut.interview.money.Money;
 import com.revolut.interview.persistence.PersistenceModule;
 import com.revolut.interview.rest.SparkRestModule;
+import io.restassured.RestAssured;
+import io.restassured.config.ObjectMapperConfig;
+import io.restassured.config.RestAssuredConfig;
 import org.eclipse.jetty.http.HttpStatus;
 import org.hibernate.Session;
 import org.junit.jupiter.api.AfterAll;
@@ -13,7 +18,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import spark.Service;
 
-import java.math.BigDecimal;
+import java.util.List;
 
 import static io.restassured.RestAssured.given;
 import static javax.persistence.LockModeType.READ;
@@ -40,6 +45,11 @@ class AccountsResourceIntegrationTest {
 
         var accountsResource = injector.getInstance(AccountsResource.class);
         accountsResource.register(spark);
+
+        //Money goes over the wire as a decimal number, the same way the application reads and writes it.
+        RestAssured.config = RestAssuredConfig.config()
+                .objectMapperConfig(ObjectMapperConfig.objectMapperConfig()
+                        .gsonObjectMapperFactory((type, charset) -> injector.getInstance(Gson.class)));
     }
 
     @Test
@@ -55,7 +65,7 @@ class AccountsResourceIntegrationTest {
     void getAccountShouldReturnExpectedAccountJsonWhenAccountExists() {
         var accountsDAO = injector.getInstance(AccountsDAO.class);
 
-        var savedAccount = accountsDAO.save(new AccountEntity(new BigDecimal(10)));
+        var savedAccount = accountsDAO.save(new AccountEntity(Money.of("10")));
 
         var response = given()
                 .port(PORT)
@@ -73,7 +83,7 @@ class AccountsResourceIntegrationTest {
     void addAccountShouldAddAnAccountOnDatabaseAndReturnAddedAccount() {
         var response = given()
                 .port(PORT)
-                .body(new Account(null, BigDecimal.TEN))
+                .body(new Account(null, Money.of("10")))
                 .post(BASE_PATH);
 
         response.then().statusCode(HttpStatus.OK_200);
@@ -104,13 +114,24 @@ class AccountsResourceIntegrationTest {
         var session = sessionProvider.get();
 
         var transaction = session.beginTransaction();
+        //Deleted behind the application's back, so they have to be dropped from its cache as well.
+        var accountCache = injector.getInstance(AccountCache.class);
+        for (var accountId : accountIds(session)) {
+            accountCache.invalidate(accountId.longValue());
+        }
         session.createSQLQuery("DELETE from account").executeUpdate();
         transaction.commit();
     }
 
+    @SuppressWarnings("unchecked")
+    private static List<Number> accountIds(Session session) {
+        return session.createSQLQuery("SELECT id from account").list();
+    }
+
     @AfterAll
     void stopServer() {
         injector.getInstance(Service.class)
                 .stop();
+        RestAssured.reset();
     }
 }
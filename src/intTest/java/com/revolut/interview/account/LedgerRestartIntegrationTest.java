@@ -0,0 +1,99 @@
+package com.revolut.interview.account;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.revolut.interview.money.Money;
+import com.revolut.interview.persistence.PersistenceModule;
+import com.revolut.interview.transactions.TransactionDAO;
+import com.revolut.interview.transactions.TransactionEntity;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static com.revolut.interview.transactions.TransactionPriority.INTERACTIVE;
+import static com.revolut.interview.transactions.TransactionState.PENDING;
+import static com.revolut.interview.transactions.TransactionState.SUCCEEDED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LedgerRestartIntegrationTest {
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() {
+        System.setProperty("persistence.balances", "ledger");
+        System.setProperty("ledger.directory", directory.toString());
+        System.setProperty("ledger.snapshotIntervalMillis", "0");
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.clearProperty("persistence.balances");
+        System.clearProperty("ledger.directory");
+        System.clearProperty("ledger.snapshotIntervalMillis");
+    }
+
+    @Test
+    void databaseAndLedgerShouldStillAgreeAfterARestart() {
+        var injector = Guice.createInjector(new PersistenceModule());
+        var accountsDAO = injector.getInstance(AccountsDAO.class);
+
+        var senderId = accountsDAO.save(new AccountEntity(Money.of("100"))).getId();
+        var receiverId = accountsDAO.save(new AccountEntity(Money.ZERO)).getId();
+
+        var committedId = transfer(injector, senderId, receiverId, Money.of("10"), true);
+        var rolledBackId = transfer(injector, senderId, receiverId, Money.of("20"), false);
+        stop(injector);
+
+        var restarted = Guice.createInjector(new PersistenceModule());
+        var accountLedger = restarted.getInstance(AccountLedger.class);
+        var transactionDAO = restarted.getInstance(TransactionDAO.class);
+
+        //Every account and transaction the ledger knows of is still in the database.
+        assertTrue(restarted.getInstance(AccountsDAO.class).findById(senderId).isPresent());
+        assertTrue(restarted.getInstance(AccountsDAO.class).findById(receiverId).isPresent());
+        assertEquals(SUCCEEDED, transactionDAO.findById(committedId).orElseThrow().getTransactionState());
+        assertEquals(PENDING, transactionDAO.findById(rolledBackId).orElseThrow().getTransactionState());
+
+        assertEquals(0, accountLedger.resolveUnsettled(transactionId -> true));
+        assertEquals(Optional.of(Money.of("90")), accountLedger.balanceOf(senderId));
+        assertEquals(Optional.of(Money.of("10")), accountLedger.balanceOf(receiverId));
+
+        stop(restarted);
+    }
+
+    //Saved as pending on its own, then moved and marked as succeeded in a database transaction committed or rolled back.
+    private static long transfer(Injector injector, long senderId, long receiverId, Money amount, boolean commit) {
+        var transactionDAO = injector.getInstance(TransactionDAO.class);
+        var transactionId = transactionDAO.save(new TransactionEntity(senderId, receiverId, amount, PENDING, INTERACTIVE)).getId();
+
+        var dbTransaction = injector.getProvider(Session.class).get()
+                .beginTransaction();
+
+        assertTrue(injector.getInstance(AccountLedger.class).transfer(transactionId, senderId, receiverId, amount));
+        transactionDAO.updateState(transactionId, PENDING, SUCCEEDED);
+
+        if (commit) {
+            dbTransaction.commit();
+        } else {
+            dbTransaction.rollback();
+        }
+
+        return transactionId;
+    }
+
+    //In the order the application stops them, then the database is closed so the next start reads it from its file.
+    private static void stop(Injector injector) {
+        injector.getInstance(LedgerSnapshots.class).stop();
+        injector.getInstance(AccountLedger.class).stop();
+        injector.getInstance(SessionFactory.class).close();
+    }
+}
@@ -0,0 +1,84 @@
+package com.revolut.interview.account;
+
+import com.google.inject.Guice;
+import com.google.inject.Provider;
+import com.revolut.interview.money.Money;
+import com.revolut.interview.persistence.PersistenceModule;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PostingsIntegrationTest {
+
+    private AccountsDAO accountsDAO;
+    private AccountShards accountShards;
+    private PostingsDAO postingsDAO;
+    private Provider<Session> sessionProvider;
+
+    @BeforeEach
+    void setUp() {
+        var injector = Guice.createInjector(new PersistenceModule());
+
+        this.accountsDAO = injector.getInstance(AccountsDAO.class);
+        this.accountShards = injector.getInstance(AccountShards.class);
+        this.postingsDAO = injector.getInstance(PostingsDAO.class);
+        this.sessionProvider = injector.getProvider(Session.class);
+    }
+
+    @Test
+    void postedTransfersShouldKeepBalancesMatchingTheirPostings() {
+        var senderId = accountsDAO.saveWithOpeningPosting(new AccountEntity(Money.of("100"))).getId();
+        var receiverId = accountsDAO.saveWithOpeningPosting(new AccountEntity(Money.of("5"))).getId();
+
+        for (long transactionId = 1; transactionId <= 10; transactionId++) {
+            postedTransfer(transactionId, senderId, receiverId, Money.of("2.50"));
+        }
+
+        assertEquals(Money.of("75"), accountsDAO.findById(senderId).orElseThrow().getBalance());
+        assertEquals(Optional.empty(), postingsDAO.findMismatch(senderId));
+        assertEquals(Optional.empty(), postingsDAO.findMismatch(receiverId));
+    }
+
+    @Test
+    void postedTransfersToShardedAccountsShouldKeepBalancesMatchingTheirPostings() {
+        var senderId = accountsDAO.saveWithOpeningPosting(new AccountEntity(Money.of("100"))).getId();
+        var receiverId = accountsDAO.saveWithOpeningPosting(new AccountEntity(Money.of("1"))).getId();
+        accountShards.reshard(receiverId, 4);
+
+        for (long transactionId = 11; transactionId <= 20; transactionId++) {
+            var dbTransaction = sessionProvider.get().beginTransaction();
+            assertTrue(accountShards.debit(senderId, Money.of("1")));
+            assertTrue(accountShards.credit(receiverId, Money.of("1")));
+            postingsDAO.saveTransfer(transactionId, senderId, receiverId, Money.of("1"));
+            dbTransaction.commit();
+        }
+
+        assertEquals(Optional.empty(), postingsDAO.findMismatch(senderId));
+        assertEquals(Optional.empty(), postingsDAO.findMismatch(receiverId));
+    }
+
+    @Test
+    void balanceMovedWithoutPostingsShouldBeReported() {
+        var accountId = accountsDAO.saveWithOpeningPosting(new AccountEntity(Money.of("100"))).getId();
+
+        accountsDAO.credit(accountId, Money.of("3"));
+
+        var mismatch = new BalanceMismatch(accountId, Money.of("103"), Money.of("100"));
+        assertEquals(Optional.of(mismatch), postingsDAO.findMismatch(accountId));
+        //Other tests share the database, so the full pass may report more accounts than this one.
+        assertTrue(postingsDAO.findMismatches().contains(mismatch));
+    }
+
+    private void postedTransfer(long transactionId, long senderId, long receiverId, Money amount) {
+        var dbTransaction = sessionProvider.get().beginTransaction();
+        assertTrue(accountsDAO.debitIfSufficient(senderId, amount));
+        assertTrue(accountsDAO.credit(receiverId, amount));
+        postingsDAO.saveTransfer(transactionId, senderId, receiverId, amount);
+        dbTransaction.commit();
+    }
+}
@@ -4,12 +4,18 @@ import com.google.inject.Guice;
 import com.google.inject.Provider;
 import com.revolut.interview.account.AccountEntity;
 import com.revolut.interview.account.AccountsDAO;
+import com.revolut.interview.money.Money;
 import com.revolut.interview.persistence.PersistenceModule;
+import com.revolut.interview.persistence.TimeOrderedIds;
+import org.hibernate.Hibernate;
 import org.hibernate.Session;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
-import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -37,7 +43,7 @@ class TransactionDAOIntegrationTest {
 
     @Test
     void findByIdShouldReturnExpectedEntity() {
-        var toSave = new TransactionEntity(sender, receiver, BigDecimal.ONE, TransactionState.PENDING);
+        var toSave = new TransactionEntity(sender, receiver, Money.of("1"), TransactionState.PENDING);
         var savedEntity = transactionDAO.save(toSave);
 
         var savedEntityById = transactionDAO.findById(savedEntity.getId())
@@ -48,7 +54,7 @@ class TransactionDAOIntegrationTest {
 
     @Test
     void findByIdShouldReturnExpectedEntityWhenTransactionIsRunningOutside() {
-        var toSave = new TransactionEntity(sender, receiver, BigDecimal.ONE, TransactionState.PENDING);
+        var toSave = new TransactionEntity(sender, receiver, Money.of("1"), TransactionState.PENDING);
 
         var session = sessionProvider.get();
         session.getTransaction().begin();
@@ -64,7 +70,7 @@ class TransactionDAOIntegrationTest {
 
     @Test
     void updateStateShouldPersistUpdatedState() {
-        var toSave = new TransactionEntity(sender, receiver, BigDecimal.ONE, TransactionState.PENDING);
+        var toSave = new TransactionEntity(sender, receiver, Money.of("1"), TransactionState.PENDING);
         var savedEntity = transactionDAO.save(toSave);
 
         var result = transactionDAO.updateState(savedEntity.getId(), TransactionState.PENDING, TransactionState.IN_PROGRESS);
@@ -78,7 +84,7 @@ class TransactionDAOIntegrationTest {
 
     @Test
     void updateStateShouldNotUpdateStateWhenCurrentStateMismatches() {
-        var toSave = new TransactionEntity(sender, receiver, BigDecimal.ONE, TransactionState.PENDING);
+        var toSave = new TransactionEntity(sender, receiver, Money.of("1"), TransactionState.PENDING);
         var savedEntity = transactionDAO.save(toSave);
 
         var result = transactionDAO.updateState(savedEntity.getId(), TransactionState.IN_PROGRESS, TransactionState.SUCCEEDED);
@@ -90,9 +96,52 @@ class TransactionDAOIntegrationTest {
         assertEquals(TransactionState.PENDING, entityById.getTransactionState());
     }
 
+    @Test
+    void updateStatesShouldOnlyUpdateTransactionsInCurrentState() {
+        var pending = transactionDAO.save(new TransactionEntity(sender, receiver, Money.of("1"), TransactionState.PENDING));
+        var succeeded = transactionDAO.save(new TransactionEntity(sender, receiver, Money.of("1"), TransactionState.SUCCEEDED));
+
+        var result = transactionDAO.updateStates(List.of(pending.getId(), succeeded.getId()), TransactionState.PENDING, TransactionState.IN_PROGRESS);
+
+        assertTrue(result[0]);
+        assertFalse(result[1]);
+
+        assertEquals(TransactionState.IN_PROGRESS, transactionDAO.findById(pending.getId()).orElseThrow().getTransactionState());
+        assertEquals(TransactionState.SUCCEEDED, transactionDAO.findById(succeeded.getId()).orElseThrow().getTransactionState());
+    }
+
+    @Test
+    void claimShouldMovePendingTransactionToInProgressAndReturnIt() {
+        var pending = transactionDAO.save(new TransactionEntity(sender, receiver, Money.of("10"), TransactionState.PENDING));
+
+        var claimed = transactionDAO.claim(pending.getId()).orElseThrow();
+
+        assertEquals(pending.getId().longValue(), claimed.getTransactionId());
+        assertEquals(sender.getId().longValue(), claimed.getSenderId());
+        assertEquals(receiver.getId().longValue(), claimed.getReceiverId());
+        assertEquals(Money.of("10"), claimed.getAmountToTransfer());
+        assertEquals(TransactionState.IN_PROGRESS, transactionDAO.findById(pending.getId()).orElseThrow().getTransactionState());
+    }
+
+    @Test
+    void claimShouldReturnThePriorityOfTheTransaction() {
+        var bulk = transactionDAO.save(new TransactionEntity(sender, receiver, Money.of("10"), TransactionState.PENDING, TransactionPriority.BULK));
+
+        assertEquals(TransactionPriority.BULK, transactionDAO.claim(bulk.getId()).orElseThrow().getPriority());
+    }
+
+    @Test
+    void claimShouldReturnEmptyWhenTransactionIsNotPending() {
+        var succeeded = transactionDAO.save(new TransactionEntity(sender, receiver, Money.of("10"), TransactionState.SUCCEEDED));
+
+        assertTrue(transactionDAO.claim(succeeded.getId()).isEmpty());
+        assertTrue(transactionDAO.claim(-1L).isEmpty());
+        assertEquals(TransactionState.SUCCEEDED, transactionDAO.findById(succeeded.getId()).orElseThrow().getTransactionState());
+    }
+
     @Test
     void findAllShouldReturnEmptyListWhenNoTransactionForAccountId() {
-        var toSave = new TransactionEntity(sender, receiver, BigDecimal.ONE, TransactionState.PENDING);
+        var toSave = new TransactionEntity(sender, receiver, Money.of("1"), TransactionState.PENDING);
         transactionDAO.save(toSave);
 
         var allTransactions = transactionDAO.findAllWithAccountId(4L);
@@ -102,9 +151,9 @@ class TransactionDAOIntegrationTest {
 
     @Test
     void findAllShouldReturnOnlyTheTransactionsForGivenAccountId() {
-        var transaction1 = new TransactionEntity(sender, receiver, BigDecimal.ONE, TransactionState.PENDING);
-        var transaction2 = new TransactionEntity(receiver, sender, BigDecimal.ONE, TransactionState.PENDING);
-        var transaction3 = new TransactionEntity(accountsDAO.save(new AccountEntity(BigDecimal.TEN)), receiver, BigDecimal.ONE, TransactionState.PENDING);
+        var transaction1 = new TransactionEntity(sender, receiver, Money.of("1"), TransactionState.PENDING);
+        var transaction2 = new TransactionEntity(receiver, sender, Money.of("1"), TransactionState.PENDING);
+        var transaction3 = new TransactionEntity(accountsDAO.save(new AccountEntity(Money.of("10"))), receiver, Money.of("1"), TransactionState.PENDING);
 
         var savedTransaction1 = transactionDAO.save(transaction1);
         var savedTransaction2 = transactionDAO.save(transaction2);
@@ -118,8 +167,111 @@ class TransactionDAOIntegrationTest {
         assertTrue(allTransactions.contains(savedTransaction2));
     }
 
+    @Test
+    void findPageShouldReturnSentAndReceivedTransactionsNewestFirst() {
+        var other = accountsDAO.save(new AccountEntity(Money.of("10")));
+
+        var sent = transactionDAO.save(new TransactionEntity(sender, receiver, Money.of("1"), TransactionState.PENDING));
+        transactionDAO.save(new TransactionEntity(other, receiver, Money.of("1"), TransactionState.PENDING));
+        var received = transactionDAO.save(new TransactionEntity(receiver, sender, Money.of("1"), TransactionState.PENDING));
+        var sentAgain = transactionDAO.save(new TransactionEntity(sender, other, Money.of("1"), TransactionState.PENDING));
+
+        var page = transactionDAO.findPageWithAccountId(sender.getId(), Long.MAX_VALUE, 10);
+
+        assertEquals(List.of(sentAgain.getId(), received.getId(), sent.getId()), ids(page));
+    }
+
+    @Test
+    void findPageShouldContinueBelowTheGivenIdAndStopAtTheLimit() {
+        var ids = new ArrayList<Long>();
+        for (int i = 0; i < 5; i++) {
+            var transaction = i % 2 == 0
+                    ? new TransactionEntity(sender, receiver, Money.of("1"), TransactionState.PENDING)
+                    : new TransactionEntity(receiver, sender, Money.of("1"), TransactionState.PENDING);
+            ids.add(transactionDAO.save(transaction).getId());
+        }
+
+        var firstPage = transactionDAO.findPageWithAccountId(sender.getId(), Long.MAX_VALUE, 2);
+        var secondPage = transactionDAO.findPageWithAccountId(sender.getId(), firstPage.get(1).getId(), 2);
+        var lastPage = transactionDAO.findPageWithAccountId(sender.getId(), secondPage.get(1).getId(), 2);
+
+        assertEquals(List.of(ids.get(4), ids.get(3)), ids(firstPage));
+        assertEquals(List.of(ids.get(2), ids.get(1)), ids(secondPage));
+        assertEquals(List.of(ids.get(0)), ids(lastPage));
+    }
+
+    @Test
+    void findPageShouldStopAtTheGivenIdRange() {
+        var before = transactionDAO.save(new TransactionEntity(sender, receiver, Money.of("1"), TransactionState.PENDING));
+        var inRange = transactionDAO.save(new TransactionEntity(sender, receiver, Money.of("1"), TransactionState.PENDING));
+        var after = transactionDAO.save(new TransactionEntity(sender, receiver, Money.of("1"), TransactionState.PENDING));
+
+        var page = transactionDAO.findPageWithAccountId(sender.getId(), inRange.getId(), after.getId(), 10);
+
+        assertEquals(List.of(inRange.getId()), ids(page));
+        assertTrue(before.getId() < inRange.getId());
+    }
+
+    @Test
+    void idsShouldBeOrderedByCreationTime() {
+        var from = Instant.now();
+        var saved = transactionDAO.save(new TransactionEntity(sender, receiver, Money.of("1"), TransactionState.PENDING));
+
+        assertTrue(saved.getId() >= TimeOrderedIds.firstIdAt(from));
+        assertTrue(saved.getId() < TimeOrderedIds.firstIdAt(Instant.now().plusMillis(1)));
+    }
+
+    @Test
+    void forEachShouldVisitSentAndReceivedTransactionsOldestFirst() {
+        var other = accountsDAO.save(new AccountEntity(Money.of("10")));
+
+        var sent = transactionDAO.save(new TransactionEntity(sender, receiver, Money.of("1"), TransactionState.SUCCEEDED));
+        transactionDAO.save(new TransactionEntity(other, receiver, Money.of("1"), TransactionState.PENDING));
+        var received = transactionDAO.save(new TransactionEntity(receiver, sender, Money.of("10"), TransactionState.FAILED, TransactionPriority.BULK));
+
+        var visited = new ArrayList<Transaction>();
+        transactionDAO.forEachWithAccountId(sender.getId(), visited::add);
+
+        assertEquals(2, visited.size());
+        assertEquals(sent.getId(), visited.get(0).getTransactionId());
+        assertEquals(sender.getId(), visited.get(0).getSenderId());
+        assertEquals(TransactionState.SUCCEEDED, visited.get(0).getTransactionState());
+        assertEquals(received.getId(), visited.get(1).getTransactionId());
+        assertEquals(Money.of("10"), visited.get(1).getAmountToTransfer());
+        assertEquals(TransactionPriority.BULK, visited.get(1).getPriority());
+    }
+
+    @Test
+    void findByIdShouldNotLoadTheAccounts() {
+        var saved = transactionDAO.save(new TransactionEntity(sender, receiver, Money.of("1"), TransactionState.PENDING));
+
+        var found = transactionDAO.findById(saved.getId()).orElseThrow();
+
+        assertEquals(sender.getId(), found.getSenderId());
+        assertEquals(receiver.getId(), found.getReceiverId());
+        assertFalse(Hibernate.isInitialized(found.getSender()));
+        assertFalse(Hibernate.isInitialized(found.getReceiver()));
+    }
+
+    @Test
+    void findPageShouldNotLoadTheAccounts() {
+        transactionDAO.save(new TransactionEntity(sender, receiver, Money.of("1"), TransactionState.PENDING));
+
+        var found = transactionDAO.findPageWithAccountId(sender.getId(), Long.MAX_VALUE, 10).get(0);
+
+        assertEquals(sender.getId(), found.getSenderId());
+        assertFalse(Hibernate.isInitialized(found.getSender()));
+        assertFalse(Hibernate.isInitialized(found.getReceiver()));
+    }
+
+    private static List<Long> ids(List<TransactionEntity> transactions) {
+        return transactions.stream()
+                .map(TransactionEntity::getId)
+                .collect(Collectors.toList());
+    }
+
     private void setUpAccounts() {
-        sender = accountsDAO.save(new AccountEntity(BigDecimal.ONE));
-        receiver = accountsDAO.save(new AccountEntity(BigDecimal.TEN));
+        sender = accountsDAO.save(new AccountEntity(Money.of("1")));
+        receiver = accountsDAO.save(new AccountEntity(Money.of("10")));
     }
 }
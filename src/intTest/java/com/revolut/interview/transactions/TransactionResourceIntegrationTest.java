@@ -1,13 +1,19 @@
 package com.revolut.interview.transactions;
 
+import com.google.gson.Gson;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.revolut.interview.account.AccountEntity;
 import com.revolut.interview.account.AccountsDAO;
+import com.revolut.interview.account.AccountsModule;
+import com.revolut.interview.money.Money;
 import com.revolut.interview.notification.NotificationsModule;
 import com.revolut.interview.persistence.PersistenceModule;
 import com.revolut.interview.rest.SparkRestModule;
+import io.restassured.RestAssured;
 import io.restassured.common.mapper.TypeRef;
+import io.restassured.config.ObjectMapperConfig;
+import io.restassured.config.RestAssuredConfig;
 import org.eclipse.jetty.http.HttpStatus;
 import org.hibernate.Session;
 import org.junit.jupiter.api.AfterAll;
@@ -17,11 +23,11 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import spark.Service;
 
-import java.math.BigDecimal;
 import java.util.List;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
@@ -35,7 +41,8 @@ class TransactionResourceIntegrationTest {
 
     @BeforeAll
     void setUp() {
-        injector = Guice.createInjector(new TransactionModule(),
+        injector = Guice.createInjector(new AccountsModule(),
+                new TransactionModule(),
                 new SparkRestModule(),
                 new PersistenceModule(),
                 new NotificationsModule()
@@ -46,6 +53,11 @@ class TransactionResourceIntegrationTest {
 
         var transactionResource = injector.getInstance(TransactionResource.class);
         transactionResource.register(spark);
+
+        //Money goes over the wire as a decimal number, the same way the application reads and writes it.
+        RestAssured.config = RestAssuredConfig.config()
+                .objectMapperConfig(ObjectMapperConfig.objectMapperConfig()
+                        .gsonObjectMapperFactory((type, charset) -> injector.getInstance(Gson.class)));
     }
 
     @Test
@@ -61,16 +73,16 @@ class TransactionResourceIntegrationTest {
     @Test
     void getTransactionShouldReturnExpectedTransactionJsonForGivenAccount() {
         var accountsDAO = injector.getInstance(AccountsDAO.class);
-        var account1 = accountsDAO.save(new AccountEntity(new BigDecimal(10)));
-        var account2 = accountsDAO.save(new AccountEntity(new BigDecimal(10)));
-        var account3 = accountsDAO.save(new AccountEntity(new BigDecimal(10)));
-        var account4 = accountsDAO.save(new AccountEntity(new BigDecimal(10)));
+        var account1 = accountsDAO.save(new AccountEntity(Money.of("10")));
+        var account2 = accountsDAO.save(new AccountEntity(Money.of("10")));
+        var account3 = accountsDAO.save(new AccountEntity(Money.of("10")));
+        var account4 = accountsDAO.save(new AccountEntity(Money.of("10")));
 
         var transactionDAO = injector.getInstance(TransactionDAO.class);
-        var transaction1 = transactionDAO.save(new TransactionEntity(account1, account2, BigDecimal.TEN, TransactionState.SUCCEEDED));
-        var transaction2 = transactionDAO.save(new TransactionEntity(account2, account1, BigDecimal.ONE, TransactionState.FAILED));
-        var transaction3 = transactionDAO.save(new TransactionEntity(account1, account3, BigDecimal.ZERO, TransactionState.SUCCEEDED));
-        var transaction4 = transactionDAO.save(new TransactionEntity(account3, account4, BigDecimal.TEN, TransactionState.SUCCEEDED));
+        var transaction1 = transactionDAO.save(new TransactionEntity(account1, account2, Money.of("10"), TransactionState.SUCCEEDED));
+        var transaction2 = transactionDAO.save(new TransactionEntity(account2, account1, Money.of("1"), TransactionState.FAILED));
+        var transaction3 = transactionDAO.save(new TransactionEntity(account1, account3, Money.ZERO, TransactionState.SUCCEEDED));
+        var transaction4 = transactionDAO.save(new TransactionEntity(account3, account4, Money.of("10"), TransactionState.SUCCEEDED));
 
         var response = given()
                 .port(PORT)
@@ -88,15 +100,69 @@ class TransactionResourceIntegrationTest {
         verifyContainsTransaction(transaction3, transactionResponse);
     }
 
+    @Test
+    void exportShouldStreamTheWholeHistoryAsCsv() {
+        var accountsDAO = injector.getInstance(AccountsDAO.class);
+        var account1 = accountsDAO.save(new AccountEntity(Money.of("10")));
+        var account2 = accountsDAO.save(new AccountEntity(Money.of("10")));
+
+        var transactionDAO = injector.getInstance(TransactionDAO.class);
+        var transaction1 = transactionDAO.save(new TransactionEntity(account1, account2, Money.of("10"), TransactionState.SUCCEEDED));
+        var transaction2 = transactionDAO.save(new TransactionEntity(account2, account1, Money.of("1"), TransactionState.FAILED));
+
+        given()
+                .port(PORT)
+                .get(BASE_PATH + "/" + account1.getId() + "/export?format=csv")
+                .then()
+                .statusCode(HttpStatus.OK_200)
+                .contentType(startsWith("text/csv"))
+                .body(equalTo("transactionId,senderId,receiverId,amountToTransfer,transactionState,priority\n"
+                        + transaction1.getId() + "," + account1.getId() + "," + account2.getId() + ",10.00,SUCCEEDED,INTERACTIVE\n"
+                        + transaction2.getId() + "," + account2.getId() + "," + account1.getId() + ",1.00,FAILED,INTERACTIVE\n"));
+    }
+
+    @Test
+    void exportShouldReturnJsonArrayByDefault() {
+        var accountsDAO = injector.getInstance(AccountsDAO.class);
+        var account1 = accountsDAO.save(new AccountEntity(Money.of("10")));
+        var account2 = accountsDAO.save(new AccountEntity(Money.of("10")));
+
+        var transactionDAO = injector.getInstance(TransactionDAO.class);
+        var transaction1 = transactionDAO.save(new TransactionEntity(account1, account2, Money.of("10"), TransactionState.SUCCEEDED));
+
+        var response = given()
+                .port(PORT)
+                .get(BASE_PATH + "/" + account1.getId() + "/export");
+
+        response.then()
+                .statusCode(HttpStatus.OK_200)
+                .contentType(startsWith("application/json"));
+
+        var transactionResponse = response.getBody().as(new TypeRef<List<Transaction>>() {
+        });
+
+        assertEquals(1, transactionResponse.size());
+        verifyContainsTransaction(transaction1, transactionResponse);
+    }
+
+    @Test
+    void exportShouldReturnBadRequestForUnknownFormat() {
+        given()
+                .port(PORT)
+                .get(BASE_PATH + "/1/export?format=xml")
+                .then()
+                .statusCode(HttpStatus.BAD_REQUEST_400);
+    }
+
     private void verifyContainsTransaction(TransactionEntity transactionEntity, List<Transaction> transactionResponse) {
         var transaction = transactionResponse.stream()
                 .filter(t -> t.getTransactionId() == transactionEntity.getId())
                 .findFirst()
                 .orElseThrow();
 
-        assertEquals(transactionEntity.getSender().getId(), transaction.getSenderId());
-        assertEquals(transactionEntity.getReceiver().getId(), transaction.getReceiverId());
-        assertEquals(transactionEntity.getAmount().compareTo(transaction.getAmountToTransfer()), 0);
+        assertEquals(transactionEntity.getSenderId(), transaction.getSenderId());
+        assertEquals(transactionEntity.getReceiverId(), transaction.getReceiverId());
+        assertEquals(transactionEntity.getAmount(), transaction.getAmountToTransfer());
         assertEquals(transactionEntity.getTransactionState(), transaction.getTransactionState());
     }
 
@@ -116,5 +182,6 @@ class TransactionResourceIntegrationTest {
     void stopServer() {
         injector.getInstance(Service.class)
                 .stop();
+        RestAssured.reset();
     }
 }
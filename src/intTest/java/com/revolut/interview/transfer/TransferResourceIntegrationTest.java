@@ -1,11 +1,13 @@
 package com.revolut.interview.transfer;
 
+import com.google.gson.Gson;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.revolut.interview.account.AccountEntity;
 import com.revolut.interview.account.AccountsDAO;
 import com.revolut.interview.account.AccountsModule;
+import com.revolut.interview.money.Money;
 import com.revolut.interview.notification.NotificationService;
 import com.revolut.interview.notification.TransactionNotification;
 import com.revolut.interview.persistence.PersistenceModule;
@@ -13,6 +15,9 @@ import com.revolut.interview.rest.SparkRestModule;
 import com.revolut.interview.transactions.TransactionDAO;
 import com.revolut.interview.transactions.TransactionModule;
 import com.revolut.interview.transactions.TransactionState;
+import io.restassured.RestAssured;
+import io.restassured.config.ObjectMapperConfig;
+import io.restassured.config.RestAssuredConfig;
 import org.eclipse.jetty.http.HttpStatus;
 import org.hibernate.Session;
 import org.junit.jupiter.api.AfterAll;
@@ -24,11 +29,12 @@ import org.junit.jupiter.api.TestInstance;
 import org.mockito.ArgumentCaptor;
 import spark.Service;
 
-import java.math.BigDecimal;
+import java.util.List;
 
 import static io.restassured.RestAssured.given;
 import static javax.persistence.LockModeType.READ;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.verify;
@@ -39,7 +45,7 @@ class TransferResourceIntegrationTest {
     private static final int PORT = 8001;
     private static final String BASE_PATH = "/api/transfer";
 
-    private static final BigDecimal BALANCE = BigDecimal.TEN;
+    private static final Money BALANCE = Money.of("10");
 
     private Injector injector;
 
@@ -65,6 +71,11 @@ class TransferResourceIntegrationTest {
         var transferResource = injector.getInstance(TransferResource.class);
         transferResource.register(spark);
 
+        //Money goes over the wire as a decimal number, the same way the application reads and writes it.
+        RestAssured.config = RestAssuredConfig.config()
+                .objectMapperConfig(ObjectMapperConfig.objectMapperConfig()
+                        .gsonObjectMapperFactory((type, charset) -> injector.getInstance(Gson.class)));
+
         this.accountsDAO = injector.getInstance(AccountsDAO.class);
         this.transactionDAO = injector.getInstance(TransactionDAO.class);
     }
@@ -78,40 +89,127 @@ class TransferResourceIntegrationTest {
 
     @Test
     void transferShouldTransferMoneyFromSenderToReceiverWhenArgumentsProvidedAreValid() {
-        var transferRequest = new TransferRequest(sender.getId(), receiver.getId(), BigDecimal.valueOf(5));
+        var transferRequest = new TransferRequest(sender.getId(), receiver.getId(), Money.of("5"));
         var response = given()
                 .port(PORT)
                 .body(transferRequest)
                 .post(BASE_PATH);
 
-        response.then().statusCode(HttpStatus.OK_200);
+        response.then().statusCode(HttpStatus.ACCEPTED_202);
 
         var sender = accountsDAO.findById(this.sender.getId(), READ)
                 .orElseThrow();
         var receiver = accountsDAO.findById(this.receiver.getId(), READ)
                 .orElseThrow();
 
-        assertEquals(BALANCE.subtract(BigDecimal.valueOf(5)).compareTo(sender.getBalance()), 0);
-        assertEquals(BALANCE.add(BigDecimal.valueOf(5)).compareTo(receiver.getBalance()), 0);
+        assertEquals(BALANCE.minus(Money.of("5")), sender.getBalance());
+        assertEquals(BALANCE.plus(Money.of("5")), receiver.getBalance());
 
         var allTransactionsForSender = transactionDAO.findAllWithAccountId(sender.getId());
         assertEquals(1, allTransactionsForSender.size());
 
         var transaction = allTransactionsForSender.get(0);
 
-        assertEquals(sender, transaction.getSender());
-        assertEquals(receiver, transaction.getReceiver());
-        assertEquals(BigDecimal.valueOf(5).compareTo(transaction.getAmount()), 0);
+        assertEquals(sender.getId(), transaction.getSenderId());
+        assertEquals(receiver.getId(), transaction.getReceiverId());
+        assertEquals(Money.of("5"), transaction.getAmount());
         assertEquals(TransactionState.SUCCEEDED, transaction.getTransactionState());
 
         verifyNotification(transferRequest, true);
     }
 
+    @Test
+    void transferShouldReturnTransactionIdAndFinalStateWhenWaitingForIt() {
+        var transferRequest = new TransferRequest(sender.getId(), receiver.getId(), Money.of("5"));
+        var response = given()
+                .port(PORT)
+                .queryParam("waitMillis", 5000)
+                .body(transferRequest)
+                .post(BASE_PATH);
+
+        response.then().statusCode(HttpStatus.OK_200);
+
+        var transaction = transactionDAO.findAllWithAccountId(sender.getId()).get(0);
+
+        assertEquals(transaction.getId().longValue(), response.jsonPath().getLong("transactionId"));
+        assertEquals(TransactionState.SUCCEEDED.name(), response.jsonPath().getString("transactionState"));
+    }
+
+    @Test
+    void transferRetriedWithTheSameIdempotencyKeyShouldMoveTheMoneyOnce() {
+        var transferRequest = new TransferRequest(sender.getId(), receiver.getId(), Money.of("5"));
+        var idempotencyKey = "retry-" + sender.getId();
+
+        var first = given()
+                .port(PORT)
+                .header("Idempotency-Key", idempotencyKey)
+                .body(transferRequest)
+                .post(BASE_PATH);
+        var retry = given()
+                .port(PORT)
+                .header("Idempotency-Key", idempotencyKey)
+                .body(transferRequest)
+                .post(BASE_PATH);
+
+        assertEquals(first.jsonPath().getLong("transactionId"), retry.jsonPath().getLong("transactionId"));
+        assertEquals(1, transactionDAO.findAllWithAccountId(sender.getId()).size());
+
+        var sender = accountsDAO.findById(this.sender.getId(), READ)
+                .orElseThrow();
+        assertEquals(BALANCE.minus(Money.of("5")), sender.getBalance());
+    }
+
+    @Test
+    void idempotencyKeyReusedForADifferentTransferShouldBeRejected() {
+        var idempotencyKey = "reused-" + sender.getId();
+
+        given()
+                .port(PORT)
+                .header("Idempotency-Key", idempotencyKey)
+                .body(new TransferRequest(sender.getId(), receiver.getId(), Money.of("5")))
+                .post(BASE_PATH)
+                .then()
+                .statusCode(HttpStatus.ACCEPTED_202);
+
+        given()
+                .port(PORT)
+                .header("Idempotency-Key", idempotencyKey)
+                .body(new TransferRequest(sender.getId(), receiver.getId(), Money.of("6")))
+                .post(BASE_PATH)
+                .then()
+                .statusCode(HttpStatus.UNPROCESSABLE_ENTITY_422);
+
+        assertEquals(1, transactionDAO.findAllWithAccountId(sender.getId()).size());
+    }
+
+    @Test
+    void batchShouldQueueValidTransfersAndReportInvalidOnes() {
+        var response = given()
+                .port(PORT)
+                .body(List.of(
+                        new TransferRequest(sender.getId(), receiver.getId(), Money.of("2")),
+                        new TransferRequest(sender.getId(), -1L, Money.of("2")),
+                        new TransferRequest(receiver.getId(), sender.getId(), Money.of("3"))
+                ))
+                .post(BASE_PATH + "/batch");
+
+        response.then().statusCode(HttpStatus.OK_200);
+
+        assertEquals(TransactionState.PENDING.name(), response.jsonPath().getString("[0].transactionState"));
+        assertNotNull(response.jsonPath().getString("[1].error"));
+        assertNotNull(response.jsonPath().get("[2].transactionId"));
+
+        var sender = accountsDAO.findById(this.sender.getId(), READ)
+                .orElseThrow();
+        assertEquals(BALANCE.plus(Money.of("1")), sender.getBalance());
+        assertEquals(2, transactionDAO.findAllWithAccountId(sender.getId()).size());
+    }
+
     @Test
     void transferShouldReturnBadRequestResponseWhenSenderAndReceiverAreTheSame() {
         var response = given()
                 .port(PORT)
-                .body(new TransferRequest(sender.getId(), sender.getId(), BigDecimal.valueOf(5)))
+                .body(new TransferRequest(sender.getId(), sender.getId(), Money.of("5")))
                 .post(BASE_PATH);
 
         response.then().statusCode(HttpStatus.BAD_REQUEST_400);
@@ -119,7 +217,7 @@ class TransferResourceIntegrationTest {
 
     @Test
     void transferShouldReturnBadRequestResponseWhenBalanceIsLowWhenMakingTheTransfer() {
-        var transferRequest = new TransferRequest(sender.getId(), receiver.getId(), BigDecimal.valueOf(20));
+        var transferRequest = new TransferRequest(sender.getId(), receiver.getId(), Money.of("20"));
         var response = given()
                 .port(PORT)
                 .body(transferRequest)
@@ -137,14 +235,14 @@ class TransferResourceIntegrationTest {
         assertEquals(success, notification.isSuccess());
         assertEquals(transferRequest.getSenderId(), notification.getSenderId());
         assertEquals(transferRequest.getReceiverId(), notification.getReceiverId());
-        assertEquals(0, transferRequest.getAmountToTransfer().compareTo(notification.getAmount()));
+        assertEquals(transferRequest.getAmountToTransfer(), notification.getAmount());
     }
 
     @Test
     void transferShouldReturnBadRequestWhenSenderAccountDoesNotExist() {
         var response = given()
                 .port(PORT)
-                .body(new TransferRequest(-1L, receiver.getId(), BigDecimal.valueOf(20)))
+                .body(new TransferRequest(-1L, receiver.getId(), Money.of("20")))
                 .post(BASE_PATH);
 
         response.then().statusCode(HttpStatus.BAD_REQUEST_400);
@@ -165,6 +263,7 @@ class TransferResourceIntegrationTest {
     void stopServer() {
         injector.getInstance(Service.class)
                 .stop();
+        RestAssured.reset();
     }
 
     private void createAccounts() {
@@ -0,0 +1,57 @@
+package com.revolut.interview.money;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+//The balance check and update of a single transfer, as EntityTransferEngine does it, once with the BigDecimal amounts
+//the engine used to move around and once with Money. Run with -prof gc to compare the allocations per operation too.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+public class MoneyArithmeticBenchmark {
+
+    private BigDecimal senderBalance;
+    private BigDecimal receiverBalance;
+    private BigDecimal amount;
+
+    private Money senderMoney;
+    private Money receiverMoney;
+    private Money amountMoney;
+
+    @Setup
+    public void setUp() {
+        this.senderBalance = new BigDecimal("1000000.00");
+        this.receiverBalance = new BigDecimal("250.50");
+        this.amount = new BigDecimal("10.25");
+
+        this.senderMoney = Money.of(senderBalance);
+        this.receiverMoney = Money.of(receiverBalance);
+        this.amountMoney = Money.of(amount);
+    }
+
+    @Benchmark
+    public void bigDecimal(Blackhole blackhole) {
+        if (senderBalance.compareTo(amount) >= 0) {
+            blackhole.consume(senderBalance.subtract(amount));
+            blackhole.consume(receiverBalance.add(amount));
+        }
+    }
+
+    @Benchmark
+    public void money(Blackhole blackhole) {
+        if (!senderMoney.isLessThan(amountMoney)) {
+            blackhole.consume(senderMoney.minus(amountMoney));
+            blackhole.consume(receiverMoney.plus(amountMoney));
+        }
+    }
+}
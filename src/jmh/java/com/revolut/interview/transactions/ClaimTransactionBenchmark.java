@@ -0,0 +1,56 @@
+package com.revolut.interview.transactions;
+
+import com.google.inject.Guice;
+import com.revolut.interview.account.AccountEntity;
+import com.revolut.interview.account.AccountsDAO;
+import com.revolut.interview.money.Money;
+import com.revolut.interview.persistence.PersistenceModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+//Time to take a pending transaction and get what is needed to execute it. updateStateThenFindById is how the executor
+//used to do it: an UPDATE followed by a SELECT of the row. claim does both in one statement without joins.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+public class ClaimTransactionBenchmark {
+
+    private TransactionDAO transactionDAO;
+    private long transactionId;
+
+    @Setup
+    public void setUp() {
+        var injector = Guice.createInjector(new PersistenceModule());
+        var accountsDAO = injector.getInstance(AccountsDAO.class);
+
+        this.transactionDAO = injector.getInstance(TransactionDAO.class);
+
+        var sender = accountsDAO.save(new AccountEntity(Money.of("10")));
+        var receiver = accountsDAO.save(new AccountEntity(Money.of("10")));
+        this.transactionId = transactionDAO.save(new TransactionEntity(sender, receiver, Money.of("1"), TransactionState.PENDING)).getId();
+    }
+
+    @Setup(Level.Invocation)
+    public void makePendingAgain() {
+        transactionDAO.updateState(transactionId, TransactionState.IN_PROGRESS, TransactionState.PENDING);
+    }
+
+    @Benchmark
+    public Object updateStateThenFindById() {
+        transactionDAO.updateState(transactionId, TransactionState.PENDING, TransactionState.IN_PROGRESS);
+        return transactionDAO.findById(transactionId).orElseThrow();
+    }
+
+    @Benchmark
+    public Object claim() {
+        return transactionDAO.claim(transactionId).orElseThrow();
+    }
+}
@@ -0,0 +1,101 @@
+package com.revolut.interview.transactions;
+
+import com.google.inject.Guice;
+import com.revolut.interview.account.AccountEntity;
+import com.revolut.interview.account.AccountsDAO;
+import com.revolut.interview.money.Money;
+import com.revolut.interview.persistence.PersistenceModule;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javax.inject.Provider;
+import java.util.List;
+import java.util.function.Function;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+//Statements and time per page of account history. idsOnly is how transactions are read now. loadAccounts also
+//initializes the sender and receiver of every row, which is what the eager account mappings used to do on every read:
+//one extra SELECT per distinct account on the page. Compare the statements counter of the two, divided by the
+//operation count.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+public class TransactionReadBenchmark {
+
+    @Param({"10", "100"})
+    private int pageSize;
+
+    private Provider<Session> sessionProvider;
+    private Statistics statistics;
+    private TransactionDAO transactionDAO;
+    private long accountId;
+
+    @Setup
+    public void setUp() {
+        var injector = Guice.createInjector(new PersistenceModule());
+        var accountsDAO = injector.getInstance(AccountsDAO.class);
+
+        this.sessionProvider = injector.getProvider(Session.class);
+        this.statistics = injector.getInstance(SessionFactory.class).getStatistics();
+        this.transactionDAO = injector.getInstance(TransactionDAO.class);
+
+        var account = accountsDAO.save(new AccountEntity(Money.of("10")));
+        this.accountId = account.getId();
+
+        //Every transaction with a different counterparty, the worst case for the eager mappings.
+        for (int i = 0; i < pageSize; i++) {
+            var counterparty = accountsDAO.save(new AccountEntity(Money.of("10")));
+            transactionDAO.save(new TransactionEntity(account, counterparty, Money.of("1"), TransactionState.SUCCEEDED));
+        }
+
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @Benchmark
+    public List<TransactionEntity> idsOnly(StatementCounters counters) {
+        return readPage(counters, page -> page);
+    }
+
+    @Benchmark
+    public List<TransactionEntity> loadAccounts(StatementCounters counters) {
+        return readPage(counters, page -> {
+            for (var transaction : page) {
+                Hibernate.initialize(transaction.getSender());
+                Hibernate.initialize(transaction.getReceiver());
+            }
+            return page;
+        });
+    }
+
+    private List<TransactionEntity> readPage(StatementCounters counters, Function<List<TransactionEntity>, List<TransactionEntity>> afterRead) {
+        var statementsBefore = statistics.getPrepareStatementCount();
+        var dbTransaction = sessionProvider.get()
+                .beginTransaction();
+
+        try {
+            return afterRead.apply(transactionDAO.findPageWithAccountId(accountId, Long.MAX_VALUE, pageSize));
+        } finally {
+            dbTransaction.commit();
+            counters.statements += statistics.getPrepareStatementCount() - statementsBefore;
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class StatementCounters {
+
+        public long statements;
+    }
+}
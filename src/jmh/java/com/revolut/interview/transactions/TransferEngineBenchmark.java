@@ -0,0 +1,142 @@
+package com.revolut.interview.transactions;
+
+import com.google.inject.Guice;
+import com.revolut.interview.account.AccountEntity;
+import com.revolut.interview.account.AccountLedger;
+import com.revolut.interview.account.AccountsDAO;
+import com.revolut.interview.account.PostingsDAO;
+import com.revolut.interview.money.Money;
+import com.revolut.interview.persistence.PersistenceModule;
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import javax.inject.Provider;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+//Transfers per second for each engine, against the same H2 database the application uses. With few accounts most
+//transfers touch the same rows, which is where the entity engine starts failing on version conflicts and the
+//pessimistic engine starts queueing on row locks. With many accounts conflicts are rare and locking is pure overhead.
+//
+//ledger keeps the balances in memory and journals every transfer to a temporary directory, synced to disk before the
+//transfer returns. The database transaction is still opened and committed around it, as the executors do. Its
+//throughput with more threads shows how many transfers share an fsync.
+//
+//postings runs conditional-update and also inserts a debit and a credit posting for every transfer, in the same
+//database transaction. The difference to conditional-update is what the two inserts cost.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(SECONDS)
+public class TransferEngineBenchmark {
+
+    private static final Money AMOUNT = Money.of("1");
+
+    @Param({"entity", "pessimistic", "conditional-update", "postings", "ledger"})
+    private String engine;
+
+    @Param({"2", "16", "1000"})
+    private int accounts;
+
+    private final AtomicLong transactionIds = new AtomicLong();
+
+    private Provider<Session> sessionProvider;
+    private TransferEngine transferEngine;
+    private AccountLedger accountLedger;
+    private PostingsDAO postingsDAO;
+    private long[] accountIds;
+
+    @Setup
+    public void setUp() throws IOException {
+        if (engine.equals("ledger")) {
+            System.setProperty("persistence.balances", "ledger");
+            System.setProperty("ledger.directory", Files.createTempDirectory("ledger-benchmark").toString());
+        }
+
+        var injector = Guice.createInjector(new PersistenceModule());
+        var accountsDAO = injector.getInstance(AccountsDAO.class);
+
+        this.sessionProvider = injector.getProvider(Session.class);
+        this.accountLedger = injector.getInstance(AccountLedger.class);
+        this.postingsDAO = injector.getInstance(PostingsDAO.class);
+        this.transferEngine = transferEngine(accountsDAO);
+
+        this.accountIds = new long[accounts];
+        for (int i = 0; i < accounts; i++) {
+            accountIds[i] = accountsDAO.save(new AccountEntity(Money.of("1000000000"))).getId();
+        }
+    }
+
+    private TransferEngine transferEngine(AccountsDAO accountsDAO) {
+        switch (engine) {
+            case "entity":
+                return new EntityTransferEngine(accountsDAO);
+            case "pessimistic":
+                return new PessimisticOrderedTransferEngine(accountsDAO);
+            case "postings":
+                return new PostingTransferEngine(new ConditionalUpdateTransferEngine(accountsDAO), postingsDAO);
+            case "ledger":
+                return new LedgerTransferEngine(accountLedger);
+            default:
+                return new ConditionalUpdateTransferEngine(accountsDAO);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        accountLedger.stop();
+
+        System.clearProperty("persistence.balances");
+        System.clearProperty("ledger.directory");
+    }
+
+    @Benchmark
+    public boolean transfer() {
+        return transferBetweenRandomAccounts();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean contendedTransfer() {
+        return transferBetweenRandomAccounts();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public boolean heavilyContendedTransfer() {
+        return transferBetweenRandomAccounts();
+    }
+
+    private boolean transferBetweenRandomAccounts() {
+        var random = ThreadLocalRandom.current();
+        var sender = accountIds[random.nextInt(accounts)];
+        var receiver = accountIds[random.nextInt(accounts)];
+
+        var dbTransaction = sessionProvider.get()
+                .beginTransaction();
+
+        try {
+            var transferred = transferEngine.transfer(transactionIds.incrementAndGet(), sender, receiver, AMOUNT);
+            dbTransaction.commit();
+
+            return transferred;
+        } catch (RuntimeException e) {
+            //A lost version race or lock timeout counts as a failed transfer, the executor would have retried it.
+            dbTransaction.rollback();
+
+            return false;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.revolut.interview;
 
 import com.google.inject.AbstractModule;
 import com.revolut.interview.account.AccountsModule;
+import com.revolut.interview.metrics.MetricsModule;
 import com.revolut.interview.notification.NotificationsModule;
 import com.revolut.interview.persistence.PersistenceModule;
 import com.revolut.interview.rest.SparkRestModule;
@@ -18,5 +19,6 @@ public class ApplicationModule extends AbstractModule {
         install(new PersistenceModule());
         install(new SparkRestModule());
         install(new NotificationsModule());
+        install(new MetricsModule());
     }
 }
@@ -3,7 +3,9 @@ package com.revolut.interview;
 import com.google.inject.Guice;
 import com.google.inject.Key;
 import com.google.inject.TypeLiteral;
+import com.revolut.interview.lifecycle.Managed;
 import com.revolut.interview.rest.Resource;
+import com.revolut.interview.transactions.TransactionRecovery;
 import spark.Service;
 
 import java.util.Set;
@@ -23,11 +25,21 @@ public class MoneyTransferApplication {
 
         spark.port(80);
 
+        var managedComponents = injector.getInstance(Key.get(new TypeLiteral<Set<Managed>>() {
+        }));
+
+        //Queued transfers are drained before the web server goes away.
+        getRuntime().addShutdownHook(new Thread(() -> {
+            managedComponents.forEach(Managed::stop);
+            spark.stop();
+        }));
+
+        //Transactions left unfinished by the previous run are queued before any new transfer comes in.
+        injector.getInstance(TransactionRecovery.class).recover();
+
         var allResources = injector.getInstance(Key.get(new TypeLiteral<Set<Resource>>() {
         }));
 
         allResources.forEach(resource -> resource.register(spark));
-
-        getRuntime().addShutdownHook(new Thread(spark::stop));
     }
 }
@@ -1,6 +1,7 @@
 package com.revolut.interview.account;
 
-import java.math.BigDecimal;
+import com.revolut.interview.money.Money;
+
 import java.util.Objects;
 
 import static java.util.Objects.requireNonNull;
@@ -8,9 +9,9 @@ import static java.util.Objects.requireNonNull;
 public class Account {
 
     private final Long id;
-    private final BigDecimal balance;
+    private final Money balance;
 
-    public Account(Long id, BigDecimal balance) {
+    public Account(Long id, Money balance) {
         this.id = id;
         this.balance = requireNonNull(balance, "Balance cannot be null.");
     }
@@ -19,12 +20,12 @@ public class Account {
         return id;
     }
 
-    public BigDecimal getBalance() {
+    public Money getBalance() {
         return balance;
     }
 
     public boolean isBalanceLessThanZero() {
-        return balance.compareTo(BigDecimal.ZERO) < 0;
+        return balance.signum() < 0;
     }
 
     @Override
@@ -41,7 +42,7 @@ public class Account {
         if (!(o instanceof Account)) return false;
         Account account = (Account) o;
         return Objects.equals(id, account.id) &&
-                balance.compareTo(account.balance) == 0;
+                balance.equals(account.balance);
     }
 
     @Override
@@ -0,0 +1,190 @@
+package com.revolut.interview.account;
+
+import com.revolut.interview.metrics.MetricsSource;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+//Recently read accounts, so balance lookups do not go to the database every time. Accounts are kept in a fixed array
+//of slots picked by hashing the account id, one account per slot. An account landing in a taken slot evicts the one
+//there, which bounds the size without any bookkeeping and keeps reads lock free.
+//
+//Processors invalidate both accounts of a transfer once it has committed, never before, so a rolled back transfer is
+//never visible here. Every slot has a stamp bumped by invalidations: a load that raced with one is dropped instead of
+//caching the balance from before the commit.
+@Singleton
+public class AccountCache implements MetricsSource {
+
+    static final String ACCOUNT_CACHE_SIZE = "ACCOUNT_CACHE_SIZE";
+
+    private final AccountsDAO accountsDAO;
+    private final AccountShards accountShards;
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final AtomicLongArray stamps;
+    private final int mask;
+    private final int shift;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @Inject
+    AccountCache(AccountsDAO accountsDAO, AccountShards accountShards, @Named(ACCOUNT_CACHE_SIZE) int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Account cache size should be at least 1. Provided: " + size);
+        }
+
+        this.accountsDAO = accountsDAO;
+        this.accountShards = accountShards;
+
+        //Rounded up to a power of 2, so a slot is picked with a mask.
+        var capacity = size == 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.stamps = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        this.shift = Long.SIZE - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    public Optional<Account> get(long accountId) {
+        var slot = slotOf(accountId);
+        var entry = slots.get(slot);
+
+        if (entry != null && entry.accountId == accountId) {
+            hits.incrementAndGet();
+            return Optional.of(entry.account);
+        }
+
+        misses.incrementAndGet();
+
+        var stamp = stamps.get(slot);
+        var account = accountsDAO.findById(accountId)
+                .map(this::map);
+
+        account.ifPresent(loaded -> cache(slot, stamp, loaded));
+
+        return account;
+    }
+
+    //Hits come from the cache, all the misses are loaded with a single query.
+    public Map<Long, Account> getAll(Collection<Long> accountIds) {
+        var accounts = new HashMap<Long, Account>();
+        var missing = new HashMap<Long, Long>();
+
+        for (var accountId : accountIds) {
+            var slot = slotOf(accountId);
+            var entry = slots.get(slot);
+
+            if (entry != null && entry.accountId == accountId) {
+                hits.incrementAndGet();
+                accounts.put(accountId, entry.account);
+            } else {
+                misses.incrementAndGet();
+                missing.put(accountId, stamps.get(slot));
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            for (var entity : accountsDAO.findAllById(missing.keySet()).values()) {
+                var account = map(entity);
+
+                cache(slotOf(entity.getId()), missing.get(entity.getId()), account);
+                accounts.put(account.getId(), account);
+            }
+        }
+
+        return accounts;
+    }
+
+    //Write through for accounts that were just created, nothing else can have changed them yet.
+    public void put(Account account) {
+        var slot = slotOf(account.getId());
+        cache(slot, stamps.get(slot), account);
+    }
+
+    //Called after the database transaction that changed the balance has committed.
+    public void invalidate(long accountId) {
+        var slot = slotOf(accountId);
+
+        //Bumped first, so a load that started before the commit cannot put its stale balance back afterwards.
+        stamps.incrementAndGet(slot);
+
+        var entry = slots.get(slot);
+        if (entry != null && entry.accountId == accountId && slots.compareAndSet(slot, entry, null)) {
+            invalidations.incrementAndGet();
+        }
+    }
+
+    private void cache(int slot, long stamp, Account account) {
+        var entry = new Entry(account.getId(), account);
+        var previous = slots.getAndSet(slot, entry);
+
+        if (previous != null && previous.accountId != entry.accountId) {
+            evictions.incrementAndGet();
+        }
+
+        //Checked after writing, an invalidation in between either sees the entry or moved the stamp.
+        if (stamps.get(slot) != stamp) {
+            slots.compareAndSet(slot, entry, null);
+        }
+    }
+
+    private Account map(AccountEntity entity) {
+        return new Account(
+                entity.getId(),
+                accountShards.balanceOf(entity)
+        );
+    }
+
+    private int slotOf(long accountId) {
+        //Fibonacci hashing, the top bits of the product, so neighbouring ids land far apart.
+        return (int) ((accountId * 0x9E3779B97F4A7C15L) >>> shift) & mask;
+    }
+
+    @Override
+    public String getName() {
+        return "accountCache";
+    }
+
+    @Override
+    public Map<String, Number> getMetrics() {
+        var size = 0;
+        for (int slot = 0; slot < slots.length(); slot++) {
+            if (slots.get(slot) != null) {
+                size++;
+            }
+        }
+
+        var metrics = new LinkedHashMap<String, Number>();
+        metrics.put("capacity", slots.length());
+        metrics.put("size", size);
+        metrics.put("hits", hits.get());
+        metrics.put("misses", misses.get());
+        metrics.put("evictions", evictions.get());
+        metrics.put("invalidations", invalidations.get());
+
+        return metrics;
+    }
+
+    private static class Entry {
+
+        private final long accountId;
+        private final Account account;
+
+        private Entry(long accountId, Account account) {
+            this.accountId = accountId;
+            this.account = account;
+        }
+    }
+}
@@ -1,43 +1,59 @@
 package com.revolut.interview.account;
 
+import com.revolut.interview.money.Money;
+import com.revolut.interview.money.MoneyConverter;
 import com.revolut.interview.persistence.BaseEntity;
 
 import javax.persistence.Column;
+import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.Version;
-import java.math.BigDecimal;
 import java.util.Objects;
 
 @Entity(name = "account")
 public class AccountEntity extends BaseEntity {
 
     @Column(name = "balance", nullable = false)
-    private BigDecimal balance;
+    @Convert(converter = MoneyConverter.class)
+    private Money balance;
 
     @Version
     @Column(name = "version", nullable = false)
     private Long version;
 
+    //0 keeps the whole balance on this row. Otherwise credits are spread over this many account_shard rows.
+    @Column(name = "shard_count", nullable = false)
+    private int shardCount;
+
     public AccountEntity() {
     }
 
-    public AccountEntity(BigDecimal balance) {
+    public AccountEntity(Money balance) {
         this.balance = balance;
     }
 
-    public BigDecimal getBalance() {
+    public Money getBalance() {
         return balance;
     }
 
-    public void setBalance(BigDecimal balance) {
+    public void setBalance(Money balance) {
         this.balance = balance;
     }
 
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public void setShardCount(int shardCount) {
+        this.shardCount = shardCount;
+    }
+
     @Override
     public String toString() {
         return "AccountEntity{" +
                 "balance=" + balance +
                 ", version=" + version +
+                ", shardCount=" + shardCount +
                 '}';
     }
 
@@ -47,7 +63,7 @@ public class AccountEntity extends BaseEntity {
         if (!(o instanceof AccountEntity)) return false;
         if (!super.equals(o)) return false;
         AccountEntity that = (AccountEntity) o;
-        return balance.compareTo(that.balance) == 0 &&
+        return balance.equals(that.balance) &&
                 Objects.equals(version, that.version);
     }
 
@@ -0,0 +1,362 @@
+package com.revolut.interview.account;
+
+import com.revolut.interview.lifecycle.Managed;
+import com.revolut.interview.metrics.MetricsSource;
+import com.revolut.interview.money.Money;
+import com.revolut.interview.account.LedgerImage.UnsettledTransfer;
+import com.revolut.interview.persistence.Journal;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
+
+//With -Dpersistence.balances=ledger, balances live in memory instead of on the account rows, and every change to them
+//is first appended to the journal. Restarting loads the newest snapshot and replays the journal after it.
+//
+//An account joins the ledger on its first transfer, opening with what its rows hold at that point. From then on its
+//rows are never written again, reads go through balanceOf.
+//
+//Balances change under a single lock that only covers memory and the journal append. Transfers are acknowledged once
+//the journal is synced, which happens outside the lock, so transfers applied meanwhile share the next sync. A later
+//record is never durable without the ones before it, so nothing acknowledged depends on a balance that could be lost.
+//
+//The journal is written ahead of the caller's database transaction, so a transfer stays unsettled until that
+//transaction is over: committed, it is settled, rolled back, it is reversed. Until then the receiver cannot spend the
+//money in any other database transaction, so a reversal never takes an account below zero. Transfers a crash left
+//unsettled are settled or reversed at boot, going by the state their transaction committed with.
+@Singleton
+public class AccountLedger implements Managed, MetricsSource {
+
+    public static final String LEDGER_ENABLED = "LEDGER_ENABLED";
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final boolean enabled;
+    private final AccountsDAO accountsDAO;
+    private final AccountShardsDAO accountShardsDAO;
+    private final Provider<Session> sessionProvider;
+
+    //Only opened when enabled, the journal files are not touched otherwise.
+    private final Journal journal;
+
+    private final Map<Long, Balance> balances = new ConcurrentHashMap<>();
+
+    //Guarded by the ledger itself, like the balances.
+    private final Map<Long, UnsettledTransfer> unsettledTransfers = new LinkedHashMap<>();
+    private final ThreadLocal<Settlement> settlements = new ThreadLocal<>();
+
+    private final AtomicLong appliedTransfers = new AtomicLong();
+    private final AtomicLong rejectedTransfers = new AtomicLong();
+    private final AtomicLong settledTransfers = new AtomicLong();
+    private final AtomicLong reversedTransfers = new AtomicLong();
+    private long replayedRecords;
+
+    @Inject
+    AccountLedger(@Named(LEDGER_ENABLED) boolean enabled,
+                  Provider<Journal> journalProvider,
+                  Provider<LedgerSnapshots> snapshotsProvider,
+                  AccountsDAO accountsDAO,
+                  AccountShardsDAO accountShardsDAO,
+                  Provider<Session> sessionProvider) {
+        this.enabled = enabled;
+        this.accountsDAO = accountsDAO;
+        this.accountShardsDAO = accountShardsDAO;
+        this.sessionProvider = sessionProvider;
+        this.journal = enabled ? journalProvider.get() : null;
+
+        if (enabled) {
+            recover(snapshotsProvider.get());
+        }
+    }
+
+    //Empty for accounts the ledger does not hold, their rows are still the balance.
+    public Optional<Money> balanceOf(long accountId) {
+        var balance = balances.get(accountId);
+
+        return balance == null ? Optional.empty() : Optional.of(Money.ofMinor(balance.minorUnits));
+    }
+
+    //Returns false when an account is missing or the sender cannot afford it, in which case no balance was changed.
+    //Returns true once the transfer is durable in the journal. Has to run inside the caller's database transaction, the
+    //transfer is reversed if that rolls back.
+    public boolean transfer(long transactionId, long senderId, long receiverId, Money amount) {
+        if (!enabled) {
+            throw new IllegalStateException("Balances are not kept in the ledger.");
+        }
+
+        var settlement = currentSettlement();
+        var sender = open(senderId);
+        var receiver = open(receiverId);
+
+        if (sender == null || receiver == null) {
+            return false;
+        }
+
+        long sequence;
+        synchronized (this) {
+            if (unsettledTransfers.containsKey(transactionId)) {
+                throw new IllegalStateException("Transaction " + transactionId + " was already applied and is not settled yet.");
+            }
+
+            //Money received in database transactions that have not committed yet is only spendable by those.
+            var spendable = sender.minorUnits - sender.unsettledCredits + settlement.creditedTo(senderId);
+            if (spendable < amount.getMinorUnits()) {
+                rejectedTransfers.incrementAndGet();
+                return false;
+            }
+
+            //Checked before appending, so an overflow leaves both the journal and the balances untouched.
+            Math.addExact(receiver.minorUnits, amount.getMinorUnits());
+
+            sequence = journal.append(LedgerImage.TRANSFER, transactionId, senderId, receiverId, amount.getMinorUnits());
+
+            var transfer = new UnsettledTransfer(transactionId, senderId, receiverId, amount.getMinorUnits());
+            apply(transfer);
+            settlement.add(transfer);
+            appliedTransfers.incrementAndGet();
+        }
+
+        journal.sync(sequence);
+
+        return true;
+    }
+
+    //Settles what a previous run left unsettled: transfers whose database transaction committed as succeeded are kept,
+    //the others are reversed. Runs at boot, before any transfer is accepted. Returns how many there were.
+    public int resolveUnsettled(LongPredicate succeeded) {
+        if (!enabled) {
+            return 0;
+        }
+
+        List<UnsettledTransfer> leftovers;
+        synchronized (this) {
+            leftovers = new ArrayList<>(unsettledTransfers.values());
+        }
+
+        var kept = new ArrayList<UnsettledTransfer>();
+        var reversed = new ArrayList<UnsettledTransfer>();
+        for (var transfer : leftovers) {
+            (succeeded.test(transfer.transactionId) ? kept : reversed).add(transfer);
+        }
+
+        settle(kept);
+        reverse(reversed);
+        journal.sync(journal.getLastSequence());
+
+        LOGGER.info("Resolved {} unsettled ledger transfers, {} kept and {} reversed.", leftovers.size(), kept.size(), reversed.size());
+
+        return leftovers.size();
+    }
+
+    private Settlement currentSettlement() {
+        var dbTransaction = sessionProvider.get().getTransaction();
+        if (!dbTransaction.isActive()) {
+            throw new IllegalStateException("Ledger transfers have to run inside a database transaction.");
+        }
+
+        var settlement = settlements.get();
+        if (settlement == null || settlement.dbTransaction != dbTransaction) {
+            settlement = new Settlement(dbTransaction);
+            dbTransaction.registerSynchronization(settlement);
+            settlements.set(settlement);
+        }
+
+        return settlement;
+    }
+
+    //Callers hold the ledger lock.
+    private void apply(UnsettledTransfer transfer) {
+        var sender = balances.get(transfer.senderId);
+        var receiver = balances.get(transfer.receiverId);
+
+        //One after the other, so a transfer to the same account leaves its balance as it was.
+        sender.minorUnits -= transfer.minorUnits;
+        receiver.minorUnits += transfer.minorUnits;
+        receiver.unsettledCredits += transfer.minorUnits;
+        unsettledTransfers.put(transfer.transactionId, transfer);
+    }
+
+    //Not synced. A settlement lost in a crash is made again at boot, the committed transaction says how.
+    private synchronized void settle(List<UnsettledTransfer> transfers) {
+        for (var transfer : transfers) {
+            journal.append(LedgerImage.SETTLE, transfer.transactionId, 0, 0, 0);
+
+            balances.get(transfer.receiverId).unsettledCredits -= transfer.minorUnits;
+            unsettledTransfers.remove(transfer.transactionId);
+            settledTransfers.incrementAndGet();
+        }
+    }
+
+    //Latest first, so money a transfer passed on within the same database transaction is back before its own reversal.
+    //Not synced either: a reversal lost in a crash is made again at boot, and a retry of the transaction syncs it along
+    //with its own transfer.
+    private synchronized void reverse(List<UnsettledTransfer> transfers) {
+        for (int i = transfers.size() - 1; i >= 0; i--) {
+            var transfer = transfers.get(i);
+            journal.append(LedgerImage.REVERSE, transfer.transactionId, transfer.senderId, transfer.receiverId, transfer.minorUnits);
+
+            var sender = balances.get(transfer.senderId);
+            var receiver = balances.get(transfer.receiverId);
+
+            receiver.unsettledCredits -= transfer.minorUnits;
+            receiver.minorUnits -= transfer.minorUnits;
+            sender.minorUnits += transfer.minorUnits;
+            unsettledTransfers.remove(transfer.transactionId);
+            reversedTransfers.incrementAndGet();
+        }
+    }
+
+    private Balance open(long accountId) {
+        var balance = balances.get(accountId);
+        if (balance != null) {
+            return balance;
+        }
+
+        //Read outside the lock, no money moves in or out of account rows while the ledger is on.
+        var account = accountsDAO.findById(accountId);
+        if (account.isEmpty()) {
+            return null;
+        }
+
+        var opening = account.get().getShardCount() == 0
+                ? account.get().getBalance()
+                : accountShardsDAO.totalBalance(accountId);
+
+        synchronized (this) {
+            balance = balances.get(accountId);
+
+            //Synced along with the first transfer that follows it.
+            if (balance == null) {
+                journal.append(LedgerImage.OPEN, accountId, opening.getMinorUnits(), 0, 0);
+
+                balance = new Balance(opening.getMinorUnits());
+                balances.put(accountId, balance);
+            }
+        }
+
+        return balance;
+    }
+
+    //Starts from the newest snapshot and replays only the journal after it, so the time taken follows the tail.
+    private void recover(LedgerSnapshots snapshots) {
+        var startedAt = System.nanoTime();
+
+        var image = snapshots.loadNewest().orElseGet(LedgerImage::new);
+        var snapshotSequence = image.getLastSequence();
+
+        if (snapshotSequence > journal.getLastSequence()) {
+            throw new IllegalStateException("The journal ends at sequence " + journal.getLastSequence()
+                    + ", before the newest snapshot at " + snapshotSequence);
+        }
+
+        journal.replay(snapshotSequence, image::apply);
+
+        image.getBalances().forEach((accountId, minorUnits) -> balances.put(accountId, new Balance(minorUnits)));
+        image.getUnsettledTransfers().forEach(transfer -> {
+            balances.get(transfer.receiverId).unsettledCredits += transfer.minorUnits;
+            unsettledTransfers.put(transfer.transactionId, transfer);
+        });
+        this.replayedRecords = image.getLastSequence() - snapshotSequence;
+
+        LOGGER.info("Recovered {} balances from the snapshot at sequence {} and {} journal records after it in {} ms.",
+                balances.size(), snapshotSequence, replayedRecords, (System.nanoTime() - startedAt) / 1_000_000);
+    }
+
+    @Override
+    public void stop() {
+        if (enabled) {
+            journal.close();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "accountLedger";
+    }
+
+    @Override
+    public Map<String, Number> getMetrics() {
+        var metrics = new LinkedHashMap<String, Number>();
+        metrics.put("accounts", balances.size());
+        metrics.put("appliedTransfers", appliedTransfers.get());
+        metrics.put("rejectedTransfers", rejectedTransfers.get());
+        metrics.put("settledTransfers", settledTransfers.get());
+        metrics.put("reversedTransfers", reversedTransfers.get());
+
+        if (enabled) {
+            metrics.put("replayedRecords", replayedRecords);
+            metrics.put("journalSequence", journal.getLastSequence());
+            metrics.put("journalSyncs", journal.getSyncs());
+            metrics.put("journalSegments", journal.getSegmentCount());
+        }
+
+        return metrics;
+    }
+
+    private static class Balance {
+
+        private volatile long minorUnits;
+        //Part of the balance received by transfers not settled yet. Only written under the ledger lock.
+        private long unsettledCredits;
+
+        private Balance(long minorUnits) {
+            this.minorUnits = minorUnits;
+        }
+    }
+
+    //The ledger transfers of one database transaction, settled or reversed once it is over. Hibernate calls back on the
+    //thread that committed or rolled back.
+    private class Settlement implements Synchronization {
+
+        private final Transaction dbTransaction;
+        private final List<UnsettledTransfer> transfers = new ArrayList<>();
+        private final Map<Long, Long> credits = new HashMap<>();
+
+        private Settlement(Transaction dbTransaction) {
+            this.dbTransaction = dbTransaction;
+        }
+
+        private void add(UnsettledTransfer transfer) {
+            transfers.add(transfer);
+            credits.merge(transfer.receiverId, transfer.minorUnits, Long::sum);
+        }
+
+        private long creditedTo(long accountId) {
+            return credits.getOrDefault(accountId, 0L);
+        }
+
+        @Override
+        public void beforeCompletion() {
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (settlements.get() == this) {
+                settlements.remove();
+            }
+
+            //Anything but a commit means the transaction did not make it, whatever status the resource reports.
+            if (status == Status.STATUS_COMMITTED) {
+                settle(transfers);
+            } else {
+                reverse(transfers);
+            }
+        }
+    }
+}
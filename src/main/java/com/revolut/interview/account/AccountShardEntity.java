@@ -0,0 +1,64 @@
+package com.revolut.interview.account;
+
+import com.revolut.interview.money.Money;
+import com.revolut.interview.money.MoneyConverter;
+import com.revolut.interview.persistence.BaseEntity;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.Entity;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import javax.persistence.Version;
+
+//One of the sub-balances of a sharded account. The balance of the account is the balance of its own row plus the
+//balances of all of its shards.
+@Entity(name = "account_shard")
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"account_id", "shard_index"}))
+public class AccountShardEntity extends BaseEntity {
+
+    @Column(name = "account_id", nullable = false)
+    private long accountId;
+
+    @Column(name = "shard_index", nullable = false)
+    private int shardIndex;
+
+    @Column(name = "balance", nullable = false)
+    @Convert(converter = MoneyConverter.class)
+    private Money balance;
+
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    public AccountShardEntity() {
+    }
+
+    public AccountShardEntity(long accountId, int shardIndex) {
+        this.accountId = accountId;
+        this.shardIndex = shardIndex;
+        this.balance = Money.ZERO;
+    }
+
+    public long getAccountId() {
+        return accountId;
+    }
+
+    public int getShardIndex() {
+        return shardIndex;
+    }
+
+    public Money getBalance() {
+        return balance;
+    }
+
+    @Override
+    public String toString() {
+        return "AccountShardEntity{" +
+                "accountId=" + accountId +
+                ", shardIndex=" + shardIndex +
+                ", balance=" + balance +
+                ", version=" + version +
+                '}';
+    }
+}
@@ -0,0 +1,221 @@
+package com.revolut.interview.account;
+
+import com.revolut.interview.metrics.MetricsSource;
+import com.revolut.interview.money.Money;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+//Hot accounts, typically receivers such as payroll or merchant pools, can be split into sub-balance shards. Credits go
+//to a random shard, so they no longer queue behind each other on the account row. Debits take the account row first,
+//then a random shard, and as a last resort sweep every shard into the account row before trying again.
+//
+//Balances only ever move between the account row and its shards with guarded UPDATE statements, which keeps the total
+//exact while credits are landing.
+@Singleton
+public class AccountShards implements MetricsSource {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final AccountsDAO accountsDAO;
+    private final AccountShardsDAO accountShardsDAO;
+    private final Provider<Session> sessionProvider;
+    private final AccountLedger accountLedger;
+
+    //Loaded on first use and kept in step by reshard, so unsharded transfers do not pay for a lookup.
+    private volatile Map<Long, Integer> shardCounts;
+
+    private final AtomicLong shardCredits = new AtomicLong();
+    private final AtomicLong shardDebits = new AtomicLong();
+    private final AtomicLong sweeps = new AtomicLong();
+    private final AtomicLong consolidations = new AtomicLong();
+
+    @Inject
+    AccountShards(AccountsDAO accountsDAO,
+                  AccountShardsDAO accountShardsDAO,
+                  Provider<Session> sessionProvider,
+                  AccountLedger accountLedger) {
+        this.accountsDAO = accountsDAO;
+        this.accountShardsDAO = accountShardsDAO;
+        this.sessionProvider = sessionProvider;
+        this.accountLedger = accountLedger;
+    }
+
+    public boolean isSharded(long accountId) {
+        return shardCounts().containsKey(accountId);
+    }
+
+    //Runs inside the caller's database transaction.
+    public boolean credit(long accountId, Money amount) {
+        var shardCount = shardCounts().getOrDefault(accountId, 0);
+
+        if (shardCount > 0 && accountShardsDAO.credit(accountId, ThreadLocalRandom.current().nextInt(shardCount), amount)) {
+            shardCredits.incrementAndGet();
+            return true;
+        }
+
+        //Not sharded, or resharded under our feet.
+        return accountsDAO.credit(accountId, amount);
+    }
+
+    //Runs inside the caller's database transaction.
+    public boolean debit(long accountId, Money amount) {
+        if (accountsDAO.debitIfSufficient(accountId, amount)) {
+            return true;
+        }
+
+        var shardCount = shardCounts().getOrDefault(accountId, 0);
+        if (shardCount == 0) {
+            return false;
+        }
+
+        if (accountShardsDAO.debitIfSufficient(accountId, ThreadLocalRandom.current().nextInt(shardCount), amount)) {
+            shardDebits.incrementAndGet();
+            return true;
+        }
+
+        //The money is there but spread over several shards.
+        sweeps.incrementAndGet();
+        sweep(accountId);
+
+        return accountsDAO.debitIfSufficient(accountId, amount);
+    }
+
+    public Money balanceOf(AccountEntity account) {
+        //Once the ledger holds an account, its rows only keep the balance it opened with.
+        var ledgerBalance = accountLedger.balanceOf(account.getId());
+        if (ledgerBalance.isPresent()) {
+            return ledgerBalance.get();
+        }
+
+        if (account.getShardCount() == 0) {
+            return account.getBalance();
+        }
+
+        //Not added to the balance of the loaded row, a sweep since would count the swept money twice or not at all.
+        return accountShardsDAO.totalBalance(account.getId());
+    }
+
+    //Returns false when the account does not exist. A shard count of 0 folds the account back into a single row.
+    boolean reshard(long accountId, int shardCount) {
+        if (shardCount < 0) {
+            throw new IllegalArgumentException("Shard count cannot be negative. Provided: " + shardCount);
+        }
+
+        var resharded = inDbTransaction(() -> {
+            if (!accountsDAO.updateShardCount(accountId, shardCount)) {
+                return false;
+            }
+
+            sweep(accountId);
+            accountShardsDAO.deleteByAccountId(accountId);
+            for (int shardIndex = 0; shardIndex < shardCount; shardIndex++) {
+                accountShardsDAO.save(new AccountShardEntity(accountId, shardIndex));
+            }
+
+            return true;
+        });
+
+        if (resharded) {
+            if (shardCount == 0) {
+                shardCounts().remove(accountId);
+            } else {
+                shardCounts().put(accountId, shardCount);
+            }
+            LOGGER.info("Account {} now has {} shards.", accountId, shardCount);
+        }
+
+        return resharded;
+    }
+
+    //Moves every shard balance back to the account row, so the row holds the whole balance. Runs inside the caller's
+    //database transaction.
+    public void consolidate(long accountId) {
+        sweep(accountId);
+    }
+
+    //Same for every sharded account, each in its own database transaction.
+    void consolidateAll() {
+        for (var accountId : shardCounts().keySet()) {
+            try {
+                inDbTransaction(() -> sweep(accountId));
+                consolidations.incrementAndGet();
+            } catch (Exception e) {
+                LOGGER.error("Could not consolidate the shards of account " + accountId, e);
+            }
+        }
+    }
+
+    private Money sweep(long accountId) {
+        var swept = Money.ZERO;
+
+        for (var shard : accountShardsDAO.findBalances(accountId).entrySet()) {
+            var amount = shard.getValue();
+
+            //A credit landing in between only adds to the shard, so the guarded debit still succeeds.
+            if (amount.signum() > 0 && accountShardsDAO.debitIfSufficient(accountId, shard.getKey(), amount)) {
+                accountsDAO.credit(accountId, amount);
+                swept = swept.plus(amount);
+            }
+        }
+
+        return swept;
+    }
+
+    private <R> R inDbTransaction(Supplier<R> work) {
+        var dbTransaction = sessionProvider.get()
+                .beginTransaction();
+
+        try {
+            var result = work.get();
+            dbTransaction.commit();
+
+            return result;
+        } catch (RuntimeException e) {
+            dbTransaction.rollback();
+            throw e;
+        }
+    }
+
+    private Map<Long, Integer> shardCounts() {
+        var loaded = shardCounts;
+
+        if (loaded == null) {
+            synchronized (this) {
+                if (shardCounts == null) {
+                    shardCounts = new ConcurrentHashMap<>(accountsDAO.findShardCounts());
+                }
+                loaded = shardCounts;
+            }
+        }
+
+        return loaded;
+    }
+
+    @Override
+    public String getName() {
+        return "accountShards";
+    }
+
+    @Override
+    public Map<String, Number> getMetrics() {
+        var metrics = new LinkedHashMap<String, Number>();
+        metrics.put("shardedAccounts", shardCounts().size());
+        metrics.put("shardCredits", shardCredits.get());
+        metrics.put("shardDebits", shardDebits.get());
+        metrics.put("sweeps", sweeps.get());
+        metrics.put("consolidations", consolidations.get());
+
+        return metrics;
+    }
+}
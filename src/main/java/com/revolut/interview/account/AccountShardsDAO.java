@@ -0,0 +1,97 @@
+package com.revolut.interview.account;
+
+import com.revolut.interview.money.Money;
+import com.revolut.interview.persistence.AbstractDAO;
+import org.hibernate.Session;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.TreeMap;
+
+//Shards are only ever moved with guarded UPDATE statements, so concurrent credits to the same shard queue on its row
+//lock instead of failing on its version.
+@Singleton
+public class AccountShardsDAO extends AbstractDAO<AccountShardEntity> {
+
+    @Inject
+    AccountShardsDAO(Provider<Session> sessionProvider) {
+        super(sessionProvider);
+    }
+
+    public boolean credit(long accountId, int shardIndex, Money amount) {
+        return runInTransactionOrStartNewIfNotRunning(session -> {
+            var query = session.createQuery("UPDATE VERSIONED account_shard SET balance = balance + :amount WHERE accountId = :accountId AND shardIndex = :shardIndex");
+            query.setParameter("accountId", accountId);
+            query.setParameter("shardIndex", shardIndex);
+            query.setParameter("amount", amount);
+
+            return query.executeUpdate() > 0;
+        });
+    }
+
+    public boolean debitIfSufficient(long accountId, int shardIndex, Money amount) {
+        return runInTransactionOrStartNewIfNotRunning(session -> {
+            var query = session.createQuery("UPDATE VERSIONED account_shard SET balance = balance - :amount WHERE accountId = :accountId AND shardIndex = :shardIndex AND balance >= :amount");
+            query.setParameter("accountId", accountId);
+            query.setParameter("shardIndex", shardIndex);
+            query.setParameter("amount", amount);
+
+            return query.executeUpdate() > 0;
+        });
+    }
+
+    //Balance by shard index. Read as plain values so no shard entity ends up in the session next to bulk updates.
+    public Map<Integer, Money> findBalances(long accountId) {
+        return runInTransactionOrStartNewIfNotRunning(session -> {
+            var rows = session.createQuery("SELECT shardIndex, balance FROM account_shard WHERE accountId = :accountId", Object[].class)
+                    .setParameter("accountId", accountId)
+                    .getResultList();
+
+            var balances = new TreeMap<Integer, Money>();
+            for (var row : rows) {
+                balances.put((Integer) row[0], (Money) row[1]);
+            }
+
+            return balances;
+        });
+    }
+
+    //Summed in minor units by the database, which H2 returns as a DECIMAL. A total that does not fit in a long fails
+    //instead of wrapping around.
+    public Money sumBalances(long accountId) {
+        return runInTransactionOrStartNewIfNotRunning(session -> {
+            var sum = (Number) session.createNativeQuery("SELECT COALESCE(SUM(balance), 0) FROM account_shard WHERE account_id = :accountId")
+                    .setParameter("accountId", accountId)
+                    .uniqueResult();
+
+            return Money.ofMinor(new BigDecimal(sum.toString()).longValueExact());
+        });
+    }
+
+    //The account row and its shards read by one statement, so money a sweep moves between them in the meantime is
+    //counted exactly once.
+    public Money totalBalance(long accountId) {
+        return runInTransactionOrStartNewIfNotRunning(session -> {
+            var total = (Number) session.createNativeQuery("SELECT a.balance + COALESCE((SELECT SUM(s.balance) FROM account_shard s WHERE s.account_id = a.id), 0) FROM account a WHERE a.id = :accountId")
+                    .setParameter("accountId", accountId)
+                    .uniqueResult();
+
+            if (total == null) {
+                throw new IllegalStateException("No account with id " + accountId);
+            }
+
+            return Money.ofMinor(new BigDecimal(total.toString()).longValueExact());
+        });
+    }
+
+    public int deleteByAccountId(long accountId) {
+        return runInTransactionOrStartNewIfNotRunning(session ->
+                session.createQuery("DELETE FROM account_shard WHERE accountId = :accountId")
+                        .setParameter("accountId", accountId)
+                        .executeUpdate()
+        );
+    }
+}
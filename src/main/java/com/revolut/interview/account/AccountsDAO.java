@@ -1,5 +1,6 @@
 package com.revolut.interview.account;
 
+import com.revolut.interview.money.Money;
 import com.revolut.interview.persistence.AbstractDAO;
 import org.hibernate.Session;
 
@@ -7,16 +8,32 @@ import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 import javax.persistence.LockModeType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 @Singleton
 public class AccountsDAO extends AbstractDAO<AccountEntity> {
 
+    private static final int MULTI_LOAD_BATCH_SIZE = 1000;
+
     @Inject
     AccountsDAO(Provider<Session> sessionProvider) {
         super(sessionProvider);
     }
 
+    //The money an account is created with is its first posting, so its balance is the sum of its postings from the start.
+    public AccountEntity saveWithOpeningPosting(AccountEntity account) {
+        return runInTransactionOrStartNewIfNotRunning(session -> {
+            account.setId((Long) session.save(account));
+            session.persist(PostingEntity.opening(account.getId(), account.getBalance()));
+
+            return account;
+        });
+    }
+
     public Optional<AccountEntity> findById(Long id, LockModeType lockModeType) {
         return runInTransactionOrStartNewIfNotRunning(session ->
                 Optional.ofNullable(
@@ -24,4 +41,65 @@ public class AccountsDAO extends AbstractDAO<AccountEntity> {
                 )
         );
     }
+
+    //Loads all the accounts in a few IN queries. Ids that do not exist are left out of the result.
+    public Map<Long, AccountEntity> findAllById(Collection<Long> ids) {
+        return runInTransactionOrStartNewIfNotRunning(session -> {
+            var accounts = new HashMap<Long, AccountEntity>();
+
+            for (var account : session.byMultipleIds(AccountEntity.class).withBatchSize(MULTI_LOAD_BATCH_SIZE).multiLoad(new ArrayList<>(ids))) {
+                if (account != null) {
+                    accounts.put(account.getId(), account);
+                }
+            }
+
+            return accounts;
+        });
+    }
+
+    //Debits the account only if it holds at least the amount, checked and applied in a single statement.
+    public boolean debitIfSufficient(long id, Money amount) {
+        return runInTransactionOrStartNewIfNotRunning(session -> {
+            var query = session.createQuery("UPDATE VERSIONED account SET balance = balance - :amount WHERE id = :id AND balance >= :amount");
+            query.setParameter("id", id);
+            query.setParameter("amount", amount);
+
+            return query.executeUpdate() > 0;
+        });
+    }
+
+    public boolean credit(long id, Money amount) {
+        return runInTransactionOrStartNewIfNotRunning(session -> {
+            var query = session.createQuery("UPDATE VERSIONED account SET balance = balance + :amount WHERE id = :id");
+            query.setParameter("id", id);
+            query.setParameter("amount", amount);
+
+            return query.executeUpdate() > 0;
+        });
+    }
+
+    public boolean updateShardCount(long id, int shardCount) {
+        return runInTransactionOrStartNewIfNotRunning(session -> {
+            var query = session.createQuery("UPDATE VERSIONED account SET shardCount = :shardCount WHERE id = :id");
+            query.setParameter("id", id);
+            query.setParameter("shardCount", shardCount);
+
+            return query.executeUpdate() > 0;
+        });
+    }
+
+    //Shard count by account id, for sharded accounts only.
+    public Map<Long, Integer> findShardCounts() {
+        return runInTransactionOrStartNewIfNotRunning(session -> {
+            var rows = session.createQuery("SELECT id, shardCount FROM account WHERE shardCount > 0", Object[].class)
+                    .getResultList();
+
+            var shardCounts = new HashMap<Long, Integer>();
+            for (var row : rows) {
+                shardCounts.put((Long) row[0], (Integer) row[1]);
+            }
+
+            return shardCounts;
+        });
+    }
 }
@@ -2,12 +2,38 @@ package com.revolut.interview.account;
 
 import com.google.inject.AbstractModule;
 import com.google.inject.multibindings.Multibinder;
+import com.revolut.interview.lifecycle.Managed;
+import com.revolut.interview.metrics.MetricsSource;
 import com.revolut.interview.rest.Resource;
 
+import static com.google.inject.name.Names.named;
+import static com.revolut.interview.account.AccountCache.ACCOUNT_CACHE_SIZE;
+import static com.revolut.interview.account.ShardConsolidator.CONSOLIDATION_INTERVAL_MILLIS;
+
 public class AccountsModule extends AbstractModule {
 
     @Override
     protected void configure() {
+        //0 turns periodic consolidation off, leaving it to debits that cannot be covered otherwise.
+        bindConstant()
+                .annotatedWith(named(CONSOLIDATION_INTERVAL_MILLIS))
+                .to(Long.getLong("accounts.shards.consolidationIntervalMillis", 60_000L));
+
+        //Rounded up to a power of 2.
+        bindConstant()
+                .annotatedWith(named(ACCOUNT_CACHE_SIZE))
+                .to(Integer.getInteger("accounts.cache.size", 65_536));
+
+        Multibinder.newSetBinder(binder(), Managed.class)
+                .addBinding()
+                .to(ShardConsolidator.class);
+        Multibinder.newSetBinder(binder(), MetricsSource.class)
+                .addBinding()
+                .to(AccountShards.class);
+        Multibinder.newSetBinder(binder(), MetricsSource.class)
+                .addBinding()
+                .to(AccountCache.class);
+
         Multibinder.newSetBinder(binder(), Resource.class)
                 .addBinding()
                 .to(AccountsResource.class);
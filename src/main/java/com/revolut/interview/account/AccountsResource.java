@@ -38,6 +38,19 @@ class AccountsResource implements Resource {
         return null; //really? Might be a good idea to get rid of this.
     }
 
+    private Account setShardCount(Request request, Response response) {
+        var accountId = Long.valueOf(request.params("id"));
+        var shardCountRequest = gson.fromJson(request.body(), ShardCountRequest.class);
+
+        if (!accountsService.setShardCount(accountId, shardCountRequest.getShardCount())) {
+            response.status(HttpStatus.NOT_FOUND_404);
+            return null;
+        }
+
+        return accountsService.getById(accountId)
+                .orElseThrow();
+    }
+
     private Account addAccount(Request request, Response response) {
         var accountToSave = gson.fromJson(request.body(), Account.class);
         return accountsService.save(accountToSave);
@@ -47,6 +60,7 @@ class AccountsResource implements Resource {
     public void register(Service spark) {
         spark.get(BASE_PATH + "/:id", this::getAccount);
         spark.post(BASE_PATH, this::addAccount);
+        spark.put(BASE_PATH + "/:id/shards", this::setShardCount);
 
         spark.after(BASE_PATH + "/*", (request, response) -> response.type("application/json"));
     }
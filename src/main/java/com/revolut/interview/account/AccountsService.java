@@ -1,22 +1,36 @@
 package com.revolut.interview.account;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Singleton;
 import java.util.Optional;
 
+import static com.revolut.interview.account.PostingsDAO.POSTINGS_ENABLED;
+
 @Singleton
 class AccountsService {
 
     private final AccountsDAO accountsDAO;
+    private final AccountShards accountShards;
+    private final AccountCache accountCache;
+    private final boolean postingsEnabled;
 
     @Inject
-    AccountsService(AccountsDAO accountsDAO) {
+    AccountsService(AccountsDAO accountsDAO, AccountShards accountShards, AccountCache accountCache,
+                    @Named(POSTINGS_ENABLED) boolean postingsEnabled) {
         this.accountsDAO = accountsDAO;
+        this.accountShards = accountShards;
+        this.accountCache = accountCache;
+        this.postingsEnabled = postingsEnabled;
     }
 
     Optional<Account> getById(Long accountId) {
-        return accountsDAO.findById(accountId)
-                .map(this::map);
+        return accountCache.get(accountId);
+    }
+
+    //Returns false when the account does not exist.
+    boolean setShardCount(Long accountId, int shardCount) {
+        return accountShards.reshard(accountId, shardCount);
     }
 
     Account save(Account account) {
@@ -25,15 +39,13 @@ class AccountsService {
         }
 
         var entityToSave = new AccountEntity(account.getBalance());
-        var savedEntity = accountsDAO.save(entityToSave);
+        var savedEntity = postingsEnabled
+                ? accountsDAO.saveWithOpeningPosting(entityToSave)
+                : accountsDAO.save(entityToSave);
+        var savedAccount = new Account(savedEntity.getId(), account.getBalance());
 
-        return map(savedEntity);
-    }
+        accountCache.put(savedAccount);
 
-    private Account map(AccountEntity entity) {
-        return new Account(
-                entity.getId(),
-                entity.getBalance()
-        );
+        return savedAccount;
     }
 }
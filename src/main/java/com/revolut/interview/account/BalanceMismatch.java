@@ -0,0 +1,55 @@
+package com.revolut.interview.account;
+
+import com.revolut.interview.money.Money;
+
+import java.util.Objects;
+
+class BalanceMismatch {
+
+    private final long accountId;
+    private final Money balance;
+    private final Money postedBalance;
+
+    BalanceMismatch(long accountId, Money balance, Money postedBalance) {
+        this.accountId = accountId;
+        this.balance = balance;
+        this.postedBalance = postedBalance;
+    }
+
+    long getAccountId() {
+        return accountId;
+    }
+
+    Money getBalance() {
+        return balance;
+    }
+
+    //The sum of the postings of the account.
+    Money getPostedBalance() {
+        return postedBalance;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BalanceMismatch)) return false;
+        BalanceMismatch that = (BalanceMismatch) o;
+        return accountId == that.accountId &&
+                balance.equals(that.balance) &&
+                postedBalance.equals(that.postedBalance);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(accountId, balance, postedBalance);
+    }
+
+    @Override
+    public String toString() {
+        return "BalanceMismatch{" +
+                "accountId=" + accountId +
+                ", balance=" + balance +
+                ", postedBalance=" + postedBalance +
+                '}';
+    }
+}
@@ -0,0 +1,97 @@
+package com.revolut.interview.account;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//Balances and the transfers not settled yet as of a journal sequence, built by applying journal records in order.
+//Startup builds one to fill the ledger from, and snapshots build the next one from the previous, away from the live
+//balances.
+class LedgerImage {
+
+    static final int OPEN = 1;
+    static final int TRANSFER = 2;
+    //The database transaction of the transfer committed.
+    static final int SETTLE = 3;
+    //The database transaction of the transfer rolled back, the money goes back to the sender.
+    static final int REVERSE = 4;
+
+    private final Map<Long, Long> balances;
+    private final Map<Long, UnsettledTransfer> unsettledTransfers;
+
+    private long lastSequence;
+    private long lastTransactionId;
+
+    LedgerImage() {
+        this(0, 0, new HashMap<>(), new LinkedHashMap<>());
+    }
+
+    LedgerImage(long lastSequence, long lastTransactionId, Map<Long, Long> balances, Map<Long, UnsettledTransfer> unsettledTransfers) {
+        this.lastSequence = lastSequence;
+        this.lastTransactionId = lastTransactionId;
+        this.balances = balances;
+        this.unsettledTransfers = unsettledTransfers;
+    }
+
+    void apply(long sequence, int type, long first, long second, long third, long fourth) {
+        switch (type) {
+            case OPEN:
+                balances.put(first, second);
+                break;
+            case TRANSFER:
+                balances.merge(second, -fourth, Long::sum);
+                balances.merge(third, fourth, Long::sum);
+
+                unsettledTransfers.put(first, new UnsettledTransfer(first, second, third, fourth));
+                lastTransactionId = first;
+                break;
+            case SETTLE:
+                unsettledTransfers.remove(first);
+                break;
+            case REVERSE:
+                balances.merge(second, fourth, Long::sum);
+                balances.merge(third, -fourth, Long::sum);
+
+                unsettledTransfers.remove(first);
+                break;
+            default:
+                throw new IllegalStateException("Unknown ledger record type " + type + " at sequence " + sequence);
+        }
+
+        lastSequence = sequence;
+    }
+
+    long getLastSequence() {
+        return lastSequence;
+    }
+
+    long getLastTransactionId() {
+        return lastTransactionId;
+    }
+
+    Map<Long, Long> getBalances() {
+        return balances;
+    }
+
+    //Oldest first.
+    Collection<UnsettledTransfer> getUnsettledTransfers() {
+        return unsettledTransfers.values();
+    }
+
+    //Applied to the balances, but whether its database transaction committed is not known yet.
+    static class UnsettledTransfer {
+
+        final long transactionId;
+        final long senderId;
+        final long receiverId;
+        final long minorUnits;
+
+        UnsettledTransfer(long transactionId, long senderId, long receiverId, long minorUnits) {
+            this.transactionId = transactionId;
+            this.senderId = senderId;
+            this.receiverId = receiverId;
+            this.minorUnits = minorUnits;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.revolut.interview.account;
+
+import com.revolut.interview.lifecycle.Managed;
+import com.revolut.interview.metrics.MetricsSource;
+import com.revolut.interview.persistence.Journal;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+//Periodically writes every ledger balance and the transfers not settled yet to a snapshot file, named after the journal
+//sequence it is as of. Startup loads the newest snapshot and only replays the journal after it.
+//
+//A snapshot is not taken from the live balances. The previous snapshot is read back and the journal records synced
+//since are applied to it, so transfers never wait for a snapshot and the work is proportional to what changed.
+//
+//The two newest snapshots are kept, the older one in case the newest cannot be read. Journal segments the older one
+//already covers are deleted.
+@Singleton
+public class LedgerSnapshots implements Managed, MetricsSource {
+
+    public static final String SNAPSHOT_DIRECTORY = "SNAPSHOT_DIRECTORY";
+    public static final String SNAPSHOT_INTERVAL_MILLIS = "SNAPSHOT_INTERVAL_MILLIS";
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final int MAGIC = 0x4C534E50;
+    private static final int VERSION = 2;
+    private static final String SUFFIX = ".snapshot";
+    private static final int KEPT_SNAPSHOTS = 2;
+
+    private final Path directory;
+    private final Journal journal;
+    private final ScheduledThreadPoolExecutor timer;
+
+    private final AtomicLong snapshots = new AtomicLong();
+    private final AtomicLong lastSnapshotSequence = new AtomicLong();
+    private final AtomicLong lastSnapshotMillis = new AtomicLong();
+    private final AtomicLong deletedSegments = new AtomicLong();
+
+    @Inject
+    LedgerSnapshots(@Named(SNAPSHOT_DIRECTORY) String directory,
+                    @Named(SNAPSHOT_INTERVAL_MILLIS) long intervalMillis,
+                    Journal journal) {
+        this.directory = Paths.get(directory);
+        this.journal = journal;
+        this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            var thread = new Thread(runnable, "ledger-snapshots");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (intervalMillis > 0) {
+            timer.scheduleWithFixedDelay(() -> {
+                try {
+                    take();
+                } catch (Exception e) {
+                    LOGGER.error("Ledger snapshot failed.", e);
+                }
+            }, intervalMillis, intervalMillis, MILLISECONDS);
+        }
+    }
+
+    //Falls back to older snapshots when the newest cannot be read.
+    Optional<LedgerImage> loadNewest() {
+        for (var path : list()) {
+            try {
+                return Optional.of(read(path));
+            } catch (IOException | IllegalStateException e) {
+                LOGGER.error("Skipping unreadable ledger snapshot " + path, e);
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    //Returns false when nothing was synced to the journal since the newest snapshot.
+    synchronized boolean take() {
+        var startedAt = System.nanoTime();
+
+        var upToSequence = journal.getDurableSequence();
+        var image = loadNewest().orElseGet(LedgerImage::new);
+
+        if (image.getLastSequence() >= upToSequence) {
+            return false;
+        }
+
+        journal.replay(image.getLastSequence(), upToSequence, image::apply);
+        write(image);
+        prune();
+
+        var tookMillis = (System.nanoTime() - startedAt) / 1_000_000;
+        snapshots.incrementAndGet();
+        lastSnapshotSequence.set(image.getLastSequence());
+        lastSnapshotMillis.set(tookMillis);
+
+        LOGGER.info("Ledger snapshot of {} balances as of sequence {} took {} ms.", image.getBalances().size(), image.getLastSequence(), tookMillis);
+
+        return true;
+    }
+
+    //A last snapshot once transfers have drained, so the next start has next to nothing to replay.
+    @Override
+    public void stop() {
+        timer.shutdown();
+
+        try {
+            if (!timer.awaitTermination(1, MINUTES)) {
+                LOGGER.warn("Ledger snapshot still running on shutdown.");
+                return;
+            }
+
+            take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOGGER.error("Final ledger snapshot failed.", e);
+        }
+    }
+
+    //Layout: magic, version, last sequence, last transaction id, balance count, then account id and balance in minor
+    //units for each, unsettled transfer count, then the transaction id, sender id, receiver id and amount in minor units
+    //of each oldest first, and a CRC32C of all of it.
+    private void write(LedgerImage image) {
+        var path = pathOf(image.getLastSequence());
+        var temporary = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try {
+            Files.createDirectories(directory);
+
+            try (var file = new FileOutputStream(temporary.toFile())) {
+                var checked = new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), new CRC32C());
+                var out = new DataOutputStream(checked);
+
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(image.getLastSequence());
+                out.writeLong(image.getLastTransactionId());
+
+                out.writeInt(image.getBalances().size());
+                for (var balance : image.getBalances().entrySet()) {
+                    out.writeLong(balance.getKey());
+                    out.writeLong(balance.getValue());
+                }
+
+                out.writeInt(image.getUnsettledTransfers().size());
+                for (var transfer : image.getUnsettledTransfers()) {
+                    out.writeLong(transfer.transactionId);
+                    out.writeLong(transfer.senderId);
+                    out.writeLong(transfer.receiverId);
+                    out.writeLong(transfer.minorUnits);
+                }
+
+                out.writeInt((int) checked.getChecksum().getValue());
+                out.flush();
+
+                file.getFD().sync();
+            }
+
+            //Only ever seen complete under its final name.
+            Files.move(temporary, path, ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write ledger snapshot " + path, e);
+        }
+    }
+
+    private static LedgerImage read(Path path) throws IOException {
+        try (var file = Files.newInputStream(path)) {
+            var checked = new CheckedInputStream(new BufferedInputStream(file, 1 << 16), new CRC32C());
+            var in = new DataInputStream(checked);
+
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IllegalStateException("Not a ledger snapshot of version " + VERSION);
+            }
+
+            var lastSequence = in.readLong();
+            var lastTransactionId = in.readLong();
+
+            var balanceCount = in.readInt();
+            var balances = new HashMap<Long, Long>(balanceCount * 4 / 3 + 1);
+            for (int i = 0; i < balanceCount; i++) {
+                balances.put(in.readLong(), in.readLong());
+            }
+
+            var unsettledCount = in.readInt();
+            var unsettledTransfers = new LinkedHashMap<Long, LedgerImage.UnsettledTransfer>(unsettledCount * 4 / 3 + 1);
+            for (int i = 0; i < unsettledCount; i++) {
+                var transfer = new LedgerImage.UnsettledTransfer(in.readLong(), in.readLong(), in.readLong(), in.readLong());
+                unsettledTransfers.put(transfer.transactionId, transfer);
+            }
+
+            var expectedChecksum = (int) checked.getChecksum().getValue();
+            if (in.readInt() != expectedChecksum) {
+                throw new IllegalStateException("Checksum does not match.");
+            }
+
+            return new LedgerImage(lastSequence, lastTransactionId, balances, unsettledTransfers);
+        }
+    }
+
+    private void prune() {
+        var kept = list();
+
+        for (var path : kept.subList(Math.min(KEPT_SNAPSHOTS, kept.size()), kept.size())) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                LOGGER.error("Could not delete ledger snapshot " + path, e);
+            }
+        }
+
+        //Whatever the oldest kept snapshot covers is never replayed again.
+        if (kept.size() >= KEPT_SNAPSHOTS) {
+            deletedSegments.addAndGet(journal.deleteSegmentsUpTo(sequenceOf(kept.get(KEPT_SNAPSHOTS - 1))));
+        }
+    }
+
+    //Newest first.
+    private List<Path> list() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+
+        try (var files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                    .sorted(Comparator.reverseOrder())
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not list ledger snapshots in " + directory, e);
+        }
+    }
+
+    private Path pathOf(long sequence) {
+        return directory.resolve(String.format("%020d%s", sequence, SUFFIX));
+    }
+
+    private static long sequenceOf(Path snapshot) {
+        var name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    @Override
+    public String getName() {
+        return "ledgerSnapshots";
+    }
+
+    @Override
+    public Map<String, Number> getMetrics() {
+        var metrics = new LinkedHashMap<String, Number>();
+        metrics.put("snapshots", snapshots.get());
+        metrics.put("lastSnapshotSequence", lastSnapshotSequence.get());
+        metrics.put("lastSnapshotMillis", lastSnapshotMillis.get());
+        metrics.put("deletedJournalSegments", deletedSegments.get());
+
+        return metrics;
+    }
+}
@@ -0,0 +1,74 @@
+package com.revolut.interview.account;
+
+import com.revolut.interview.money.Money;
+import com.revolut.interview.money.MoneyConverter;
+import com.revolut.interview.persistence.BaseEntity;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.Column;
+import javax.persistence.Convert;
+import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+//One side of a movement of money: a debit of an account when the amount is negative, a credit otherwise. Postings
+//are only ever inserted, so the balance of an account is the sum of its postings, and as of any id, which is time
+//ordered, the sum of its postings up to it.
+@Entity(name = "posting")
+@Immutable
+@Table(indexes = @Index(name = "idx_posting_account_id", columnList = "account_id, id"))
+public class PostingEntity extends BaseEntity {
+
+    @Column(name = "account_id", nullable = false)
+    private long accountId;
+
+    //Not set for the opening posting of an account, the money it was created with.
+    @Column(name = "transaction_id")
+    private Long transactionId;
+
+    @Column(name = "amount", nullable = false)
+    @Convert(converter = MoneyConverter.class)
+    private Money amount;
+
+    public PostingEntity() {
+    }
+
+    private PostingEntity(long accountId, Long transactionId, Money amount) {
+        this.accountId = accountId;
+        this.transactionId = transactionId;
+        this.amount = amount;
+    }
+
+    public static PostingEntity opening(long accountId, Money balance) {
+        return new PostingEntity(accountId, null, balance);
+    }
+
+    public static PostingEntity debit(long accountId, long transactionId, Money amount) {
+        return new PostingEntity(accountId, transactionId, amount.negate());
+    }
+
+    public static PostingEntity credit(long accountId, long transactionId, Money amount) {
+        return new PostingEntity(accountId, transactionId, amount);
+    }
+
+    public long getAccountId() {
+        return accountId;
+    }
+
+    public Long getTransactionId() {
+        return transactionId;
+    }
+
+    public Money getAmount() {
+        return amount;
+    }
+
+    @Override
+    public String toString() {
+        return "PostingEntity{" +
+                "accountId=" + accountId +
+                ", transactionId=" + transactionId +
+                ", amount=" + amount +
+                '}';
+    }
+}
@@ -0,0 +1,77 @@
+package com.revolut.interview.account;
+
+import com.revolut.interview.money.Money;
+import com.revolut.interview.persistence.AbstractDAO;
+import org.hibernate.Session;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import javax.persistence.Tuple;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+@Singleton
+public class PostingsDAO extends AbstractDAO<PostingEntity> {
+
+    public static final String POSTINGS_ENABLED = "POSTINGS_ENABLED";
+
+    //The balance of each account, row and shards, next to the sum of its postings. Both are summed in minor units by
+    //the database, which H2 returns as a DECIMAL.
+    private static final String BALANCES_AGAINST_POSTINGS = "SELECT a.id, a.balance + COALESCE(s.total, 0), COALESCE(p.total, 0) FROM account a" +
+            " LEFT JOIN (SELECT account_id, SUM(balance) AS total FROM account_shard GROUP BY account_id) s ON s.account_id = a.id" +
+            " LEFT JOIN (SELECT account_id, SUM(amount) AS total FROM posting GROUP BY account_id) p ON p.account_id = a.id" +
+            " WHERE a.balance + COALESCE(s.total, 0) <> COALESCE(p.total, 0)";
+
+    @Inject
+    PostingsDAO(Provider<Session> sessionProvider) {
+        super(sessionProvider);
+    }
+
+    //Both postings are only inserted when the caller's transaction commits, together in one batch, next to the balance
+    //updates of the same transfer.
+    public void saveTransfer(long transactionId, long senderId, long receiverId, Money amount) {
+        runInTransactionOrStartNewIfNotRunning(session -> {
+            session.persist(PostingEntity.debit(senderId, transactionId, amount));
+            session.persist(PostingEntity.credit(receiverId, transactionId, amount));
+
+            return null;
+        });
+    }
+
+    //Accounts whose balance is not the sum of their postings.
+    List<BalanceMismatch> findMismatches() {
+        return runInTransactionOrStartNewIfNotRunning(session -> {
+            var rows = session.createNativeQuery(BALANCES_AGAINST_POSTINGS, Tuple.class)
+                    .getResultList();
+
+            var mismatches = new ArrayList<BalanceMismatch>(rows.size());
+            for (var row : rows) {
+                mismatches.add(toMismatch(row));
+            }
+
+            return mismatches;
+        });
+    }
+
+    Optional<BalanceMismatch> findMismatch(long accountId) {
+        return runInTransactionOrStartNewIfNotRunning(session -> {
+            var rows = session.createNativeQuery(BALANCES_AGAINST_POSTINGS + " AND a.id = :accountId", Tuple.class)
+                    .setParameter("accountId", accountId)
+                    .getResultList();
+
+            return rows.stream()
+                    .findFirst()
+                    .map(PostingsDAO::toMismatch);
+        });
+    }
+
+    //A total that does not fit in a long fails instead of wrapping around.
+    private static BalanceMismatch toMismatch(Tuple row) {
+        return new BalanceMismatch(((Number) row.get(0)).longValue(),
+                Money.ofMinor(new BigDecimal(row.get(1).toString()).longValueExact()),
+                Money.ofMinor(new BigDecimal(row.get(2).toString()).longValueExact()));
+    }
+}
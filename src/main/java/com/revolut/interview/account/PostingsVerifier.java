@@ -0,0 +1,107 @@
+package com.revolut.interview.account;
+
+import com.revolut.interview.lifecycle.Managed;
+import com.revolut.interview.metrics.MetricsSource;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+//With -Dpersistence.postings=true, periodically checks that the balance of every account, row and shards, is the sum
+//of its postings. Every transfer moves the balances and inserts its postings in the same database transaction, so any
+//difference means money moved without being posted, or the other way around.
+//
+//The check is read only and runs alongside transfers. An account found out of line is checked again on its own before
+//it is reported, so a transfer committing between the two sums of a single pass is not taken for a mismatch.
+@Singleton
+public class PostingsVerifier implements Managed, MetricsSource {
+
+    public static final String VERIFICATION_INTERVAL_MILLIS = "VERIFICATION_INTERVAL_MILLIS";
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final PostingsDAO postingsDAO;
+    private final ScheduledThreadPoolExecutor timer;
+
+    private final AtomicLong verifications = new AtomicLong();
+    private final AtomicLong lastMismatches = new AtomicLong();
+    private final AtomicLong totalMismatches = new AtomicLong();
+    private final AtomicLong lastVerificationMillis = new AtomicLong();
+
+    @Inject
+    PostingsVerifier(PostingsDAO postingsDAO,
+                     @Named(VERIFICATION_INTERVAL_MILLIS) long intervalMillis) {
+        this.postingsDAO = postingsDAO;
+        this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            var thread = new Thread(runnable, "postings-verifier");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (intervalMillis > 0) {
+            timer.scheduleWithFixedDelay(() -> {
+                try {
+                    verify();
+                } catch (Exception e) {
+                    LOGGER.error("Postings verification failed.", e);
+                }
+            }, intervalMillis, intervalMillis, MILLISECONDS);
+        }
+    }
+
+    List<BalanceMismatch> verify() {
+        var startedAt = System.nanoTime();
+
+        var mismatches = new ArrayList<BalanceMismatch>();
+        for (var candidate : postingsDAO.findMismatches()) {
+            postingsDAO.findMismatch(candidate.getAccountId())
+                    .ifPresent(mismatches::add);
+        }
+
+        var tookMillis = (System.nanoTime() - startedAt) / 1_000_000;
+        verifications.incrementAndGet();
+        lastMismatches.set(mismatches.size());
+        totalMismatches.addAndGet(mismatches.size());
+        lastVerificationMillis.set(tookMillis);
+
+        for (var mismatch : mismatches) {
+            LOGGER.error("Balance of account {} is {} but its postings add up to {}.",
+                    mismatch.getAccountId(), mismatch.getBalance(), mismatch.getPostedBalance());
+        }
+        LOGGER.info("Verified balances against postings in {} ms, {} accounts do not match.", tookMillis, mismatches.size());
+
+        return mismatches;
+    }
+
+    @Override
+    public void stop() {
+        //Only reads, so there is nothing to wait for.
+        timer.shutdownNow();
+    }
+
+    @Override
+    public String getName() {
+        return "postingsVerifier";
+    }
+
+    @Override
+    public Map<String, Number> getMetrics() {
+        var metrics = new LinkedHashMap<String, Number>();
+        metrics.put("verifications", verifications.get());
+        metrics.put("lastMismatches", lastMismatches.get());
+        metrics.put("totalMismatches", totalMismatches.get());
+        metrics.put("lastVerificationMillis", lastVerificationMillis.get());
+
+        return metrics;
+    }
+}
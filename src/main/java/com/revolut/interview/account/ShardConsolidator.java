@@ -0,0 +1,50 @@
+package com.revolut.interview.account;
+
+import com.revolut.interview.lifecycle.Managed;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+//Periodically folds shard balances back into their account rows, so debits rarely need to sweep and reading a
+//sharded balance stays cheap.
+@Singleton
+class ShardConsolidator implements Managed {
+
+    static final String CONSOLIDATION_INTERVAL_MILLIS = "CONSOLIDATION_INTERVAL_MILLIS";
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final ScheduledThreadPoolExecutor timer;
+
+    @Inject
+    ShardConsolidator(AccountShards accountShards,
+                      @Named(CONSOLIDATION_INTERVAL_MILLIS) long intervalMillis) {
+        this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            var thread = new Thread(runnable, "account-shard-consolidator");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (intervalMillis > 0) {
+            timer.scheduleWithFixedDelay(() -> {
+                try {
+                    accountShards.consolidateAll();
+                } catch (Exception e) {
+                    LOGGER.error("Shard consolidation failed.", e);
+                }
+            }, intervalMillis, intervalMillis, MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void stop() {
+        //A consolidation in flight only moves money within an account, so there is nothing to wait for.
+        timer.shutdownNow();
+    }
+}
@@ -0,0 +1,14 @@
+package com.revolut.interview.account;
+
+class ShardCountRequest {
+
+    private final int shardCount;
+
+    ShardCountRequest(int shardCount) {
+        this.shardCount = shardCount;
+    }
+
+    int getShardCount() {
+        return shardCount;
+    }
+}
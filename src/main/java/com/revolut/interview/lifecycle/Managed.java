@@ -0,0 +1,6 @@
+package com.revolut.interview.lifecycle;
+
+public interface Managed {
+
+    void stop();
+}
@@ -0,0 +1,18 @@
+package com.revolut.interview.metrics;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.multibindings.Multibinder;
+import com.revolut.interview.rest.Resource;
+
+public class MetricsModule extends AbstractModule {
+
+    @Override
+    protected void configure() {
+        //Declared here so the endpoint works even when no module contributes a source.
+        Multibinder.newSetBinder(binder(), MetricsSource.class);
+
+        Multibinder.newSetBinder(binder(), Resource.class)
+                .addBinding()
+                .to(MetricsResource.class);
+    }
+}
@@ -0,0 +1,39 @@
+package com.revolut.interview.metrics;
+
+import com.revolut.interview.rest.Resource;
+import spark.Request;
+import spark.Response;
+import spark.Service;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+@Singleton
+class MetricsResource implements Resource {
+
+    private static final String BASE_PATH = "/api/metrics";
+
+    private final Set<MetricsSource> metricsSources;
+
+    @Inject
+    MetricsResource(Set<MetricsSource> metricsSources) {
+        this.metricsSources = metricsSources;
+    }
+
+    private Map<String, Map<String, Number>> getAllMetrics(Request request, Response response) {
+        var allMetrics = new TreeMap<String, Map<String, Number>>();
+        metricsSources.forEach(source -> allMetrics.put(source.getName(), source.getMetrics()));
+
+        return allMetrics;
+    }
+
+    @Override
+    public void register(Service spark) {
+        spark.get(BASE_PATH, this::getAllMetrics);
+
+        spark.after(BASE_PATH, (request, response) -> response.type("application/json"));
+    }
+}
@@ -0,0 +1,10 @@
+package com.revolut.interview.metrics;
+
+import java.util.Map;
+
+public interface MetricsSource {
+
+    String getName();
+
+    Map<String, Number> getMetrics();
+}
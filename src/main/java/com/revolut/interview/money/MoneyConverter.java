@@ -0,0 +1,19 @@
+package com.revolut.interview.money;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+//Stores Money as a BIGINT of minor units. Native queries read and bind the minor units directly.
+@Converter
+public class MoneyConverter implements AttributeConverter<Money, Long> {
+
+    @Override
+    public Long convertToDatabaseColumn(Money money) {
+        return money == null ? null : money.getMinorUnits();
+    }
+
+    @Override
+    public Money convertToEntityAttribute(Long minorUnits) {
+        return minorUnits == null ? null : Money.ofMinor(minorUnits);
+    }
+}
@@ -0,0 +1,33 @@
+package com.revolut.interview.money;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+//Money is read and written as a plain decimal JSON number, e.g. 10.5 or "10.50", and always written with 2 decimals.
+public class MoneyTypeAdapter extends TypeAdapter<Money> {
+
+    @Override
+    public void write(JsonWriter out, Money money) throws IOException {
+        if (money == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.value(money.toBigDecimal());
+    }
+
+    @Override
+    public Money read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        //nextString keeps every digit of a number, nextDouble would not.
+        return Money.of(in.nextString());
+    }
+}
@@ -1,6 +1,7 @@
 package com.revolut.interview.notification;
 
-import java.math.BigDecimal;
+import com.revolut.interview.money.Money;
+
 import java.util.Objects;
 
 public class TransactionNotification {
@@ -8,9 +9,9 @@ public class TransactionNotification {
     final long senderId;
     final long receiverId;
     final boolean success;
-    final BigDecimal amount;
+    final Money amount;
 
-    public TransactionNotification(long senderId, long receiverId, boolean success, BigDecimal amount) {
+    public TransactionNotification(long senderId, long receiverId, boolean success, Money amount) {
         this.senderId = senderId;
         this.receiverId = receiverId;
         this.success = success;
@@ -29,7 +30,7 @@ public class TransactionNotification {
         return success;
     }
 
-    public BigDecimal getAmount() {
+    public Money getAmount() {
         return amount;
     }
 
@@ -41,7 +42,7 @@ public class TransactionNotification {
         return senderId == that.senderId &&
                 receiverId == that.receiverId &&
                 success == that.success &&
-                this.amount.compareTo(that.amount) == 0;
+                this.amount.equals(that.amount);
     }
 
     @Override
@@ -24,8 +24,8 @@ public abstract class BaseEntity {
     private LocalDateTime updated;
 
     @Id
-    @GeneratedValue(generator = "increment")
-    @GenericGenerator(name = "increment", strategy = "increment")
+    @GeneratedValue(generator = "timeOrdered")
+    @GenericGenerator(name = "timeOrdered", strategy = "com.revolut.interview.persistence.TimeOrderedIdGenerator")
     protected Long id;
 
     public Long getId() {
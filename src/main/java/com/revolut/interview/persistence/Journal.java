@@ -0,0 +1,346 @@
+package com.revolut.interview.persistence;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32C;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+//An append-only file of fixed size records, memory mapped one segment at a time. Segments are named after the
+//sequence of their first record and preallocated, so appending is a copy into mapped memory under a lock.
+//
+//Every record carries a CRC32C of its contents and its own sequence. After a crash the last segment ends at the first
+//record that does not check out, which is where the next append goes.
+//
+//Appends are not durable until synced. Callers arriving while a sync is running wait for it and are then covered by a
+//single sync of everything appended meanwhile, so under load one fsync makes a whole group of appends durable.
+public class Journal implements Closeable {
+
+    public static final int RECORD_BYTES = 48;
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final String SUFFIX = ".journal";
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final boolean fsync;
+
+    private final List<Path> segments;
+    private volatile Segment current;
+
+    private final byte[] record = new byte[RECORD_BYTES];
+    private final ByteBuffer recordBuffer = ByteBuffer.wrap(record);
+    private final CRC32C crc = new CRC32C();
+
+    private volatile long lastSequence;
+    private volatile long syncedSequence;
+    private final Object syncLock = new Object();
+
+    private final AtomicLong syncs = new AtomicLong();
+
+    private Journal(Path directory, int recordsPerSegment, boolean fsync, List<Path> segments) {
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.fsync = fsync;
+        this.segments = segments;
+    }
+
+    public static Journal open(Path directory, int segmentBytes, boolean fsync) {
+        if (segmentBytes < RECORD_BYTES) {
+            throw new IllegalArgumentException("Journal segments should fit at least one record of " + RECORD_BYTES + " bytes. Provided: " + segmentBytes);
+        }
+
+        try {
+            Files.createDirectories(directory);
+
+            List<Path> segments;
+            try (var files = Files.list(directory)) {
+                segments = files.filter(path -> path.getFileName().toString().endsWith(SUFFIX))
+                        .sorted()
+                        .collect(Collectors.toCollection(CopyOnWriteArrayList::new));
+            }
+
+            var journal = new Journal(directory, segmentBytes / RECORD_BYTES, fsync, segments);
+            journal.openLastSegment();
+
+            return journal;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the journal in " + directory, e);
+        }
+    }
+
+    //Records are only ever numbered from 1, so 0 means nothing was appended yet.
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    public synchronized long append(int type, long first, long second, long third, long fourth) {
+        if (type == 0) {
+            throw new IllegalArgumentException("Record type 0 marks space that was never written.");
+        }
+
+        var segment = current;
+        if (segment.records == recordsPerSegment) {
+            segment = roll();
+        }
+
+        var sequence = lastSequence + 1;
+
+        recordBuffer.clear();
+        recordBuffer.putInt(0)
+                .putInt(type)
+                .putLong(sequence)
+                .putLong(first)
+                .putLong(second)
+                .putLong(third)
+                .putLong(fourth);
+
+        crc.reset();
+        crc.update(record, Integer.BYTES, RECORD_BYTES - Integer.BYTES);
+        recordBuffer.putInt(0, (int) crc.getValue());
+
+        segment.buffer.position(segment.records * RECORD_BYTES);
+        segment.buffer.put(record);
+        segment.records++;
+
+        lastSequence = sequence;
+
+        return sequence;
+    }
+
+    //Returns once every record up to the given sequence is on disk.
+    public void sync(long sequence) {
+        if (!fsync || syncedSequence >= sequence) {
+            return;
+        }
+
+        synchronized (syncLock) {
+            if (syncedSequence >= sequence) {
+                return;
+            }
+
+            //Read before the segment: a segment rolled in between was forced while rolling.
+            var target = lastSequence;
+            current.buffer.force();
+
+            syncedSequence = target;
+            syncs.incrementAndGet();
+        }
+    }
+
+    //Everything up to here survives a crash. Without fsync that is everything appended.
+    public long getDurableSequence() {
+        return fsync ? syncedSequence : lastSequence;
+    }
+
+    //Reads every record after the given sequence, oldest first.
+    public void replay(long afterSequence, RecordVisitor visitor) {
+        replay(afterSequence, lastSequence, visitor);
+    }
+
+    //Reads the records after the first sequence up to the second, oldest first. Safe while appending, as long as the
+    //second sequence was already appended.
+    public void replay(long afterSequence, long upToSequence, RecordVisitor visitor) {
+        var reader = new byte[RECORD_BYTES];
+        var readerBuffer = ByteBuffer.wrap(reader);
+        var readerCrc = new CRC32C();
+
+        var segmentsToRead = List.copyOf(segments);
+        if (upToSequence > afterSequence && firstSequenceOf(segmentsToRead.get(0)) > afterSequence + 1) {
+            throw new IllegalStateException("Journal records after sequence " + afterSequence + " were already deleted.");
+        }
+
+        for (int i = 0; i < segmentsToRead.size(); i++) {
+            var path = segmentsToRead.get(i);
+            var isLast = i == segmentsToRead.size() - 1;
+
+            if (firstSequenceOf(path) > upToSequence) {
+                break;
+            }
+
+            //Segments holding nothing after the given sequence are skipped without being read.
+            if (!isLast && firstSequenceOf(segmentsToRead.get(i + 1)) <= afterSequence + 1) {
+                continue;
+            }
+
+            try (var channel = FileChannel.open(path, READ)) {
+                var buffer = channel.map(READ_ONLY, 0, channel.size());
+                var expectedSequence = firstSequenceOf(path);
+
+                while (buffer.remaining() >= RECORD_BYTES && expectedSequence <= upToSequence) {
+                    buffer.get(reader);
+
+                    if (!isValid(readerBuffer, readerCrc, expectedSequence)) {
+                        throw new IllegalStateException("Journal record " + expectedSequence + " in " + path + " is corrupted.");
+                    }
+
+                    if (expectedSequence > afterSequence) {
+                        visitor.visit(expectedSequence,
+                                readerBuffer.getInt(4),
+                                readerBuffer.getLong(16),
+                                readerBuffer.getLong(24),
+                                readerBuffer.getLong(32),
+                                readerBuffer.getLong(40));
+                    }
+
+                    expectedSequence++;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read journal segment " + path, e);
+            }
+        }
+    }
+
+    //Deletes the segments holding nothing after the given sequence, never the one being appended to. Returns how many.
+    public synchronized int deleteSegmentsUpTo(long sequence) {
+        var deleted = 0;
+
+        while (segments.size() > 1 && firstSequenceOf(segments.get(1)) <= sequence + 1) {
+            var path = segments.remove(0);
+
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not delete journal segment " + path, e);
+            }
+            deleted++;
+        }
+
+        return deleted;
+    }
+
+    public long getSyncs() {
+        return syncs.get();
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            current.buffer.force();
+            current.channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not close journal segment " + current.path, e);
+        }
+    }
+
+    private void openLastSegment() throws IOException {
+        if (segments.isEmpty()) {
+            this.current = createSegment(1);
+            return;
+        }
+
+        var path = segments.get(segments.size() - 1);
+        var segment = mapSegment(path);
+        var firstSequence = firstSequenceOf(path);
+
+        //Finds the end of what was written, a torn record at the end is simply overwritten by the next append.
+        var validator = ByteBuffer.allocate(RECORD_BYTES);
+        var validatorCrc = new CRC32C();
+        while (segment.records < recordsPerSegment) {
+            segment.buffer.position(segment.records * RECORD_BYTES);
+            validator.clear();
+            segment.buffer.get(validator.array());
+
+            if (!isValid(validator, validatorCrc, firstSequence + segment.records)) {
+                break;
+            }
+            segment.records++;
+        }
+
+        this.current = segment;
+        this.lastSequence = firstSequence + segment.records - 1;
+        this.syncedSequence = lastSequence;
+
+        LOGGER.info("Opened journal {} at sequence {} in {} segments.", directory, lastSequence, segments.size());
+    }
+
+    private Segment roll() {
+        var full = current;
+
+        try {
+            if (fsync) {
+                full.buffer.force();
+            }
+            full.channel.close();
+
+            this.current = createSegment(lastSequence + 1);
+
+            return current;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not roll journal segment " + full.path, e);
+        }
+    }
+
+    private Segment createSegment(long firstSequence) throws IOException {
+        var path = directory.resolve(String.format("%020d%s", firstSequence, SUFFIX));
+        var segment = mapSegment(path);
+        segments.add(path);
+
+        return segment;
+    }
+
+    private Segment mapSegment(Path path) throws IOException {
+        var channel = FileChannel.open(path, CREATE, READ, WRITE);
+        var buffer = channel.map(READ_WRITE, 0, (long) recordsPerSegment * RECORD_BYTES);
+
+        return new Segment(path, channel, buffer);
+    }
+
+    private static boolean isValid(ByteBuffer record, CRC32C crc, long expectedSequence) {
+        if (record.getInt(4) == 0 || record.getLong(8) != expectedSequence) {
+            return false;
+        }
+
+        crc.reset();
+        crc.update(record.array(), Integer.BYTES, RECORD_BYTES - Integer.BYTES);
+
+        return record.getInt(0) == (int) crc.getValue();
+    }
+
+    private static long firstSequenceOf(Path segment) {
+        var name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    public interface RecordVisitor {
+
+        void visit(long sequence, int type, long first, long second, long third, long fourth);
+    }
+
+    private static class Segment {
+
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        private int records;
+
+        private Segment(Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+}
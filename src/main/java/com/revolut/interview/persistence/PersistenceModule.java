@@ -2,30 +2,174 @@ package com.revolut.interview.persistence;
 
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
+import com.google.inject.multibindings.Multibinder;
 import com.revolut.interview.account.AccountEntity;
+import com.revolut.interview.account.AccountLedger;
+import com.revolut.interview.account.AccountShardEntity;
+import com.revolut.interview.account.LedgerSnapshots;
+import com.revolut.interview.account.PostingEntity;
+import com.revolut.interview.account.PostingsVerifier;
+import com.revolut.interview.lifecycle.Managed;
+import com.revolut.interview.metrics.MetricsSource;
 import com.revolut.interview.transactions.TransactionEntity;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.cfg.Configuration;
 
+import javax.inject.Named;
 import javax.inject.Singleton;
+import java.nio.file.Paths;
+
+import static com.google.inject.name.Names.named;
+import static com.revolut.interview.account.AccountLedger.LEDGER_ENABLED;
+import static com.revolut.interview.account.LedgerSnapshots.SNAPSHOT_DIRECTORY;
+import static com.revolut.interview.account.LedgerSnapshots.SNAPSHOT_INTERVAL_MILLIS;
+import static com.revolut.interview.account.PostingsDAO.POSTINGS_ENABLED;
+import static com.revolut.interview.account.PostingsVerifier.VERIFICATION_INTERVAL_MILLIS;
 
 public class PersistenceModule extends AbstractModule {
 
+    static final String BALANCES_PROPERTY = "persistence.balances";
+    static final String POSTINGS_PROPERTY = "persistence.postings";
+
+    static final String NODE_ID = "NODE_ID";
+    static final String JOURNAL_DIRECTORY = "JOURNAL_DIRECTORY";
+    static final String JOURNAL_SEGMENT_BYTES = "JOURNAL_SEGMENT_BYTES";
+    static final String JOURNAL_FSYNC = "JOURNAL_FSYNC";
+
+    private static final String CONNECTION_URL_SETTING = "hibernate.connection.url";
+    private static final String SCHEMA_SETTING = "hibernate.hbm2ddl.auto";
+
     @Override
     protected void configure() {
         bind(Session.class).toProvider(SessionProvider.class);
+
+        //Part of every generated id, each instance sharing a database needs a different one between 0 and 1023.
+        bindConstant()
+                .annotatedWith(named(NODE_ID))
+                .to(Integer.getInteger("ids.node", 0));
+
+        bindBalances();
+        bindPostings();
+    }
+
+    //Balances are kept on the account rows unless -Dpersistence.balances=ledger moves them to the account ledger.
+    //Accounts and transactions stay in the database either way.
+    public static boolean isLedgerEnabled() {
+        var balances = System.getProperty(BALANCES_PROPERTY, "database");
+
+        switch (balances) {
+            case "database":
+                return false;
+            case "ledger":
+                return true;
+            default:
+                throw new IllegalArgumentException("Unknown balance persistence " + balances);
+        }
+    }
+
+    //With -Dpersistence.postings=true every transfer is also recorded as a debit and a credit posting, and the balances
+    //on the account rows are checked against them. Postings follow the account rows, so they need balances kept there.
+    public static boolean arePostingsEnabled() {
+        var postingsEnabled = Boolean.getBoolean(POSTINGS_PROPERTY);
+
+        if (postingsEnabled && isLedgerEnabled()) {
+            throw new IllegalArgumentException("Postings cannot be used with balances kept in the ledger");
+        }
+
+        return postingsEnabled;
+    }
+
+    private void bindBalances() {
+        var ledgerEnabled = isLedgerEnabled();
+
+        bindConstant()
+                .annotatedWith(named(LEDGER_ENABLED))
+                .to(ledgerEnabled);
+
+        var ledgerDirectory = System.getProperty("ledger.directory", "ledger");
+        bindConstant()
+                .annotatedWith(named(JOURNAL_DIRECTORY))
+                .to(ledgerDirectory);
+        bindConstant()
+                .annotatedWith(named(SNAPSHOT_DIRECTORY))
+                .to(ledgerDirectory);
+        bindConstant()
+                .annotatedWith(named(JOURNAL_SEGMENT_BYTES))
+                .to(Integer.getInteger("ledger.segmentBytes", 64 * 1024 * 1024));
+        //Turning it off trades durability of the latest transfers on a machine crash for throughput.
+        bindConstant()
+                .annotatedWith(named(JOURNAL_FSYNC))
+                .to(Boolean.parseBoolean(System.getProperty("ledger.fsync", "true")));
+        //0 leaves snapshots to shutdown, restarting after a crash then replays the whole journal.
+        bindConstant()
+                .annotatedWith(named(SNAPSHOT_INTERVAL_MILLIS))
+                .to(Long.getLong("ledger.snapshotIntervalMillis", 60_000L));
+
+        if (ledgerEnabled) {
+            //Bound here, after the transaction executors, so transfers still draining on shutdown find it open. The
+            //last snapshot is taken before the journal is closed.
+            var managed = Multibinder.newSetBinder(binder(), Managed.class);
+            managed.addBinding().to(LedgerSnapshots.class);
+            managed.addBinding().to(AccountLedger.class);
+
+            var metricsSources = Multibinder.newSetBinder(binder(), MetricsSource.class);
+            metricsSources.addBinding().to(AccountLedger.class);
+            metricsSources.addBinding().to(LedgerSnapshots.class);
+        }
+    }
+
+    private void bindPostings() {
+        var postingsEnabled = arePostingsEnabled();
+
+        bindConstant()
+                .annotatedWith(named(POSTINGS_ENABLED))
+                .to(postingsEnabled);
+
+        if (postingsEnabled) {
+            //0 turns periodic verification off.
+            bindConstant()
+                    .annotatedWith(named(VERIFICATION_INTERVAL_MILLIS))
+                    .to(Long.getLong("persistence.postings.verificationIntervalMillis", 300_000L));
+
+            Multibinder.newSetBinder(binder(), Managed.class)
+                    .addBinding()
+                    .to(PostingsVerifier.class);
+            Multibinder.newSetBinder(binder(), MetricsSource.class)
+                    .addBinding()
+                    .to(PostingsVerifier.class);
+        }
     }
 
     @Provides
     @Singleton
-    SessionFactory sessionFactory() {
+    SessionFactory sessionFactory(@Named(NODE_ID) int nodeId,
+                                  @Named(LEDGER_ENABLED) boolean ledgerEnabled,
+                                  @Named(JOURNAL_DIRECTORY) String ledgerDirectory) {
         Configuration configuration = new Configuration();
         configuration.configure("hibernate.cfg.xml");
+        configuration.setProperty(TimeOrderedIdGenerator.NODE_ID_SETTING, String.valueOf(nodeId));
+
+        //The ledger keeps balances across restarts, so the accounts and transactions they belong to have to be kept as
+        //well. The database then lives in a file next to the journal, and its schema is updated instead of recreated.
+        if (ledgerEnabled) {
+            configuration.setProperty(CONNECTION_URL_SETTING, "jdbc:h2:file:" + Paths.get(ledgerDirectory, "database").toAbsolutePath());
+            configuration.setProperty(SCHEMA_SETTING, "update");
+        }
 
         configuration.addAnnotatedClass(AccountEntity.class);
+        configuration.addAnnotatedClass(AccountShardEntity.class);
         configuration.addAnnotatedClass(TransactionEntity.class);
+        configuration.addAnnotatedClass(PostingEntity.class);
 
         return configuration.buildSessionFactory();
     }
+
+    @Provides
+    @Singleton
+    Journal journal(@Named(JOURNAL_DIRECTORY) String directory,
+                    @Named(JOURNAL_SEGMENT_BYTES) int segmentBytes,
+                    @Named(JOURNAL_FSYNC) boolean fsync) {
+        return Journal.open(Paths.get(directory), segmentBytes, fsync);
+    }
 }
@@ -0,0 +1,33 @@
+package com.revolut.interview.persistence;
+
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.Configurable;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.io.Serializable;
+import java.util.Properties;
+
+//Hibernate creates one of these per entity, each with its own TimeOrderedIds, so inserts into different tables never
+//contend. Ids are handed out in memory, nothing is read from the database before an insert.
+public class TimeOrderedIdGenerator implements IdentifierGenerator, Configurable {
+
+    static final String NODE_ID_SETTING = "com.revolut.interview.ids.node";
+
+    private TimeOrderedIds ids;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) {
+        var settings = serviceRegistry.getService(ConfigurationService.class).getSettings();
+        var nodeId = settings.get(NODE_ID_SETTING);
+
+        this.ids = new TimeOrderedIds(nodeId == null ? 0 : Integer.parseInt(nodeId.toString()));
+    }
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        return ids.next();
+    }
+}
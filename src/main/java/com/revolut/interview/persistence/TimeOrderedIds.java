@@ -0,0 +1,71 @@
+package com.revolut.interview.persistence;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+//64 bit ids that grow with time, so rows can be paged and ranged by id instead of by a timestamp index, and that need
+//no coordination between instances. From the top: 41 bits of milliseconds since EPOCH, 10 bits of node id and 12 bits
+//of sequence within the millisecond.
+//
+//Allocation is a single compare and set on the last handed out timestamp and sequence. Over 4096 ids in a millisecond
+//the sequence carries into the timestamp, borrowing the next millisecond rather than waiting for it, and a clock that
+//moves backwards just continues from the last id. Every node needs its own node id, two instances sharing one can
+//hand out the same ids.
+public class TimeOrderedIds {
+
+    public static final int NODE_BITS = 10;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private static final int SEQUENCE_BITS = 12;
+    private static final int TIMESTAMP_SHIFT = NODE_BITS + SEQUENCE_BITS;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final long MAX_TIMESTAMP = (1L << Long.SIZE - 1 - TIMESTAMP_SHIFT) - 1;
+
+    //2020-01-01T00:00:00Z, 41 bits of milliseconds from here last until 2089.
+    private static final long EPOCH = 1_577_836_800_000L;
+
+    private final long node;
+    private final LongSupplier currentTimeMillis;
+
+    //Milliseconds since EPOCH and sequence of the last id, without the node bits in between.
+    private final AtomicLong last = new AtomicLong();
+
+    public TimeOrderedIds(int nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    TimeOrderedIds(int nodeId, LongSupplier currentTimeMillis) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id should be between 0 and " + MAX_NODE_ID + ". Provided: " + nodeId);
+        }
+
+        this.node = (long) nodeId << SEQUENCE_BITS;
+        this.currentTimeMillis = currentTimeMillis;
+    }
+
+    public long next() {
+        var now = (currentTimeMillis.getAsLong() - EPOCH) << SEQUENCE_BITS;
+
+        long previous;
+        long next;
+        do {
+            previous = last.get();
+            next = Math.max(previous + 1, now);
+        } while (!last.compareAndSet(previous, next));
+
+        return (next >>> SEQUENCE_BITS) << TIMESTAMP_SHIFT | node | next & SEQUENCE_MASK;
+    }
+
+    //The lowest id any node can hand out at instant, so ids >= firstIdAt(from) and < firstIdAt(to) are the rows created
+    //in between.
+    public static long firstIdAt(Instant instant) {
+        var timestamp = Math.max(0, instant.toEpochMilli() - EPOCH);
+
+        return timestamp > MAX_TIMESTAMP ? Long.MAX_VALUE : timestamp << TIMESTAMP_SHIFT;
+    }
+
+    public static Instant createdAt(long id) {
+        return Instant.ofEpochMilli((id >>> TIMESTAMP_SHIFT) + EPOCH);
+    }
+}
@@ -1,14 +1,18 @@
 package com.revolut.interview.rest;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
+import com.revolut.interview.money.Money;
+import com.revolut.interview.money.MoneyTypeAdapter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.jetty.http.HttpStatus;
 import spark.Service;
 
 import javax.inject.Singleton;
+import java.util.concurrent.RejectedExecutionException;
 
 public class SparkRestModule extends AbstractModule {
 
@@ -27,12 +31,20 @@ public class SparkRestModule extends AbstractModule {
             response.body(exception.getMessage());
         });
 
+        spark.exception(RejectedExecutionException.class, (exception, request, response) -> {
+            LOGGER.error(exception);
+            response.status(HttpStatus.SERVICE_UNAVAILABLE_503);
+            response.body(exception.getMessage());
+        });
+
         return spark;
     }
 
     @Singleton
     @Provides
     public Gson provideGson() {
-        return new Gson();
+        return new GsonBuilder()
+                .registerTypeAdapter(Money.class, new MoneyTypeAdapter())
+                .create();
     }
 }
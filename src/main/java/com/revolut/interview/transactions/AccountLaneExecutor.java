@@ -0,0 +1,160 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.lifecycle.Managed;
+import com.revolut.interview.metrics.MetricsSource;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+//Every account is owned by exactly one single threaded lane, so two transfers touching the same account never run
+//at the same time and never race on the account version.
+//
+//A transfer between accounts owned by different lanes runs on the lower lane while the higher lane is parked on a
+//barrier until it finishes. Both halves are enqueued under one lock so every lane sees handoffs in the same order
+//and a lane only ever waits on a higher lane, which rules out deadlocks.
+@Singleton
+class AccountLaneExecutor implements Executor, Managed, MetricsSource {
+
+    static final String LANE_COUNT = "LANE_COUNT";
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final ThreadPoolExecutor[] lanes;
+    private final long drainTimeoutMillis;
+
+    private final AtomicLong handoffCount = new AtomicLong();
+
+    @Inject
+    AccountLaneExecutor(@Named(LANE_COUNT) int laneCount,
+                        @Named(TransactionWorkerPool.DRAIN_TIMEOUT_MILLIS) long drainTimeoutMillis) {
+        if (laneCount < 1) {
+            throw new IllegalArgumentException("At least one lane is required. Provided: " + laneCount);
+        }
+
+        this.drainTimeoutMillis = drainTimeoutMillis;
+        this.lanes = new ThreadPoolExecutor[laneCount];
+
+        for (int i = 0; i < laneCount; i++) {
+            var laneName = "transfer-lane-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, MILLISECONDS, new LinkedBlockingQueue<>(),
+                    runnable -> new Thread(runnable, laneName));
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (!(task instanceof TransactionTask)) {
+            lanes[0].execute(task);
+            return;
+        }
+
+        var transaction = ((TransactionTask) task).getTransaction();
+        var senderLane = laneOf(transaction.getSenderId());
+        var receiverLane = laneOf(transaction.getReceiverId());
+
+        if (senderLane == receiverLane) {
+            lanes[senderLane].execute(task);
+        } else {
+            handOff(task, Math.min(senderLane, receiverLane), Math.max(senderLane, receiverLane));
+        }
+    }
+
+    private synchronized void handOff(Runnable task, int ownerLane, int parkedLane) {
+        var parked = new CountDownLatch(1);
+        var completed = new CountDownLatch(1);
+
+        lanes[parkedLane].execute(() -> {
+            parked.countDown();
+            awaitUninterruptibly(completed);
+        });
+
+        lanes[ownerLane].execute(() -> {
+            awaitUninterruptibly(parked);
+            try {
+                task.run();
+            } finally {
+                completed.countDown();
+            }
+        });
+
+        handoffCount.incrementAndGet();
+    }
+
+    int laneOf(long accountId) {
+        //Time ordered ids of accounts created in different milliseconds all end in the same node and sequence bits, so
+        //the id is spread before taking the lane, like AccountLockManager does for stripes.
+        var hash = Long.hashCode(accountId * 0x9E3779B97F4A7C15L);
+        return Math.floorMod(hash, lanes.length);
+    }
+
+    @Override
+    public void stop() {
+        //Taken under the handoff lock so that both halves of a handoff are either enqueued or rejected.
+        synchronized (this) {
+            for (var lane : lanes) {
+                lane.shutdown();
+            }
+        }
+
+        try {
+            var deadline = System.currentTimeMillis() + drainTimeoutMillis;
+            for (var lane : lanes) {
+                var remaining = Math.max(0, deadline - System.currentTimeMillis());
+                if (!lane.awaitTermination(remaining, MILLISECONDS)) {
+                    LOGGER.error("Transfer lane did not drain in {}ms. {} tasks left pending.", drainTimeoutMillis, lane.shutdownNow().size());
+                }
+            }
+        } catch (InterruptedException e) {
+            for (var lane : lanes) {
+                lane.shutdownNow();
+            }
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "accountLanes";
+    }
+
+    @Override
+    public Map<String, Number> getMetrics() {
+        var metrics = new LinkedHashMap<String, Number>();
+        metrics.put("lanes", lanes.length);
+        metrics.put("handoffs", handoffCount.get());
+
+        for (int i = 0; i < lanes.length; i++) {
+            metrics.put("lane" + i + ".queueDepth", lanes[i].getQueue().size());
+        }
+
+        return metrics;
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        var interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.metrics.MetricsSource;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+//Serialises transfers on the same accounts inside the JVM, so two workers wait on a cheap in-memory lock instead of
+//both going to the database and one of them losing the version check.
+//
+//Accounts map onto a fixed number of lock stripes. Both stripes of a transfer are always taken lowest index first,
+//which keeps transfers free of deadlocks. Two accounts sharing a stripe only cost some unneeded waiting.
+@Singleton
+class AccountLockManager implements MetricsSource {
+
+    static final String LOCK_STRIPES = "LOCK_STRIPES";
+
+    private final ReentrantLock[] stripes;
+
+    private final AtomicLongArray contentionPerStripe;
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong contendedAcquisitions = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    @Inject
+    AccountLockManager(@Named(LOCK_STRIPES) int stripeCount) {
+        if (stripeCount < 1) {
+            throw new IllegalArgumentException("At least one lock stripe is required. Provided: " + stripeCount);
+        }
+
+        this.stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+
+        this.contentionPerStripe = new AtomicLongArray(stripeCount);
+    }
+
+    void lock(long firstAccountId, long secondAccountId) {
+        var first = stripeOf(firstAccountId);
+        var second = stripeOf(secondAccountId);
+
+        lockStripe(Math.min(first, second));
+        if (first != second) {
+            lockStripe(Math.max(first, second));
+        }
+    }
+
+    void unlock(long firstAccountId, long secondAccountId) {
+        var first = stripeOf(firstAccountId);
+        var second = stripeOf(secondAccountId);
+
+        if (first != second) {
+            stripes[Math.max(first, second)].unlock();
+        }
+        stripes[Math.min(first, second)].unlock();
+    }
+
+    int stripeOf(long accountId) {
+        //Spreads sequential ids so neighbouring accounts do not always land on neighbouring stripes.
+        var hash = Long.hashCode(accountId * 0x9E3779B97F4A7C15L);
+        return Math.floorMod(hash, stripes.length);
+    }
+
+    private void lockStripe(int stripe) {
+        acquisitions.incrementAndGet();
+
+        var lock = stripes[stripe];
+        if (lock.tryLock()) {
+            return;
+        }
+
+        contendedAcquisitions.incrementAndGet();
+        contentionPerStripe.incrementAndGet(stripe);
+
+        var waitStart = System.nanoTime();
+        lock.lock();
+        var waited = System.nanoTime() - waitStart;
+
+        waitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+    }
+
+    @Override
+    public String getName() {
+        return "accountLocks";
+    }
+
+    @Override
+    public Map<String, Number> getMetrics() {
+        var contended = contendedAcquisitions.get();
+
+        var hottestStripe = 0;
+        for (int i = 1; i < stripes.length; i++) {
+            if (contentionPerStripe.get(i) > contentionPerStripe.get(hottestStripe)) {
+                hottestStripe = i;
+            }
+        }
+
+        var heldStripes = 0;
+        for (var stripe : stripes) {
+            if (stripe.isLocked()) {
+                heldStripes++;
+            }
+        }
+
+        var metrics = new LinkedHashMap<String, Number>();
+        metrics.put("stripes", stripes.length);
+        metrics.put("heldStripes", heldStripes);
+        metrics.put("acquisitions", acquisitions.get());
+        metrics.put("contendedAcquisitions", contended);
+        metrics.put("averageWaitMicros", contended == 0 ? 0 : waitNanos.get() / contended / 1_000.0);
+        metrics.put("maxWaitMicros", maxWaitNanos.get() / 1_000.0);
+        metrics.put("hottestStripe", hottestStripe);
+        metrics.put("hottestStripeContention", contentionPerStripe.get(hottestStripe));
+
+        return metrics;
+    }
+}
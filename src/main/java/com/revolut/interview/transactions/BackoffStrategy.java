@@ -1,17 +1,69 @@
 package com.revolut.interview.transactions;
 
 import javax.inject.Singleton;
+import java.util.concurrent.ThreadLocalRandom;
 
+//Strategies only compute how long to wait before the next attempt. Waiting is left to the RetryScheduler so that no
+//thread is ever blocked while a transfer backs off.
 public interface BackoffStrategy {
 
-    void backOff(int attemptNumber);
+    long nextDelayMillis(int attemptNumber, long previousDelayMillis);
 
     @Singleton
     class NOOPBackOffStrategy implements BackoffStrategy {
 
         @Override
-        public void backOff(int attemptNumber) {
-            //No Implementation required
+        public long nextDelayMillis(int attemptNumber, long previousDelayMillis) {
+            return 0;
+        }
+    }
+
+    //base * 2^(attempt - 2), so the first retry waits for base.
+    class ExponentialBackOffStrategy implements BackoffStrategy {
+
+        private final long baseDelayMillis;
+
+        ExponentialBackOffStrategy(long baseDelayMillis) {
+            this.baseDelayMillis = baseDelayMillis;
+        }
+
+        @Override
+        public long nextDelayMillis(int attemptNumber, long previousDelayMillis) {
+            var exponent = Math.min(Math.max(attemptNumber - 2, 0), 30);
+            return baseDelayMillis << exponent;
+        }
+    }
+
+    //Random delay between base and three times the previous delay. Spreads out retries of transfers that collided on
+    //the same account so they do not collide again.
+    class DecorrelatedJitterBackOffStrategy implements BackoffStrategy {
+
+        private final long baseDelayMillis;
+
+        DecorrelatedJitterBackOffStrategy(long baseDelayMillis) {
+            this.baseDelayMillis = baseDelayMillis;
+        }
+
+        @Override
+        public long nextDelayMillis(int attemptNumber, long previousDelayMillis) {
+            var upperBound = Math.max(baseDelayMillis, previousDelayMillis * 3);
+            return ThreadLocalRandom.current().nextLong(baseDelayMillis, upperBound + 1);
+        }
+    }
+
+    class CappedBackOffStrategy implements BackoffStrategy {
+
+        private final BackoffStrategy backoffStrategy;
+        private final long maxDelayMillis;
+
+        CappedBackOffStrategy(BackoffStrategy backoffStrategy, long maxDelayMillis) {
+            this.backoffStrategy = backoffStrategy;
+            this.maxDelayMillis = maxDelayMillis;
+        }
+
+        @Override
+        public long nextDelayMillis(int attemptNumber, long previousDelayMillis) {
+            return Math.min(maxDelayMillis, backoffStrategy.nextDelayMillis(attemptNumber, previousDelayMillis));
         }
     }
 }
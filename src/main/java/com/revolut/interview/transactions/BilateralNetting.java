@@ -0,0 +1,167 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.account.AccountEntity;
+import com.revolut.interview.account.AccountShards;
+import com.revolut.interview.account.AccountsDAO;
+import com.revolut.interview.metrics.MetricsSource;
+import com.revolut.interview.money.Money;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static javax.persistence.LockModeType.WRITE;
+
+//Applies a batch of transfers as one net movement per pair of accounts. Back and forth transfers between the same two
+//accounts cost a single balance change instead of one per transfer.
+//
+//Every transfer is still checked on its own, in the order given, against the balance left by the transfers before
+//it. Only the ones that pass make it into the net movements. Has to run inside the caller's database transaction.
+//
+//Net movements are applied to the account rows, so the shards of a sharded account are swept into its row before it
+//is loaded, and the row holds all of its money.
+@Singleton
+class BilateralNetting implements MetricsSource {
+
+    private final AccountsDAO accountsDAO;
+    private final AccountShards accountShards;
+
+    private final AtomicLong nettedTransfers = new AtomicLong();
+    private final AtomicLong netMovements = new AtomicLong();
+
+    @Inject
+    BilateralNetting(AccountsDAO accountsDAO, AccountShards accountShards) {
+        this.accountsDAO = accountsDAO;
+        this.accountShards = accountShards;
+    }
+
+    //Returns whether each transfer went through, in the same order as the transfers.
+    boolean[] apply(List<Transaction> transfers) {
+        var accounts = new HashMap<Long, AccountEntity>();
+        var balances = new HashMap<Long, Money>();
+        var movements = new LinkedHashMap<AccountPair, Money>();
+
+        var outcomes = new boolean[transfers.size()];
+
+        for (int i = 0; i < transfers.size(); i++) {
+            var transfer = transfers.get(i);
+            var senderId = transfer.getSenderId();
+            var receiverId = transfer.getReceiverId();
+            var amount = transfer.getAmountToTransfer();
+
+            if (!load(senderId, accounts, balances) || !load(receiverId, accounts, balances)) {
+                continue;
+            }
+
+            if (balances.get(senderId).isLessThan(amount)) {
+                continue;
+            }
+
+            balances.put(senderId, balances.get(senderId).minus(amount));
+            balances.put(receiverId, balances.get(receiverId).plus(amount));
+
+            //Positive when money goes from the lower account id to the higher one.
+            var pair = new AccountPair(senderId, receiverId);
+            var signedAmount = senderId < receiverId ? amount : amount.negate();
+            movements.merge(pair, signedAmount, Money::plus);
+
+            outcomes[i] = true;
+        }
+
+        var touched = new LinkedHashSet<AccountEntity>();
+        movements.forEach((pair, net) -> {
+            if (net.signum() == 0) {
+                return;
+            }
+
+            var payer = accounts.get(net.signum() > 0 ? pair.lowerId : pair.higherId);
+            var payee = accounts.get(net.signum() > 0 ? pair.higherId : pair.lowerId);
+
+            payer.setBalance(payer.getBalance().minus(net.abs()));
+            payee.setBalance(payee.getBalance().plus(net.abs()));
+
+            touched.add(payer);
+            touched.add(payee);
+            netMovements.incrementAndGet();
+        });
+
+        touched.forEach(accountsDAO::update);
+
+        for (var outcome : outcomes) {
+            if (outcome) {
+                nettedTransfers.incrementAndGet();
+            }
+        }
+
+        return outcomes;
+    }
+
+    private boolean load(long accountId, Map<Long, AccountEntity> accounts, Map<Long, Money> balances) {
+        if (accounts.containsKey(accountId)) {
+            return true;
+        }
+
+        //Swept with bulk updates, before the row is loaded into the session.
+        if (accountShards.isSharded(accountId)) {
+            accountShards.consolidate(accountId);
+        }
+
+        var account = accountsDAO.findById(accountId, WRITE);
+        if (account.isEmpty()) {
+            return false;
+        }
+
+        accounts.put(accountId, account.get());
+        balances.put(accountId, account.get().getBalance());
+
+        return true;
+    }
+
+    @Override
+    public String getName() {
+        return "bilateralNetting";
+    }
+
+    @Override
+    public Map<String, Number> getMetrics() {
+        var movements = netMovements.get();
+
+        var metrics = new LinkedHashMap<String, Number>();
+        metrics.put("nettedTransfers", nettedTransfers.get());
+        metrics.put("netMovements", movements);
+        metrics.put("transfersPerMovement", movements == 0 ? 0 : (double) nettedTransfers.get() / movements);
+
+        return metrics;
+    }
+
+    private static class AccountPair {
+
+        private final long lowerId;
+        private final long higherId;
+
+        private AccountPair(long firstId, long secondId) {
+            this.lowerId = Math.min(firstId, secondId);
+            this.higherId = Math.max(firstId, secondId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof AccountPair)) return false;
+            AccountPair that = (AccountPair) o;
+            return lowerId == that.lowerId &&
+                    higherId == that.higherId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(lowerId, higherId);
+        }
+    }
+}
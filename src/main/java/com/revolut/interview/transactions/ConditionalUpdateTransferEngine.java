@@ -0,0 +1,35 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.account.AccountsDAO;
+import com.revolut.interview.money.Money;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+//Moves money with two UPDATE statements and never loads the accounts. The balance check is part of the debit
+//statement, so it cannot be raced by another writer and there is nothing to retry.
+@Singleton
+class ConditionalUpdateTransferEngine implements TransferEngine {
+
+    private final AccountsDAO accountsDAO;
+
+    @Inject
+    ConditionalUpdateTransferEngine(AccountsDAO accountsDAO) {
+        this.accountsDAO = accountsDAO;
+    }
+
+    @Override
+    public boolean transfer(long transactionId, long senderId, long receiverId, Money amount) {
+        if (!accountsDAO.debitIfSufficient(senderId, amount)) {
+            return false;
+        }
+
+        if (!accountsDAO.credit(receiverId, amount)) {
+            //Receiver does not exist. Give the money back so the caller can still commit the failed state.
+            accountsDAO.credit(senderId, amount);
+            return false;
+        }
+
+        return true;
+    }
+}
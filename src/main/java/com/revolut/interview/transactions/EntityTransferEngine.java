@@ -0,0 +1,75 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.account.AccountEntity;
+import com.revolut.interview.account.AccountsDAO;
+import com.revolut.interview.money.Money;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.persistence.LockModeType;
+import java.util.Optional;
+
+import static javax.persistence.LockModeType.WRITE;
+
+//Loads both accounts, does the arithmetic in Java and writes them back. Conflicting writers are detected through the
+//account version when the session flushes.
+@Singleton
+class EntityTransferEngine implements TransferEngine {
+
+    private final AccountsDAO accountsDAO;
+    private final LockModeType lockModeType;
+
+    @Inject
+    EntityTransferEngine(AccountsDAO accountsDAO) {
+        this(accountsDAO, WRITE);
+    }
+
+    EntityTransferEngine(AccountsDAO accountsDAO, LockModeType lockModeType) {
+        this.accountsDAO = accountsDAO;
+        this.lockModeType = lockModeType;
+    }
+
+    @Override
+    public boolean transfer(long transactionId, long senderId, long receiverId, Money amount) {
+        //Accounts are always loaded in ascending id order, so row locks are taken in the same order by everyone.
+        Optional<AccountEntity> senderEntityOptional;
+        Optional<AccountEntity> receiverEntityOptional;
+        if (senderId <= receiverId) {
+            senderEntityOptional = accountsDAO.findById(senderId, lockModeType);
+            receiverEntityOptional = accountsDAO.findById(receiverId, lockModeType);
+        } else {
+            receiverEntityOptional = accountsDAO.findById(receiverId, lockModeType);
+            senderEntityOptional = accountsDAO.findById(senderId, lockModeType);
+        }
+
+        if (senderEntityOptional.isEmpty() || receiverEntityOptional.isEmpty()) {
+            return false;
+        }
+
+        var sender = senderEntityOptional.get();
+        var receiver = receiverEntityOptional.get();
+
+        if (!hasEnoughBalance(sender, amount)) {
+            return false;
+        }
+
+        transferAndUpdateAccounts(amount, sender, receiver);
+
+        return true;
+    }
+
+    private void transferAndUpdateAccounts(Money amountToTransfer, AccountEntity sender, AccountEntity receiver) {
+        var sendersNewBalance = sender.getBalance().minus(amountToTransfer);
+        var receiversNewBalance = receiver.getBalance().plus(amountToTransfer);
+
+        sender.setBalance(sendersNewBalance);
+        receiver.setBalance(receiversNewBalance);
+
+        accountsDAO.update(sender);
+        accountsDAO.update(receiver);
+    }
+
+    private boolean hasEnoughBalance(AccountEntity sender, Money amountToTransfer) {
+        return !sender.getBalance().isLessThan(amountToTransfer);
+    }
+}
@@ -0,0 +1,276 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.lifecycle.Managed;
+import com.revolut.interview.metrics.MetricsSource;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+//Workers pick transfers by priority class first and by sender second, so one client bulk submitting thousands of
+//transfers cannot starve everyone else.
+//
+//While both classes have work, interactive transfers get INTERACTIVE_WEIGHT turns for every bulk one. Within a class
+//every sender with queued transfers gets one turn per round, however many transfers it has queued.
+@Singleton
+class FairTransferExecutor implements Executor, Managed, MetricsSource {
+
+    static final String INTERACTIVE_WEIGHT = "INTERACTIVE_WEIGHT";
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    //Work that is not a transfer, it is queued as interactive.
+    private static final long NO_SENDER = -1;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    private final SenderQueues[] classes;
+    private final int interactiveWeight;
+    private final int queueCapacity;
+    private final long drainTimeoutMillis;
+    private final Thread[] workers;
+
+    private int queued;
+    private int interactiveTurns;
+    private boolean shutdown;
+
+    private final AtomicLong callerRunsCount = new AtomicLong();
+
+    @Inject
+    FairTransferExecutor(@Named(TransactionWorkerPool.WORKER_THREADS) int workerThreads,
+                         @Named(TransactionWorkerPool.QUEUE_CAPACITY) int queueCapacity,
+                         @Named(INTERACTIVE_WEIGHT) int interactiveWeight,
+                         @Named(TransactionWorkerPool.DRAIN_TIMEOUT_MILLIS) long drainTimeoutMillis) {
+        if (interactiveWeight < 1) {
+            throw new IllegalArgumentException("Interactive weight should be at least 1. Provided: " + interactiveWeight);
+        }
+
+        this.interactiveWeight = interactiveWeight;
+        this.queueCapacity = queueCapacity;
+        this.drainTimeoutMillis = drainTimeoutMillis;
+
+        this.classes = new SenderQueues[TransactionPriority.values().length];
+        for (var priority : TransactionPriority.values()) {
+            classes[priority.ordinal()] = new SenderQueues();
+        }
+
+        this.workers = new Thread[workerThreads];
+        for (int i = 0; i < workerThreads; i++) {
+            workers[i] = new Thread(this::work, "transfer-fair-worker-" + (i + 1));
+            workers[i].start();
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        var priority = TransactionPriority.INTERACTIVE;
+        var senderId = NO_SENDER;
+
+        if (task instanceof TransactionTask) {
+            var transaction = ((TransactionTask) task).getTransaction();
+            priority = transaction.getPriority();
+            senderId = transaction.getSenderId();
+        }
+
+        lock.lock();
+        try {
+            if (shutdown) {
+                throw new RejectedExecutionException("Transfer workers are shutting down.");
+            }
+
+            if (queued < queueCapacity) {
+                classes[priority.ordinal()].offer(senderId, new QueuedTask(task, System.nanoTime()));
+                queued++;
+                notEmpty.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        //Same as the worker pool, a full queue slows the caller down instead of dropping the transfer.
+        callerRunsCount.incrementAndGet();
+        task.run();
+    }
+
+    private void work() {
+        while (true) {
+            QueuedTask next;
+
+            lock.lock();
+            try {
+                while (queued == 0 && !shutdown) {
+                    notEmpty.awaitUninterruptibly();
+                }
+
+                if (queued == 0) {
+                    return;
+                }
+
+                next = pickNext();
+                queued--;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                next.task.run();
+            } catch (Exception e) {
+                LOGGER.error("Transfer task failed.", e);
+            }
+        }
+    }
+
+    //Called with the lock held and at least one task queued.
+    private QueuedTask pickNext() {
+        var interactive = classes[TransactionPriority.INTERACTIVE.ordinal()];
+        var bulk = classes[TransactionPriority.BULK.ordinal()];
+
+        if (!interactive.isEmpty() && (bulk.isEmpty() || interactiveTurns < interactiveWeight)) {
+            interactiveTurns++;
+            return interactive.poll();
+        }
+
+        interactiveTurns = 0;
+        return bulk.poll();
+    }
+
+    @Override
+    public void stop() {
+        lock.lock();
+        try {
+            LOGGER.info("Draining {} queued transfers.", queued);
+
+            //Stops accepting new work, workers keep going until everything already queued has run.
+            shutdown = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            var deadline = System.currentTimeMillis() + drainTimeoutMillis;
+            for (var worker : workers) {
+                worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        lock.lock();
+        try {
+            if (queued > 0) {
+                LOGGER.error("Transfer workers did not drain in {}ms. {} transfers left pending.", drainTimeoutMillis, queued);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "fairTransferExecutor";
+    }
+
+    @Override
+    public Map<String, Number> getMetrics() {
+        var metrics = new LinkedHashMap<String, Number>();
+        metrics.put("workers", workers.length);
+        metrics.put("interactiveWeight", interactiveWeight);
+        metrics.put("callerRuns", callerRunsCount.get());
+
+        lock.lock();
+        try {
+            metrics.put("queueDepth", queued);
+            for (var priority : TransactionPriority.values()) {
+                var senderQueues = classes[priority.ordinal()];
+                var prefix = priority.name().toLowerCase() + ".";
+
+                metrics.put(prefix + "queueDepth", senderQueues.size);
+                metrics.put(prefix + "activeSenders", senderQueues.activeSenders.size());
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        for (var priority : TransactionPriority.values()) {
+            var waits = classes[priority.ordinal()].waits;
+            var prefix = priority.name().toLowerCase() + ".";
+
+            metrics.put(prefix + "dispatched", waits.count());
+            metrics.put(prefix + "p50WaitMicros", waits.percentile(0.50));
+            metrics.put(prefix + "p99WaitMicros", waits.percentile(0.99));
+            metrics.put(prefix + "maxWaitMicros", waits.max());
+        }
+
+        return metrics;
+    }
+
+    //One FIFO per sender and a ring of the senders that have something queued. Guarded by the executor lock.
+    private static class SenderQueues {
+
+        private final Map<Long, ArrayDeque<QueuedTask>> bySender = new HashMap<>();
+        private final ArrayDeque<Long> activeSenders = new ArrayDeque<>();
+        private final LatencyHistogram waits = new LatencyHistogram();
+
+        private int size;
+
+        private void offer(long senderId, QueuedTask task) {
+            var senderQueue = bySender.get(senderId);
+
+            if (senderQueue == null) {
+                senderQueue = new ArrayDeque<>();
+                bySender.put(senderId, senderQueue);
+                activeSenders.addLast(senderId);
+            }
+
+            senderQueue.addLast(task);
+            size++;
+        }
+
+        private QueuedTask poll() {
+            var senderId = activeSenders.pollFirst();
+            var senderQueue = bySender.get(senderId);
+            var task = senderQueue.pollFirst();
+
+            if (senderQueue.isEmpty()) {
+                bySender.remove(senderId);
+            } else {
+                activeSenders.addLast(senderId);
+            }
+
+            size--;
+            waits.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - task.enqueuedNanos));
+
+            return task;
+        }
+
+        private boolean isEmpty() {
+            return size == 0;
+        }
+    }
+
+    private static class QueuedTask {
+
+        private final Runnable task;
+        private final long enqueuedNanos;
+
+        private QueuedTask(Runnable task, long enqueuedNanos) {
+            this.task = task;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+}
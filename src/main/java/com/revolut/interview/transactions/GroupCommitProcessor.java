@@ -0,0 +1,417 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.account.AccountCache;
+import com.revolut.interview.lifecycle.Managed;
+import com.revolut.interview.metrics.MetricsSource;
+import com.revolut.interview.notification.NotificationService;
+import com.revolut.interview.notification.TransactionNotification;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static com.revolut.interview.transactions.TransactionExecutor.MAX_ATTEMPTS;
+import static com.revolut.interview.transactions.TransactionState.FAILED;
+import static com.revolut.interview.transactions.TransactionState.IN_PROGRESS;
+import static com.revolut.interview.transactions.TransactionState.PARKED;
+import static com.revolut.interview.transactions.TransactionState.PENDING;
+import static com.revolut.interview.transactions.TransactionState.SUCCEEDED;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+//Collects queued transfers into groups and applies a whole group in one database transaction. Transaction state
+//changes go out as JDBC batches and account updates are batched by Hibernate at flush time.
+//
+//If a group fails it is split in halves and each half is committed on its own, until the failing member is isolated.
+//Only that member is retried, by putting it back on the queue once its backoff delay has passed. While stopping, the
+//committer keeps draining until the retries in flight are back, and a retry due after it has exited is parked.
+//
+//With netting on, the transfers of a group are checked one by one but applied as one net movement per account pair.
+//
+//Group size and linger time adapt to load: a group that fills up before the linger expires means transfers are
+//queueing, so groups get bigger and the committer stops waiting. A lone transfer means there is nothing to wait for.
+@Singleton
+class GroupCommitProcessor implements TransactionProcessor, Managed, MetricsSource {
+
+    static final String MAX_GROUP_SIZE = "MAX_GROUP_SIZE";
+    static final String MAX_LINGER_MICROS = "MAX_LINGER_MICROS";
+    static final String NETTING = "NETTING";
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final int MIN_GROUP_SIZE = 8;
+
+    private final LinkedBlockingQueue<GroupMember> queue = new LinkedBlockingQueue<>();
+
+    private final int maxAttempts;
+    private final int maxGroupSize;
+    private final long maxLingerMicros;
+    private final long drainTimeoutMillis;
+    private final boolean netting;
+
+    private final Provider<Session> sessionProvider;
+    private final TransferEngine transferEngine;
+    private final BilateralNetting bilateralNetting;
+    private final TransactionDAO transactionDAO;
+    private final NotificationService notificationService;
+    private final BackoffStrategy backoffStrategy;
+    private final RetryScheduler retryScheduler;
+    private final TransactionCompletions transactionCompletions;
+    private final AccountCache accountCache;
+
+    private final Thread committer;
+
+    private volatile int groupSize;
+    private volatile long lingerMicros;
+
+    private volatile boolean accepting = true;
+    private volatile boolean committing = true;
+
+    private final AtomicInteger retriesInFlight = new AtomicInteger();
+
+    private final AtomicLong committedGroups = new AtomicLong();
+    private final AtomicLong committedTransfers = new AtomicLong();
+    private final AtomicLong splitGroups = new AtomicLong();
+
+    @Inject
+    GroupCommitProcessor(@Named(MAX_ATTEMPTS) int maxAttempts,
+                         @Named(MAX_GROUP_SIZE) int maxGroupSize,
+                         @Named(MAX_LINGER_MICROS) long maxLingerMicros,
+                         @Named(TransactionWorkerPool.DRAIN_TIMEOUT_MILLIS) long drainTimeoutMillis,
+                         @Named(NETTING) boolean netting,
+                         Provider<Session> sessionProvider,
+                         TransferEngine transferEngine,
+                         BilateralNetting bilateralNetting,
+                         TransactionDAO transactionDAO,
+                         NotificationService notificationService,
+                         BackoffStrategy backoffStrategy,
+                         RetryScheduler retryScheduler,
+                         TransactionCompletions transactionCompletions,
+                         AccountCache accountCache) {
+        this.maxAttempts = maxAttempts;
+        this.maxGroupSize = Math.max(MIN_GROUP_SIZE, maxGroupSize);
+        this.maxLingerMicros = maxLingerMicros;
+        this.drainTimeoutMillis = drainTimeoutMillis;
+        this.netting = netting;
+        this.sessionProvider = sessionProvider;
+        this.transferEngine = transferEngine;
+        this.bilateralNetting = bilateralNetting;
+        this.transactionDAO = transactionDAO;
+        this.notificationService = notificationService;
+        this.backoffStrategy = backoffStrategy;
+        this.retryScheduler = retryScheduler;
+        this.transactionCompletions = transactionCompletions;
+        this.accountCache = accountCache;
+
+        this.groupSize = MIN_GROUP_SIZE;
+        this.lingerMicros = maxLingerMicros;
+
+        this.committer = new Thread(this::commitLoop, "transfer-group-committer");
+        committer.start();
+    }
+
+    @Override
+    public void execute(Transaction transaction) {
+        requireNonNull(transaction, "Transaction cannot be null");
+
+        if (!accepting) {
+            throw new RejectedExecutionException("Group committer is shutting down.");
+        }
+
+        queue.add(new GroupMember(transaction));
+    }
+
+    private void commitLoop() {
+        try {
+            while (accepting || !queue.isEmpty() || retriesInFlight.get() > 0) {
+                try {
+                    var group = collectGroup();
+                    if (!group.isEmpty()) {
+                        commitMembers(group);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    LOGGER.error("Unexpected failure in group committer.", e);
+                }
+            }
+        } finally {
+            committing = false;
+        }
+    }
+
+    private List<GroupMember> collectGroup() throws InterruptedException {
+        var currentGroupSize = groupSize;
+        var group = new ArrayList<GroupMember>(currentGroupSize);
+
+        var first = queue.poll(100, MILLISECONDS);
+        if (first == null) {
+            return group;
+        }
+        group.add(first);
+
+        var lingerDeadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(lingerMicros);
+        while (group.size() < currentGroupSize) {
+            queue.drainTo(group, currentGroupSize - group.size());
+
+            var remaining = lingerDeadline - System.nanoTime();
+            if (group.size() >= currentGroupSize || remaining <= 0) {
+                break;
+            }
+
+            var next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            group.add(next);
+        }
+
+        adapt(group.size(), currentGroupSize);
+
+        return group;
+    }
+
+    private void adapt(int collected, int targetGroupSize) {
+        if (collected >= targetGroupSize) {
+            groupSize = Math.min(maxGroupSize, targetGroupSize * 2);
+            lingerMicros = lingerMicros / 2;
+        } else if (collected == 1) {
+            groupSize = Math.max(MIN_GROUP_SIZE, targetGroupSize / 2);
+            lingerMicros = lingerMicros / 2;
+        } else {
+            lingerMicros = Math.min(maxLingerMicros, Math.max(1, lingerMicros * 2));
+        }
+    }
+
+    private void commitMembers(List<GroupMember> members) {
+        try {
+            applyInDbTransaction(members);
+        } catch (Exception e) {
+            if (members.size() == 1) {
+                LOGGER.error("Transfer could not be committed on its own.", e);
+                retryOrPark(members.get(0));
+                return;
+            }
+
+            LOGGER.warn("Group of {} transfers could not be committed, splitting it.", members.size());
+            splitGroups.incrementAndGet();
+
+            var middle = members.size() / 2;
+            commitMembers(new ArrayList<>(members.subList(0, middle)));
+            commitMembers(new ArrayList<>(members.subList(middle, members.size())));
+            return;
+        }
+
+        committedGroups.incrementAndGet();
+        committedTransfers.addAndGet(members.size());
+
+        members.forEach(this::sendNotification);
+    }
+
+    private void retryOrPark(GroupMember member) {
+        var transactionId = member.transaction.getTransactionId();
+
+        if (member.attemptNumber < maxAttempts) {
+            member.attemptNumber++;
+            member.previousDelayMillis = backoffStrategy.nextDelayMillis(member.attemptNumber, member.previousDelayMillis);
+
+            retriesInFlight.incrementAndGet();
+            retryScheduler.schedule(() -> {
+                try {
+                    //Nothing takes from the queue any more once the committer has exited.
+                    if (committing) {
+                        queue.add(member);
+                    } else {
+                        park(transactionId, "could not be retried before shutdown");
+                    }
+                } finally {
+                    retriesInFlight.decrementAndGet();
+                }
+            }, member.previousDelayMillis);
+        } else {
+            park(transactionId, "ran out of attempts");
+        }
+    }
+
+    private void park(long transactionId, String reason) {
+        //Claims were rolled back with the failed attempts, so the transaction is still pending.
+        if (transactionDAO.updateState(transactionId, PENDING, PARKED)) {
+            LOGGER.error("Transaction {} {} and was parked.", transactionId, reason);
+            transactionCompletions.complete(transactionId, PARKED);
+        }
+    }
+
+    private void applyInDbTransaction(List<GroupMember> members) {
+        var dbTransaction = sessionProvider.get()
+                .beginTransaction();
+
+        try {
+            apply(members);
+            dbTransaction.commit();
+        } catch (RuntimeException e) {
+            members.forEach(GroupMember::reset);
+            dbTransaction.rollback();
+            throw e;
+        }
+    }
+
+    private void apply(List<GroupMember> members) {
+        var claimed = transactionDAO.updateStates(transactionIds(members), PENDING, IN_PROGRESS);
+
+        var claimedMembers = new ArrayList<GroupMember>();
+        for (int i = 0; i < members.size(); i++) {
+            var member = members.get(i);
+            member.claimed = claimed[i];
+
+            if (member.claimed) {
+                claimedMembers.add(member);
+            } else {
+                LOGGER.error("Cannot execute transaction {} as it was not in pending state.", member.transaction.getTransactionId());
+            }
+        }
+
+        var transferred = netting ? bilateralNetting.apply(transactions(claimedMembers)) : transferOneByOne(claimedMembers);
+
+        var succeeded = new ArrayList<GroupMember>();
+        var failed = new ArrayList<GroupMember>();
+
+        for (int i = 0; i < claimedMembers.size(); i++) {
+            var member = claimedMembers.get(i);
+
+            if (transferred[i]) {
+                member.outcome = SUCCEEDED;
+                succeeded.add(member);
+            } else {
+                member.outcome = FAILED;
+                failed.add(member);
+            }
+        }
+
+        if (!succeeded.isEmpty()) {
+            transactionDAO.updateStates(transactionIds(succeeded), IN_PROGRESS, SUCCEEDED);
+        }
+        if (!failed.isEmpty()) {
+            transactionDAO.updateStates(transactionIds(failed), IN_PROGRESS, FAILED);
+        }
+    }
+
+    private boolean[] transferOneByOne(List<GroupMember> members) {
+        var transferred = new boolean[members.size()];
+
+        //Every member sees the balances left by the ones before it, the whole group shares one database transaction.
+        for (int i = 0; i < members.size(); i++) {
+            transferred[i] = transferMoney(members.get(i).transaction);
+        }
+
+        return transferred;
+    }
+
+    private boolean transferMoney(Transaction transaction) {
+        return transferEngine.transfer(transaction.getTransactionId(), transaction.getSenderId(), transaction.getReceiverId(), transaction.getAmountToTransfer());
+    }
+
+    //Runs once the member's group has committed.
+    private void sendNotification(GroupMember member) {
+        if (!member.claimed || member.outcome == null) {
+            return;
+        }
+
+        if (member.outcome == SUCCEEDED) {
+            accountCache.invalidate(member.transaction.getSenderId());
+            accountCache.invalidate(member.transaction.getReceiverId());
+        }
+
+        notificationService.sendNotification(new TransactionNotification(
+                member.transaction.getSenderId(),
+                member.transaction.getReceiverId(),
+                member.outcome == SUCCEEDED,
+                member.transaction.getAmountToTransfer()
+        ));
+        transactionCompletions.complete(member.transaction.getTransactionId(), member.outcome);
+    }
+
+    private static List<Transaction> transactions(List<GroupMember> members) {
+        return members.stream()
+                .map(member -> member.transaction)
+                .collect(Collectors.toList());
+    }
+
+    private static List<Long> transactionIds(List<GroupMember> members) {
+        return members.stream()
+                .map(member -> member.transaction.getTransactionId())
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void stop() {
+        accepting = false;
+
+        try {
+            committer.join(drainTimeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (committer.isAlive()) {
+            LOGGER.error("Group committer did not drain in {}ms. {} transfers left pending.", drainTimeoutMillis, queue.size());
+            committing = false;
+            committer.interrupt();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "groupCommit";
+    }
+
+    @Override
+    public Map<String, Number> getMetrics() {
+        var groups = committedGroups.get();
+
+        var metrics = new LinkedHashMap<String, Number>();
+        metrics.put("queueDepth", queue.size());
+        metrics.put("groupSize", groupSize);
+        metrics.put("lingerMicros", lingerMicros);
+        metrics.put("committedGroups", groups);
+        metrics.put("committedTransfers", committedTransfers.get());
+        metrics.put("averageGroupSize", groups == 0 ? 0 : (double) committedTransfers.get() / groups);
+        metrics.put("splitGroups", splitGroups.get());
+
+        return metrics;
+    }
+
+    private static class GroupMember {
+
+        private final Transaction transaction;
+
+        private int attemptNumber = 1;
+        private long previousDelayMillis;
+
+        private boolean claimed;
+        private TransactionState outcome;
+
+        private GroupMember(Transaction transaction) {
+            this.transaction = transaction;
+        }
+
+        private void reset() {
+            this.claimed = false;
+            this.outcome = null;
+        }
+    }
+}
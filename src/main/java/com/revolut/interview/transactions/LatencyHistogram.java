@@ -0,0 +1,49 @@
+package com.revolut.interview.transactions;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//Power of two buckets in microseconds. Percentiles are reported as the upper bound of their bucket, which is coarse
+//but cheap enough to record on every dispatch.
+class LatencyHistogram {
+
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long micros) {
+        var value = Math.max(0, micros);
+
+        counts.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(value));
+        total.incrementAndGet();
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    long percentile(double quantile) {
+        var recorded = total.get();
+        if (recorded == 0) {
+            return 0;
+        }
+
+        var rank = (long) Math.ceil(quantile * recorded);
+        var seen = 0L;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return bucket == 0 ? 0 : Math.min((1L << bucket) - 1, max.get());
+            }
+        }
+
+        return max.get();
+    }
+
+    long max() {
+        return max.get();
+    }
+
+    long count() {
+        return total.get();
+    }
+}
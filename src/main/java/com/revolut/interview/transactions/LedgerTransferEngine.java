@@ -0,0 +1,26 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.account.AccountLedger;
+import com.revolut.interview.money.Money;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+//Moves the money in the account ledger, so the caller's database transaction only carries the state of the
+//transaction. Used instead of every other engine when balances are kept in the ledger: with no account rows being
+//written there is nothing to shard, version or lock.
+@Singleton
+class LedgerTransferEngine implements TransferEngine {
+
+    private final AccountLedger accountLedger;
+
+    @Inject
+    LedgerTransferEngine(AccountLedger accountLedger) {
+        this.accountLedger = accountLedger;
+    }
+
+    @Override
+    public boolean transfer(long transactionId, long senderId, long receiverId, Money amount) {
+        return accountLedger.transfer(transactionId, senderId, receiverId, amount);
+    }
+}
@@ -0,0 +1,19 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.account.AccountsDAO;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import static javax.persistence.LockModeType.PESSIMISTIC_WRITE;
+
+//Takes row locks on both accounts, lower id first, before touching them. Transfers on a hot account queue up on the
+//row lock instead of losing the version check and burning attempts. The fixed order keeps them free of deadlocks.
+@Singleton
+class PessimisticOrderedTransferEngine extends EntityTransferEngine {
+
+    @Inject
+    PessimisticOrderedTransferEngine(AccountsDAO accountsDAO) {
+        super(accountsDAO, PESSIMISTIC_WRITE);
+    }
+}
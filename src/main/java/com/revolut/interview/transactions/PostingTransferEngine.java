@@ -0,0 +1,41 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.account.PostingsDAO;
+import com.revolut.interview.money.Money;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+//With -Dpersistence.postings=true, records every transfer that goes through as a debit posting of the sender and a
+//credit posting of the receiver, in the database transaction that moved the balances. The balances on the account
+//rows are then an aggregate of the postings, which stay behind as the history of every account.
+//
+//The postings are plain inserts, so concurrent transfers never wait on each other for them. Paired with
+//conditional-update, the aggregate itself is maintained with guarded delta updates rather than written back from
+//loaded entities.
+@Singleton
+class PostingTransferEngine implements TransferEngine {
+
+    static final String POSTED_ENGINE = "POSTED_ENGINE";
+
+    private final TransferEngine postedEngine;
+    private final PostingsDAO postingsDAO;
+
+    @Inject
+    PostingTransferEngine(@Named(POSTED_ENGINE) TransferEngine postedEngine, PostingsDAO postingsDAO) {
+        this.postedEngine = postedEngine;
+        this.postingsDAO = postingsDAO;
+    }
+
+    @Override
+    public boolean transfer(long transactionId, long senderId, long receiverId, Money amount) {
+        if (!postedEngine.transfer(transactionId, senderId, receiverId, amount)) {
+            return false;
+        }
+
+        postingsDAO.saveTransfer(transactionId, senderId, receiverId, amount);
+
+        return true;
+    }
+}
@@ -0,0 +1,6 @@
+package com.revolut.interview.transactions;
+
+interface RetryScheduler {
+
+    void schedule(Runnable retry, long delayMillis);
+}
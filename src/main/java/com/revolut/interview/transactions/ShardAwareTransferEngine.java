@@ -0,0 +1,44 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.account.AccountShards;
+import com.revolut.interview.money.Money;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+//Sits in front of the configured engine. Transfers touching a sharded account are moved with guarded updates through
+//the account shards, so they never load and version the hot account row. Everything else goes to the configured engine.
+@Singleton
+class ShardAwareTransferEngine implements TransferEngine {
+
+    static final String UNSHARDED_ENGINE = "UNSHARDED_ENGINE";
+
+    private final TransferEngine unshardedEngine;
+    private final AccountShards accountShards;
+
+    @Inject
+    ShardAwareTransferEngine(@Named(UNSHARDED_ENGINE) TransferEngine unshardedEngine, AccountShards accountShards) {
+        this.unshardedEngine = unshardedEngine;
+        this.accountShards = accountShards;
+    }
+
+    @Override
+    public boolean transfer(long transactionId, long senderId, long receiverId, Money amount) {
+        if (!accountShards.isSharded(senderId) && !accountShards.isSharded(receiverId)) {
+            return unshardedEngine.transfer(transactionId, senderId, receiverId, amount);
+        }
+
+        if (!accountShards.debit(senderId, amount)) {
+            return false;
+        }
+
+        if (!accountShards.credit(receiverId, amount)) {
+            //Receiver does not exist. Give the money back so the caller can still commit the failed state.
+            accountShards.credit(senderId, amount);
+            return false;
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,80 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.lifecycle.Managed;
+import com.revolut.interview.metrics.MetricsSource;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+//A single timer thread that only waits. Retries are expected to hand the actual work back to an executor once due.
+@Singleton
+class TimerRetryScheduler implements RetryScheduler, Managed, MetricsSource {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final ScheduledThreadPoolExecutor timer;
+    private final long drainTimeoutMillis;
+
+    private final AtomicLong scheduledRetries = new AtomicLong();
+
+    @Inject
+    TimerRetryScheduler(@Named(TransactionWorkerPool.DRAIN_TIMEOUT_MILLIS) long drainTimeoutMillis) {
+        this.drainTimeoutMillis = drainTimeoutMillis;
+        this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            var thread = new Thread(runnable, "transfer-retry-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    @Override
+    public void schedule(Runnable retry, long delayMillis) {
+        scheduledRetries.incrementAndGet();
+        timer.schedule(() -> {
+            try {
+                retry.run();
+            } catch (Exception e) {
+                LOGGER.error("Retry could not be handed over for execution.", e);
+            }
+        }, delayMillis, MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        //Retries that are already scheduled still fire, so they reach the executors before those drain.
+        timer.shutdown();
+
+        try {
+            if (!timer.awaitTermination(drainTimeoutMillis, MILLISECONDS)) {
+                LOGGER.error("{} retries were not handed over before shutdown.", timer.shutdownNow().size());
+            }
+        } catch (InterruptedException e) {
+            timer.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "retryScheduler";
+    }
+
+    @Override
+    public Map<String, Number> getMetrics() {
+        var metrics = new LinkedHashMap<String, Number>();
+        metrics.put("pendingRetries", timer.getQueue().size());
+        metrics.put("scheduledRetries", scheduledRetries.get());
+
+        return metrics;
+    }
+}
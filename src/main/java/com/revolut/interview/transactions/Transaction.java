@@ -1,21 +1,27 @@
 package com.revolut.interview.transactions;
 
-import java.math.BigDecimal;
+import com.revolut.interview.money.Money;
 
 public class Transaction {
 
     private final long transactionId;
     private final long senderId;
     private final long receiverId;
-    private final BigDecimal amountToTransfer;
+    private final Money amountToTransfer;
     private final TransactionState transactionState;
+    private final TransactionPriority priority;
 
-    public Transaction(long transactionId, long senderId, long receiverId, BigDecimal amountToTransfer, TransactionState transactionState) {
+    public Transaction(long transactionId, long senderId, long receiverId, Money amountToTransfer, TransactionState transactionState) {
+        this(transactionId, senderId, receiverId, amountToTransfer, transactionState, TransactionPriority.INTERACTIVE);
+    }
+
+    public Transaction(long transactionId, long senderId, long receiverId, Money amountToTransfer, TransactionState transactionState, TransactionPriority priority) {
         this.transactionId = transactionId;
         this.senderId = senderId;
         this.receiverId = receiverId;
         this.amountToTransfer = amountToTransfer;
         this.transactionState = transactionState;
+        this.priority = priority;
     }
 
     public long getTransactionId() {
@@ -30,7 +36,7 @@ public class Transaction {
         return receiverId;
     }
 
-    public BigDecimal getAmountToTransfer() {
+    public Money getAmountToTransfer() {
         return amountToTransfer;
     }
 
@@ -38,6 +44,10 @@ public class Transaction {
         return transactionState;
     }
 
+    public TransactionPriority getPriority() {
+        return priority;
+    }
+
     @Override
     public String toString() {
         return "Transaction{" +
@@ -45,6 +55,7 @@ public class Transaction {
                 ", senderId=" + senderId +
                 ", receiverId=" + receiverId +
                 ", amountToTransfer=" + amountToTransfer +
+                ", priority=" + priority +
                 '}';
     }
 }
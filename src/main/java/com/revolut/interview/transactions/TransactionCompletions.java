@@ -0,0 +1,59 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.metrics.MetricsSource;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+//Hands out a future per queued transaction that completes with its outcome. Processors complete it where they send the
+//notification, with SUCCEEDED, FAILED or PARKED.
+//
+//A transaction that never reaches one of those states, for example because it was not pending when it got to the
+//processor, has its future completed exceptionally after the timeout so nothing is kept around forever.
+@Singleton
+class TransactionCompletions implements MetricsSource {
+
+    static final String COMPLETION_TIMEOUT_MILLIS = "COMPLETION_TIMEOUT_MILLIS";
+
+    private final Map<Long, CompletableFuture<TransactionState>> completions = new ConcurrentHashMap<>();
+
+    private final long timeoutMillis;
+
+    @Inject
+    TransactionCompletions(@Named(COMPLETION_TIMEOUT_MILLIS) long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    CompletableFuture<TransactionState> register(long transactionId) {
+        return completions.computeIfAbsent(transactionId, id -> {
+            var completion = new CompletableFuture<TransactionState>();
+            completion.orTimeout(timeoutMillis, MILLISECONDS)
+                    .whenComplete((state, exception) -> completions.remove(id, completion));
+
+            return completion;
+        });
+    }
+
+    void complete(long transactionId, TransactionState transactionState) {
+        var completion = completions.remove(transactionId);
+        if (completion != null) {
+            completion.complete(transactionState);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "transactionCompletions";
+    }
+
+    @Override
+    public Map<String, Number> getMetrics() {
+        return Map.of("awaitingCompletion", completions.size());
+    }
+}
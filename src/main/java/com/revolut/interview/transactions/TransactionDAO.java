@@ -1,16 +1,24 @@
 package com.revolut.interview.transactions;
 
+import com.revolut.interview.money.Money;
 import com.revolut.interview.persistence.AbstractDAO;
+import org.hibernate.ScrollMode;
 import org.hibernate.Session;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 @Singleton
 public class TransactionDAO extends AbstractDAO<TransactionEntity> {
 
+    //Matches hibernate.jdbc.batch_size.
+    private static final int SAVE_BATCH_SIZE = 50;
+    private static final int EXPORT_FETCH_SIZE = 1000;
+
     @Inject
     TransactionDAO(Provider<Session> sessionProvider) {
         super(sessionProvider);
@@ -27,14 +35,154 @@ public class TransactionDAO extends AbstractDAO<TransactionEntity> {
         });
     }
 
-    @SuppressWarnings("unchecked")
-    public List<TransactionEntity> findAllWithAccountId(long accountId) {
+    //Same as updateState for many transactions at once, sent to the database as a single JDBC batch.
+    public boolean[] updateStates(List<Long> ids, TransactionState currentState, TransactionState newState) {
+        return runInTransactionOrStartNewIfNotRunning(session -> session.doReturningWork(connection -> {
+            try (var statement = connection.prepareStatement("UPDATE transactions SET state = ? WHERE id = ? AND state = ?")) {
+                for (var id : ids) {
+                    statement.setString(1, newState.name());
+                    statement.setLong(2, id);
+                    statement.setString(3, currentState.name());
+                    statement.addBatch();
+                }
+
+                var updateCounts = statement.executeBatch();
+                var updated = new boolean[updateCounts.length];
+                for (int i = 0; i < updateCounts.length; i++) {
+                    updated[i] = updateCounts[i] > 0;
+                }
+
+                return updated;
+            }
+        }));
+    }
+
+    //Moves a pending transaction to in progress and reads back what is needed to execute it, on the same connection and
+    //in the same database transaction. Empty when the transaction does not exist or is not pending.
+    public Optional<Transaction> claim(long id) {
+        return runInTransactionOrStartNewIfNotRunning(session -> session.doReturningWork(connection -> {
+            try (var update = connection.prepareStatement("UPDATE transactions SET state = ? WHERE id = ? AND state = ?")) {
+                update.setString(1, TransactionState.IN_PROGRESS.name());
+                update.setLong(2, id);
+                update.setString(3, TransactionState.PENDING.name());
+
+                if (update.executeUpdate() != 1) {
+                    return Optional.empty();
+                }
+            }
+
+            try (var select = connection.prepareStatement("SELECT sender_id, receiver_id, amount, priority FROM transactions WHERE id = ?")) {
+                select.setLong(1, id);
+
+                try (var resultSet = select.executeQuery()) {
+                    if (!resultSet.next()) {
+                        return Optional.empty();
+                    }
+
+                    return Optional.of(new Transaction(
+                            id,
+                            resultSet.getLong(1),
+                            resultSet.getLong(2),
+                            Money.ofMinor(resultSet.getLong(3)),
+                            TransactionState.IN_PROGRESS,
+                            TransactionPriority.valueOf(resultSet.getString(4))
+                    ));
+                }
+            }
+        }));
+    }
+
+    //Inserts all the transactions in one database transaction. The session is flushed and cleared every SAVE_BATCH_SIZE
+    //rows, which hibernate.jdbc.batch_size turns into one JDBC batch each.
+    public List<TransactionEntity> saveAll(List<TransactionEntity> transactions) {
         return runInTransactionOrStartNewIfNotRunning(session -> {
-            var query = session.createQuery("FROM transactions WHERE sender_id = :sender_id OR receiver_id = :receiver_id");
-            query.setParameter("sender_id", accountId);
-            query.setParameter("receiver_id", accountId);
+            for (int i = 0; i < transactions.size(); i++) {
+                var transaction = transactions.get(i);
+                transaction.setId((Long) session.save(transaction));
+
+                if ((i + 1) % SAVE_BATCH_SIZE == 0) {
+                    session.flush();
+                    session.clear();
+                }
+            }
+
+            return transactions;
+        });
+    }
+
+    public Optional<TransactionEntity> findByIdempotencyKey(String idempotencyKey) {
+        return runInTransactionOrStartNewIfNotRunning(session ->
+                session.createQuery("FROM transactions WHERE idempotencyKey = :idempotencyKey", TransactionEntity.class)
+                        .setParameter("idempotencyKey", idempotencyKey)
+                        .uniqueResultOptional()
+        );
+    }
+
+    public List<Long> findIdsByState(TransactionState state, long afterId, int limit) {
+        return runInTransactionOrStartNewIfNotRunning(session -> {
+            var query = session.createQuery("SELECT id FROM transactions WHERE state = :state AND id > :afterId ORDER BY id", Long.class);
+            query.setParameter("state", state);
+            query.setParameter("afterId", afterId);
+            query.setMaxResults(limit);
 
             return query.list();
         });
     }
+
+    public List<TransactionEntity> findAllWithAccountId(long accountId) {
+        return findPageWithAccountId(accountId, Long.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    //Transactions sent or received by the account, newest first, starting below beforeId. Each half of the union
+    //walks its own account index from beforeId and stops after limit rows, where an OR would scan the whole table, so
+    //a page costs the same however long the history is.
+    public List<TransactionEntity> findPageWithAccountId(long accountId, long beforeId, int limit) {
+        return findPageWithAccountId(accountId, 0, beforeId, limit);
+    }
+
+    //Same, stopping at fromId. Ids are time ordered, TimeOrderedIds.firstIdAt turns a time range into an id range.
+    public List<TransactionEntity> findPageWithAccountId(long accountId, long fromId, long beforeId, int limit) {
+        return runInTransactionOrStartNewIfNotRunning(session ->
+                session.createNativeQuery("SELECT * FROM (SELECT * FROM transactions WHERE sender_id = :accountId AND id >= :fromId AND id < :beforeId ORDER BY id DESC LIMIT :limit) sent "
+                        + "UNION ALL "
+                        + "SELECT * FROM (SELECT * FROM transactions WHERE receiver_id = :accountId AND sender_id <> :accountId AND id >= :fromId AND id < :beforeId ORDER BY id DESC LIMIT :limit) received "
+                        + "ORDER BY id DESC LIMIT :limit", TransactionEntity.class)
+                        .setParameter("accountId", accountId)
+                        .setParameter("fromId", fromId)
+                        .setParameter("beforeId", beforeId)
+                        .setParameter("limit", limit)
+                        .list()
+        );
+    }
+
+    //Every transaction sent or received by the account, oldest first, handed to the consumer one row at a time. Rows
+    //come off a forward only cursor as plain columns, so neither the result set nor the session grows with the history.
+    public void forEachWithAccountId(long accountId, Consumer<Transaction> consumer) {
+        runInTransactionOrStartNewIfNotRunning(session -> {
+            try (var rows = session.createNativeQuery("SELECT id, sender_id, receiver_id, amount, state, priority FROM transactions WHERE sender_id = :accountId "
+                    + "UNION ALL "
+                    + "SELECT id, sender_id, receiver_id, amount, state, priority FROM transactions WHERE receiver_id = :accountId AND sender_id <> :accountId "
+                    + "ORDER BY id")
+                    .setParameter("accountId", accountId)
+                    .setFetchSize(EXPORT_FETCH_SIZE)
+                    .setReadOnly(true)
+                    .scroll(ScrollMode.FORWARD_ONLY)) {
+
+                while (rows.next()) {
+                    var row = rows.get();
+
+                    consumer.accept(new Transaction(
+                            ((Number) row[0]).longValue(),
+                            ((Number) row[1]).longValue(),
+                            ((Number) row[2]).longValue(),
+                            Money.ofMinor(((Number) row[3]).longValue()),
+                            TransactionState.valueOf((String) row[4]),
+                            TransactionPriority.valueOf((String) row[5])
+                    ));
+                }
+            }
+
+            return null;
+        });
+    }
 }
@@ -1,66 +1,104 @@
 package com.revolut.interview.transactions;
 
 import com.revolut.interview.account.AccountEntity;
+import com.revolut.interview.money.Money;
+import com.revolut.interview.money.MoneyConverter;
 import com.revolut.interview.persistence.BaseEntity;
 
 import javax.persistence.Column;
+import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
+import javax.persistence.FetchType;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
-import javax.persistence.OneToOne;
-import java.math.BigDecimal;
+import javax.persistence.ManyToOne;
+import javax.persistence.Table;
 import java.util.Objects;
 
+//History is read per account newest first, so each side of a transfer has an index ordered by id.
 @Entity(name = "transactions")
+@Table(indexes = {
+        @Index(name = "idx_transactions_sender_id", columnList = "sender_id, id DESC"),
+        @Index(name = "idx_transactions_receiver_id", columnList = "receiver_id, id DESC")
+})
 public class TransactionEntity extends BaseEntity {
 
-    @JoinColumn(name = "sender_id", nullable = false)
-    @OneToOne
+    public static final int IDEMPOTENCY_KEY_MAX_LENGTH = 64;
+
+    //Written and read as plain ids, so creating or loading a transaction never needs to load an account. The
+    //associations are only there for the foreign keys and are loaded lazily if ever used.
+    @Column(name = "sender_id", nullable = false)
+    private long senderId;
+
+    @Column(name = "receiver_id", nullable = false)
+    private long receiverId;
+
+    @JoinColumn(name = "sender_id", insertable = false, updatable = false)
+    @ManyToOne(fetch = FetchType.LAZY)
     private AccountEntity sender;
 
-    @JoinColumn(name = "receiver_id", nullable = false)
-    @OneToOne
+    @JoinColumn(name = "receiver_id", insertable = false, updatable = false)
+    @ManyToOne(fetch = FetchType.LAZY)
     private AccountEntity receiver;
 
     @Column(name = "amount", nullable = false)
-    private BigDecimal amount;
+    @Convert(converter = MoneyConverter.class)
+    private Money amount;
 
     @Enumerated(value = EnumType.STRING)
     @Column(name = "state", nullable = false)
     private TransactionState transactionState;
 
+    @Enumerated(value = EnumType.STRING)
+    @Column(name = "priority", nullable = false)
+    private TransactionPriority priority = TransactionPriority.INTERACTIVE;
+
+    //Set by clients that may retry the same transfer. Unique, so a retry can never create a second transaction.
+    @Column(name = "idempotency_key", unique = true, length = IDEMPOTENCY_KEY_MAX_LENGTH)
+    private String idempotencyKey;
+
     public TransactionEntity() {
     }
 
-    public TransactionEntity(AccountEntity senderEntity, AccountEntity receiverEntity, BigDecimal amount, TransactionState transactionState) {
-        this.sender = senderEntity;
-        this.receiver = receiverEntity;
+    public TransactionEntity(AccountEntity senderEntity, AccountEntity receiverEntity, Money amount, TransactionState transactionState) {
+        this(senderEntity, receiverEntity, amount, transactionState, TransactionPriority.INTERACTIVE);
+    }
+
+    public TransactionEntity(AccountEntity senderEntity, AccountEntity receiverEntity, Money amount, TransactionState transactionState, TransactionPriority priority) {
+        this(senderEntity.getId(), receiverEntity.getId(), amount, transactionState, priority);
+    }
+
+    public TransactionEntity(long senderId, long receiverId, Money amount, TransactionState transactionState, TransactionPriority priority) {
+        this.senderId = senderId;
+        this.receiverId = receiverId;
         this.amount = amount;
         this.transactionState = transactionState;
+        this.priority = priority;
     }
 
     public AccountEntity getSender() {
         return sender;
     }
 
-    public void setSender(AccountEntity sender) {
-        this.sender = sender;
+    public long getSenderId() {
+        return senderId;
     }
 
     public AccountEntity getReceiver() {
         return receiver;
     }
 
-    public void setReceiver(AccountEntity receiver) {
-        this.receiver = receiver;
+    public long getReceiverId() {
+        return receiverId;
     }
 
-    public BigDecimal getAmount() {
+    public Money getAmount() {
         return amount;
     }
 
-    public void setAmount(BigDecimal amount) {
+    public void setAmount(Money amount) {
         this.amount = amount;
     }
 
@@ -72,20 +110,36 @@ public class TransactionEntity extends BaseEntity {
         this.transactionState = transactionState;
     }
 
+    public TransactionPriority getPriority() {
+        return priority;
+    }
+
+    public void setPriority(TransactionPriority priority) {
+        this.priority = priority;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (!(o instanceof TransactionEntity)) return false;
         if (!super.equals(o)) return false;
         TransactionEntity that = (TransactionEntity) o;
-        return Objects.equals(sender, that.sender) &&
-                Objects.equals(receiver, that.receiver) &&
-                amount.compareTo(that.amount) == 0 &&
+        return senderId == that.senderId &&
+                receiverId == that.receiverId &&
+                amount.equals(that.amount) &&
                 transactionState == that.transactionState;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), sender, receiver, amount, transactionState);
+        return Objects.hash(super.hashCode(), senderId, receiverId, amount, transactionState);
     }
 }
@@ -1,7 +1,6 @@
 package com.revolut.interview.transactions;
 
-import com.revolut.interview.account.AccountEntity;
-import com.revolut.interview.account.AccountsDAO;
+import com.revolut.interview.account.AccountCache;
 import com.revolut.interview.notification.NotificationService;
 import com.revolut.interview.notification.TransactionNotification;
 import org.apache.logging.log4j.LogManager;
@@ -12,19 +11,19 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
+import javax.persistence.LockTimeoutException;
 import javax.persistence.OptimisticLockException;
-import java.math.BigDecimal;
+import javax.persistence.PessimisticLockException;
 import java.util.concurrent.Executor;
 
 import static com.revolut.interview.transactions.TransactionState.FAILED;
 import static com.revolut.interview.transactions.TransactionState.IN_PROGRESS;
-import static com.revolut.interview.transactions.TransactionState.PENDING;
+import static com.revolut.interview.transactions.TransactionState.PARKED;
 import static com.revolut.interview.transactions.TransactionState.SUCCEEDED;
 import static java.util.Objects.requireNonNull;
-import static javax.persistence.LockModeType.WRITE;
 
 @Singleton
-class TransactionExecutor {
+class TransactionExecutor implements TransactionProcessor {
 
     static final String MAX_ATTEMPTS = "MAX_ATTEMPTS";
 
@@ -36,137 +35,171 @@ class TransactionExecutor {
 
     private final Provider<Session> sessionProvider;
 
-    private final AccountsDAO accountsDAO;
+    private final TransferEngine transferEngine;
     private final TransactionDAO transactionDAO;
 
     private final NotificationService notificationService;
     private final BackoffStrategy backoffStrategy;
+    private final RetryScheduler retryScheduler;
+    private final AccountLockManager accountLockManager;
+    private final TransactionCompletions transactionCompletions;
+    private final AccountCache accountCache;
 
     @Inject
     TransactionExecutor(@Named(MAX_ATTEMPTS) int maxAttempts,
                         Executor transactionExecutor,
                         Provider<Session> sessionProvider,
-                        AccountsDAO accountsDAO,
+                        TransferEngine transferEngine,
                         TransactionDAO transactionDAO,
                         NotificationService notificationService,
-                        BackoffStrategy backoffStrategy) {
+                        BackoffStrategy backoffStrategy,
+                        RetryScheduler retryScheduler,
+                        AccountLockManager accountLockManager,
+                        TransactionCompletions transactionCompletions,
+                        AccountCache accountCache) {
         this.maxAttempts = maxAttempts;
         this.transactionExecutor = transactionExecutor;
         this.sessionProvider = sessionProvider;
-        this.accountsDAO = accountsDAO;
+        this.transferEngine = transferEngine;
         this.transactionDAO = transactionDAO;
         this.notificationService = notificationService;
         this.backoffStrategy = backoffStrategy;
+        this.retryScheduler = retryScheduler;
+        this.accountLockManager = accountLockManager;
+        this.transactionCompletions = transactionCompletions;
+        this.accountCache = accountCache;
     }
 
-    void execute(Transaction transaction) {
+    @Override
+    public void execute(Transaction transaction) {
         requireNonNull(transaction, "Transaction cannot be null");
-        transactionExecutor.execute(() -> executeTransaction(transaction));
+        transactionExecutor.execute(new TransactionTask(transaction, () -> executeTransaction(transaction)));
     }
 
     private void executeTransaction(Transaction transaction) {
         LOGGER.debug("Executing transaction {}", transaction);
 
-        var stateUpdatedSuccessfully = transactionDAO.updateState(transaction.getTransactionId(), PENDING, IN_PROGRESS);
-        var transactionEntity = transactionDAO.findById(transaction.getTransactionId())
-                .orElseThrow(() -> new IllegalArgumentException("Transaction does not exist on database. ID: " + transaction.getTransactionId()));
+        //Claims the transaction and reads back ids and amount on one connection, the accounts are not loaded here.
+        var claimedTransaction = transactionDAO.claim(transaction.getTransactionId());
 
-        if (stateUpdatedSuccessfully) {
-            executeTransaction(transactionEntity, 1);
+        if (claimedTransaction.isPresent()) {
+            executeTransaction(claimedTransaction.get(), 1, 0);
         } else {
+            var transactionEntity = transactionDAO.findById(transaction.getTransactionId())
+                    .orElseThrow(() -> new IllegalArgumentException("Transaction does not exist on database. ID: " + transaction.getTransactionId()));
+
             LOGGER.error("Cannot execute transaction as transaction was not in pending state. State {}", transactionEntity.getTransactionState());
         }
 
         LOGGER.debug("Transaction execution completed {}", transaction);
     }
 
-    private void executeTransaction(TransactionEntity transactionEntity, int attemptNumber) {
+    private void executeTransaction(Transaction transaction, int attemptNumber, long previousDelayMillis) {
+        //Held until the database transaction is over, so the next transfer on these accounts sees the committed balances.
+        accountLockManager.lock(transaction.getSenderId(), transaction.getReceiverId());
+        try {
+            attemptTransfer(transaction, attemptNumber, previousDelayMillis);
+        } finally {
+            accountLockManager.unlock(transaction.getSenderId(), transaction.getReceiverId());
+        }
+    }
+
+    private void attemptTransfer(Transaction transaction, int attemptNumber, long previousDelayMillis) {
         var dbTransaction = sessionProvider.get()
                 .beginTransaction();
 
         try {
-            transferMoney(transactionEntity);
+            var transactionState = transferMoney(transaction);
             dbTransaction.commit();
+
+            //Only announced once committed, a failed commit is retried and may end up with another outcome.
+            transactionCompleted(transaction, transactionState);
         } catch (OptimisticLockException e) {
             LOGGER.error("Transaction could not be completed because account was updated.", e);
 
             dbTransaction.rollback();
 
-            retryIfNeeded(transactionEntity, attemptNumber);
+            retryIfNeeded(transaction, attemptNumber, previousDelayMillis);
+        } catch (PessimisticLockException | LockTimeoutException e) {
+            LOGGER.error("Transaction could not be completed because account lock was not acquired in time.", e);
+
+            dbTransaction.rollback();
+
+            retryIfNeeded(transaction, attemptNumber, previousDelayMillis);
         } catch (Exception e) {
             LOGGER.error("An unhandled exception occurred while executing the transaction.", e);
 
             dbTransaction.rollback();
 
-            transactionFailed(transactionEntity);
+            transactionFailed(transaction);
         }
     }
 
-    private void retryIfNeeded(TransactionEntity transactionEntity, int attemptNumber) {
+    private void retryIfNeeded(Transaction transaction, int attemptNumber, long previousDelayMillis) {
         if (attemptNumber < maxAttempts) {
-            backoffStrategy.backOff(attemptNumber + 1);
-            executeTransaction(transactionEntity, attemptNumber + 1);
-        } else {
-            transactionFailed(transactionEntity);
-        }
-    }
+            var nextAttempt = attemptNumber + 1;
+            var delayMillis = backoffStrategy.nextDelayMillis(nextAttempt, previousDelayMillis);
 
-    private void transferMoney(TransactionEntity transactionEntity) {
-        var amountToTransfer = transactionEntity.getAmount();
-        var senderEntityOptional = accountsDAO.findById(transactionEntity.getSender().getId(), WRITE);
-        var receiverEntityOptional = accountsDAO.findById(transactionEntity.getReceiver().getId(), WRITE);
-
-        if (senderEntityOptional.isPresent() && receiverEntityOptional.isPresent()) {
-            var sender = senderEntityOptional.get();
-            var receiver = receiverEntityOptional.get();
-
-            if (hasEnoughBalance(sender, amountToTransfer)) {
-                transferAndUpdateAccounts(amountToTransfer, sender, receiver);
-                transactionSuccessful(transactionEntity);
-            } else {
-                transactionFailed(transactionEntity);
-            }
+            //The retry goes back through the executor once due instead of holding on to the current thread.
+            var retry = new TransactionTask(transaction, () -> executeTransaction(transaction, nextAttempt, delayMillis));
+            retryScheduler.schedule(() -> transactionExecutor.execute(retry), delayMillis);
         } else {
-            transactionFailed(transactionEntity);
+            transactionParked(transaction);
         }
     }
 
-    private void transferAndUpdateAccounts(BigDecimal amountToTransfer, AccountEntity sender, AccountEntity receiver) {
-        var sendersNewBalance = sender.getBalance().subtract(amountToTransfer);
-        var receiversNewBalance = receiver.getBalance().add(amountToTransfer);
+    private TransactionState transferMoney(Transaction transaction) {
+        var transferred = transferEngine.transfer(
+                transaction.getTransactionId(),
+                transaction.getSenderId(),
+                transaction.getReceiverId(),
+                transaction.getAmountToTransfer()
+        );
 
-        sender.setBalance(sendersNewBalance);
-        receiver.setBalance(receiversNewBalance);
+        var transactionState = transferred ? SUCCEEDED : FAILED;
+        updateState(transaction, transactionState);
 
-        accountsDAO.update(sender);
-        accountsDAO.update(receiver);
+        return transactionState;
     }
 
-    private boolean hasEnoughBalance(AccountEntity sender, BigDecimal amountToTransfer) {
-        return sender.getBalance().compareTo(amountToTransfer) >= 0;
+    private void transactionFailed(Transaction transaction) {
+        updateState(transaction, FAILED);
+
+        transactionCompleted(transaction, FAILED);
     }
 
-    private void transactionSuccessful(TransactionEntity transactionEntity) {
-        transactionEntity.setTransactionState(SUCCEEDED);
-        transactionDAO.update(transactionEntity);
+    private void transactionParked(Transaction transaction) {
+        LOGGER.error("Transaction {} ran out of attempts and was parked.", transaction.getTransactionId());
+
+        //Not a final outcome, so nobody is notified until it is reprocessed.
+        updateState(transaction, PARKED);
 
-        sendNotification(transactionEntity, true);
+        transactionCompletions.complete(transaction.getTransactionId(), PARKED);
     }
 
-    private void transactionFailed(TransactionEntity transactionEntity) {
-        transactionEntity.setTransactionState(FAILED);
-        transactionDAO.update(transactionEntity);
+    private void updateState(Transaction transaction, TransactionState transactionState) {
+        if (!transactionDAO.updateState(transaction.getTransactionId(), IN_PROGRESS, transactionState)) {
+            throw new IllegalStateException("Transaction is no longer in progress. ID: " + transaction.getTransactionId());
+        }
+    }
+
+    private void transactionCompleted(Transaction transaction, TransactionState transactionState) {
+        if (transactionState == SUCCEEDED) {
+            accountCache.invalidate(transaction.getSenderId());
+            accountCache.invalidate(transaction.getReceiverId());
+        }
 
-        sendNotification(transactionEntity, false);
+        sendNotification(transaction, transactionState == SUCCEEDED);
+        transactionCompletions.complete(transaction.getTransactionId(), transactionState);
     }
 
-    private void sendNotification(TransactionEntity transactionEntity, boolean isSuccessful) {
+    private void sendNotification(Transaction transaction, boolean isSuccessful) {
         //An assumption is made that this will never throw any exception.
         notificationService.sendNotification(new TransactionNotification(
-                        transactionEntity.getSender().getId(),
-                        transactionEntity.getReceiver().getId(),
+                        transaction.getSenderId(),
+                        transaction.getReceiverId(),
                         isSuccessful,
-                        transactionEntity.getAmount()
+                        transaction.getAmountToTransfer()
                 )
         );
     }
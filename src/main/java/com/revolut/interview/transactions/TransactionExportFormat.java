@@ -0,0 +1,36 @@
+package com.revolut.interview.transactions;
+
+enum TransactionExportFormat {
+
+    JSON("application/json"),
+    CSV("text/csv");
+
+    private final String contentType;
+
+    TransactionExportFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    String getContentType() {
+        return contentType;
+    }
+
+    String getFileExtension() {
+        return name().toLowerCase();
+    }
+
+    //JSON when no format is asked for.
+    static TransactionExportFormat fromParam(String format) {
+        if (format == null) {
+            return JSON;
+        }
+
+        for (var exportFormat : values()) {
+            if (exportFormat.name().equalsIgnoreCase(format)) {
+                return exportFormat;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown export format: " + format);
+    }
+}
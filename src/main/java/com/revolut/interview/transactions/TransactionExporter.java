@@ -0,0 +1,78 @@
+package com.revolut.interview.transactions;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+//Writes the full history of an account as it is read from the database, so a statement for an account with millions
+//of transactions needs no more memory than one with ten.
+@Singleton
+class TransactionExporter {
+
+    private static final String CSV_HEADER = "transactionId,senderId,receiverId,amountToTransfer,transactionState,priority";
+
+    private final TransactionService transactionService;
+    private final Gson gson;
+
+    @Inject
+    TransactionExporter(TransactionService transactionService, Gson gson) {
+        this.transactionService = transactionService;
+        this.gson = gson;
+    }
+
+    void export(long accountId, TransactionExportFormat format, OutputStream outputStream) throws IOException {
+        var writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+
+        try {
+            if (format == TransactionExportFormat.CSV) {
+                writeCsv(accountId, writer);
+            } else {
+                writeJson(accountId, writer);
+            }
+        } catch (UncheckedIOException e) {
+            //Most likely the client went away half way through.
+            throw e.getCause();
+        } catch (JsonIOException e) {
+            throw new IOException(e);
+        }
+
+        writer.flush();
+    }
+
+    //Same array of transactions as GET /api/transactions/:accountId, without the paging.
+    private void writeJson(long accountId, Writer writer) throws IOException {
+        var jsonWriter = gson.newJsonWriter(writer);
+
+        jsonWriter.beginArray();
+        transactionService.exportTransactionsForAccountId(accountId, transaction -> gson.toJson(transaction, Transaction.class, jsonWriter));
+        jsonWriter.endArray();
+        jsonWriter.flush();
+    }
+
+    private void writeCsv(long accountId, Writer writer) throws IOException {
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+
+        transactionService.exportTransactionsForAccountId(accountId, transaction -> {
+            try {
+                writer.write(transaction.getTransactionId() + ","
+                        + transaction.getSenderId() + ","
+                        + transaction.getReceiverId() + ","
+                        + transaction.getAmountToTransfer() + ","
+                        + transaction.getTransactionState() + ","
+                        + transaction.getPriority() + "\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+}
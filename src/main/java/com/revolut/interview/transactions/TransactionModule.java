@@ -1,17 +1,43 @@
 package com.revolut.interview.transactions;
 
 import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
 import com.google.inject.multibindings.Multibinder;
+import com.revolut.interview.lifecycle.Managed;
+import com.revolut.interview.metrics.MetricsSource;
+import com.revolut.interview.persistence.PersistenceModule;
 import com.revolut.interview.rest.Resource;
+import com.revolut.interview.transactions.BackoffStrategy.CappedBackOffStrategy;
+import com.revolut.interview.transactions.BackoffStrategy.DecorrelatedJitterBackOffStrategy;
+import com.revolut.interview.transactions.BackoffStrategy.ExponentialBackOffStrategy;
 import com.revolut.interview.transactions.BackoffStrategy.NOOPBackOffStrategy;
 
+import javax.inject.Singleton;
 import java.util.concurrent.Executor;
 
 import static com.google.inject.name.Names.named;
+import static com.revolut.interview.transactions.AccountLaneExecutor.LANE_COUNT;
+import static com.revolut.interview.transactions.AccountLockManager.LOCK_STRIPES;
+import static com.revolut.interview.transactions.FairTransferExecutor.INTERACTIVE_WEIGHT;
+import static com.revolut.interview.transactions.GroupCommitProcessor.MAX_GROUP_SIZE;
+import static com.revolut.interview.transactions.GroupCommitProcessor.MAX_LINGER_MICROS;
+import static com.revolut.interview.transactions.GroupCommitProcessor.NETTING;
+import static com.revolut.interview.transactions.PostingTransferEngine.POSTED_ENGINE;
+import static com.revolut.interview.transactions.ShardAwareTransferEngine.UNSHARDED_ENGINE;
+import static com.revolut.interview.transactions.TransactionCompletions.COMPLETION_TIMEOUT_MILLIS;
 import static com.revolut.interview.transactions.TransactionExecutor.MAX_ATTEMPTS;
+import static com.revolut.interview.transactions.TransactionRecovery.RECOVERY_CHUNK_SIZE;
+import static com.revolut.interview.transactions.TransactionRecovery.RECOVERY_THREADS;
+import static com.revolut.interview.transactions.TransactionWorkerPool.DRAIN_TIMEOUT_MILLIS;
+import static com.revolut.interview.transactions.TransactionWorkerPool.QUEUE_CAPACITY;
+import static com.revolut.interview.transactions.TransactionWorkerPool.WORKER_THREADS;
+import static com.revolut.interview.transactions.TransferPipeline.RING_SIZE;
 
 public class TransactionModule extends AbstractModule {
 
+    static final String EXECUTOR_MODE_PROPERTY = "transactions.executor";
+    static final String ENGINE_PROPERTY = "transactions.engine";
+
     @Override
     protected void configure() {
         //Max attempts are set hard-coded to 5. Ideally it should go on a config file.
@@ -19,15 +45,188 @@ public class TransactionModule extends AbstractModule {
                 .annotatedWith(named(MAX_ATTEMPTS))
                 .to(5);
 
-        //Same thread executor. This is for the sake of the exercise. Ideally we would want it to be
-        //a usual executor service.
-        bind(Executor.class).toInstance(Runnable::run);
+        bindConstant()
+                .annotatedWith(named(DRAIN_TIMEOUT_MILLIS))
+                .to(Long.getLong("transactions.drainTimeoutMillis", 30_000L));
+
+        var managed = Multibinder.newSetBinder(binder(), Managed.class);
+        var metricsSources = Multibinder.newSetBinder(binder(), MetricsSource.class);
+
+        //Bound ahead of the executors so that on shutdown due retries are handed over before the executors drain.
+        bind(RetryScheduler.class).to(TimerRetryScheduler.class);
+        managed.addBinding().to(TimerRetryScheduler.class);
+        metricsSources.addBinding().to(TimerRetryScheduler.class);
+
+        bindConstant()
+                .annotatedWith(named(COMPLETION_TIMEOUT_MILLIS))
+                .to(Long.getLong("transactions.completionTimeoutMillis", 60_000L));
+        metricsSources.addBinding().to(TransactionCompletions.class);
+
+        bindConstant()
+                .annotatedWith(named(RECOVERY_CHUNK_SIZE))
+                .to(Integer.getInteger("transactions.recovery.chunkSize", 500));
+        bindConstant()
+                .annotatedWith(named(RECOVERY_THREADS))
+                .to(Integer.getInteger("transactions.recovery.threads", Runtime.getRuntime().availableProcessors()));
+        metricsSources.addBinding().to(TransactionRecovery.class);
 
-        //For the sake of this exercise, our backoff strategy implementation will do nothing.
-        bind(BackoffStrategy.class).to(NOOPBackOffStrategy.class);
+        bindTransferEngine();
+        bindExecutor(managed, metricsSources);
 
         Multibinder.newSetBinder(binder(), Resource.class)
                 .addBinding()
                 .to(TransactionResource.class);
     }
+
+    @Provides
+    @Singleton
+    BackoffStrategy backoffStrategy() {
+        var baseDelayMillis = Long.getLong("transactions.backoff.baseMillis", 5L);
+        var maxDelayMillis = Long.getLong("transactions.backoff.maxMillis", 500L);
+        var backoff = System.getProperty("transactions.backoff", "decorrelated-jitter");
+
+        switch (backoff) {
+            case "none":
+                return new NOOPBackOffStrategy();
+            case "exponential":
+                return new CappedBackOffStrategy(new ExponentialBackOffStrategy(baseDelayMillis), maxDelayMillis);
+            case "decorrelated-jitter":
+                return new CappedBackOffStrategy(new DecorrelatedJitterBackOffStrategy(baseDelayMillis), maxDelayMillis);
+            default:
+                throw new IllegalArgumentException("Unknown backoff strategy " + backoff);
+        }
+    }
+
+    private void bindTransferEngine() {
+        //The ledger replaces every engine, -Dtransactions.engine does not apply to it.
+        if (PersistenceModule.isLedgerEnabled()) {
+            bind(TransferEngine.class).to(LedgerTransferEngine.class);
+            return;
+        }
+
+        //entity loads both accounts and relies on their version to detect conflicts. pessimistic loads them with row
+        //locks in ascending id order, so conflicting transfers wait instead of retrying. conditional-update moves the
+        //money with two guarded UPDATE statements and never loads the accounts.
+        //Whichever is picked only sees transfers between unsharded accounts.
+        var engine = System.getProperty(ENGINE_PROPERTY, "entity");
+        var unshardedEngine = bind(TransferEngine.class).annotatedWith(named(UNSHARDED_ENGINE));
+
+        switch (engine) {
+            case "entity":
+                unshardedEngine.to(EntityTransferEngine.class);
+                break;
+            case "pessimistic":
+                unshardedEngine.to(PessimisticOrderedTransferEngine.class);
+                break;
+            case "conditional-update":
+                unshardedEngine.to(ConditionalUpdateTransferEngine.class);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown transfer engine " + engine);
+        }
+
+        if (PersistenceModule.arePostingsEnabled()) {
+            bind(TransferEngine.class).annotatedWith(named(POSTED_ENGINE)).to(ShardAwareTransferEngine.class);
+            bind(TransferEngine.class).to(PostingTransferEngine.class);
+        } else {
+            bind(TransferEngine.class).to(ShardAwareTransferEngine.class);
+        }
+    }
+
+    private void bindExecutor(Multibinder<Managed> managed, Multibinder<MetricsSource> metricsSources) {
+        //The execution mode is picked per deployment with -Dtransactions.executor. Without it transfers run on
+        //the same thread, which keeps the behaviour the integration tests rely on.
+        var executorMode = System.getProperty(EXECUTOR_MODE_PROPERTY, "same-thread");
+
+        if (executorMode.equals("pipeline")) {
+            bindConstant()
+                    .annotatedWith(named(RING_SIZE))
+                    .to(Integer.getInteger("transactions.ringSize", 1024));
+
+            //The pipeline replaces the executor altogether.
+            bind(TransactionProcessor.class).to(TransferPipeline.class);
+            managed.addBinding().to(TransferPipeline.class);
+            metricsSources.addBinding().to(TransferPipeline.class);
+            return;
+        }
+
+        if (executorMode.equals("group-commit")) {
+            bindConstant()
+                    .annotatedWith(named(MAX_GROUP_SIZE))
+                    .to(Integer.getInteger("transactions.groupCommit.maxGroupSize", 256));
+            bindConstant()
+                    .annotatedWith(named(MAX_LINGER_MICROS))
+                    .to(Long.getLong("transactions.groupCommit.maxLingerMicros", 2_000L));
+            //Netting moves the money on the account rows itself, which the ledger no longer reads and which would leave
+            //the postings behind.
+            var netting = Boolean.getBoolean("transactions.groupCommit.netting");
+            if (netting && PersistenceModule.isLedgerEnabled()) {
+                throw new IllegalArgumentException("Group commit netting cannot be used with balances kept in the ledger");
+            }
+            if (netting && PersistenceModule.arePostingsEnabled()) {
+                throw new IllegalArgumentException("Group commit netting cannot be used with postings");
+            }
+
+            bindConstant()
+                    .annotatedWith(named(NETTING))
+                    .to(netting);
+
+            bind(TransactionProcessor.class).to(GroupCommitProcessor.class);
+            managed.addBinding().to(GroupCommitProcessor.class);
+            metricsSources.addBinding().to(GroupCommitProcessor.class);
+            metricsSources.addBinding().to(BilateralNetting.class);
+            return;
+        }
+
+        bind(TransactionProcessor.class).to(TransactionExecutor.class);
+
+        bindConstant()
+                .annotatedWith(named(LOCK_STRIPES))
+                .to(Integer.getInteger("transactions.lockStripes", 1024));
+        metricsSources.addBinding().to(AccountLockManager.class);
+
+        switch (executorMode) {
+            case "same-thread":
+                bind(Executor.class).toInstance(Runnable::run);
+                break;
+            case "worker-pool":
+                bindConstant()
+                        .annotatedWith(named(WORKER_THREADS))
+                        .to(Integer.getInteger("transactions.workers", Runtime.getRuntime().availableProcessors()));
+                bindConstant()
+                        .annotatedWith(named(QUEUE_CAPACITY))
+                        .to(Integer.getInteger("transactions.queueCapacity", 10_000));
+
+                bind(Executor.class).to(TransactionWorkerPool.class);
+                managed.addBinding().to(TransactionWorkerPool.class);
+                metricsSources.addBinding().to(TransactionWorkerPool.class);
+                break;
+            case "fair":
+                bindConstant()
+                        .annotatedWith(named(WORKER_THREADS))
+                        .to(Integer.getInteger("transactions.workers", Runtime.getRuntime().availableProcessors()));
+                bindConstant()
+                        .annotatedWith(named(QUEUE_CAPACITY))
+                        .to(Integer.getInteger("transactions.queueCapacity", 10_000));
+                bindConstant()
+                        .annotatedWith(named(INTERACTIVE_WEIGHT))
+                        .to(Integer.getInteger("transactions.fair.interactiveWeight", 8));
+
+                bind(Executor.class).to(FairTransferExecutor.class);
+                managed.addBinding().to(FairTransferExecutor.class);
+                metricsSources.addBinding().to(FairTransferExecutor.class);
+                break;
+            case "account-lanes":
+                bindConstant()
+                        .annotatedWith(named(LANE_COUNT))
+                        .to(Integer.getInteger("transactions.lanes", Runtime.getRuntime().availableProcessors()));
+
+                bind(Executor.class).to(AccountLaneExecutor.class);
+                managed.addBinding().to(AccountLaneExecutor.class);
+                metricsSources.addBinding().to(AccountLaneExecutor.class);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown transaction executor mode " + executorMode);
+        }
+    }
 }
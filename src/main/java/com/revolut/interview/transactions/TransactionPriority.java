@@ -0,0 +1,7 @@
+package com.revolut.interview.transactions;
+
+//Interactive transfers are picked ahead of bulk ones by the fair executor, bulk transfers are never starved outright.
+public enum TransactionPriority {
+    INTERACTIVE,
+    BULK
+}
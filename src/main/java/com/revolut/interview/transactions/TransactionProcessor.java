@@ -0,0 +1,12 @@
+package com.revolut.interview.transactions;
+
+import java.util.List;
+
+interface TransactionProcessor {
+
+    void execute(Transaction transaction);
+
+    default void executeAll(List<Transaction> transactions) {
+        transactions.forEach(this::execute);
+    }
+}
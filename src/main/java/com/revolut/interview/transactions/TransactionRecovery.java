@@ -0,0 +1,166 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.account.AccountLedger;
+import com.revolut.interview.metrics.MetricsSource;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.revolut.interview.transactions.TransactionState.IN_PROGRESS;
+import static com.revolut.interview.transactions.TransactionState.PENDING;
+import static com.revolut.interview.transactions.TransactionState.SUCCEEDED;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+//Picks up transactions left unfinished by a previous run. Runs once at boot, before any transfer is accepted.
+//
+//A transaction in progress at boot never moved any money: the final state is always committed together with the
+//balances. So it is put back to pending and queued again like every other pending transaction. The ledger journals
+//transfers ahead of their database transaction, so the ones a crash left unsettled there are first kept or reversed,
+//going by whether their transaction committed as succeeded.
+@Singleton
+public class TransactionRecovery implements MetricsSource {
+
+    static final String RECOVERY_CHUNK_SIZE = "RECOVERY_CHUNK_SIZE";
+    static final String RECOVERY_THREADS = "RECOVERY_THREADS";
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final int chunkSize;
+    private final int threads;
+    private final long drainTimeoutMillis;
+
+    private final TransactionDAO transactionDAO;
+    private final TransactionService transactionService;
+    private final AccountLedger accountLedger;
+
+    private final AtomicLong resetCount = new AtomicLong();
+    private final AtomicLong requeuedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong chunkCount = new AtomicLong();
+
+    private volatile long durationMillis;
+
+    @Inject
+    TransactionRecovery(@Named(RECOVERY_CHUNK_SIZE) int chunkSize,
+                        @Named(RECOVERY_THREADS) int threads,
+                        @Named(TransactionWorkerPool.DRAIN_TIMEOUT_MILLIS) long drainTimeoutMillis,
+                        TransactionDAO transactionDAO,
+                        TransactionService transactionService,
+                        AccountLedger accountLedger) {
+        this.chunkSize = chunkSize;
+        this.threads = threads;
+        this.drainTimeoutMillis = drainTimeoutMillis;
+        this.transactionDAO = transactionDAO;
+        this.transactionService = transactionService;
+        this.accountLedger = accountLedger;
+    }
+
+    public void recover() {
+        var start = System.currentTimeMillis();
+
+        accountLedger.resolveUnsettled(this::hasSucceeded);
+        resetInProgress();
+        requeuePending();
+
+        durationMillis = System.currentTimeMillis() - start;
+
+        LOGGER.info("Recovered {} transactions ({} were in progress, {} failed to queue) in {}ms.",
+                requeuedCount.get(), resetCount.get(), failedCount.get(), durationMillis);
+    }
+
+    private boolean hasSucceeded(long transactionId) {
+        return transactionDAO.findById(transactionId)
+                .map(transaction -> transaction.getTransactionState() == SUCCEEDED)
+                .orElse(false);
+    }
+
+    private void resetInProgress() {
+        var afterId = 0L;
+
+        List<Long> ids;
+        while (!(ids = transactionDAO.findIdsByState(IN_PROGRESS, afterId, chunkSize)).isEmpty()) {
+            for (var updated : transactionDAO.updateStates(ids, IN_PROGRESS, PENDING)) {
+                if (updated) {
+                    resetCount.incrementAndGet();
+                }
+            }
+
+            chunkCount.incrementAndGet();
+            afterId = ids.get(ids.size() - 1);
+        }
+    }
+
+    private void requeuePending() {
+        var threadNumber = new AtomicInteger();
+        var recoveryThreads = Executors.newFixedThreadPool(threads,
+                runnable -> new Thread(runnable, "transaction-recovery-" + threadNumber.incrementAndGet()));
+
+        try {
+            var afterId = 0L;
+
+            //Keyset pagination: ids only grow, so transactions leaving the pending state do not shift the next chunk.
+            List<Long> ids;
+            while (!(ids = transactionDAO.findIdsByState(PENDING, afterId, chunkSize)).isEmpty()) {
+                ids.forEach(transactionId -> recoveryThreads.execute(() -> requeue(transactionId)));
+
+                chunkCount.incrementAndGet();
+                afterId = ids.get(ids.size() - 1);
+            }
+        } finally {
+            awaitRequeued(recoveryThreads);
+        }
+    }
+
+    private void requeue(long transactionId) {
+        try {
+            transactionService.queue(transactionId);
+            requeuedCount.incrementAndGet();
+        } catch (Exception e) {
+            LOGGER.error("Could not queue transaction " + transactionId + " during recovery.", e);
+            failedCount.incrementAndGet();
+        }
+    }
+
+    private void awaitRequeued(ExecutorService recoveryThreads) {
+        recoveryThreads.shutdown();
+
+        try {
+            if (!recoveryThreads.awaitTermination(drainTimeoutMillis, MILLISECONDS)) {
+                LOGGER.error("Recovery did not finish in {}ms. {} transactions left pending.", drainTimeoutMillis, recoveryThreads.shutdownNow().size());
+            }
+        } catch (InterruptedException e) {
+            recoveryThreads.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "transactionRecovery";
+    }
+
+    @Override
+    public Map<String, Number> getMetrics() {
+        var requeued = requeuedCount.get();
+
+        var metrics = new LinkedHashMap<String, Number>();
+        metrics.put("resetInProgress", resetCount.get());
+        metrics.put("requeued", requeued);
+        metrics.put("failed", failedCount.get());
+        metrics.put("chunks", chunkCount.get());
+        metrics.put("durationMillis", durationMillis);
+        metrics.put("transactionsPerSecond", durationMillis == 0 ? 0 : requeued * 1000.0 / durationMillis);
+
+        return metrics;
+    }
+}
@@ -10,6 +10,9 @@ import spark.Service;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 
 @Singleton
@@ -17,23 +20,87 @@ class TransactionResource implements Resource {
 
     private static final Logger LOGGER = LogManager.getLogger();
     private static final String BASE_PATH = "/api/transactions";
+    private static final int DEFAULT_REQUEUE_LIMIT = 1000;
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
 
     private final TransactionService transactionService;
+    private final TransactionExporter transactionExporter;
 
     @Inject
-    TransactionResource(TransactionService transactionService) {
+    TransactionResource(TransactionService transactionService, TransactionExporter transactionExporter) {
         this.transactionService = transactionService;
+        this.transactionExporter = transactionExporter;
     }
 
-    private List<Transaction> getAllTransactions(Request request, Response response) {
+    //Pages through the history newest first with ?limit= and ?afterId=, optionally only between the ISO-8601 instants
+    //?from= and ?to=. A full page links to the next one in the Link header.
+    private List<Transaction> getTransactions(Request request, Response response) {
         var accountId = Long.parseLong(request.params("accountId"));
+        var limitParam = request.queryParams("limit");
+        var afterIdParam = request.queryParams("afterId");
+        var fromParam = request.queryParams("from");
+        var toParam = request.queryParams("to");
 
-        return transactionService.getAllTransactionsForAccountId(accountId);
+        var limit = limitParam == null ? DEFAULT_PAGE_SIZE : Integer.parseInt(limitParam);
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit should be between 1 and " + MAX_PAGE_SIZE + ". Provided: " + limit);
+        }
+
+        var transactions = transactionService.getTransactionsForAccountId(
+                accountId,
+                afterIdParam == null ? null : Long.valueOf(afterIdParam),
+                parseInstant(fromParam),
+                parseInstant(toParam),
+                limit
+        );
+
+        if (transactions.size() == limit) {
+            var lastId = transactions.get(transactions.size() - 1).getTransactionId();
+            var next = BASE_PATH + "/" + accountId + "?limit=" + limit + "&afterId=" + lastId
+                    + (fromParam == null ? "" : "&from=" + fromParam)
+                    + (toParam == null ? "" : "&to=" + toParam);
+            response.header("Link", "<" + next + ">; rel=\"next\"");
+        }
+
+        return transactions;
+    }
+
+    private static Instant parseInstant(String param) {
+        try {
+            return param == null ? null : Instant.parse(param);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Not an ISO-8601 instant: " + param, e);
+        }
+    }
+
+    //The whole history as ?format=json (default) or ?format=csv, written straight to the response as rows are read.
+    private Object exportTransactions(Request request, Response response) throws IOException {
+        var accountId = Long.parseLong(request.params("accountId"));
+        var format = TransactionExportFormat.fromParam(request.queryParams("format"));
+
+        response.type(format.getContentType());
+        response.header("Content-Disposition", "attachment; filename=\"transactions-" + accountId + "." + format.getFileExtension() + "\"");
+
+        try (var outputStream = response.raw().getOutputStream()) {
+            transactionExporter.export(accountId, format, outputStream);
+        }
+
+        //The response is committed by now, Spark does not write anything returned from here.
+        return null;
+    }
+
+    private int requeueParked(Request request, Response response) {
+        var limit = request.queryParams("limit");
+
+        return transactionService.requeueParked(limit == null ? DEFAULT_REQUEUE_LIMIT : Integer.parseInt(limit));
     }
 
     @Override
     public void register(Service spark) {
-        spark.get(BASE_PATH + "/:accountId", this::getAllTransactions);
+        spark.get(BASE_PATH + "/:accountId", this::getTransactions);
+        spark.get(BASE_PATH + "/:accountId/export", this::exportTransactions);
+        spark.post(BASE_PATH + "/parked/requeue", this::requeueParked);
 
         spark.exception(InvalidTransactionException.class, (exception, request, response) -> {
             response.status(HttpStatus.INTERNAL_SERVER_ERROR_500);
@@ -41,6 +108,11 @@ class TransactionResource implements Resource {
             LOGGER.error("An internal server error occurred.", exception);
         });
 
-        spark.after(BASE_PATH + "/*", (request, response) -> response.type("application/json"));
+        spark.after(BASE_PATH + "/*", (request, response) -> {
+            //Exports set their own.
+            if (response.type() == null) {
+                response.type("application/json");
+            }
+        });
     }
 }
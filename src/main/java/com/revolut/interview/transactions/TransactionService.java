@@ -1,31 +1,52 @@
 package com.revolut.interview.transactions;
 
+import com.revolut.interview.persistence.TimeOrderedIds;
+
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Singleton
 public class TransactionService {
 
-    private final TransactionExecutor transactionExecutor;
+    private final TransactionProcessor transactionProcessor;
     private final TransactionDAO transactionDAO;
+    private final TransactionCompletions transactionCompletions;
 
     @Inject
-    TransactionService(TransactionExecutor transactionExecutor, TransactionDAO transactionDAO) {
-        this.transactionExecutor = transactionExecutor;
+    TransactionService(TransactionProcessor transactionProcessor, TransactionDAO transactionDAO, TransactionCompletions transactionCompletions) {
+        this.transactionProcessor = transactionProcessor;
         this.transactionDAO = transactionDAO;
+        this.transactionCompletions = transactionCompletions;
     }
 
-    public List<Transaction> getAllTransactionsForAccountId(long accountId) {
-        //This returns all the records where accountId is sender or receiver. Not very scalable.
-        return transactionDAO.findAllWithAccountId(accountId)
+    //One page of the transactions where accountId is sender or receiver, newest first. afterId is the last id of the
+    //previous page, null for the first one. from and to optionally narrow it down to the transactions created in
+    //between, to exclusive.
+    public List<Transaction> getTransactionsForAccountId(long accountId, Long afterId, Instant from, Instant to, int limit) {
+        var fromId = from == null ? 0 : TimeOrderedIds.firstIdAt(from);
+        var beforeId = Math.min(
+                afterId == null ? Long.MAX_VALUE : afterId,
+                to == null ? Long.MAX_VALUE : TimeOrderedIds.firstIdAt(to)
+        );
+
+        return transactionDAO.findPageWithAccountId(accountId, fromId, beforeId, limit)
                 .stream()
                 .map(this::map)
                 .collect(Collectors.toUnmodifiableList());
     }
 
-    public void queue(long transactionId) {
+    //Every transaction where accountId is sender or receiver, oldest first, without holding them all in memory.
+    public void exportTransactionsForAccountId(long accountId, Consumer<Transaction> consumer) {
+        transactionDAO.forEachWithAccountId(accountId, consumer);
+    }
+
+    //The returned future completes with the state the transaction ends up in once it has been processed.
+    public CompletableFuture<TransactionState> queue(long transactionId) {
         var transactionEntity = transactionDAO.findById(transactionId)
                 .orElseThrow(() -> new InvalidTransactionException("No transaction with id " + transactionId, transactionId));
 
@@ -33,16 +54,56 @@ public class TransactionService {
             throw new InvalidTransactionException("Trying to queue a transaction which is not pending " + transactionEntity.getTransactionState(), transactionId);
         }
 
-        transactionExecutor.execute(map(transactionEntity));
+        //Registered before queueing, a same thread processor is done by the time execute returns.
+        var completion = transactionCompletions.register(transactionId);
+        transactionProcessor.execute(map(transactionEntity));
+
+        return completion;
+    }
+
+    //Queues freshly created pending transactions in one go, without reading them back. Nobody waits on their outcome,
+    //so no completion is registered.
+    public void queueAll(List<TransactionEntity> transactionEntities) {
+        transactionProcessor.executeAll(transactionEntities.stream()
+                .map(this::map)
+                .collect(Collectors.toList()));
+    }
+
+    //Future for a transaction queued earlier, possibly by another request. Already complete if it has finished.
+    public CompletableFuture<TransactionState> completionOf(long transactionId) {
+        var completion = transactionCompletions.register(transactionId);
+
+        //Read after registering, so a transaction finishing in between is not missed.
+        transactionDAO.findById(transactionId)
+                .map(TransactionEntity::getTransactionState)
+                .filter(state -> state != TransactionState.PENDING && state != TransactionState.IN_PROGRESS)
+                .ifPresent(state -> transactionCompletions.complete(transactionId, state));
+
+        return completion;
+    }
+
+    //Moves parked transactions back to pending and queues them again. Meant to be triggered by a batch job.
+    public int requeueParked(int limit) {
+        var requeued = 0;
+
+        for (var transactionId : transactionDAO.findIdsByState(TransactionState.PARKED, 0, limit)) {
+            if (transactionDAO.updateState(transactionId, TransactionState.PARKED, TransactionState.PENDING)) {
+                queue(transactionId);
+                requeued++;
+            }
+        }
+
+        return requeued;
     }
 
     private Transaction map(TransactionEntity transactionEntity) {
         return new Transaction(
                 transactionEntity.getId(),
-                transactionEntity.getSender().getId(),
-                transactionEntity.getReceiver().getId(),
+                transactionEntity.getSenderId(),
+                transactionEntity.getReceiverId(),
                 transactionEntity.getAmount(),
-                transactionEntity.getTransactionState()
+                transactionEntity.getTransactionState(),
+                transactionEntity.getPriority()
         );
     }
 }
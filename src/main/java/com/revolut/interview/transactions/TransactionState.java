@@ -4,5 +4,7 @@ public enum TransactionState {
     PENDING,
     IN_PROGRESS,
     SUCCEEDED,
-    FAILED
+    FAILED,
+    //Ran out of attempts. Left for a batch job to queue again through TransactionService.requeueParked.
+    PARKED
 }
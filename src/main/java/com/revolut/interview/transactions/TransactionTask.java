@@ -0,0 +1,22 @@
+package com.revolut.interview.transactions;
+
+//Carries the transaction alongside the work so that executors can route on the accounts it touches.
+class TransactionTask implements Runnable {
+
+    private final Transaction transaction;
+    private final Runnable work;
+
+    TransactionTask(Transaction transaction, Runnable work) {
+        this.transaction = transaction;
+        this.work = work;
+    }
+
+    Transaction getTransaction() {
+        return transaction;
+    }
+
+    @Override
+    public void run() {
+        work.run();
+    }
+}
@@ -0,0 +1,131 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.lifecycle.Managed;
+import com.revolut.interview.metrics.MetricsSource;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+@Singleton
+class TransactionWorkerPool implements Executor, Managed, MetricsSource {
+
+    static final String WORKER_THREADS = "WORKER_THREADS";
+    static final String QUEUE_CAPACITY = "QUEUE_CAPACITY";
+    static final String DRAIN_TIMEOUT_MILLIS = "DRAIN_TIMEOUT_MILLIS";
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final ThreadPoolExecutor threadPoolExecutor;
+    private final long drainTimeoutMillis;
+
+    private final AtomicLong callerRunsCount = new AtomicLong();
+
+    @Inject
+    TransactionWorkerPool(@Named(WORKER_THREADS) int workerThreads,
+                          @Named(QUEUE_CAPACITY) int queueCapacity,
+                          @Named(DRAIN_TIMEOUT_MILLIS) long drainTimeoutMillis) {
+        this.drainTimeoutMillis = drainTimeoutMillis;
+        this.threadPoolExecutor = new ThreadPoolExecutor(
+                workerThreads,
+                workerThreads,
+                0L,
+                MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new WorkerThreadFactory(),
+                new CallerRunsUnlessShutdown()
+        );
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        threadPoolExecutor.execute(task);
+    }
+
+    @Override
+    public void stop() {
+        LOGGER.info("Draining {} queued transfers.", threadPoolExecutor.getQueue().size());
+
+        //Stops accepting new work but keeps running everything that is already queued.
+        threadPoolExecutor.shutdown();
+
+        try {
+            if (!threadPoolExecutor.awaitTermination(drainTimeoutMillis, MILLISECONDS)) {
+                var abandoned = threadPoolExecutor.shutdownNow();
+                LOGGER.error("Transfer workers did not drain in {}ms. {} transfers left pending.", drainTimeoutMillis, abandoned.size());
+            }
+        } catch (InterruptedException e) {
+            threadPoolExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    int getQueueDepth() {
+        return threadPoolExecutor.getQueue().size();
+    }
+
+    double getUtilisation() {
+        return (double) threadPoolExecutor.getActiveCount() / threadPoolExecutor.getMaximumPoolSize();
+    }
+
+    @Override
+    public String getName() {
+        return "transactionWorkerPool";
+    }
+
+    @Override
+    public Map<String, Number> getMetrics() {
+        var metrics = new LinkedHashMap<String, Number>();
+        metrics.put("workers", threadPoolExecutor.getMaximumPoolSize());
+        metrics.put("activeWorkers", threadPoolExecutor.getActiveCount());
+        metrics.put("utilisation", getUtilisation());
+        metrics.put("queueDepth", getQueueDepth());
+        metrics.put("queueRemainingCapacity", threadPoolExecutor.getQueue().remainingCapacity());
+        metrics.put("completedTransfers", threadPoolExecutor.getCompletedTaskCount());
+        metrics.put("callerRuns", callerRunsCount.get());
+
+        return metrics;
+    }
+
+    //When the queue is full the submitting request thread runs the transfer itself, which slows callers down
+    //instead of dropping work. Once draining has started nothing new is accepted.
+    private class CallerRunsUnlessShutdown implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Transfer workers are shutting down.");
+            }
+
+            callerRunsCount.incrementAndGet();
+            task.run();
+        }
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            var thread = new Thread(runnable, "transfer-worker-" + threadNumber.incrementAndGet());
+            thread.setDaemon(false);
+
+            return thread;
+        }
+    }
+}
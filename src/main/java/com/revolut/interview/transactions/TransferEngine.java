@@ -0,0 +1,13 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.money.Money;
+
+//Moves money between two accounts inside the caller's database transaction. Returns false when the transfer cannot be
+//made because an account is missing or the sender cannot afford it, in which case no balance was changed.
+//
+//Every transfer carries the id of its transaction. Engines that only move balances ignore it, the ones keeping their
+//own record of transfers store it with them.
+interface TransferEngine {
+
+    boolean transfer(long transactionId, long senderId, long receiverId, Money amount);
+}
@@ -0,0 +1,27 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.money.Money;
+
+//Pre-allocated ring buffer slot. Slots are reused for every transfer, so fields are overwritten on publish.
+final class TransferEvent {
+
+    long transactionId;
+    long senderId;
+    long receiverId;
+    Money amount;
+
+    boolean claimed;
+    boolean validated;
+    TransactionState outcome;
+
+    void reset(Transaction transaction) {
+        this.transactionId = transaction.getTransactionId();
+        this.senderId = transaction.getSenderId();
+        this.receiverId = transaction.getReceiverId();
+        this.amount = transaction.getAmountToTransfer();
+
+        this.claimed = false;
+        this.validated = false;
+        this.outcome = null;
+    }
+}
@@ -0,0 +1,392 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.account.AccountCache;
+import com.revolut.interview.account.AccountShards;
+import com.revolut.interview.account.AccountsDAO;
+import com.revolut.interview.lifecycle.Managed;
+import com.revolut.interview.metrics.MetricsSource;
+import com.revolut.interview.notification.NotificationService;
+import com.revolut.interview.notification.TransactionNotification;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+import static com.revolut.interview.transactions.TransactionState.FAILED;
+import static com.revolut.interview.transactions.TransactionState.IN_PROGRESS;
+import static com.revolut.interview.transactions.TransactionState.PENDING;
+import static com.revolut.interview.transactions.TransactionState.SUCCEEDED;
+import static java.util.Objects.requireNonNull;
+
+//Transfers flow through a pre-allocated ring of TransferEvents and four single threaded stages:
+//journal (claims the transaction) -> validate (checks the sender balance) -> apply (moves the money) -> notify.
+//Every stage consumes everything its upstream stage has published so far as one batch.
+//
+//Apply is the only stage writing accounts, so within the pipeline there are no optimistic lock conflicts and a whole
+//batch can be committed in one database transaction.
+@Singleton
+class TransferPipeline implements TransactionProcessor, Managed, MetricsSource {
+
+    static final String RING_SIZE = "RING_SIZE";
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final long IDLE_PARK_NANOS = 50_000;
+    private static final int SPINS_BEFORE_PARKING = 100;
+
+    private final TransferEvent[] ring;
+    private final int mask;
+
+    //Sequence of the last published event. Stages follow with their own sequences.
+    private final AtomicLong cursor = new AtomicLong(-1);
+
+    private final Stage journalStage;
+    private final Stage validateStage;
+    private final Stage applyStage;
+    private final Stage notifyStage;
+
+    private final Provider<Session> sessionProvider;
+    private final AccountsDAO accountsDAO;
+    private final AccountShards accountShards;
+    private final TransferEngine transferEngine;
+    private final TransactionDAO transactionDAO;
+    private final NotificationService notificationService;
+    private final TransactionCompletions transactionCompletions;
+    private final AccountCache accountCache;
+    private final long drainTimeoutMillis;
+
+    private volatile boolean accepting = true;
+    private volatile boolean running = true;
+
+    @Inject
+    TransferPipeline(@Named(RING_SIZE) int ringSize,
+                     @Named(TransactionWorkerPool.DRAIN_TIMEOUT_MILLIS) long drainTimeoutMillis,
+                     Provider<Session> sessionProvider,
+                     AccountsDAO accountsDAO,
+                     AccountShards accountShards,
+                     TransferEngine transferEngine,
+                     TransactionDAO transactionDAO,
+                     NotificationService notificationService,
+                     TransactionCompletions transactionCompletions,
+                     AccountCache accountCache) {
+        if (Integer.bitCount(ringSize) != 1) {
+            throw new IllegalArgumentException("Ring size should be a power of 2. Provided: " + ringSize);
+        }
+
+        this.ring = new TransferEvent[ringSize];
+        this.mask = ringSize - 1;
+        for (int i = 0; i < ringSize; i++) {
+            ring[i] = new TransferEvent();
+        }
+
+        this.drainTimeoutMillis = drainTimeoutMillis;
+        this.sessionProvider = sessionProvider;
+        this.accountsDAO = accountsDAO;
+        this.accountShards = accountShards;
+        this.transferEngine = transferEngine;
+        this.transactionDAO = transactionDAO;
+        this.notificationService = notificationService;
+        this.transactionCompletions = transactionCompletions;
+        this.accountCache = accountCache;
+
+        this.journalStage = new Stage("journal", cursor::get, this::journal);
+        this.validateStage = new Stage("validate", journalStage.sequence::get, this::validate);
+        this.applyStage = new Stage("apply", validateStage.sequence::get, this::apply);
+        this.notifyStage = new Stage("notify", applyStage.sequence::get, this::notifyParticipants);
+
+        journalStage.start();
+        validateStage.start();
+        applyStage.start();
+        notifyStage.start();
+    }
+
+    @Override
+    public synchronized void execute(Transaction transaction) {
+        requireNonNull(transaction, "Transaction cannot be null");
+
+        if (!accepting) {
+            throw new RejectedExecutionException("Transfer pipeline is shutting down.");
+        }
+
+        var next = cursor.get() + 1;
+
+        //The slot is free once the last stage has moved past the event that used it one lap ago.
+        var idleCount = 0;
+        while (next - ring.length > notifyStage.sequence.get()) {
+            idleCount = idle(idleCount);
+        }
+
+        ring[(int) next & mask].reset(transaction);
+        cursor.set(next);
+    }
+
+    private void journal(long from, long to) {
+        var dbTransaction = sessionProvider.get()
+                .beginTransaction();
+
+        try {
+            for (long sequence = from; sequence <= to; sequence++) {
+                var event = eventAt(sequence);
+                event.claimed = transactionDAO.updateState(event.transactionId, PENDING, IN_PROGRESS);
+
+                if (!event.claimed) {
+                    LOGGER.error("Cannot execute transaction {} as it was not in pending state.", event.transactionId);
+                }
+            }
+            dbTransaction.commit();
+        } catch (Exception e) {
+            LOGGER.error("Could not journal transfers. They stay pending.", e);
+            dbTransaction.rollback();
+
+            //None of the claims were committed, so later stages must not move money for them. Recovery picks them up.
+            for (long sequence = from; sequence <= to; sequence++) {
+                eventAt(sequence).claimed = false;
+            }
+        }
+    }
+
+    private void validate(long from, long to) {
+        //Accounts are cached by the session, so a hot sender is loaded once per batch.
+        runInDbTransaction(() -> {
+            for (long sequence = from; sequence <= to; sequence++) {
+                var event = eventAt(sequence);
+
+                if (event.claimed) {
+                    event.validated = accountsDAO.findById(event.senderId)
+                            .map(sender -> !accountShards.balanceOf(sender).isLessThan(event.amount))
+                            .orElse(false);
+                }
+            }
+        }, "Could not validate transfers. They will be validated again while applying.");
+    }
+
+    private void apply(long from, long to) {
+        var dbTransaction = sessionProvider.get()
+                .beginTransaction();
+
+        try {
+            for (long sequence = from; sequence <= to; sequence++) {
+                applyEvent(eventAt(sequence));
+            }
+            dbTransaction.commit();
+        } catch (Exception e) {
+            LOGGER.error("Could not apply transfer batch. Applying transfers one at a time.", e);
+            dbTransaction.rollback();
+
+            for (long sequence = from; sequence <= to; sequence++) {
+                applyIndividually(eventAt(sequence));
+            }
+        }
+    }
+
+    private void applyIndividually(TransferEvent event) {
+        event.outcome = null;
+
+        var dbTransaction = sessionProvider.get()
+                .beginTransaction();
+
+        try {
+            applyEvent(event);
+            dbTransaction.commit();
+        } catch (Exception e) {
+            LOGGER.error("An unhandled exception occurred while applying transaction " + event.transactionId, e);
+            dbTransaction.rollback();
+
+            failIndividually(event);
+        }
+    }
+
+    //Nobody is told about a transaction that is no longer in progress, whatever state it is in is left as it is.
+    private void failIndividually(TransferEvent event) {
+        try {
+            updateState(event, FAILED);
+            event.outcome = FAILED;
+        } catch (IllegalStateException e) {
+            LOGGER.error("Could not fail transaction " + event.transactionId, e);
+            event.outcome = null;
+        }
+    }
+
+    private void applyEvent(TransferEvent event) {
+        if (!event.claimed) {
+            return;
+        }
+
+        if (event.validated && transferMoney(event)) {
+            event.outcome = SUCCEEDED;
+        } else {
+            event.outcome = FAILED;
+        }
+
+        //Rolls the money back with it when the transaction was not claimed after all.
+        updateState(event, event.outcome);
+    }
+
+    private void updateState(TransferEvent event, TransactionState transactionState) {
+        if (!transactionDAO.updateState(event.transactionId, IN_PROGRESS, transactionState)) {
+            throw new IllegalStateException("Transaction is no longer in progress. ID: " + event.transactionId);
+        }
+    }
+
+    private boolean transferMoney(TransferEvent event) {
+        //Validation ran against the last committed balance, an earlier event in this batch might have spent it, so the
+        //engine checks the balance again.
+        return transferEngine.transfer(event.transactionId, event.senderId, event.receiverId, event.amount);
+    }
+
+    //Apply has committed everything up to here.
+    private void notifyParticipants(long from, long to) {
+        for (long sequence = from; sequence <= to; sequence++) {
+            var event = eventAt(sequence);
+
+            if (event.claimed && event.outcome == SUCCEEDED) {
+                accountCache.invalidate(event.senderId);
+                accountCache.invalidate(event.receiverId);
+            }
+
+            if (event.claimed && event.outcome != null) {
+                notificationService.sendNotification(new TransactionNotification(
+                        event.senderId,
+                        event.receiverId,
+                        event.outcome == SUCCEEDED,
+                        event.amount
+                ));
+                transactionCompletions.complete(event.transactionId, event.outcome);
+            }
+        }
+    }
+
+    private TransferEvent eventAt(long sequence) {
+        return ring[(int) sequence & mask];
+    }
+
+    private void runInDbTransaction(Runnable work, String errorMessage) {
+        var dbTransaction = sessionProvider.get()
+                .beginTransaction();
+
+        try {
+            work.run();
+            dbTransaction.commit();
+        } catch (Exception e) {
+            LOGGER.error(errorMessage, e);
+            dbTransaction.rollback();
+        }
+    }
+
+    @Override
+    public void stop() {
+        synchronized (this) {
+            accepting = false;
+        }
+
+        var deadline = System.currentTimeMillis() + drainTimeoutMillis;
+        while (notifyStage.sequence.get() < cursor.get() && System.currentTimeMillis() < deadline) {
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+
+        if (notifyStage.sequence.get() < cursor.get()) {
+            LOGGER.error("Transfer pipeline did not drain in {}ms. {} transfers left behind.", drainTimeoutMillis, cursor.get() - notifyStage.sequence.get());
+        }
+
+        running = false;
+    }
+
+    @Override
+    public String getName() {
+        return "transferPipeline";
+    }
+
+    @Override
+    public Map<String, Number> getMetrics() {
+        var metrics = new LinkedHashMap<String, Number>();
+        metrics.put("ringSize", ring.length);
+        metrics.put("published", cursor.get() + 1);
+
+        for (var stage : new Stage[]{journalStage, validateStage, applyStage, notifyStage}) {
+            metrics.put(stage.name + ".backlog", stage.upstream.getAsLong() - stage.sequence.get());
+            metrics.put(stage.name + ".batches", stage.batchCount.get());
+            metrics.put(stage.name + ".averageBatchSize", stage.averageBatchSize());
+        }
+
+        return metrics;
+    }
+
+    private static int idle(int idleCount) {
+        if (idleCount < SPINS_BEFORE_PARKING) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+
+        return idleCount + 1;
+    }
+
+    @FunctionalInterface
+    private interface BatchHandler {
+
+        void handle(long from, long to);
+    }
+
+    private class Stage implements Runnable {
+
+        private final String name;
+        private final LongSupplier upstream;
+        private final BatchHandler batchHandler;
+
+        private final AtomicLong sequence = new AtomicLong(-1);
+        private final AtomicLong batchCount = new AtomicLong();
+        private final AtomicLong eventCount = new AtomicLong();
+
+        private Stage(String name, LongSupplier upstream, BatchHandler batchHandler) {
+            this.name = name;
+            this.upstream = upstream;
+            this.batchHandler = batchHandler;
+        }
+
+        private void start() {
+            var thread = new Thread(this, "transfer-pipeline-" + name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            var idleCount = 0;
+
+            while (running) {
+                var available = upstream.getAsLong();
+                var current = sequence.get();
+
+                if (available > current) {
+                    try {
+                        batchHandler.handle(current + 1, available);
+                    } catch (Exception e) {
+                        LOGGER.error("Transfer pipeline stage " + name + " failed to process a batch.", e);
+                    }
+
+                    batchCount.incrementAndGet();
+                    eventCount.addAndGet(available - current);
+                    sequence.set(available);
+                    idleCount = 0;
+                } else {
+                    idleCount = idle(idleCount);
+                }
+            }
+        }
+
+        private double averageBatchSize() {
+            var batches = batchCount.get();
+            return batches == 0 ? 0 : (double) eventCount.get() / batches;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.revolut.interview.transfer;
+
+import com.revolut.interview.transactions.TransactionState;
+
+import java.util.Objects;
+
+//Outcome of one transfer in a batch. Either a transaction id and state, or the reason the transfer was rejected.
+class BatchTransferResult {
+
+    private final Long transactionId;
+    private final TransactionState transactionState;
+    private final String error;
+
+    private BatchTransferResult(Long transactionId, TransactionState transactionState, String error) {
+        this.transactionId = transactionId;
+        this.transactionState = transactionState;
+        this.error = error;
+    }
+
+    static BatchTransferResult accepted(long transactionId, TransactionState transactionState) {
+        return new BatchTransferResult(transactionId, transactionState, null);
+    }
+
+    static BatchTransferResult rejected(String error) {
+        return new BatchTransferResult(null, null, error);
+    }
+
+    Long getTransactionId() {
+        return transactionId;
+    }
+
+    TransactionState getTransactionState() {
+        return transactionState;
+    }
+
+    String getError() {
+        return error;
+    }
+
+    boolean isAccepted() {
+        return error == null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BatchTransferResult)) return false;
+        BatchTransferResult that = (BatchTransferResult) o;
+        return Objects.equals(transactionId, that.transactionId) &&
+                transactionState == that.transactionState &&
+                Objects.equals(error, that.error);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(transactionId, transactionState, error);
+    }
+
+    @Override
+    public String toString() {
+        return "BatchTransferResult{" +
+                "transactionId=" + transactionId +
+                ", transactionState=" + transactionState +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,110 @@
+package com.revolut.interview.transfer;
+
+import com.revolut.interview.metrics.MetricsSource;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+//Recently seen idempotency keys and the transfers they created, so a client retry is answered with a single hash
+//lookup. Keys are evicted oldest first once they expire or the cache is full. An evicted key is still deduplicated
+//by the unique idempotency_key column, it just costs a query.
+@Singleton
+class IdempotencyCache implements MetricsSource {
+
+    static final String IDEMPOTENCY_CACHE_SIZE = "IDEMPOTENCY_CACHE_SIZE";
+    static final String IDEMPOTENCY_TTL_MILLIS = "IDEMPOTENCY_TTL_MILLIS";
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    //Every entry has the same time to live, so insertion order is also expiry order.
+    private final ConcurrentLinkedQueue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    private final int maxSize;
+    private final long ttlNanos;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @Inject
+    IdempotencyCache(@Named(IDEMPOTENCY_CACHE_SIZE) int maxSize, @Named(IDEMPOTENCY_TTL_MILLIS) long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlNanos = MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    Optional<QueuedTransfer> get(String idempotencyKey) {
+        var entry = entries.get(idempotencyKey);
+
+        //A completion that timed out is no use to anyone waiting, the caller goes to the database for a fresh one.
+        if (entry == null || entry.isExpired(System.nanoTime()) || entry.queuedTransfer.getCompletion().isCompletedExceptionally()) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+
+        hits.incrementAndGet();
+        return Optional.of(entry.queuedTransfer);
+    }
+
+    void put(String idempotencyKey, QueuedTransfer queuedTransfer) {
+        var now = System.nanoTime();
+        var entry = new Entry(idempotencyKey, queuedTransfer, now + ttlNanos);
+
+        entries.put(idempotencyKey, entry);
+        insertionOrder.add(entry);
+
+        evict(now);
+    }
+
+    private void evict(long now) {
+        Entry oldest;
+        while ((oldest = insertionOrder.peek()) != null && (entries.size() > maxSize || oldest.isExpired(now))) {
+            if (insertionOrder.remove(oldest)) {
+                //Only drops the key if it has not been put again since.
+                if (entries.remove(oldest.idempotencyKey, oldest)) {
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "idempotencyCache";
+    }
+
+    @Override
+    public Map<String, Number> getMetrics() {
+        var metrics = new LinkedHashMap<String, Number>();
+        metrics.put("size", entries.size());
+        metrics.put("hits", hits.get());
+        metrics.put("misses", misses.get());
+        metrics.put("evictions", evictions.get());
+
+        return metrics;
+    }
+
+    private static class Entry {
+
+        private final String idempotencyKey;
+        private final QueuedTransfer queuedTransfer;
+        private final long expiresAtNanos;
+
+        private Entry(String idempotencyKey, QueuedTransfer queuedTransfer, long expiresAtNanos) {
+            this.idempotencyKey = idempotencyKey;
+            this.queuedTransfer = queuedTransfer;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        private boolean isExpired(long now) {
+            return now - expiresAtNanos >= 0;
+        }
+    }
+}
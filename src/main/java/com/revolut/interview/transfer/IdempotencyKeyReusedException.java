@@ -0,0 +1,8 @@
+package com.revolut.interview.transfer;
+
+class IdempotencyKeyReusedException extends RuntimeException {
+
+    IdempotencyKeyReusedException(String idempotencyKey) {
+        super("Idempotency key " + idempotencyKey + " was already used for a different transfer.");
+    }
+}
@@ -1,10 +1,10 @@
 package com.revolut.interview.transfer;
 
-import java.math.BigDecimal;
+import com.revolut.interview.money.Money;
 
 class InsufficientBalanceException extends IllegalArgumentException {
 
-    InsufficientBalanceException(BigDecimal currentBalance, BigDecimal amountToTransfer) {
+    InsufficientBalanceException(Money currentBalance, Money amountToTransfer) {
         super("Insufficient balance. Current $" + currentBalance + ". Trying to transfer $" + amountToTransfer);
     }
 }
@@ -0,0 +1,36 @@
+package com.revolut.interview.transfer;
+
+import com.revolut.interview.transactions.TransactionState;
+
+import java.security.MessageDigest;
+import java.util.concurrent.CompletableFuture;
+
+class QueuedTransfer {
+
+    private final long transactionId;
+    private final CompletableFuture<TransactionState> completion;
+    //Hash of the request that created the transfer, only known for transfers made with an idempotency key.
+    private final byte[] requestHash;
+
+    QueuedTransfer(long transactionId, CompletableFuture<TransactionState> completion) {
+        this(transactionId, completion, null);
+    }
+
+    QueuedTransfer(long transactionId, CompletableFuture<TransactionState> completion, byte[] requestHash) {
+        this.transactionId = transactionId;
+        this.completion = completion;
+        this.requestHash = requestHash;
+    }
+
+    long getTransactionId() {
+        return transactionId;
+    }
+
+    CompletableFuture<TransactionState> getCompletion() {
+        return completion;
+    }
+
+    boolean isRequestedBy(byte[] requestHash) {
+        return MessageDigest.isEqual(this.requestHash, requestHash);
+    }
+}
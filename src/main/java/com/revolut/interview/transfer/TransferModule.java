@@ -2,12 +2,38 @@ package com.revolut.interview.transfer;
 
 import com.google.inject.AbstractModule;
 import com.google.inject.multibindings.Multibinder;
+import com.revolut.interview.lifecycle.Managed;
+import com.revolut.interview.metrics.MetricsSource;
 import com.revolut.interview.rest.Resource;
 
+import static com.google.inject.name.Names.named;
+import static com.revolut.interview.transfer.IdempotencyCache.IDEMPOTENCY_CACHE_SIZE;
+import static com.revolut.interview.transfer.IdempotencyCache.IDEMPOTENCY_TTL_MILLIS;
+import static com.revolut.interview.transfer.TransferService.MAX_BATCH_SIZE;
+
 public class TransferModule extends AbstractModule {
 
     @Override
     protected void configure() {
+        bindConstant()
+                .annotatedWith(named(IDEMPOTENCY_CACHE_SIZE))
+                .to(Integer.getInteger("transfers.idempotency.cacheSize", 100_000));
+        bindConstant()
+                .annotatedWith(named(IDEMPOTENCY_TTL_MILLIS))
+                .to(Long.getLong("transfers.idempotency.ttlMillis", 24 * 60 * 60 * 1000L));
+        bindConstant()
+                .annotatedWith(named(MAX_BATCH_SIZE))
+                .to(Integer.getInteger("transfers.batch.maxSize", 50_000));
+
+        //Installed ahead of the transaction module, so transfers stop being accepted before the processors drain.
+        Multibinder.newSetBinder(binder(), Managed.class)
+                .addBinding()
+                .to(TransferService.class);
+
+        Multibinder.newSetBinder(binder(), MetricsSource.class)
+                .addBinding()
+                .to(IdempotencyCache.class);
+
         Multibinder.newSetBinder(binder(), Resource.class)
                 .addBinding()
                 .to(TransferResource.class);
@@ -1,18 +1,27 @@
 package com.revolut.interview.transfer;
 
-import java.math.BigDecimal;
+import com.revolut.interview.money.Money;
+import com.revolut.interview.transactions.TransactionPriority;
+
 import java.util.Objects;
 
 public class TransferRequest {
 
     private final long senderId;
     private final long receiverId;
-    private final BigDecimal amountToTransfer;
+    private final Money amountToTransfer;
+    //Optional in the request body, transfers are interactive unless said otherwise.
+    private final TransactionPriority priority;
+
+    TransferRequest(long senderId, long receiverId, Money amountToTransfer) {
+        this(senderId, receiverId, amountToTransfer, TransactionPriority.INTERACTIVE);
+    }
 
-    TransferRequest(long senderId, long receiverId, BigDecimal amountToTransfer) {
+    TransferRequest(long senderId, long receiverId, Money amountToTransfer, TransactionPriority priority) {
         this.senderId = senderId;
         this.receiverId = receiverId;
         this.amountToTransfer = amountToTransfer;
+        this.priority = priority;
     }
 
     public long getSenderId() {
@@ -23,10 +32,14 @@ public class TransferRequest {
         return receiverId;
     }
 
-    public BigDecimal getAmountToTransfer() {
+    public Money getAmountToTransfer() {
         return amountToTransfer;
     }
 
+    public TransactionPriority getPriority() {
+        return priority == null ? TransactionPriority.INTERACTIVE : priority;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -34,12 +47,13 @@ public class TransferRequest {
         TransferRequest that = (TransferRequest) o;
         return senderId == that.senderId &&
                 receiverId == that.receiverId &&
-                amountToTransfer.compareTo(that.amountToTransfer) == 0;
+                amountToTransfer.equals(that.amountToTransfer) &&
+                getPriority() == that.getPriority();
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(senderId, receiverId, amountToTransfer);
+        return Objects.hash(senderId, receiverId, amountToTransfer, getPriority());
     }
 
     @Override
@@ -48,6 +62,7 @@ public class TransferRequest {
                 "senderId=" + senderId +
                 ", receiverId=" + receiverId +
                 ", amountToTransfer='" + amountToTransfer + '\'' +
+                ", priority=" + getPriority() +
                 '}';
     }
 }
@@ -2,6 +2,7 @@ package com.revolut.interview.transfer;
 
 import com.google.gson.Gson;
 import com.revolut.interview.rest.Resource;
+import com.revolut.interview.transactions.TransactionState;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.jetty.http.HttpStatus;
@@ -12,12 +13,26 @@ import spark.Service;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static com.revolut.interview.transactions.TransactionState.PENDING;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 @Singleton
 class TransferResource implements Resource {
 
     private static final Logger LOGGER = LogManager.getLogger();
 
+    //Keeps a request thread from being held for longer than this, whatever the client asks for.
+    private static final long MAX_WAIT_MILLIS = 30_000;
+
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     private final TransferService transferService;
     private final Gson gson;
 
@@ -27,19 +42,61 @@ class TransferResource implements Resource {
         this.gson = gson;
     }
 
-    private String handleTransfer(Request request, Response response) {
+    //Answers 202 with the transaction id straight away. With ?waitMillis= the request waits up to that long for the
+    //transfer to finish and answers 200 with its final state, falling back to 202 if it is still running.
+    //Retrying with the same Idempotency-Key header answers for the original transfer instead of creating a new one. The
+    //same key with a different transfer is answered with 422.
+    private TransferResponse handleTransfer(Request request, Response response) {
         var transferRequestDTO = gson.fromJson(request.body(), TransferRequest.class);
-        transferService.transfer(transferRequestDTO);
+        var queuedTransfer = transferService.transfer(transferRequestDTO, request.headers(IDEMPOTENCY_KEY_HEADER));
+
+        var waitMillis = request.queryParams("waitMillis");
+        if (waitMillis != null) {
+            var transactionState = await(queuedTransfer.getCompletion(), Math.min(Long.parseLong(waitMillis), MAX_WAIT_MILLIS));
+
+            if (transactionState.isPresent()) {
+                response.status(HttpStatus.OK_200);
+                return new TransferResponse(queuedTransfer.getTransactionId(), transactionState.get());
+            }
+        }
+
+        response.status(HttpStatus.ACCEPTED_202);
+        return new TransferResponse(queuedTransfer.getTransactionId(), queuedTransfer.getCompletion().getNow(PENDING));
+    }
+
+    //Answers 200 with one result per transfer, in the order they were sent.
+    private List<BatchTransferResult> handleBatchTransfer(Request request, Response response) {
+        var transferRequests = gson.fromJson(request.body(), TransferRequest[].class);
+        if (transferRequests == null) {
+            throw new IllegalArgumentException("A batch of transfers is required.");
+        }
+
+        return transferService.transferBatch(Arrays.asList(transferRequests));
+    }
 
-        return "Your money transfer request has been submitted.";
+    private Optional<TransactionState> await(CompletableFuture<TransactionState> completion, long waitMillis) {
+        try {
+            return Optional.of(completion.get(Math.max(0, waitMillis), MILLISECONDS));
+        } catch (TimeoutException | ExecutionException e) {
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        }
     }
 
     @Override
     public void register(Service spark) {
         spark.post("/api/transfer", this::handleTransfer);
+        spark.post("/api/transfer/batch", this::handleBatchTransfer);
 
         spark.exception(AccountNotFoundException.class, getBadRequestHandler());
         spark.exception(InsufficientBalanceException.class, getBadRequestHandler());
+        spark.exception(IdempotencyKeyReusedException.class, (exception, request, response) -> {
+            response.status(HttpStatus.UNPROCESSABLE_ENTITY_422);
+            response.body(exception.getMessage());
+            LOGGER.error(exception);
+        });
 
         spark.after("/api/transfer/*", (request, response) -> response.type("application/json"));
     }
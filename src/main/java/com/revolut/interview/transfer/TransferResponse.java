@@ -0,0 +1,38 @@
+package com.revolut.interview.transfer;
+
+import com.revolut.interview.transactions.TransactionState;
+
+import java.util.Objects;
+
+class TransferResponse {
+
+    private final long transactionId;
+    private final TransactionState transactionState;
+
+    TransferResponse(long transactionId, TransactionState transactionState) {
+        this.transactionId = transactionId;
+        this.transactionState = transactionState;
+    }
+
+    long getTransactionId() {
+        return transactionId;
+    }
+
+    TransactionState getTransactionState() {
+        return transactionState;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TransferResponse)) return false;
+        TransferResponse that = (TransferResponse) o;
+        return transactionId == that.transactionId &&
+                transactionState == that.transactionState;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(transactionId, transactionState);
+    }
+}
@@ -1,75 +1,292 @@
 package com.revolut.interview.transfer;
 
-import com.revolut.interview.account.AccountsDAO;
+import com.revolut.interview.account.Account;
+import com.revolut.interview.account.AccountCache;
+import com.revolut.interview.lifecycle.Managed;
+import com.revolut.interview.money.Money;
 import com.revolut.interview.transactions.TransactionDAO;
 import com.revolut.interview.transactions.TransactionEntity;
+import com.revolut.interview.transactions.TransactionPriority;
 import com.revolut.interview.transactions.TransactionService;
 import com.revolut.interview.transactions.TransactionState;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Singleton;
-import java.math.BigDecimal;
+import javax.persistence.PersistenceException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static java.util.Objects.requireNonNull;
 
 @Singleton
-class TransferService {
+class TransferService implements Managed {
+
+    static final String MAX_BATCH_SIZE = "MAX_BATCH_SIZE";
 
     private static final Logger LOGGER = LogManager.getLogger();
 
-    private final AccountsDAO accountsDAO;
+    private final AccountCache accountCache;
     private final TransactionDAO transactionDAO;
 
     private final TransactionService transactionHandler;
+    private final IdempotencyCache idempotencyCache;
+    private final int maxBatchSize;
+
+    //Held while transactions are saved and queued. Shutting down takes it exclusively, so no transaction is saved once
+    //the processors may have stopped accepting them, and none is left saved but not queued.
+    private final ReadWriteLock admission = new ReentrantReadWriteLock();
+    private boolean draining;
 
     @Inject
-    TransferService(AccountsDAO accountsDAO, TransactionDAO transactionDAO, TransactionService transactionHandler) {
-        this.accountsDAO = accountsDAO;
+    TransferService(AccountCache accountCache,
+                    TransactionDAO transactionDAO,
+                    TransactionService transactionHandler,
+                    IdempotencyCache idempotencyCache,
+                    @Named(MAX_BATCH_SIZE) int maxBatchSize) {
+        this.accountCache = accountCache;
         this.transactionDAO = transactionDAO;
         this.transactionHandler = transactionHandler;
+        this.idempotencyCache = idempotencyCache;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public QueuedTransfer transfer(TransferRequest transferRequestDTO) {
+        return transfer(transferRequestDTO, null);
     }
 
-    public void transfer(TransferRequest transferRequestDTO) {
+    //A transfer with an idempotency key that has been seen before is not created again, the original is returned. The
+    //key has to come with the same transfer as the first time.
+    public QueuedTransfer transfer(TransferRequest transferRequestDTO, String idempotencyKey) {
         checkValidArgs(transferRequestDTO);
 
+        byte[] requestHash = null;
+        if (idempotencyKey != null) {
+            checkValidKey(idempotencyKey);
+            requestHash = hashOf(transferRequestDTO);
+
+            var known = idempotencyCache.get(idempotencyKey)
+                    .or(() -> findByIdempotencyKey(idempotencyKey));
+
+            if (known.isPresent()) {
+                LOGGER.info("Transfer with idempotency key {} already exists as transaction {}.", idempotencyKey, known.get().getTransactionId());
+                return checkSameRequest(known.get(), idempotencyKey, requestHash);
+            }
+        }
+
         LOGGER.info("Initiating money transfer {}.", transferRequestDTO);
 
-        var transaction = createTransaction(transferRequestDTO);
+        admission.readLock().lock();
+        try {
+            checkAccepting();
+
+            TransactionEntity transaction;
+            try {
+                transaction = createTransaction(transferRequestDTO, idempotencyKey);
+            } catch (PersistenceException e) {
+                //Most likely a concurrent request with the same key got there first.
+                if (idempotencyKey == null) {
+                    throw e;
+                }
+                var winner = findByIdempotencyKey(idempotencyKey)
+                        .orElseThrow(() -> e);
+                return checkSameRequest(winner, idempotencyKey, requestHash);
+            }
+
+            var queuedTransfer = new QueuedTransfer(transaction.getId(), transactionHandler.queue(transaction.getId()), requestHash);
+            if (idempotencyKey != null) {
+                idempotencyCache.put(idempotencyKey, queuedTransfer);
+            }
+
+            return queuedTransfer;
+        } finally {
+            admission.readLock().unlock();
+        }
+    }
+
+    //Validates every transfer against one lookup of all the accounts involved, inserts the valid ones in JDBC batches
+    //and queues them together. Invalid transfers are reported in their slot of the result and do not stop the rest.
+    public List<BatchTransferResult> transferBatch(List<TransferRequest> transferRequests) {
+        requireNonNull(transferRequests);
+
+        if (transferRequests.size() > maxBatchSize) {
+            throw new IllegalArgumentException("A batch can hold at most " + maxBatchSize + " transfers. Provided: " + transferRequests.size());
+        }
+
+        LOGGER.info("Initiating a batch of {} money transfers.", transferRequests.size());
+
+        var accountIds = new HashSet<Long>();
+        for (var transferRequest : transferRequests) {
+            if (transferRequest != null) {
+                accountIds.add(transferRequest.getSenderId());
+                accountIds.add(transferRequest.getReceiverId());
+            }
+        }
+        var accounts = accountCache.getAll(accountIds);
+
+        var results = new BatchTransferResult[transferRequests.size()];
+        var toSave = new ArrayList<TransactionEntity>();
+        var savedIndexes = new ArrayList<Integer>();
+
+        for (int i = 0; i < transferRequests.size(); i++) {
+            var transferRequest = transferRequests.get(i);
+            if (transferRequest == null) {
+                results[i] = BatchTransferResult.rejected("Transfer cannot be empty.");
+                continue;
+            }
+
+            try {
+                checkValidArgs(transferRequest);
+                toSave.add(newTransaction(transferRequest,
+                        Optional.ofNullable(accounts.get(transferRequest.getSenderId())),
+                        Optional.ofNullable(accounts.get(transferRequest.getReceiverId()))));
+                savedIndexes.add(i);
+            } catch (IllegalArgumentException e) {
+                results[i] = BatchTransferResult.rejected(e.getMessage());
+            }
+        }
+
+        List<TransactionEntity> saved;
+        admission.readLock().lock();
+        try {
+            checkAccepting();
+
+            saved = transactionDAO.saveAll(toSave);
+            transactionHandler.queueAll(saved);
+        } finally {
+            admission.readLock().unlock();
+        }
+
+        for (int i = 0; i < saved.size(); i++) {
+            results[savedIndexes.get(i)] = BatchTransferResult.accepted(saved.get(i).getId(), saved.get(i).getTransactionState());
+        }
+
+        return Arrays.asList(results);
+    }
+
+    @Override
+    public void stop() {
+        admission.writeLock().lock();
+        try {
+            draining = true;
+        } finally {
+            admission.writeLock().unlock();
+        }
+    }
+
+    //Answered with 503. Checked before saving, a rejected transfer leaves no pending transaction for recovery to run.
+    private void checkAccepting() {
+        if (draining) {
+            throw new RejectedExecutionException("Transfers are not accepted while shutting down.");
+        }
+    }
+
+    private Optional<QueuedTransfer> findByIdempotencyKey(String idempotencyKey) {
+        var queuedTransfer = transactionDAO.findByIdempotencyKey(idempotencyKey)
+                .map(transaction -> new QueuedTransfer(
+                        transaction.getId(),
+                        transactionHandler.completionOf(transaction.getId()),
+                        hashOf(transaction.getSenderId(), transaction.getReceiverId(), transaction.getAmount(), transaction.getPriority())
+                ));
+
+        queuedTransfer.ifPresent(transfer -> idempotencyCache.put(idempotencyKey, transfer));
+
+        return queuedTransfer;
+    }
+
+    //Answered with 422, a client reusing a key for another transfer would otherwise be told it went through.
+    private static QueuedTransfer checkSameRequest(QueuedTransfer known, String idempotencyKey, byte[] requestHash) {
+        if (!known.isRequestedBy(requestHash)) {
+            throw new IdempotencyKeyReusedException(idempotencyKey);
+        }
+
+        return known;
+    }
+
+    private static byte[] hashOf(TransferRequest transferRequestDTO) {
+        return hashOf(transferRequestDTO.getSenderId(), transferRequestDTO.getReceiverId(),
+                transferRequestDTO.getAmountToTransfer(), transferRequestDTO.getPriority());
+    }
 
-        transactionHandler.queue(transaction.getId());
+    //Taken over the parsed fields, so the same transfer formatted differently hashes the same. The database keeps the
+    //fields of the transaction, so a key only known there is checked with the hash of the transaction.
+    private static byte[] hashOf(long senderId, long receiverId, Money amount, TransactionPriority priority) {
+        var fields = ByteBuffer.allocate(3 * Long.BYTES)
+                .putLong(senderId)
+                .putLong(receiverId)
+                .putLong(amount.getMinorUnits());
+
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(fields.array());
+            digest.update(priority.name().getBytes(StandardCharsets.US_ASCII));
+
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            //Every Java platform has to provide it.
+            throw new IllegalStateException(e);
+        }
     }
 
-    private TransactionEntity createTransaction(TransferRequest transferRequestDTO) {
-        var senderId = transferRequestDTO.getSenderId();
-        var receiverId = transferRequestDTO.getReceiverId();
-        var moneyToTransfer = transferRequestDTO.getAmountToTransfer();
+    private TransactionEntity createTransaction(TransferRequest transferRequestDTO, String idempotencyKey) {
+        var transactionEntity = newTransaction(
+                transferRequestDTO,
+                accountCache.get(transferRequestDTO.getSenderId()),
+                accountCache.get(transferRequestDTO.getReceiverId())
+        );
+        transactionEntity.setIdempotencyKey(idempotencyKey);
 
-        var senderEntity = accountsDAO.findById(senderId)
-                .orElseThrow(() -> new AccountNotFoundException(senderId));
+        return transactionDAO.save(transactionEntity);
+    }
 
-        var receiverEntity = accountsDAO.findById(receiverId)
-                .orElseThrow(() -> new AccountNotFoundException(receiverId));
+    //The balance may be a little behind a transfer that is still running, the executor checks it again when it moves
+    //the money.
+    private TransactionEntity newTransaction(TransferRequest transferRequestDTO,
+                                             Optional<Account> sender,
+                                             Optional<Account> receiver) {
+        var senderAccount = sender.orElseThrow(() -> new AccountNotFoundException(transferRequestDTO.getSenderId()));
+        var receiverAccount = receiver.orElseThrow(() -> new AccountNotFoundException(transferRequestDTO.getReceiverId()));
 
-        if (senderEntity.getBalance().compareTo(transferRequestDTO.getAmountToTransfer()) < 0) {
-            throw new InsufficientBalanceException(senderEntity.getBalance(), transferRequestDTO.getAmountToTransfer());
+        var senderBalance = senderAccount.getBalance();
+        if (senderBalance.isLessThan(transferRequestDTO.getAmountToTransfer())) {
+            throw new InsufficientBalanceException(senderBalance, transferRequestDTO.getAmountToTransfer());
         }
 
-        return transactionDAO.save(
-                new TransactionEntity(
-                        senderEntity,
-                        receiverEntity,
-                        moneyToTransfer,
-                        TransactionState.PENDING
-                )
+        return new TransactionEntity(
+                senderAccount.getId(),
+                receiverAccount.getId(),
+                transferRequestDTO.getAmountToTransfer(),
+                TransactionState.PENDING,
+                transferRequestDTO.getPriority()
         );
     }
 
+    private void checkValidKey(String idempotencyKey) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > TransactionEntity.IDEMPOTENCY_KEY_MAX_LENGTH) {
+            throw new IllegalArgumentException("Idempotency key should be between 1 and " + TransactionEntity.IDEMPOTENCY_KEY_MAX_LENGTH + " characters long.");
+        }
+    }
+
     private void checkValidArgs(TransferRequest transferRequestDTO) {
         requireNonNull(transferRequestDTO);
 
-        if (transferRequestDTO.getAmountToTransfer().compareTo(BigDecimal.ZERO) <= 0) {
+        if (transferRequestDTO.getAmountToTransfer() == null) {
+            throw new IllegalArgumentException("Money to transfer is required.");
+        }
+
+        if (transferRequestDTO.getAmountToTransfer().signum() <= 0) {
             throw new IllegalArgumentException("Money to transfer should be greater than 0. Provided: " + transferRequestDTO.getAmountToTransfer());
         }
 
@@ -0,0 +1,142 @@
+package com.revolut.interview.account;
+
+import com.revolut.interview.money.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AccountCacheTest {
+
+    private static final Money TEN = Money.of("10");
+    private static final Money ONE = Money.of("1");
+
+    @Mock
+    private AccountsDAO accountsDAO;
+    @Mock
+    private AccountShardsDAO accountShardsDAO;
+    @Mock
+    private AccountLedger accountLedger;
+
+    private AccountShards accountShards;
+    private AccountCache accountCache;
+
+    @BeforeEach
+    void setUp() {
+        this.accountShards = new AccountShards(accountsDAO, accountShardsDAO, null, accountLedger);
+        this.accountCache = new AccountCache(accountsDAO, accountShards, 1024);
+    }
+
+    @Test
+    void getShouldLoadOnceAndThenServeFromTheCache() {
+        when(accountsDAO.findById(1L)).thenReturn(Optional.of(account(1L, TEN)));
+
+        assertEquals(new Account(1L, TEN), accountCache.get(1L).orElseThrow());
+        assertEquals(new Account(1L, TEN), accountCache.get(1L).orElseThrow());
+
+        verify(accountsDAO, times(1)).findById(1L);
+        assertEquals(1L, accountCache.getMetrics().get("hits").longValue());
+        assertEquals(1L, accountCache.getMetrics().get("misses").longValue());
+    }
+
+    @Test
+    void getShouldNotCacheMissingAccounts() {
+        assertTrue(accountCache.get(1L).isEmpty());
+        assertTrue(accountCache.get(1L).isEmpty());
+
+        verify(accountsDAO, times(2)).findById(1L);
+    }
+
+    @Test
+    void invalidateShouldMakeTheNextGetLoadTheCommittedBalance() {
+        when(accountsDAO.findById(1L)).thenReturn(Optional.of(account(1L, TEN)))
+                .thenReturn(Optional.of(account(1L, ONE)));
+
+        accountCache.get(1L);
+        accountCache.invalidate(1L);
+
+        assertEquals(new Account(1L, ONE), accountCache.get(1L).orElseThrow());
+        assertEquals(1L, accountCache.getMetrics().get("invalidations").longValue());
+    }
+
+    @Test
+    void loadRacingWithAnInvalidationShouldNotBeCached() {
+        when(accountsDAO.findById(1L)).thenAnswer(invocation -> {
+            //A transfer commits while the balance from before it is being read.
+            accountCache.invalidate(1L);
+            return Optional.of(account(1L, TEN));
+        });
+
+        accountCache.get(1L);
+        accountCache.get(1L);
+
+        verify(accountsDAO, times(2)).findById(1L);
+    }
+
+    @Test
+    void getAllShouldLoadOnlyTheMissesInOneQuery() {
+        when(accountsDAO.findById(1L)).thenReturn(Optional.of(account(1L, TEN)));
+        when(accountsDAO.findAllById(Set.of(2L, 3L))).thenReturn(Map.of(2L, account(2L, ONE)));
+
+        accountCache.get(1L);
+        var accounts = accountCache.getAll(List.of(1L, 2L, 3L));
+
+        assertEquals(Map.of(1L, new Account(1L, TEN), 2L, new Account(2L, ONE)), accounts);
+        verify(accountsDAO).findAllById(Set.of(2L, 3L));
+
+        accountCache.get(2L);
+        verify(accountsDAO, never()).findById(2L);
+    }
+
+    @Test
+    void putShouldWriteThrough() {
+        accountCache.put(new Account(1L, TEN));
+
+        assertEquals(new Account(1L, TEN), accountCache.get(1L).orElseThrow());
+        verify(accountsDAO, never()).findById(1L);
+    }
+
+    @Test
+    void cacheShouldEvictWhenFull() {
+        var singleSlot = new AccountCache(accountsDAO, accountShards, 1);
+
+        singleSlot.put(new Account(1L, TEN));
+        singleSlot.put(new Account(2L, ONE));
+
+        assertEquals(1, singleSlot.getMetrics().get("size").intValue());
+        assertEquals(1L, singleSlot.getMetrics().get("evictions").longValue());
+    }
+
+    @Test
+    void capacityShouldBeRoundedUpToAPowerOfTwo() {
+        assertEquals(1024, new AccountCache(accountsDAO, accountShards, 1000).getMetrics().get("capacity").intValue());
+        assertEquals(1, new AccountCache(accountsDAO, accountShards, 1).getMetrics().get("capacity").intValue());
+    }
+
+    @Test
+    void sizeBelowOneShouldBeRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new AccountCache(accountsDAO, accountShards, 0));
+    }
+
+    private static AccountEntity account(long id, Money balance) {
+        var account = new AccountEntity(balance);
+        account.setId(id);
+
+        return account;
+    }
+}
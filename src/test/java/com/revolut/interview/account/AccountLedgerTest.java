@@ -0,0 +1,280 @@
+package com.revolut.interview.account;
+
+import com.revolut.interview.money.Money;
+import com.revolut.interview.persistence.Journal;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.transaction.Synchronization;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static javax.transaction.Status.STATUS_COMMITTED;
+import static javax.transaction.Status.STATUS_ROLLEDBACK;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AccountLedgerTest {
+
+    private static final Money HUNDRED = Money.of("100");
+    private static final Money TEN = Money.of("10");
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private AccountsDAO accountsDAO;
+    @Mock
+    private AccountShardsDAO accountShardsDAO;
+    @Mock
+    private Session session;
+    @Mock
+    private Transaction dbTransaction;
+    @Mock
+    private Transaction otherDbTransaction;
+
+    private final List<Synchronization> synchronizations = new ArrayList<>();
+    private final List<Synchronization> otherSynchronizations = new ArrayList<>();
+
+    private AccountLedger accountLedger;
+    private LedgerSnapshots snapshots;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(accountsDAO.findById(1L)).thenReturn(Optional.of(account(1L, HUNDRED)));
+        lenient().when(accountsDAO.findById(2L)).thenReturn(Optional.of(account(2L, Money.ZERO)));
+
+        lenient().when(session.getTransaction()).thenReturn(dbTransaction);
+        lenient().when(dbTransaction.isActive()).thenReturn(true);
+        lenient().when(otherDbTransaction.isActive()).thenReturn(true);
+        lenient().doAnswer(invocation -> synchronizations.add(invocation.getArgument(0)))
+                .when(dbTransaction).registerSynchronization(any());
+        lenient().doAnswer(invocation -> otherSynchronizations.add(invocation.getArgument(0)))
+                .when(otherDbTransaction).registerSynchronization(any());
+
+        this.accountLedger = openLedger();
+    }
+
+    @Test
+    void transferShouldMoveTheMoneyInMemory() {
+        assertTrue(accountLedger.transfer(7L, 1L, 2L, TEN));
+
+        assertEquals(Optional.of(Money.of("90")), accountLedger.balanceOf(1L));
+        assertEquals(Optional.of(TEN), accountLedger.balanceOf(2L));
+    }
+
+    @Test
+    void accountsShouldOpenWithTheBalanceOfTheirRowsOnlyOnce() {
+        accountLedger.transfer(7L, 1L, 2L, TEN);
+        accountLedger.transfer(8L, 1L, 2L, TEN);
+
+        verify(accountsDAO, times(1)).findById(1L);
+        verify(accountsDAO, times(1)).findById(2L);
+    }
+
+    @Test
+    void shardedAccountsShouldOpenWithTheirShardsIncluded() {
+        var sharded = account(3L, TEN);
+        sharded.setShardCount(4);
+        when(accountsDAO.findById(3L)).thenReturn(Optional.of(sharded));
+        when(accountShardsDAO.totalBalance(3L)).thenReturn(Money.of("15"));
+
+        assertTrue(accountLedger.transfer(7L, 3L, 2L, Money.of("15")));
+
+        assertEquals(Optional.of(Money.ZERO), accountLedger.balanceOf(3L));
+    }
+
+    @Test
+    void transferShouldFailWithoutChangingBalancesWhenSenderCannotAffordIt() {
+        assertFalse(accountLedger.transfer(7L, 2L, 1L, TEN));
+
+        assertEquals(Optional.of(HUNDRED), accountLedger.balanceOf(1L));
+        assertEquals(Optional.of(Money.ZERO), accountLedger.balanceOf(2L));
+    }
+
+    @Test
+    void transferShouldFailWhenAnAccountDoesNotExist() {
+        when(accountsDAO.findById(3L)).thenReturn(Optional.empty());
+
+        assertFalse(accountLedger.transfer(7L, 1L, 3L, TEN));
+
+        assertEquals(Optional.empty(), accountLedger.balanceOf(3L));
+    }
+
+    @Test
+    void transactionShouldNotBeAppliedAgainBeforeItIsSettled() {
+        assertTrue(accountLedger.transfer(7L, 1L, 2L, TEN));
+
+        assertThrows(IllegalStateException.class, () -> accountLedger.transfer(7L, 1L, 2L, TEN));
+
+        assertEquals(Optional.of(Money.of("90")), accountLedger.balanceOf(1L));
+        assertEquals(1L, accountLedger.getMetrics().get("appliedTransfers").longValue());
+    }
+
+    @Test
+    void transferShouldBeSettledWhenItsDatabaseTransactionCommits() {
+        accountLedger.transfer(7L, 1L, 2L, TEN);
+
+        complete(synchronizations, STATUS_COMMITTED);
+
+        assertEquals(Optional.of(Money.of("90")), accountLedger.balanceOf(1L));
+        assertEquals(Optional.of(TEN), accountLedger.balanceOf(2L));
+        assertEquals(1L, accountLedger.getMetrics().get("settledTransfers").longValue());
+    }
+
+    @Test
+    void transferShouldBeReversedWhenItsDatabaseTransactionRollsBack() {
+        accountLedger.transfer(7L, 1L, 2L, TEN);
+        accountLedger.transfer(8L, 2L, 1L, Money.of("2.50"));
+
+        complete(synchronizations, STATUS_ROLLEDBACK);
+
+        assertEquals(Optional.of(HUNDRED), accountLedger.balanceOf(1L));
+        assertEquals(Optional.of(Money.ZERO), accountLedger.balanceOf(2L));
+        assertEquals(2L, accountLedger.getMetrics().get("reversedTransfers").longValue());
+    }
+
+    @Test
+    void parkedTransferShouldMoveTheMoneyOnceWhenRequeued() {
+        //Its group rolled back and it was parked, however many transfers go through before it is requeued.
+        accountLedger.transfer(7L, 1L, 2L, TEN);
+        complete(synchronizations, STATUS_ROLLEDBACK);
+
+        assertTrue(accountLedger.transfer(7L, 1L, 2L, TEN));
+        complete(synchronizations, STATUS_COMMITTED);
+
+        assertEquals(Optional.of(Money.of("90")), accountLedger.balanceOf(1L));
+        assertEquals(Optional.of(TEN), accountLedger.balanceOf(2L));
+    }
+
+    @Test
+    void moneyReceivedInAnUncommittedTransactionShouldOnlyBeSpendableByIt() {
+        assertTrue(accountLedger.transfer(7L, 1L, 2L, TEN));
+        assertTrue(accountLedger.transfer(8L, 2L, 1L, Money.of("2.50")));
+
+        when(session.getTransaction()).thenReturn(otherDbTransaction);
+        assertFalse(accountLedger.transfer(9L, 2L, 1L, Money.of("2.50")));
+
+        complete(synchronizations, STATUS_COMMITTED);
+        assertTrue(accountLedger.transfer(9L, 2L, 1L, Money.of("2.50")));
+
+        complete(otherSynchronizations, STATUS_COMMITTED);
+        assertEquals(Optional.of(Money.of("5")), accountLedger.balanceOf(2L));
+    }
+
+    @Test
+    void transferOutsideOfADatabaseTransactionShouldBeRejected() {
+        when(dbTransaction.isActive()).thenReturn(false);
+
+        assertThrows(IllegalStateException.class, () -> accountLedger.transfer(7L, 1L, 2L, TEN));
+        assertEquals(Optional.empty(), accountLedger.balanceOf(1L));
+    }
+
+    @Test
+    void balancesShouldBeRebuiltFromTheJournal() {
+        accountLedger.transfer(7L, 1L, 2L, TEN);
+        accountLedger.transfer(8L, 2L, 1L, Money.of("2.50"));
+        complete(synchronizations, STATUS_COMMITTED);
+        accountLedger.stop();
+
+        var reopened = openLedger();
+
+        assertEquals(Optional.of(Money.of("92.50")), reopened.balanceOf(1L));
+        assertEquals(Optional.of(Money.of("7.50")), reopened.balanceOf(2L));
+        assertEquals(0, reopened.resolveUnsettled(transactionId -> true));
+
+        verify(accountsDAO, times(1)).findById(1L);
+    }
+
+    @Test
+    void recoveryShouldOnlyReplayTheJournalAfterTheNewestSnapshot() {
+        accountLedger.transfer(7L, 1L, 2L, TEN);
+        complete(synchronizations, STATUS_COMMITTED);
+        snapshots.take();
+        accountLedger.transfer(8L, 1L, 2L, TEN);
+        complete(synchronizations, STATUS_COMMITTED);
+        accountLedger.stop();
+
+        var reopened = openLedger();
+
+        assertEquals(Optional.of(Money.of("80")), reopened.balanceOf(1L));
+        assertEquals(Optional.of(Money.of("20")), reopened.balanceOf(2L));
+        //The settlement of 7 was not synced yet when the snapshot was taken, then 8 and its settlement.
+        assertEquals(3L, reopened.getMetrics().get("replayedRecords").longValue());
+        assertEquals(0, reopened.resolveUnsettled(transactionId -> true));
+    }
+
+    @Test
+    void transfersLeftUnsettledByACrashShouldBeKeptOrReversedAtBoot() {
+        accountLedger.transfer(7L, 1L, 2L, TEN);
+        accountLedger.transfer(8L, 1L, 2L, Money.of("5"));
+        accountLedger.stop();
+
+        var reopened = openLedger();
+
+        //Only 7 committed as succeeded before the crash.
+        assertEquals(2, reopened.resolveUnsettled(transactionId -> transactionId == 7L));
+        assertEquals(Optional.of(Money.of("90")), reopened.balanceOf(1L));
+        assertEquals(Optional.of(TEN), reopened.balanceOf(2L));
+        reopened.stop();
+
+        var resolved = openLedger();
+
+        assertEquals(0, resolved.resolveUnsettled(transactionId -> false));
+        assertEquals(Optional.of(Money.of("90")), resolved.balanceOf(1L));
+    }
+
+    @Test
+    void disabledLedgerShouldHoldNothingAndNotOpenTheJournal() {
+        var disabled = new AccountLedger(false, () -> {
+            throw new AssertionError("The journal should not be opened.");
+        }, () -> {
+            throw new AssertionError("Snapshots should not be loaded.");
+        }, accountsDAO, accountShardsDAO, () -> session);
+
+        assertEquals(Optional.empty(), disabled.balanceOf(1L));
+        assertThrows(IllegalStateException.class, () -> disabled.transfer(7L, 1L, 2L, TEN));
+        verify(accountsDAO, never()).findById(anyLong());
+    }
+
+    private AccountLedger openLedger() {
+        var journal = Journal.open(directory, Journal.RECORD_BYTES * 1024, true);
+        this.snapshots = new LedgerSnapshots(directory.toString(), 0, journal);
+
+        return new AccountLedger(true, () -> journal, () -> snapshots, accountsDAO, accountShardsDAO, () -> session);
+    }
+
+    //Hibernate calls back once the database transaction is over.
+    private static void complete(List<Synchronization> registered, int status) {
+        var completing = List.copyOf(registered);
+        registered.clear();
+
+        completing.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+
+    private static AccountEntity account(long id, Money balance) {
+        var account = new AccountEntity(balance);
+        account.setId(id);
+
+        return account;
+    }
+}
@@ -0,0 +1,186 @@
+package com.revolut.interview.account;
+
+import com.revolut.interview.money.Money;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.inject.Provider;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AccountShardsTest {
+
+    private static final Money TEN = Money.of("10");
+    private static final Money ONE = Money.of("1");
+
+    @Mock
+    private AccountsDAO accountsDAO;
+    @Mock
+    private AccountShardsDAO accountShardsDAO;
+    @Mock
+    private AccountLedger accountLedger;
+    @Mock
+    private Provider<Session> sessionProvider;
+    @Mock
+    private Session session;
+    @Mock
+    private Transaction transaction;
+
+    private AccountShards accountShards;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(sessionProvider.get()).thenReturn(session);
+        lenient().when(session.beginTransaction()).thenReturn(transaction);
+        lenient().when(accountsDAO.findShardCounts()).thenReturn(Map.of(1L, 4));
+
+        this.accountShards = new AccountShards(accountsDAO, accountShardsDAO, sessionProvider, accountLedger);
+    }
+
+    @Test
+    void creditToShardedAccountShouldGoToOneOfItsShards() {
+        when(accountShardsDAO.credit(eq(1L), anyInt(), eq(TEN))).thenReturn(true);
+
+        assertTrue(accountShards.credit(1L, TEN));
+
+        verify(accountsDAO, never()).credit(anyLong(), any());
+        assertEquals(1L, accountShards.getMetrics().get("shardCredits"));
+    }
+
+    @Test
+    void creditToUnshardedAccountShouldGoToTheAccountRow() {
+        when(accountsDAO.credit(2L, TEN)).thenReturn(true);
+
+        assertTrue(accountShards.credit(2L, TEN));
+
+        verify(accountShardsDAO, never()).credit(anyLong(), anyInt(), any());
+    }
+
+    @Test
+    void debitShouldTakeTheAccountRowFirst() {
+        when(accountsDAO.debitIfSufficient(1L, TEN)).thenReturn(true);
+
+        assertTrue(accountShards.debit(1L, TEN));
+
+        verify(accountShardsDAO, never()).debitIfSufficient(anyLong(), anyInt(), any());
+    }
+
+    @Test
+    void debitShouldSweepShardsWhenNeitherTheAccountRowNorOneShardCanCoverIt() {
+        when(accountsDAO.debitIfSufficient(1L, TEN)).thenReturn(false, true);
+        when(accountShardsDAO.debitIfSufficient(eq(1L), anyInt(), eq(TEN))).thenReturn(false);
+        when(accountShardsDAO.findBalances(1L)).thenReturn(balances(Money.of("6"), Money.ZERO, Money.of("4")));
+        when(accountShardsDAO.debitIfSufficient(eq(1L), anyInt(), eq(Money.of("6")))).thenReturn(true);
+        when(accountShardsDAO.debitIfSufficient(eq(1L), anyInt(), eq(Money.of("4")))).thenReturn(true);
+
+        assertTrue(accountShards.debit(1L, TEN));
+
+        verify(accountsDAO).credit(1L, Money.of("6"));
+        verify(accountsDAO).credit(1L, Money.of("4"));
+        assertEquals(1L, accountShards.getMetrics().get("sweeps"));
+    }
+
+    @Test
+    void debitFromUnshardedAccountShouldNotLookAtShards() {
+        when(accountsDAO.debitIfSufficient(2L, TEN)).thenReturn(false);
+
+        assertFalse(accountShards.debit(2L, TEN));
+
+        verify(accountShardsDAO, never()).findBalances(anyLong());
+    }
+
+    @Test
+    void balanceOfShardedAccountShouldReadTheRowAndItsShardsTogether() {
+        var account = new AccountEntity(TEN);
+        account.setId(1L);
+        account.setShardCount(4);
+        when(accountShardsDAO.totalBalance(1L)).thenReturn(Money.of("11"));
+
+        assertEquals(Money.of("11"), accountShards.balanceOf(account));
+        verify(accountShardsDAO, never()).sumBalances(anyLong());
+    }
+
+    @Test
+    void reshardShouldSweepAndRecreateShards() {
+        when(accountsDAO.updateShardCount(2L, 3)).thenReturn(true);
+        when(accountShardsDAO.findBalances(2L)).thenReturn(new TreeMap<>());
+
+        assertTrue(accountShards.reshard(2L, 3));
+
+        verify(accountShardsDAO).deleteByAccountId(2L);
+        verify(accountShardsDAO, times(3)).save(any(AccountShardEntity.class));
+        verify(transaction).commit();
+        assertTrue(accountShards.isSharded(2L));
+    }
+
+    @Test
+    void reshardToZeroShouldFoldTheAccountBackIntoOneRow() {
+        when(accountsDAO.updateShardCount(1L, 0)).thenReturn(true);
+        when(accountShardsDAO.findBalances(1L)).thenReturn(balances(TEN));
+        when(accountShardsDAO.debitIfSufficient(1L, 0, TEN)).thenReturn(true);
+
+        assertTrue(accountShards.reshard(1L, 0));
+
+        verify(accountsDAO).credit(1L, TEN);
+        verify(accountShardsDAO, never()).save(any(AccountShardEntity.class));
+        assertFalse(accountShards.isSharded(1L));
+    }
+
+    @Test
+    void reshardShouldReturnFalseWhenAccountDoesNotExist() {
+        when(accountsDAO.updateShardCount(3L, 2)).thenReturn(false);
+
+        assertFalse(accountShards.reshard(3L, 2));
+
+        verify(accountShardsDAO, never()).deleteByAccountId(anyLong());
+        assertFalse(accountShards.isSharded(3L));
+    }
+
+    @Test
+    void reshardShouldRejectNegativeShardCount() {
+        assertThrows(IllegalArgumentException.class, () -> accountShards.reshard(1L, -1));
+    }
+
+    @Test
+    void consolidateAllShouldSweepEveryShardedAccountInItsOwnTransaction() {
+        when(accountShardsDAO.findBalances(1L)).thenReturn(balances(ONE, TEN));
+        when(accountShardsDAO.debitIfSufficient(1L, 0, ONE)).thenReturn(true);
+        when(accountShardsDAO.debitIfSufficient(1L, 1, TEN)).thenReturn(true);
+
+        accountShards.consolidateAll();
+
+        verify(accountsDAO).credit(1L, ONE);
+        verify(accountsDAO).credit(1L, TEN);
+        verify(transaction).commit();
+        assertEquals(1L, accountShards.getMetrics().get("consolidations"));
+    }
+
+    private static Map<Integer, Money> balances(Money... shardBalances) {
+        var balances = new TreeMap<Integer, Money>();
+        for (int i = 0; i < shardBalances.length; i++) {
+            balances.put(i, shardBalances[i]);
+        }
+
+        return balances;
+    }
+}
@@ -1,5 +1,6 @@
 package com.revolut.interview.account;
 
+import com.revolut.interview.money.Money;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -7,12 +8,13 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.math.BigDecimal;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -21,17 +23,22 @@ class AccountsServiceTest {
 
     @Mock
     private AccountsDAO accountsDAO;
+    @Mock
+    private AccountShardsDAO accountShardsDAO;
+    @Mock
+    private AccountLedger accountLedger;
 
     private AccountsService accountsService;
 
     @BeforeEach
     void setUp() {
-        this.accountsService = new AccountsService(accountsDAO);
+        var accountShards = new AccountShards(accountsDAO, accountShardsDAO, null, accountLedger);
+        this.accountsService = new AccountsService(accountsDAO, accountShards, new AccountCache(accountsDAO, accountShards, 16), false);
     }
 
     @Test
     void getByIdShouldReturnExpectedAccount() {
-        var toReturnAfterSaveFromDAO = new AccountEntity(BigDecimal.TEN);
+        var toReturnAfterSaveFromDAO = new AccountEntity(Money.of("10"));
         toReturnAfterSaveFromDAO.setId(1L);
         when(accountsDAO.findById(1L)).thenReturn(Optional.of(toReturnAfterSaveFromDAO));
 
@@ -39,7 +46,35 @@ class AccountsServiceTest {
                 .orElseThrow();
 
         assertEquals(1, account.getId().longValue());
-        assertEquals(BigDecimal.TEN.compareTo(account.getBalance()), 0);
+        assertEquals(Money.of("10"), account.getBalance());
+    }
+
+    @Test
+    void getByIdShouldServeRepeatedReadsFromTheCache() {
+        var accountEntity = new AccountEntity(Money.of("10"));
+        accountEntity.setId(1L);
+        when(accountsDAO.findById(1L)).thenReturn(Optional.of(accountEntity));
+
+        accountsService.getById(1L);
+        var account = accountsService.getById(1L)
+                .orElseThrow();
+
+        assertEquals(Money.of("10"), account.getBalance());
+        verify(accountsDAO, times(1)).findById(1L);
+    }
+
+    @Test
+    void getByIdShouldAddUpShardBalancesOfShardedAccount() {
+        var shardedAccount = new AccountEntity(Money.of("10"));
+        shardedAccount.setId(1L);
+        shardedAccount.setShardCount(4);
+        when(accountsDAO.findById(1L)).thenReturn(Optional.of(shardedAccount));
+        when(accountShardsDAO.totalBalance(1L)).thenReturn(Money.of("15"));
+
+        var account = accountsService.getById(1L)
+                .orElseThrow();
+
+        assertEquals(Money.of("15"), account.getBalance());
     }
 
     @Test
@@ -58,14 +93,46 @@ class AccountsServiceTest {
             return accountEntity;
         });
 
-        var savedAccountEntity = accountsService.save(new Account(null, BigDecimal.TEN));
+        var savedAccountEntity = accountsService.save(new Account(null, Money.of("10")));
 
         var accountEntityCaptor = ArgumentCaptor.forClass(AccountEntity.class);
         verify(accountsDAO).save(accountEntityCaptor.capture());
 
         var entityRequestedToBeSaved = accountEntityCaptor.getValue();
 
-        assertEquals(savedAccountEntity.getBalance().compareTo(entityRequestedToBeSaved.getBalance()), 0);
+        assertEquals(savedAccountEntity.getBalance(), entityRequestedToBeSaved.getBalance());
         assertEquals(savedAccountEntity.getId(), entityRequestedToBeSaved.getId());
     }
+
+    @Test
+    void saveShouldWriteTheNewAccountThroughToTheCache() {
+        when(accountsDAO.save(any(AccountEntity.class))).thenAnswer(invocation -> {
+            var accountEntity = (AccountEntity) invocation.getArgument(0);
+            accountEntity.setId(1L);
+
+            return accountEntity;
+        });
+
+        var saved = accountsService.save(new Account(null, Money.of("10")));
+
+        assertEquals(saved, accountsService.getById(1L).orElseThrow());
+        verify(accountsDAO, never()).findById(1L);
+    }
+
+    @Test
+    void saveShouldRecordTheOpeningPostingWhenPostingsAreEnabled() {
+        var accountShards = new AccountShards(accountsDAO, accountShardsDAO, null, accountLedger);
+        var postingAccountsService = new AccountsService(accountsDAO, accountShards, new AccountCache(accountsDAO, accountShards, 16), true);
+        when(accountsDAO.saveWithOpeningPosting(any(AccountEntity.class))).thenAnswer(invocation -> {
+            var accountEntity = (AccountEntity) invocation.getArgument(0);
+            accountEntity.setId(1L);
+
+            return accountEntity;
+        });
+
+        var saved = postingAccountsService.save(new Account(null, Money.of("10")));
+
+        assertEquals(1L, saved.getId().longValue());
+        verify(accountsDAO, never()).save(any(AccountEntity.class));
+    }
 }
@@ -0,0 +1,154 @@
+package com.revolut.interview.account;
+
+import com.revolut.interview.persistence.Journal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.revolut.interview.account.LedgerImage.OPEN;
+import static com.revolut.interview.account.LedgerImage.REVERSE;
+import static com.revolut.interview.account.LedgerImage.SETTLE;
+import static com.revolut.interview.account.LedgerImage.TRANSFER;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LedgerSnapshotsTest {
+
+    @TempDir
+    Path directory;
+
+    private Journal journal;
+    private LedgerSnapshots snapshots;
+
+    @BeforeEach
+    void setUp() {
+        this.journal = Journal.open(directory, Journal.RECORD_BYTES * 4, true);
+        this.snapshots = new LedgerSnapshots(directory.toString(), 0, journal);
+    }
+
+    @Test
+    void snapshotShouldHoldTheBalancesAndUnsettledTransfersAsOfTheJournal() {
+        journal.append(OPEN, 1L, 100L, 0, 0);
+        journal.append(OPEN, 2L, 0L, 0, 0);
+        journal.sync(journal.append(TRANSFER, 7L, 1L, 2L, 30L));
+
+        assertTrue(snapshots.take());
+
+        var image = snapshots.loadNewest().orElseThrow();
+        assertEquals(3L, image.getLastSequence());
+        assertEquals(7L, image.getLastTransactionId());
+        assertEquals(Map.of(1L, 70L, 2L, 30L), image.getBalances());
+        assertEquals(List.of(7L), transactionIds(image));
+
+        var transfer = image.getUnsettledTransfers().iterator().next();
+        assertEquals(1L, transfer.senderId);
+        assertEquals(2L, transfer.receiverId);
+        assertEquals(30L, transfer.minorUnits);
+    }
+
+    @Test
+    void settledAndReversedTransfersShouldLeaveTheSnapshot() {
+        journal.append(OPEN, 1L, 100L, 0, 0);
+        journal.append(OPEN, 2L, 0L, 0, 0);
+        journal.append(TRANSFER, 7L, 1L, 2L, 30L);
+        journal.append(TRANSFER, 8L, 1L, 2L, 20L);
+        journal.append(TRANSFER, 9L, 2L, 1L, 5L);
+        journal.append(SETTLE, 7L, 0, 0, 0);
+        journal.sync(journal.append(REVERSE, 8L, 1L, 2L, 20L));
+
+        snapshots.take();
+
+        var image = snapshots.loadNewest().orElseThrow();
+        assertEquals(Map.of(1L, 75L, 2L, 25L), image.getBalances());
+        assertEquals(List.of(9L), transactionIds(image));
+    }
+
+    @Test
+    void nextSnapshotShouldBuildOnThePreviousOne() {
+        journal.append(OPEN, 1L, 100L, 0, 0);
+        journal.sync(journal.append(OPEN, 2L, 0L, 0, 0));
+        snapshots.take();
+
+        journal.sync(journal.append(TRANSFER, 7L, 1L, 2L, 30L));
+        snapshots.take();
+
+        assertEquals(Map.of(1L, 70L, 2L, 30L), snapshots.loadNewest().orElseThrow().getBalances());
+        assertEquals(2L, snapshots.getMetrics().get("snapshots").longValue());
+    }
+
+    @Test
+    void snapshotShouldLeaveOutRecordsThatAreNotSyncedYet() {
+        journal.sync(journal.append(OPEN, 1L, 100L, 0, 0));
+        journal.append(OPEN, 2L, 0L, 0, 0);
+
+        snapshots.take();
+
+        assertEquals(1L, snapshots.loadNewest().orElseThrow().getLastSequence());
+    }
+
+    @Test
+    void takeShouldDoNothingWhenTheJournalDidNotMove() {
+        journal.sync(journal.append(OPEN, 1L, 100L, 0, 0));
+        snapshots.take();
+
+        assertFalse(snapshots.take());
+    }
+
+    @Test
+    void anUnreadableNewestSnapshotShouldFallBackToThePreviousOne() throws IOException {
+        journal.sync(journal.append(OPEN, 1L, 100L, 0, 0));
+        snapshots.take();
+        journal.sync(journal.append(OPEN, 2L, 0L, 0, 0));
+        snapshots.take();
+
+        try (var file = new RandomAccessFile(snapshotFiles().get(0).toFile(), "rw")) {
+            file.seek(30);
+            file.write(0x5A);
+        }
+
+        assertEquals(1L, snapshots.loadNewest().orElseThrow().getLastSequence());
+    }
+
+    @Test
+    void onlyTheTwoNewestSnapshotsAndTheJournalAfterTheOlderShouldBeKept() throws IOException {
+        for (long accountId = 1; accountId <= 9; accountId++) {
+            journal.sync(journal.append(OPEN, accountId, 100L, 0, 0));
+            snapshots.take();
+        }
+
+        assertEquals(List.of("00000000000000000009.snapshot", "00000000000000000008.snapshot"), names(snapshotFiles()));
+
+        //Segments of 4 records: 1-4 and 5-8 are fully covered by the snapshot at 8, 9 is in the last one.
+        assertEquals(1, journal.getSegmentCount());
+        assertEquals(9, snapshots.loadNewest().orElseThrow().getBalances().size());
+    }
+
+    private List<Path> snapshotFiles() throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".snapshot"))
+                    .sorted((first, second) -> second.compareTo(first))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static List<Long> transactionIds(LedgerImage image) {
+        return image.getUnsettledTransfers().stream()
+                .map(transfer -> transfer.transactionId)
+                .collect(Collectors.toList());
+    }
+
+    private static List<String> names(List<Path> paths) {
+        return paths.stream()
+                .map(path -> path.getFileName().toString())
+                .collect(Collectors.toList());
+    }
+}
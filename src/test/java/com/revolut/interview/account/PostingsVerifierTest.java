@@ -0,0 +1,58 @@
+package com.revolut.interview.account;
+
+import com.revolut.interview.money.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PostingsVerifierTest {
+
+    @Mock
+    private PostingsDAO postingsDAO;
+
+    private PostingsVerifier postingsVerifier;
+
+    @BeforeEach
+    void setUp() {
+        this.postingsVerifier = new PostingsVerifier(postingsDAO, 0);
+    }
+
+    @Test
+    void accountsMatchingTheirPostingsShouldNotBeReported() {
+        when(postingsDAO.findMismatches()).thenReturn(List.of());
+
+        assertEquals(List.of(), postingsVerifier.verify());
+        assertEquals(1L, postingsVerifier.getMetrics().get("verifications").longValue());
+        assertEquals(0L, postingsVerifier.getMetrics().get("lastMismatches").longValue());
+    }
+
+    @Test
+    void mismatchFoundAgainOnItsOwnShouldBeReported() {
+        var mismatch = new BalanceMismatch(1L, Money.of("90"), Money.of("100"));
+        when(postingsDAO.findMismatches()).thenReturn(List.of(mismatch));
+        when(postingsDAO.findMismatch(1L)).thenReturn(Optional.of(mismatch));
+
+        assertEquals(List.of(mismatch), postingsVerifier.verify());
+        assertEquals(1L, postingsVerifier.getMetrics().get("lastMismatches").longValue());
+        assertEquals(1L, postingsVerifier.getMetrics().get("totalMismatches").longValue());
+    }
+
+    @Test
+    void mismatchGoneOnTheSecondLookShouldNotBeReported() {
+        //A transfer committed between the balance and the postings being summed.
+        when(postingsDAO.findMismatches()).thenReturn(List.of(new BalanceMismatch(1L, Money.of("90"), Money.of("100"))));
+        when(postingsDAO.findMismatch(1L)).thenReturn(Optional.empty());
+
+        assertEquals(List.of(), postingsVerifier.verify());
+        assertEquals(0L, postingsVerifier.getMetrics().get("totalMismatches").longValue());
+    }
+}
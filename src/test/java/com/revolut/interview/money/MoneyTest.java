@@ -0,0 +1,73 @@
+package com.revolut.interview.money;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MoneyTest {
+
+    @Test
+    void ofShouldCountMinorUnits() {
+        assertEquals(1050L, Money.of("10.5").getMinorUnits());
+        assertEquals(1000L, Money.of(BigDecimal.TEN).getMinorUnits());
+        assertEquals(-1L, Money.of("-0.01").getMinorUnits());
+    }
+
+    @Test
+    void ofShouldRejectMoreDecimalsThanTheScaleInsteadOfRounding() {
+        assertThrows(IllegalArgumentException.class, () -> Money.of("0.001"));
+    }
+
+    @Test
+    void ofShouldRejectAmountsThatDoNotFitInALong() {
+        assertThrows(IllegalArgumentException.class, () -> Money.of("92233720368547758.08"));
+    }
+
+    @Test
+    void ofShouldRejectAnythingButADecimal() {
+        assertThrows(IllegalArgumentException.class, () -> Money.of("ten"));
+    }
+
+    @Test
+    void arithmeticShouldBeExact() {
+        assertEquals(Money.of("10.30"), Money.of("10").plus(Money.of("0.3")));
+        assertEquals(Money.of("9.70"), Money.of("10").minus(Money.of("0.3")));
+        assertEquals(Money.of("-1"), Money.of("1").negate());
+        assertEquals(Money.of("1"), Money.of("-1").abs());
+    }
+
+    @Test
+    void arithmeticShouldThrowOnOverflow() {
+        var max = Money.ofMinor(Long.MAX_VALUE);
+        var min = Money.ofMinor(Long.MIN_VALUE);
+
+        assertThrows(ArithmeticException.class, () -> max.plus(Money.ofMinor(1)));
+        assertThrows(ArithmeticException.class, () -> min.minus(Money.ofMinor(1)));
+        assertThrows(ArithmeticException.class, min::negate);
+    }
+
+    @Test
+    void comparisonsShouldFollowTheAmount() {
+        assertTrue(Money.of("9.99").isLessThan(Money.of("10")));
+        assertTrue(Money.of("10").compareTo(Money.of("10.00")) == 0);
+        assertEquals(-1, Money.of("-5").signum());
+    }
+
+    @Test
+    void zeroShouldBeShared() {
+        assertSame(Money.ZERO, Money.ofMinor(0));
+        assertSame(Money.ZERO, Money.of("10").minus(Money.of("10")));
+    }
+
+    @Test
+    void toStringShouldAlwaysPrintTheScale() {
+        assertEquals("10.00", Money.of("10").toString());
+        assertEquals("-0.05", Money.ofMinor(-5).toString());
+        assertEquals(new BigDecimal("10.50"), Money.of("10.5").toBigDecimal());
+    }
+}
@@ -0,0 +1,44 @@
+package com.revolut.interview.money;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MoneyTypeAdapterTest {
+
+    private Gson gson;
+
+    @BeforeEach
+    void setUp() {
+        this.gson = new GsonBuilder()
+                .registerTypeAdapter(Money.class, new MoneyTypeAdapter())
+                .create();
+    }
+
+    @Test
+    void shouldReadDecimalNumbersAndStrings() {
+        assertEquals(Money.of("10.5"), gson.fromJson("10.5", Money.class));
+        assertEquals(Money.of("10.5"), gson.fromJson("\"10.50\"", Money.class));
+        assertNull(gson.fromJson("null", Money.class));
+    }
+
+    @Test
+    void shouldNotLoseDigitsOfLargeAmounts() {
+        assertEquals(Money.ofMinor(9_007_199_254_740_993L), gson.fromJson("90071992547409.93", Money.class));
+    }
+
+    @Test
+    void shouldRejectMoreDecimalsThanTheScale() {
+        assertThrows(IllegalArgumentException.class, () -> gson.fromJson("0.001", Money.class));
+    }
+
+    @Test
+    void shouldWriteADecimalNumber() {
+        assertEquals("10.50", gson.toJson(Money.of("10.5")));
+    }
+}
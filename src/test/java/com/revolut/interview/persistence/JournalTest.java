@@ -0,0 +1,152 @@
+package com.revolut.interview.persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.revolut.interview.persistence.Journal.RECORD_BYTES;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsShouldBeReplayedInOrderAfterReopening() {
+        var journal = Journal.open(directory, RECORD_BYTES * 16, true);
+        assertEquals(1L, journal.append(1, 10, 11, 12, 13));
+        assertEquals(2L, journal.append(2, 20, 21, 22, 23));
+        journal.close();
+
+        var reopened = Journal.open(directory, RECORD_BYTES * 16, true);
+        var replayed = replay(reopened, 0);
+
+        assertEquals(2L, reopened.getLastSequence());
+        assertEquals(2, replayed.size());
+        assertArrayEquals(new long[]{1, 1, 10, 11, 12, 13}, replayed.get(0));
+        assertArrayEquals(new long[]{2, 2, 20, 21, 22, 23}, replayed.get(1));
+    }
+
+    @Test
+    void replayShouldSkipRecordsUpToTheGivenSequence() {
+        var journal = Journal.open(directory, RECORD_BYTES * 2, true);
+        for (int i = 1; i <= 5; i++) {
+            journal.append(1, i, 0, 0, 0);
+        }
+
+        var replayed = replay(journal, 3);
+
+        assertEquals(2, replayed.size());
+        assertEquals(4L, replayed.get(0)[2]);
+        assertEquals(5L, replayed.get(1)[2]);
+    }
+
+    @Test
+    void fullSegmentsShouldRollOverToANewFile() throws IOException {
+        var journal = Journal.open(directory, RECORD_BYTES * 2, true);
+        for (int i = 1; i <= 5; i++) {
+            journal.append(1, i, 0, 0, 0);
+        }
+        journal.close();
+
+        try (var files = Files.list(directory)) {
+            assertEquals(3L, files.count());
+        }
+
+        var reopened = Journal.open(directory, RECORD_BYTES * 2, true);
+        assertEquals(5L, reopened.getLastSequence());
+        assertEquals(6L, reopened.append(1, 6, 0, 0, 0));
+        assertEquals(6, replay(reopened, 0).size());
+    }
+
+    @Test
+    void aTornRecordShouldEndTheJournalAndBeOverwritten() throws IOException {
+        var journal = Journal.open(directory, RECORD_BYTES * 16, true);
+        journal.append(1, 1, 0, 0, 0);
+        journal.append(1, 2, 0, 0, 0);
+        journal.close();
+
+        corrupt(onlySegment(), RECORD_BYTES + 20);
+
+        var reopened = Journal.open(directory, RECORD_BYTES * 16, true);
+        assertEquals(1L, reopened.getLastSequence());
+
+        assertEquals(2L, reopened.append(1, 3, 0, 0, 0));
+        assertEquals(3L, replay(reopened, 0).get(1)[2]);
+    }
+
+    @Test
+    void aCorruptedRecordBeforeTheLastSegmentShouldFailTheReplay() throws IOException {
+        var journal = Journal.open(directory, RECORD_BYTES * 2, true);
+        for (int i = 1; i <= 3; i++) {
+            journal.append(1, i, 0, 0, 0);
+        }
+        journal.close();
+
+        try (var files = Files.list(directory)) {
+            corrupt(files.sorted().findFirst().orElseThrow(), 20);
+        }
+
+        var reopened = Journal.open(directory, RECORD_BYTES * 2, true);
+
+        assertThrows(IllegalStateException.class, () -> replay(reopened, 0));
+    }
+
+    @Test
+    void syncShouldCoverEverythingAppendedBeforeIt() {
+        var journal = Journal.open(directory, RECORD_BYTES * 16, true);
+        journal.append(1, 1, 0, 0, 0);
+        var last = journal.append(1, 2, 0, 0, 0);
+
+        journal.sync(last);
+        journal.sync(1);
+
+        assertEquals(1L, journal.getSyncs());
+    }
+
+    @Test
+    void syncShouldDoNothingWithFsyncOff() {
+        var journal = Journal.open(directory, RECORD_BYTES * 16, false);
+
+        journal.sync(journal.append(1, 1, 0, 0, 0));
+
+        assertEquals(0L, journal.getSyncs());
+    }
+
+    @Test
+    void typeZeroShouldBeRejected() {
+        var journal = Journal.open(directory, RECORD_BYTES * 16, true);
+
+        assertThrows(IllegalArgumentException.class, () -> journal.append(0, 1, 0, 0, 0));
+    }
+
+    private static List<long[]> replay(Journal journal, long afterSequence) {
+        var records = new ArrayList<long[]>();
+        journal.replay(afterSequence, (sequence, type, first, second, third, fourth) ->
+                records.add(new long[]{sequence, type, first, second, third, fourth}));
+
+        return records;
+    }
+
+    private Path onlySegment() throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.findFirst().orElseThrow();
+        }
+    }
+
+    private static void corrupt(Path segment, long position) throws IOException {
+        try (var file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(position);
+            file.write(0x5A);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.revolut.interview.persistence;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeOrderedIdsTest {
+
+    private static final Instant NOW = Instant.parse("2026-10-17T12:00:00Z");
+
+    @Test
+    void idsShouldGrowWithinTheSameMillisecond() {
+        var ids = new TimeOrderedIds(1, NOW::toEpochMilli);
+
+        var first = ids.next();
+        var second = ids.next();
+
+        assertTrue(second > first);
+        assertEquals(NOW, TimeOrderedIds.createdAt(first));
+        assertEquals(NOW, TimeOrderedIds.createdAt(second));
+    }
+
+    @Test
+    void idsShouldKeepGrowingWhenTheClockMovesBackwards() {
+        var clock = new AtomicLong(NOW.toEpochMilli());
+        var ids = new TimeOrderedIds(1, clock::get);
+
+        var first = ids.next();
+        clock.addAndGet(-1000);
+
+        assertTrue(ids.next() > first);
+    }
+
+    @Test
+    void sequenceOverflowShouldBorrowTheNextMillisecond() {
+        var ids = new TimeOrderedIds(1, NOW::toEpochMilli);
+
+        var last = 0L;
+        for (int i = 0; i <= 4096; i++) {
+            var next = ids.next();
+            assertTrue(next > last);
+            last = next;
+        }
+
+        assertEquals(NOW.plusMillis(1), TimeOrderedIds.createdAt(last));
+    }
+
+    @Test
+    void nodesShouldNotHandOutTheSameIds() {
+        var node1 = new TimeOrderedIds(1, NOW::toEpochMilli);
+        var node2 = new TimeOrderedIds(2, NOW::toEpochMilli);
+
+        assertNotEquals(node1.next(), node2.next());
+    }
+
+    @Test
+    void concurrentCallersShouldGetDistinctIds() {
+        var ids = new TimeOrderedIds(1);
+        var seen = ConcurrentHashMap.<Long>newKeySet();
+
+        IntStream.range(0, 100_000)
+                .parallel()
+                .forEach(i -> seen.add(ids.next()));
+
+        assertEquals(100_000, seen.size());
+    }
+
+    @Test
+    void firstIdAtShouldBoundTheIdsHandedOutFromThatInstant() {
+        var ids = new TimeOrderedIds(TimeOrderedIds.MAX_NODE_ID, NOW::toEpochMilli);
+        var id = ids.next();
+
+        assertTrue(id >= TimeOrderedIds.firstIdAt(NOW));
+        assertTrue(id < TimeOrderedIds.firstIdAt(NOW.plusMillis(1)));
+    }
+
+    @Test
+    void firstIdAtShouldClampInstantsOutsideTheIdRange() {
+        assertEquals(0L, TimeOrderedIds.firstIdAt(Instant.EPOCH));
+        assertEquals(Long.MAX_VALUE, TimeOrderedIds.firstIdAt(Instant.parse("2200-01-01T00:00:00Z")));
+    }
+
+    @Test
+    void nodeIdOutsideTheNodeBitsShouldBeRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new TimeOrderedIds(-1));
+        assertThrows(IllegalArgumentException.class, () -> new TimeOrderedIds(TimeOrderedIds.MAX_NODE_ID + 1));
+    }
+}
@@ -0,0 +1,129 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.money.Money;
+import com.revolut.interview.persistence.TimeOrderedIds;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.revolut.interview.transactions.TransactionState.PENDING;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccountLaneExecutorTest {
+
+    private static final int LANES = 4;
+
+    private AccountLaneExecutor laneExecutor;
+
+    @BeforeEach
+    void setUp() {
+        laneExecutor = new AccountLaneExecutor(LANES, 5000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        laneExecutor.stop();
+    }
+
+    @Test
+    void transfersBetweenAccountsOfTheSameLaneShouldRunOnThatLane() throws InterruptedException {
+        var threadNames = ConcurrentHashMap.<String>newKeySet();
+        var executed = new CountDownLatch(10);
+
+        var receiver = 2L;
+        while (laneExecutor.laneOf(receiver) != laneExecutor.laneOf(1L)) {
+            receiver++;
+        }
+
+        for (int i = 0; i < 10; i++) {
+            laneExecutor.execute(task(1L, receiver, () -> {
+                threadNames.add(Thread.currentThread().getName());
+                executed.countDown();
+            }));
+        }
+
+        assertTrue(executed.await(5, SECONDS));
+        assertEquals(Set.of("transfer-lane-" + laneExecutor.laneOf(1L)), threadNames);
+    }
+
+    @Test
+    void accountsCreatedInDifferentMillisecondsShouldSpreadOverAllLanes() {
+        var accountsPerLane = new int[LANES];
+        var start = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+
+        //The first id of every millisecond, the shape of ids of accounts created one at a time.
+        for (int i = 0; i < 4096; i++) {
+            accountsPerLane[laneExecutor.laneOf(TimeOrderedIds.firstIdAt(Instant.ofEpochMilli(start + i)))]++;
+        }
+
+        for (int lane = 0; lane < LANES; lane++) {
+            assertTrue(accountsPerLane[lane] > 4096 / LANES / 2, "Lane " + lane + " got " + accountsPerLane[lane] + " accounts");
+        }
+    }
+
+    @Test
+    void accountShouldNeverBeTouchedByTwoLanesAtTheSameTime() throws InterruptedException {
+        var accountsInUse = ConcurrentHashMap.<Long>newKeySet();
+        var overlapDetected = new AtomicBoolean();
+        var executed = new CountDownLatch(2000);
+
+        for (int i = 0; i < 2000; i++) {
+            long sender = i % 7;
+            long receiver = (i * 3 + 1) % 11;
+            if (sender == receiver) {
+                receiver++;
+            }
+
+            long finalReceiver = receiver;
+            laneExecutor.execute(task(sender, receiver, () -> {
+                if (!accountsInUse.add(sender) || !accountsInUse.add(finalReceiver)) {
+                    overlapDetected.set(true);
+                }
+
+                accountsInUse.remove(sender);
+                accountsInUse.remove(finalReceiver);
+                executed.countDown();
+            }));
+        }
+
+        assertTrue(executed.await(10, SECONDS), "Lanes deadlocked or lost transfers");
+        assertFalse(overlapDetected.get());
+    }
+
+    @Test
+    void stopShouldDrainQueuedTransfers() {
+        var executedCount = new AtomicInteger();
+
+        for (int i = 0; i < 100; i++) {
+            laneExecutor.execute(task(i, i + 1, executedCount::incrementAndGet));
+        }
+
+        laneExecutor.stop();
+
+        assertEquals(100, executedCount.get());
+    }
+
+    @Test
+    void metricsShouldReportQueueDepthPerLane() {
+        var metrics = laneExecutor.getMetrics();
+
+        assertEquals(LANES, metrics.get("lanes").intValue());
+        for (int i = 0; i < LANES; i++) {
+            assertTrue(metrics.containsKey("lane" + i + ".queueDepth"));
+        }
+    }
+
+    private TransactionTask task(long senderId, long receiverId, Runnable work) {
+        return new TransactionTask(new Transaction(1L, senderId, receiverId, Money.of("1"), PENDING), work);
+    }
+}
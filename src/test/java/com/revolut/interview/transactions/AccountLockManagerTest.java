@@ -0,0 +1,79 @@
+package com.revolut.interview.transactions;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccountLockManagerTest {
+
+    @Test
+    void accountsOnTheSameStripeShouldBeLockedOnlyOnce() {
+        var accountLockManager = new AccountLockManager(1);
+
+        accountLockManager.lock(1L, 2L);
+        accountLockManager.unlock(1L, 2L);
+
+        assertEquals(1, accountLockManager.getMetrics().get("acquisitions").longValue());
+        assertEquals(0, accountLockManager.getMetrics().get("heldStripes").intValue());
+    }
+
+    @Test
+    void transferOnASharedAccountShouldWaitForTheLockHolder() throws InterruptedException {
+        var accountLockManager = new AccountLockManager(64);
+        var executorService = Executors.newSingleThreadExecutor();
+
+        accountLockManager.lock(1L, 2L);
+
+        var started = new CountDownLatch(1);
+        var acquired = new AtomicBoolean();
+        executorService.submit(() -> {
+            started.countDown();
+            accountLockManager.lock(2L, 3L);
+            acquired.set(true);
+            accountLockManager.unlock(2L, 3L);
+        });
+
+        assertTrue(started.await(5, SECONDS));
+        Thread.sleep(50);
+        assertFalse(acquired.get());
+
+        accountLockManager.unlock(1L, 2L);
+
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(acquired.get());
+
+        var metrics = accountLockManager.getMetrics();
+        assertEquals(1, metrics.get("contendedAcquisitions").longValue());
+        assertEquals(accountLockManager.stripeOf(2L), metrics.get("hottestStripe").intValue());
+        assertTrue(metrics.get("maxWaitMicros").doubleValue() > 0);
+    }
+
+    @Test
+    void opposingTransfersShouldNotDeadlock() throws InterruptedException {
+        var accountLockManager = new AccountLockManager(64);
+        var executorService = Executors.newFixedThreadPool(2);
+
+        for (int i = 0; i < 1000; i++) {
+            executorService.submit(() -> {
+                accountLockManager.lock(1L, 2L);
+                accountLockManager.unlock(1L, 2L);
+            });
+            executorService.submit(() -> {
+                accountLockManager.lock(2L, 1L);
+                accountLockManager.unlock(2L, 1L);
+            });
+        }
+
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(10, SECONDS));
+    }
+}
@@ -0,0 +1,45 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.transactions.BackoffStrategy.CappedBackOffStrategy;
+import com.revolut.interview.transactions.BackoffStrategy.DecorrelatedJitterBackOffStrategy;
+import com.revolut.interview.transactions.BackoffStrategy.ExponentialBackOffStrategy;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BackoffStrategyTest {
+
+    @Test
+    void exponentialBackoffShouldDoubleWithEveryAttempt() {
+        var backoffStrategy = new ExponentialBackOffStrategy(10);
+
+        assertEquals(10, backoffStrategy.nextDelayMillis(2, 0));
+        assertEquals(20, backoffStrategy.nextDelayMillis(3, 10));
+        assertEquals(40, backoffStrategy.nextDelayMillis(4, 20));
+    }
+
+    @Test
+    void decorrelatedJitterShouldStayBetweenBaseAndThreeTimesThePreviousDelay() {
+        var backoffStrategy = new DecorrelatedJitterBackOffStrategy(10);
+
+        var previousDelay = 0L;
+        for (int attempt = 2; attempt < 50; attempt++) {
+            var delay = backoffStrategy.nextDelayMillis(attempt, previousDelay);
+
+            assertTrue(delay >= 10);
+            assertTrue(delay <= Math.max(10, previousDelay * 3));
+
+            previousDelay = delay;
+        }
+    }
+
+    @Test
+    void cappedBackoffShouldNeverExceedTheCap() {
+        var backoffStrategy = new CappedBackOffStrategy(new ExponentialBackOffStrategy(10), 100);
+
+        assertEquals(10, backoffStrategy.nextDelayMillis(2, 0));
+        assertEquals(100, backoffStrategy.nextDelayMillis(10, 0));
+        assertEquals(100, backoffStrategy.nextDelayMillis(1000, 0));
+    }
+}
@@ -0,0 +1,143 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.account.AccountEntity;
+import com.revolut.interview.account.AccountShards;
+import com.revolut.interview.account.AccountsDAO;
+import com.revolut.interview.money.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.revolut.interview.transactions.TransactionState.IN_PROGRESS;
+import static javax.persistence.LockModeType.WRITE;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BilateralNettingTest {
+
+    @Mock
+    private AccountsDAO accountsDAO;
+    @Mock
+    private AccountShards accountShards;
+
+    private final Map<Long, AccountEntity> accounts = new HashMap<>();
+
+    private BilateralNetting bilateralNetting;
+
+    @BeforeEach
+    void setUp() {
+        this.bilateralNetting = new BilateralNetting(accountsDAO, accountShards);
+
+        account(1L, 100);
+        account(2L, 0);
+        account(3L, 0);
+    }
+
+    @Test
+    void opposingTransfersShouldBeAppliedAsOneNetMovement() {
+        var transferred = bilateralNetting.apply(List.of(
+                transfer(1L, 2L, 30),
+                transfer(2L, 1L, 10),
+                transfer(1L, 2L, 5)
+        ));
+
+        assertArrayEquals(new boolean[]{true, true, true}, transferred);
+        assertBalance(1L, 75);
+        assertBalance(2L, 25);
+
+        verify(accountsDAO, times(2)).update(any(AccountEntity.class));
+        assertEquals(1L, bilateralNetting.getMetrics().get("netMovements").longValue());
+        assertEquals(3L, bilateralNetting.getMetrics().get("nettedTransfers").longValue());
+    }
+
+    @Test
+    void balanceShouldBeCheckedForEveryTransferInOrder() {
+        var transferred = bilateralNetting.apply(List.of(
+                transfer(2L, 3L, 20),
+                transfer(1L, 2L, 20),
+                transfer(2L, 3L, 20)
+        ));
+
+        //The first one comes before account 2 has received anything.
+        assertArrayEquals(new boolean[]{false, true, true}, transferred);
+        assertBalance(1L, 80);
+        assertBalance(2L, 0);
+        assertBalance(3L, 20);
+    }
+
+    @Test
+    void transfersThatCancelOutShouldNotTouchTheAccounts() {
+        var transferred = bilateralNetting.apply(List.of(
+                transfer(1L, 2L, 10),
+                transfer(2L, 1L, 10)
+        ));
+
+        assertArrayEquals(new boolean[]{true, true}, transferred);
+        assertBalance(1L, 100);
+        verify(accountsDAO, never()).update(any(AccountEntity.class));
+    }
+
+    @Test
+    void transferToMissingAccountShouldFailOnItsOwn() {
+        var transferred = bilateralNetting.apply(List.of(
+                transfer(1L, 9L, 10),
+                transfer(1L, 2L, 10)
+        ));
+
+        assertArrayEquals(new boolean[]{false, true}, transferred);
+        assertBalance(1L, 90);
+    }
+
+    @Test
+    void shardedSenderShouldBeCheckedAgainstTheMoneyInItsShards() {
+        //Everything account 4 holds is in its shards until they are swept into its row.
+        account(4L, 0);
+        when(accountShards.isSharded(4L)).thenReturn(true);
+        doAnswer(invocation -> {
+            accounts.get(4L).setBalance(Money.ofMinor(50 * 100));
+            return null;
+        }).when(accountShards).consolidate(4L);
+
+        var transferred = bilateralNetting.apply(List.of(transfer(4L, 2L, 30)));
+
+        assertArrayEquals(new boolean[]{true}, transferred);
+        assertBalance(4L, 20);
+        assertBalance(2L, 30);
+
+        var order = inOrder(accountShards, accountsDAO);
+        order.verify(accountShards).consolidate(4L);
+        order.verify(accountsDAO).findById(4L, WRITE);
+    }
+
+    private void account(long id, long balance) {
+        var account = new AccountEntity(Money.ofMinor(balance * 100));
+        account.setId(id);
+        accounts.put(id, account);
+
+        lenient().when(accountsDAO.findById(id, WRITE)).thenReturn(Optional.of(account));
+    }
+
+    private void assertBalance(long accountId, long expected) {
+        assertEquals(Money.ofMinor(expected * 100), accounts.get(accountId).getBalance());
+    }
+
+    private static Transaction transfer(long senderId, long receiverId, long amount) {
+        return new Transaction(senderId * 100 + receiverId, senderId, receiverId, Money.ofMinor(amount * 100), IN_PROGRESS);
+    }
+}
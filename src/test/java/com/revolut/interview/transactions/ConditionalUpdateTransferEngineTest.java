@@ -0,0 +1,60 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.account.AccountsDAO;
+import com.revolut.interview.money.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ConditionalUpdateTransferEngineTest {
+
+    private static final Money TEN = Money.of("10");
+
+    @Mock
+    private AccountsDAO accountsDAO;
+
+    private ConditionalUpdateTransferEngine transferEngine;
+
+    @BeforeEach
+    void setUp() {
+        this.transferEngine = new ConditionalUpdateTransferEngine(accountsDAO);
+    }
+
+    @Test
+    void transferShouldDebitSenderAndCreditReceiver() {
+        when(accountsDAO.debitIfSufficient(1L, TEN)).thenReturn(true);
+        when(accountsDAO.credit(2L, TEN)).thenReturn(true);
+
+        assertTrue(transferEngine.transfer(7L, 1L, 2L, TEN));
+    }
+
+    @Test
+    void receiverShouldNotBeCreditedWhenSenderCannotAfford() {
+        when(accountsDAO.debitIfSufficient(1L, TEN)).thenReturn(false);
+
+        assertFalse(transferEngine.transfer(7L, 1L, 2L, TEN));
+
+        verify(accountsDAO, never()).credit(anyLong(), any());
+    }
+
+    @Test
+    void senderShouldBeRefundedWhenReceiverDoesNotExist() {
+        when(accountsDAO.debitIfSufficient(1L, TEN)).thenReturn(true);
+        when(accountsDAO.credit(2L, TEN)).thenReturn(false);
+
+        assertFalse(transferEngine.transfer(7L, 1L, 2L, TEN));
+
+        verify(accountsDAO).credit(1L, TEN);
+    }
+}
@@ -0,0 +1,161 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.money.Money;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.revolut.interview.transactions.TransactionPriority.BULK;
+import static com.revolut.interview.transactions.TransactionPriority.INTERACTIVE;
+import static com.revolut.interview.transactions.TransactionState.PENDING;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FairTransferExecutorTest {
+
+    private FairTransferExecutor executor;
+
+    private final List<String> executionOrder = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        executor.stop();
+    }
+
+    @Test
+    void sendersWithinAClassShouldTakeTurns() throws InterruptedException {
+        executor = new FairTransferExecutor(1, 100, 8, 1000);
+        var release = blockWorker();
+
+        executor.execute(task("1a", 1L, BULK));
+        executor.execute(task("1b", 1L, BULK));
+        //1c runs last, so the order is only read once every task has run.
+        var done = countDownAfter("1c", 1L, BULK);
+        executor.execute(task("2a", 2L, BULK));
+        executor.execute(task("3a", 3L, BULK));
+
+        release.countDown();
+
+        assertTrue(done.await(5, SECONDS));
+        assertEquals(List.of("1a", "2a", "3a", "1b", "1c"), executionOrder);
+    }
+
+    @Test
+    void interactiveTransfersShouldGetTheirWeightInTurnsForEveryBulkOne() throws InterruptedException {
+        executor = new FairTransferExecutor(1, 100, 2, 1000);
+        var release = blockWorker();
+
+        executor.execute(task("b1", 1L, BULK));
+        executor.execute(task("b2", 1L, BULK));
+        var done = countDownAfter("b3", 1L, BULK);
+        executor.execute(task("i1", 2L, INTERACTIVE));
+        executor.execute(task("i2", 2L, INTERACTIVE));
+        executor.execute(task("i3", 2L, INTERACTIVE));
+        executor.execute(task("i4", 2L, INTERACTIVE));
+
+        release.countDown();
+
+        assertTrue(done.await(5, SECONDS));
+        assertEquals(List.of("i1", "i2", "b1", "i3", "i4", "b2", "b3"), executionOrder);
+    }
+
+    @Test
+    void taskShouldRunOnCallerThreadWhenQueueIsFull() throws InterruptedException {
+        executor = new FairTransferExecutor(1, 1, 8, 1000);
+        var release = blockWorker();
+
+        executor.execute(task("queued", 1L, BULK));
+
+        var callerThread = Thread.currentThread();
+        var ranOn = new Thread[1];
+        executor.execute(() -> ranOn[0] = Thread.currentThread());
+
+        assertEquals(callerThread, ranOn[0]);
+        assertEquals(1L, executor.getMetrics().get("callerRuns"));
+
+        release.countDown();
+    }
+
+    @Test
+    void metricsShouldReportWaitsPerClass() throws InterruptedException {
+        executor = new FairTransferExecutor(1, 100, 8, 1000);
+        var release = blockWorker();
+
+        executor.execute(task("b1", 1L, BULK));
+        var done = countDownAfter("i1", 2L, INTERACTIVE);
+
+        assertEquals(1, executor.getMetrics().get("bulk.queueDepth"));
+        assertEquals(1, executor.getMetrics().get("interactive.activeSenders"));
+
+        release.countDown();
+        assertTrue(done.await(5, SECONDS));
+        executor.stop();
+
+        var metrics = executor.getMetrics();
+        //The task blocking the worker counts as bulk.
+        assertEquals(2L, metrics.get("bulk.dispatched"));
+        assertEquals(1L, metrics.get("interactive.dispatched"));
+        assertTrue(metrics.containsKey("interactive.p99WaitMicros"));
+        assertEquals(0, metrics.get("queueDepth"));
+    }
+
+    @Test
+    void stopShouldDrainQueuedTasksAndRejectNewOnes() {
+        executor = new FairTransferExecutor(2, 100, 8, 5000);
+
+        for (int i = 0; i < 20; i++) {
+            executor.execute(task("t" + i, i % 3, i % 2 == 0 ? BULK : INTERACTIVE));
+        }
+
+        executor.stop();
+
+        assertEquals(20, executionOrder.size());
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {
+        }));
+    }
+
+    private CountDownLatch blockWorker() throws InterruptedException {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+
+        executor.execute(new TransactionTask(transaction(0L, BULK), () -> {
+            started.countDown();
+            await(release);
+        }));
+
+        assertTrue(started.await(5, SECONDS));
+        return release;
+    }
+
+    private CountDownLatch countDownAfter(String name, long senderId, TransactionPriority priority) {
+        var done = new CountDownLatch(1);
+        executor.execute(new TransactionTask(transaction(senderId, priority), () -> {
+            executionOrder.add(name);
+            done.countDown();
+        }));
+
+        return done;
+    }
+
+    private TransactionTask task(String name, long senderId, TransactionPriority priority) {
+        return new TransactionTask(transaction(senderId, priority), () -> executionOrder.add(name));
+    }
+
+    private static Transaction transaction(long senderId, TransactionPriority priority) {
+        return new Transaction(1L, senderId, 100L, Money.of("10"), PENDING, priority);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.account.AccountCache;
+import com.revolut.interview.account.AccountShards;
+import com.revolut.interview.account.AccountEntity;
+import com.revolut.interview.account.AccountsDAO;
+import com.revolut.interview.money.Money;
+import com.revolut.interview.notification.NotificationService;
+import com.revolut.interview.notification.TransactionNotification;
+import com.revolut.interview.transactions.BackoffStrategy.NOOPBackOffStrategy;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.inject.Provider;
+import javax.persistence.PersistenceException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static com.revolut.interview.transactions.TransactionState.PARKED;
+import static com.revolut.interview.transactions.TransactionState.IN_PROGRESS;
+import static com.revolut.interview.transactions.TransactionState.PENDING;
+import static com.revolut.interview.transactions.TransactionState.SUCCEEDED;
+import static javax.persistence.LockModeType.WRITE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class GroupCommitProcessorTest {
+
+    private static final Money ONE = Money.of("1");
+
+    private static final Money BALANCE = Money.of("100");
+
+    @Mock
+    private Session session;
+    @Mock
+    private org.hibernate.Transaction dbTransaction;
+    @Mock
+    private Provider<Session> sessionProvider;
+
+    @Mock
+    private AccountsDAO accountsDAO;
+    @Mock
+    private TransactionDAO transactionDAO;
+    @Mock
+    private NotificationService notificationService;
+    @Mock
+    private AccountCache accountCache;
+    @Mock
+    private AccountShards accountShards;
+
+    private GroupCommitProcessor groupCommitProcessor;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(sessionProvider.get()).thenReturn(session);
+        lenient().when(session.beginTransaction()).thenReturn(dbTransaction);
+
+        for (long id = 1; id <= 4; id++) {
+            account(id);
+        }
+
+        lenient().when(transactionDAO.updateStates(anyList(), any(TransactionState.class), any(TransactionState.class)))
+                .thenAnswer(invocation -> {
+                    var updated = new boolean[invocation.<List<?>>getArgument(0).size()];
+                    Arrays.fill(updated, true);
+                    return updated;
+                });
+        lenient().when(transactionDAO.updateState(anyLong(), any(TransactionState.class), any(TransactionState.class)))
+                .thenReturn(true);
+
+        this.groupCommitProcessor = new GroupCommitProcessor(3, 64, 50_000, 5000, false, sessionProvider, new EntityTransferEngine(accountsDAO),
+                new BilateralNetting(accountsDAO, accountShards), transactionDAO, notificationService,
+                new NOOPBackOffStrategy(), (retry, delayMillis) -> retry.run(), new TransactionCompletions(1000), accountCache);
+    }
+
+    @AfterEach
+    void tearDown() {
+        groupCommitProcessor.stop();
+    }
+
+    @Test
+    void queuedTransfersShouldBeCommittedAndNotified() {
+        for (long id = 1; id <= 20; id++) {
+            groupCommitProcessor.execute(new Transaction(id, 1L, 2L, ONE, PENDING));
+        }
+
+        groupCommitProcessor.stop();
+
+        verify(notificationService, times(20)).sendNotification(new TransactionNotification(1L, 2L, true, ONE));
+        assertEquals(20L, groupCommitProcessor.getMetrics().get("committedTransfers").longValue());
+        verify(accountCache, times(20)).invalidate(1L);
+        verify(accountCache, times(20)).invalidate(2L);
+    }
+
+    @Test
+    void transfersWithInsufficientBalanceShouldFailWithoutFailingTheGroup() {
+        groupCommitProcessor.execute(new Transaction(1L, 1L, 2L, BALANCE, PENDING));
+        groupCommitProcessor.execute(new Transaction(2L, 1L, 2L, ONE, PENDING));
+
+        groupCommitProcessor.stop();
+
+        verify(notificationService).sendNotification(new TransactionNotification(1L, 2L, true, BALANCE));
+        verify(notificationService).sendNotification(new TransactionNotification(1L, 2L, false, ONE));
+        verify(dbTransaction, never()).rollback();
+    }
+
+    @Test
+    void failingMemberShouldBeIsolatedRetriedOnItsOwnAndParked() {
+        //Only account 4 fails, updates of the other accounts go through.
+        lenient().doThrow(PersistenceException.class)
+                .when(accountsDAO)
+                .update(argThat((AccountEntity account) -> account != null && account.getId() == 4L));
+
+        groupCommitProcessor.execute(new Transaction(1L, 1L, 2L, ONE, PENDING));
+        groupCommitProcessor.execute(new Transaction(2L, 3L, 4L, ONE, PENDING));
+        groupCommitProcessor.execute(new Transaction(3L, 2L, 1L, ONE, PENDING));
+
+        groupCommitProcessor.stop();
+
+        verify(notificationService).sendNotification(new TransactionNotification(1L, 2L, true, ONE));
+        verify(notificationService).sendNotification(new TransactionNotification(2L, 1L, true, ONE));
+        verify(notificationService, never()).sendNotification(new TransactionNotification(3L, 4L, false, ONE));
+
+        verify(transactionDAO).updateState(2L, PENDING, PARKED);
+        verify(transactionDAO, never()).updateStates(argThat(ids -> ids.contains(2L)), eq(IN_PROGRESS), eq(SUCCEEDED));
+    }
+
+    @Test
+    void retryDueAfterTheCommitterStoppedShouldBeParked() {
+        var retries = new ArrayList<Runnable>();
+        var processor = new GroupCommitProcessor(3, 64, 50_000, 100, false, sessionProvider, new EntityTransferEngine(accountsDAO),
+                new BilateralNetting(accountsDAO, accountShards), transactionDAO, notificationService,
+                new NOOPBackOffStrategy(), (retry, delayMillis) -> retries.add(retry), new TransactionCompletions(1000), accountCache);
+        doThrow(PersistenceException.class)
+                .when(dbTransaction)
+                .commit();
+
+        processor.execute(new Transaction(1L, 1L, 2L, ONE, PENDING));
+        //Waits for the retry in flight until the drain timeout, then gives up on it.
+        processor.stop();
+
+        assertEquals(1, retries.size());
+        verify(transactionDAO, never()).updateState(1L, PENDING, PARKED);
+
+        retries.get(0).run();
+
+        verify(transactionDAO).updateState(1L, PENDING, PARKED);
+        assertEquals(0L, processor.getMetrics().get("queueDepth").longValue());
+    }
+
+    private void account(long id) {
+        var account = new AccountEntity();
+        account.setId(id);
+        account.setBalance(BALANCE);
+
+        lenient().when(accountsDAO.findById(id, WRITE)).thenReturn(Optional.of(account));
+    }
+}
@@ -0,0 +1,65 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.account.AccountEntity;
+import com.revolut.interview.account.AccountsDAO;
+import com.revolut.interview.money.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+
+import static javax.persistence.LockModeType.PESSIMISTIC_WRITE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PessimisticOrderedTransferEngineTest {
+
+    private static final Money TEN = Money.of("10");
+
+    @Mock
+    private AccountsDAO accountsDAO;
+
+    private AccountEntity lowerAccount, higherAccount;
+
+    private PessimisticOrderedTransferEngine transferEngine;
+
+    @BeforeEach
+    void setUp() {
+        this.transferEngine = new PessimisticOrderedTransferEngine(accountsDAO);
+
+        lowerAccount = new AccountEntity(Money.of("100"));
+        lowerAccount.setId(1L);
+        higherAccount = new AccountEntity(Money.of("100"));
+        higherAccount.setId(2L);
+
+        when(accountsDAO.findById(1L, PESSIMISTIC_WRITE)).thenReturn(Optional.of(lowerAccount));
+        when(accountsDAO.findById(2L, PESSIMISTIC_WRITE)).thenReturn(Optional.of(higherAccount));
+    }
+
+    @Test
+    void lowerAccountShouldBeLockedFirstWhenItSends() {
+        assertTrue(transferEngine.transfer(7L, 1L, 2L, TEN));
+
+        var inOrder = inOrder(accountsDAO);
+        inOrder.verify(accountsDAO).findById(1L, PESSIMISTIC_WRITE);
+        inOrder.verify(accountsDAO).findById(2L, PESSIMISTIC_WRITE);
+    }
+
+    @Test
+    void lowerAccountShouldBeLockedFirstWhenItReceives() {
+        assertTrue(transferEngine.transfer(7L, 2L, 1L, TEN));
+
+        var inOrder = inOrder(accountsDAO);
+        inOrder.verify(accountsDAO).findById(1L, PESSIMISTIC_WRITE);
+        inOrder.verify(accountsDAO).findById(2L, PESSIMISTIC_WRITE);
+
+        assertEquals(Money.of("90"), higherAccount.getBalance());
+        assertEquals(Money.of("110"), lowerAccount.getBalance());
+    }
+}
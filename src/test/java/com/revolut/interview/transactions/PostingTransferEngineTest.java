@@ -0,0 +1,53 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.account.PostingsDAO;
+import com.revolut.interview.money.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PostingTransferEngineTest {
+
+    private static final Money TEN = Money.of("10");
+
+    @Mock
+    private TransferEngine postedEngine;
+    @Mock
+    private PostingsDAO postingsDAO;
+
+    private PostingTransferEngine transferEngine;
+
+    @BeforeEach
+    void setUp() {
+        this.transferEngine = new PostingTransferEngine(postedEngine, postingsDAO);
+    }
+
+    @Test
+    void transferThatGoesThroughShouldBePosted() {
+        when(postedEngine.transfer(7L, 1L, 2L, TEN)).thenReturn(true);
+
+        assertTrue(transferEngine.transfer(7L, 1L, 2L, TEN));
+
+        verify(postingsDAO).saveTransfer(7L, 1L, 2L, TEN);
+    }
+
+    @Test
+    void transferThatFailsShouldNotBePosted() {
+        when(postedEngine.transfer(7L, 1L, 2L, TEN)).thenReturn(false);
+
+        assertFalse(transferEngine.transfer(7L, 1L, 2L, TEN));
+
+        verify(postingsDAO, never()).saveTransfer(anyLong(), anyLong(), anyLong(), any());
+    }
+}
@@ -0,0 +1,78 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.account.AccountShards;
+import com.revolut.interview.money.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ShardAwareTransferEngineTest {
+
+    private static final Money TEN = Money.of("10");
+
+    @Mock
+    private TransferEngine unshardedEngine;
+    @Mock
+    private AccountShards accountShards;
+
+    private ShardAwareTransferEngine transferEngine;
+
+    @BeforeEach
+    void setUp() {
+        this.transferEngine = new ShardAwareTransferEngine(unshardedEngine, accountShards);
+    }
+
+    @Test
+    void transferBetweenUnshardedAccountsShouldGoToTheConfiguredEngine() {
+        when(unshardedEngine.transfer(7L, 1L, 2L, TEN)).thenReturn(true);
+
+        assertTrue(transferEngine.transfer(7L, 1L, 2L, TEN));
+
+        verify(accountShards, never()).debit(anyLong(), any());
+    }
+
+    @Test
+    void transferToShardedAccountShouldGoThroughTheShards() {
+        when(accountShards.isSharded(1L)).thenReturn(false);
+        when(accountShards.isSharded(2L)).thenReturn(true);
+        when(accountShards.debit(1L, TEN)).thenReturn(true);
+        when(accountShards.credit(2L, TEN)).thenReturn(true);
+
+        assertTrue(transferEngine.transfer(7L, 1L, 2L, TEN));
+
+        verify(unshardedEngine, never()).transfer(anyLong(), anyLong(), anyLong(), any());
+    }
+
+    @Test
+    void receiverShouldNotBeCreditedWhenShardedSenderCannotAfford() {
+        when(accountShards.isSharded(1L)).thenReturn(true);
+        when(accountShards.debit(1L, TEN)).thenReturn(false);
+
+        assertFalse(transferEngine.transfer(7L, 1L, 2L, TEN));
+
+        verify(accountShards, never()).credit(anyLong(), any());
+    }
+
+    @Test
+    void senderShouldBeRefundedWhenShardedReceiverDoesNotExist() {
+        when(accountShards.isSharded(1L)).thenReturn(false);
+        when(accountShards.isSharded(2L)).thenReturn(true);
+        when(accountShards.debit(1L, TEN)).thenReturn(true);
+        when(accountShards.credit(2L, TEN)).thenReturn(false);
+
+        assertFalse(transferEngine.transfer(7L, 1L, 2L, TEN));
+
+        verify(accountShards).credit(1L, TEN);
+    }
+}
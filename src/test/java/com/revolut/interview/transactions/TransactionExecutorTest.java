@@ -1,7 +1,9 @@
 package com.revolut.interview.transactions;
 
+import com.revolut.interview.account.AccountCache;
 import com.revolut.interview.account.AccountEntity;
 import com.revolut.interview.account.AccountsDAO;
+import com.revolut.interview.money.Money;
 import com.revolut.interview.notification.NotificationService;
 import com.revolut.interview.notification.TransactionNotification;
 import org.hibernate.Session;
@@ -13,15 +15,18 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import javax.inject.Provider;
+import javax.persistence.LockTimeoutException;
 import javax.persistence.OptimisticLockException;
-import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 import static com.revolut.interview.transactions.TransactionState.FAILED;
 import static com.revolut.interview.transactions.TransactionState.IN_PROGRESS;
+import static com.revolut.interview.transactions.TransactionState.PARKED;
 import static com.revolut.interview.transactions.TransactionState.PENDING;
 import static com.revolut.interview.transactions.TransactionState.SUCCEEDED;
-import static java.math.BigDecimal.TEN;
+import static javax.persistence.LockModeType.PESSIMISTIC_WRITE;
 import static javax.persistence.LockModeType.WRITE;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -30,18 +35,22 @@ import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class TransactionExecutorTest {
 
+    private static final Money TEN = Money.of("10");
+
     private static final Transaction VALID_TRANSACTION = new Transaction(1L, 1L, 2L, TEN, PENDING);
-    private static final BigDecimal BALANCE = BigDecimal.valueOf(100);
+    private static final Money BALANCE = Money.of("100");
 
     @Mock
     private Session session;
@@ -59,6 +68,10 @@ class TransactionExecutorTest {
     private NotificationService notificationService;
     @Mock
     private BackoffStrategy backoffStrategy;
+    @Mock
+    private TransactionCompletions transactionCompletions;
+    @Mock
+    private AccountCache accountCache;
 
     private AccountEntity receiver, sender;
 
@@ -69,10 +82,14 @@ class TransactionExecutorTest {
         this.transactionExecutor = new TransactionExecutor(1,
                 Runnable::run,
                 sessionProvider,
-                accountsDAO,
+                new EntityTransferEngine(accountsDAO),
                 transactionDAO,
                 notificationService,
-                backoffStrategy
+                backoffStrategy,
+                (retry, delayMillis) -> retry.run(),
+                new AccountLockManager(16),
+                transactionCompletions,
+                accountCache
         );
 
         setUpAccountsAndTransactionDAO();
@@ -81,41 +98,49 @@ class TransactionExecutorTest {
 
     @Test
     void transactionShouldNotExecuteIfStateIsNotPending() {
-        when(transactionDAO.updateState(1L, PENDING, IN_PROGRESS))
-                .thenReturn(false);
+        when(transactionDAO.claim(1L))
+                .thenReturn(Optional.empty());
 
         transactionExecutor.execute(VALID_TRANSACTION);
 
-        verify(transactionDAO, never()).update(any(TransactionEntity.class));
+        verify(transactionDAO, never()).updateState(anyLong(), eq(IN_PROGRESS), any(TransactionState.class));
         verifyNoMoreInteractions(accountsDAO);
     }
 
+    @Test
+    void transactionShouldBeClaimedWithoutLoadingTheTransactionEntity() {
+        transactionExecutor.execute(VALID_TRANSACTION);
+
+        verify(transactionDAO).claim(1L);
+        verify(transactionDAO, never()).findById(anyLong());
+    }
+
     @Test
     void shouldThrowIllegalArgumentExceptionWhenTransactionDoesNotExist() {
-        var invalidTransaction = new Transaction(2L, 1L, 2L, BigDecimal.ONE, PENDING);
+        var invalidTransaction = new Transaction(2L, 1L, 2L, Money.of("1"), PENDING);
 
         assertThrows(IllegalArgumentException.class, () -> transactionExecutor.execute(invalidTransaction));
     }
 
     @Test
     void transactionShouldFailIfBalanceIsInsufficient() {
-        when(transactionDAO.findById(1L)).thenReturn(Optional.of(new TransactionEntity(sender, receiver, BALANCE.add(TEN), PENDING)));
+        when(transactionDAO.claim(1L)).thenReturn(Optional.of(claimedTransaction(BALANCE.plus(TEN))));
 
         transactionExecutor.execute(VALID_TRANSACTION);
 
-        verifyTransactionEntityState(FAILED);
+        verifyTransactionState(FAILED);
 
-        var notification = new TransactionNotification(sender.getId(), receiver.getId(), false, BALANCE.add(TEN));
+        var notification = new TransactionNotification(sender.getId(), receiver.getId(), false, BALANCE.plus(TEN));
         verify(notificationService).sendNotification(notification);
     }
 
     @Test
     void failureNotificationShouldBeSentOnFailureWhenBalanceIsInsufficient() {
-        when(transactionDAO.findById(1L)).thenReturn(Optional.of(new TransactionEntity(sender, receiver, BALANCE.add(TEN), PENDING)));
+        when(transactionDAO.claim(1L)).thenReturn(Optional.of(claimedTransaction(BALANCE.plus(TEN))));
 
         transactionExecutor.execute(VALID_TRANSACTION);
 
-        var notification = new TransactionNotification(sender.getId(), receiver.getId(), false, BALANCE.add(TEN));
+        var notification = new TransactionNotification(sender.getId(), receiver.getId(), false, BALANCE.plus(TEN));
         verify(notificationService).sendNotification(notification);
     }
 
@@ -126,7 +151,7 @@ class TransactionExecutorTest {
         verify(session).beginTransaction();
         verify(dbTransaction).commit();
 
-        verifyTransactionEntityState(SUCCEEDED);
+        verifyTransactionState(SUCCEEDED);
     }
 
     @Test
@@ -137,6 +162,34 @@ class TransactionExecutorTest {
         verify(notificationService).sendNotification(notification);
     }
 
+    @Test
+    void completionShouldBeSignalledAfterCommit() {
+        transactionExecutor.execute(VALID_TRANSACTION);
+
+        var inOrder = inOrder(dbTransaction, transactionCompletions);
+        inOrder.verify(dbTransaction).commit();
+        inOrder.verify(transactionCompletions).complete(anyLong(), eq(SUCCEEDED));
+    }
+
+    @Test
+    void cachedAccountsShouldBeInvalidatedAfterCommit() {
+        transactionExecutor.execute(VALID_TRANSACTION);
+
+        var inOrder = inOrder(dbTransaction, accountCache);
+        inOrder.verify(dbTransaction).commit();
+        inOrder.verify(accountCache).invalidate(VALID_TRANSACTION.getSenderId());
+        inOrder.verify(accountCache).invalidate(VALID_TRANSACTION.getReceiverId());
+    }
+
+    @Test
+    void cachedAccountsShouldNotBeInvalidatedWhenTransferIsRolledBack() {
+        simulateUpdateFailureForAccount(sender, OptimisticLockException.class);
+
+        transactionExecutor.execute(VALID_TRANSACTION);
+
+        verifyNoInteractions(accountCache);
+    }
+
     @Test
     void senderAccountShouldBeUpdatedWithExpectedParameters() {
         transactionExecutor.execute(VALID_TRANSACTION);
@@ -150,7 +203,7 @@ class TransactionExecutorTest {
                 .findFirst()
                 .orElseThrow();
 
-        assertEquals(BALANCE.subtract(VALID_TRANSACTION.getAmountToTransfer()), senderAccountEntity.getBalance());
+        assertEquals(BALANCE.minus(VALID_TRANSACTION.getAmountToTransfer()), senderAccountEntity.getBalance());
     }
 
     @Test
@@ -166,37 +219,36 @@ class TransactionExecutorTest {
                 .findFirst()
                 .orElseThrow();
 
-        assertEquals(BALANCE.add(VALID_TRANSACTION.getAmountToTransfer()).compareTo(receiverAccountEntity.getBalance()), 0);
+        assertEquals(BALANCE.plus(VALID_TRANSACTION.getAmountToTransfer()), receiverAccountEntity.getBalance());
     }
 
     @Test
-    void transactionShouldBeRolledBackIfAOptimisticLockExceptionIsThrownWhileUpdatingSenderAccount() {
+    void notificationShouldNotBeSentWhenTransferIsParkedDueToOptimisticLockException() {
         simulateUpdateFailureForAccount(sender, OptimisticLockException.class);
 
         transactionExecutor.execute(VALID_TRANSACTION);
 
-        var notification = new TransactionNotification(sender.getId(), receiver.getId(), false, VALID_TRANSACTION.getAmountToTransfer());
-        verify(notificationService).sendNotification(notification);
+        verify(notificationService, never()).sendNotification(any(TransactionNotification.class));
     }
 
     @Test
-    void notificationShouldBeSentWhenTransferFailsDueToOptimisticLockException() {
+    void transactionShouldBeRolledBackAndParkedIfAOptimisticLockExceptionIsThrownWhileUpdatingSenderAccount() {
         simulateUpdateFailureForAccount(sender, OptimisticLockException.class);
 
         transactionExecutor.execute(VALID_TRANSACTION);
 
         verify(dbTransaction).rollback();
-        verifyTransactionEntityState(FAILED);
+        verifyTransactionState(PARKED);
     }
 
     @Test
-    void transactionShouldBeRolledBackIfAOptimisticLockExceptionIsThrownWhileUpdatingReceiverAccount() {
+    void transactionShouldBeRolledBackAndParkedIfAOptimisticLockExceptionIsThrownWhileUpdatingReceiverAccount() {
         simulateUpdateFailureForAccount(receiver, OptimisticLockException.class);
 
         transactionExecutor.execute(VALID_TRANSACTION);
 
         verify(dbTransaction).rollback();
-        verifyTransactionEntityState(FAILED);
+        verifyTransactionState(PARKED);
     }
 
     @Test
@@ -206,7 +258,7 @@ class TransactionExecutorTest {
         transactionExecutor.execute(VALID_TRANSACTION);
 
         verify(dbTransaction).rollback();
-        verifyTransactionEntityState(FAILED);
+        verifyTransactionState(FAILED);
     }
 
     @Test
@@ -216,18 +268,18 @@ class TransactionExecutorTest {
         transactionExecutor.execute(VALID_TRANSACTION);
 
         verify(dbTransaction).rollback();
-        verifyTransactionEntityState(FAILED);
+        verifyTransactionState(FAILED);
     }
 
     @Test
     void transactionShouldBeRolledBackAndExceptionShouldBeBubbledIfAnyExceptionIsThrownWhileUpdatingTransactionState() {
-        doThrow(RuntimeException.class).when(transactionDAO).update(any(TransactionEntity.class));
+        doThrow(RuntimeException.class).when(transactionDAO).updateState(eq(1L), eq(IN_PROGRESS), any(TransactionState.class));
 
         //because unable to update the transaction state bubbles up the exception. This is catastrophic
         assertThrows(RuntimeException.class, () -> transactionExecutor.execute(VALID_TRANSACTION));
 
         verify(dbTransaction).rollback();
-        verify(transactionDAO, times(2)).update(any(TransactionEntity.class));
+        verify(transactionDAO, times(2)).updateState(eq(1L), eq(IN_PROGRESS), any(TransactionState.class));
 
         verify(notificationService, never()).sendNotification(any(TransactionNotification.class));
     }
@@ -237,9 +289,13 @@ class TransactionExecutorTest {
         this.transactionExecutor = new TransactionExecutor(2,
                 Runnable::run,
                 sessionProvider,
-                accountsDAO,
+                new EntityTransferEngine(accountsDAO),
                 transactionDAO,
-                notificationService, backoffStrategy);
+                notificationService, backoffStrategy,
+                (retry, delayMillis) -> retry.run(),
+                new AccountLockManager(16),
+                transactionCompletions,
+                accountCache);
 
         doThrow(OptimisticLockException.class)
                 .doNothing()
@@ -256,7 +312,69 @@ class TransactionExecutorTest {
 
         verify(notificationService).sendNotification(any(TransactionNotification.class));
 
-        verify(backoffStrategy).backOff(2);
+        verify(backoffStrategy).nextDelayMillis(2, 0);
+    }
+
+    @Test
+    void transferShouldBeRetriedWhenAccountLockIsNotAcquiredInTime() {
+        this.transactionExecutor = new TransactionExecutor(2,
+                Runnable::run,
+                sessionProvider,
+                new PessimisticOrderedTransferEngine(accountsDAO),
+                transactionDAO,
+                notificationService, backoffStrategy,
+                (retry, delayMillis) -> retry.run(),
+                new AccountLockManager(16),
+                transactionCompletions,
+                accountCache);
+
+        when(accountsDAO.findById(VALID_TRANSACTION.getSenderId(), PESSIMISTIC_WRITE))
+                .thenThrow(LockTimeoutException.class)
+                .thenReturn(Optional.of(sender));
+        when(accountsDAO.findById(VALID_TRANSACTION.getReceiverId(), PESSIMISTIC_WRITE))
+                .thenReturn(Optional.of(receiver));
+
+        transactionExecutor.execute(VALID_TRANSACTION);
+
+        verify(dbTransaction).rollback();
+        verify(dbTransaction).commit();
+        verifyTransactionState(SUCCEEDED);
+    }
+
+    @Test
+    void retryShouldBeScheduledWithTheBackoffDelayInsteadOfRunningInline() {
+        var scheduledDelays = new ArrayList<Long>();
+        var scheduledRetries = new ArrayList<Runnable>();
+
+        this.transactionExecutor = new TransactionExecutor(2,
+                Runnable::run,
+                sessionProvider,
+                new EntityTransferEngine(accountsDAO),
+                transactionDAO,
+                notificationService, backoffStrategy,
+                (retry, delayMillis) -> {
+                    scheduledRetries.add(retry);
+                    scheduledDelays.add(delayMillis);
+                },
+                new AccountLockManager(16),
+                transactionCompletions,
+                accountCache);
+
+        when(backoffStrategy.nextDelayMillis(2, 0)).thenReturn(40L);
+        doThrow(OptimisticLockException.class)
+                .doNothing()
+                .when(accountsDAO)
+                .update(any(AccountEntity.class));
+
+        transactionExecutor.execute(VALID_TRANSACTION);
+
+        assertEquals(List.of(40L), scheduledDelays);
+        verify(dbTransaction, never()).commit();
+
+        scheduledRetries.get(0).run();
+
+        verify(dbTransaction).commit();
+        verifyTransactionState(SUCCEEDED);
     }
 
     private void simulateUpdateFailureForAccount(AccountEntity accountEntity, Class<? extends Throwable> exceptionType) {
@@ -303,20 +421,28 @@ class TransactionExecutorTest {
                                         sender,
                                         receiver,
                                         VALID_TRANSACTION.getAmountToTransfer(),
-                                        TransactionState.PENDING
+                                        TransactionState.SUCCEEDED
                                 )
                         )
                 );
 
         lenient()
-                .when(transactionDAO.updateState(1L, PENDING, IN_PROGRESS))
+                .when(transactionDAO.claim(1L))
+                .thenReturn(Optional.of(claimedTransaction(VALID_TRANSACTION.getAmountToTransfer())));
+
+        lenient()
+                .when(transactionDAO.updateState(eq(1L), eq(IN_PROGRESS), any(TransactionState.class)))
                 .thenReturn(true);
     }
 
-    private void verifyTransactionEntityState(TransactionState expected) {
-        var transactionEntityCaptor = ArgumentCaptor.forClass(TransactionEntity.class);
-        verify(transactionDAO).update(transactionEntityCaptor.capture());
+    private static Transaction claimedTransaction(Money amountToTransfer) {
+        return new Transaction(1L, VALID_TRANSACTION.getSenderId(), VALID_TRANSACTION.getReceiverId(), amountToTransfer, IN_PROGRESS);
+    }
+
+    private void verifyTransactionState(TransactionState expected) {
+        var transactionStateCaptor = ArgumentCaptor.forClass(TransactionState.class);
+        verify(transactionDAO).updateState(eq(1L), eq(IN_PROGRESS), transactionStateCaptor.capture());
 
-        assertEquals(expected, transactionEntityCaptor.getValue().getTransactionState());
+        assertEquals(expected, transactionStateCaptor.getValue());
     }
 }
@@ -0,0 +1,104 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.money.Money;
+import com.revolut.interview.rest.SparkRestModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionExporterTest {
+
+    @Mock
+    private TransactionService transactionService;
+
+    private TransactionExporter transactionExporter;
+
+    @BeforeEach
+    void setUp() {
+        this.transactionExporter = new TransactionExporter(transactionService, new SparkRestModule().provideGson());
+    }
+
+    @Test
+    void exportShouldWriteJsonArrayOfTransactions() throws IOException {
+        givenTransactions(
+                new Transaction(1L, 1L, 2L, Money.of("10.50"), TransactionState.SUCCEEDED),
+                new Transaction(2L, 2L, 1L, Money.of("1"), TransactionState.FAILED, TransactionPriority.BULK)
+        );
+
+        var outputStream = new ByteArrayOutputStream();
+        transactionExporter.export(1L, TransactionExportFormat.JSON, outputStream);
+
+        assertEquals("[{\"transactionId\":1,\"senderId\":1,\"receiverId\":2,\"amountToTransfer\":10.50,\"transactionState\":\"SUCCEEDED\",\"priority\":\"INTERACTIVE\"},"
+                        + "{\"transactionId\":2,\"senderId\":2,\"receiverId\":1,\"amountToTransfer\":1.00,\"transactionState\":\"FAILED\",\"priority\":\"BULK\"}]",
+                outputStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void exportShouldWriteEmptyJsonArrayWhenNoTransactionExists() throws IOException {
+        givenTransactions();
+
+        var outputStream = new ByteArrayOutputStream();
+        transactionExporter.export(1L, TransactionExportFormat.JSON, outputStream);
+
+        assertEquals("[]", outputStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void exportShouldWriteCsvWithHeader() throws IOException {
+        givenTransactions(
+                new Transaction(1L, 1L, 2L, Money.of("10.50"), TransactionState.SUCCEEDED),
+                new Transaction(2L, 2L, 1L, Money.of("1"), TransactionState.FAILED, TransactionPriority.BULK)
+        );
+
+        var outputStream = new ByteArrayOutputStream();
+        transactionExporter.export(1L, TransactionExportFormat.CSV, outputStream);
+
+        assertEquals("transactionId,senderId,receiverId,amountToTransfer,transactionState,priority\n"
+                        + "1,1,2,10.50,SUCCEEDED,INTERACTIVE\n"
+                        + "2,2,1,1.00,FAILED,BULK\n",
+                outputStream.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void exportShouldThrowIOExceptionWhenTheClientGoesAway() {
+        var transactions = new Transaction[10_000];
+        for (int i = 0; i < transactions.length; i++) {
+            transactions[i] = new Transaction(i, 1L, 2L, Money.of("1"), TransactionState.SUCCEEDED);
+        }
+        givenTransactions(transactions);
+
+        var closedStream = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThrows(IOException.class, () -> transactionExporter.export(1L, TransactionExportFormat.CSV, closedStream));
+    }
+
+    private void givenTransactions(Transaction... transactions) {
+        doAnswer(invocation -> {
+            Consumer<Transaction> consumer = invocation.getArgument(1);
+            for (var transaction : transactions) {
+                consumer.accept(transaction);
+            }
+            return null;
+        }).when(transactionService).exportTransactionsForAccountId(eq(1L), any());
+    }
+}
@@ -1,6 +1,8 @@
 package com.revolut.interview.transactions;
 
 import com.revolut.interview.account.AccountEntity;
+import com.revolut.interview.money.Money;
+import com.revolut.interview.persistence.TimeOrderedIds;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -8,13 +10,15 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -23,16 +27,19 @@ import static org.mockito.Mockito.when;
 class TransactionHandlerTest {
 
     @Mock
-    private TransactionExecutor transactionExecutor;
+    private TransactionProcessor transactionProcessor;
 
     @Mock
     private TransactionDAO transactionDAO;
 
+    private TransactionCompletions transactionCompletions;
+
     private TransactionService transactionService;
 
     @BeforeEach
     void setUp() {
-        this.transactionService = new TransactionService(transactionExecutor, transactionDAO);
+        this.transactionCompletions = new TransactionCompletions(1000);
+        this.transactionService = new TransactionService(transactionProcessor, transactionDAO, transactionCompletions);
     }
 
     @Test
@@ -60,23 +67,42 @@ class TransactionHandlerTest {
         when(sender.getId()).thenReturn(1L);
         when(receiver.getId()).thenReturn(2L);
 
-        var transactionEntity = new TransactionEntity(sender, receiver, BigDecimal.ONE, TransactionState.PENDING);
+        var transactionEntity = new TransactionEntity(sender, receiver, Money.of("1"), TransactionState.PENDING);
         transactionEntity.setId(1L);
         when(transactionDAO.findById(transactionEntity.getId())).thenReturn(Optional.of(transactionEntity));
 
         transactionService.queue(transactionEntity.getId());
 
         var transactionCaptor = ArgumentCaptor.forClass(Transaction.class);
-        verify(transactionExecutor).execute(transactionCaptor.capture());
+        verify(transactionProcessor).execute(transactionCaptor.capture());
 
         var transaction = transactionCaptor.getValue();
 
         assertEquals(sender.getId(), transaction.getSenderId());
         assertEquals(receiver.getId(), transaction.getReceiverId());
-        assertEquals(BigDecimal.ONE, transaction.getAmountToTransfer());
+        assertEquals(Money.of("1"), transaction.getAmountToTransfer());
         assertEquals(transactionEntity.getTransactionState(), transaction.getTransactionState());
     }
 
+    @Test
+    void queuedTransactionShouldCompleteWithTheStateItEndsUpIn() {
+        var sender = mock(AccountEntity.class);
+        var receiver = mock(AccountEntity.class);
+
+        var transactionEntity = new TransactionEntity(sender, receiver, Money.of("1"), TransactionState.PENDING);
+        transactionEntity.setId(1L);
+        when(transactionDAO.findById(1L)).thenReturn(Optional.of(transactionEntity));
+
+        doAnswer(invocation -> {
+            transactionCompletions.complete(1L, TransactionState.SUCCEEDED);
+            return null;
+        }).when(transactionProcessor).execute(any(Transaction.class));
+
+        var completion = transactionService.queue(1L);
+
+        assertEquals(TransactionState.SUCCEEDED, completion.getNow(null));
+    }
+
     @Test
     void getAllTransactionsShouldGetAllTheTransactionsFromDaoMapped() {
         var sender = mock(AccountEntity.class);
@@ -85,15 +111,15 @@ class TransactionHandlerTest {
         when(sender.getId()).thenReturn(1L);
         when(receiver.getId()).thenReturn(2L);
 
-        var transactionEntity1 = new TransactionEntity(sender, receiver, BigDecimal.ONE, TransactionState.PENDING);
+        var transactionEntity1 = new TransactionEntity(sender, receiver, Money.of("1"), TransactionState.PENDING);
         transactionEntity1.setId(1L);
 
-        var transactionEntity2 = new TransactionEntity(sender, receiver, BigDecimal.ONE, TransactionState.PENDING);
+        var transactionEntity2 = new TransactionEntity(sender, receiver, Money.of("1"), TransactionState.PENDING);
         transactionEntity2.setId(2L);
 
-        when(transactionDAO.findAllWithAccountId(1L)).thenReturn(List.of(transactionEntity1, transactionEntity2));
+        when(transactionDAO.findPageWithAccountId(1L, 0L, Long.MAX_VALUE, 10)).thenReturn(List.of(transactionEntity1, transactionEntity2));
 
-        var allTransactionsForAccountId = transactionService.getAllTransactionsForAccountId(1L);
+        var allTransactionsForAccountId = transactionService.getTransactionsForAccountId(1L, null, null, null, 10);
 
         assertEquals(2, allTransactionsForAccountId.size());
 
@@ -103,22 +129,68 @@ class TransactionHandlerTest {
 
     @Test
     void getAllTransactionsShouldReturnEmptyListWhenDAOReturnsEmptyList() {
-        when(transactionDAO.findAllWithAccountId(1L)).thenReturn(List.of());
+        when(transactionDAO.findPageWithAccountId(1L, 0L, Long.MAX_VALUE, 10)).thenReturn(List.of());
 
-        var allTransactionsForAccountId = transactionService.getAllTransactionsForAccountId(1L);
+        var allTransactionsForAccountId = transactionService.getTransactionsForAccountId(1L, null, null, null, 10);
 
         assertEquals(0, allTransactionsForAccountId.size());
     }
 
+    @Test
+    void getTransactionsShouldStartBelowAfterId() {
+        when(transactionDAO.findPageWithAccountId(1L, 0L, 42L, 10)).thenReturn(List.of());
+
+        var transactions = transactionService.getTransactionsForAccountId(1L, 42L, null, null, 10);
+
+        assertEquals(0, transactions.size());
+        verify(transactionDAO).findPageWithAccountId(1L, 0L, 42L, 10);
+    }
+
+    @Test
+    void getTransactionsShouldTurnTheTimeRangeIntoAnIdRange() {
+        var from = Instant.parse("2026-01-01T00:00:00Z");
+        var to = Instant.parse("2026-02-01T00:00:00Z");
+
+        transactionService.getTransactionsForAccountId(1L, null, from, to, 10);
+
+        verify(transactionDAO).findPageWithAccountId(1L, TimeOrderedIds.firstIdAt(from), TimeOrderedIds.firstIdAt(to), 10);
+    }
+
+    @Test
+    void getTransactionsShouldStartBelowTheLowerOfAfterIdAndTo() {
+        var to = Instant.parse("2026-02-01T00:00:00Z");
+
+        transactionService.getTransactionsForAccountId(1L, 42L, null, to, 10);
+
+        verify(transactionDAO).findPageWithAccountId(1L, 0L, 42L, 10);
+    }
+
+    @Test
+    void requeueParkedShouldMoveParkedTransactionsBackToPendingAndQueueThem() {
+        var sender = mock(AccountEntity.class);
+        var receiver = mock(AccountEntity.class);
+
+        var transactionEntity = new TransactionEntity(sender, receiver, Money.of("1"), TransactionState.PENDING);
+        transactionEntity.setId(3L);
+
+        when(transactionDAO.findIdsByState(TransactionState.PARKED, 0, 10)).thenReturn(List.of(3L));
+        when(transactionDAO.updateState(3L, TransactionState.PARKED, TransactionState.PENDING)).thenReturn(true);
+        when(transactionDAO.findById(3L)).thenReturn(Optional.of(transactionEntity));
+
+        assertEquals(1, transactionService.requeueParked(10));
+
+        verify(transactionProcessor).execute(any(Transaction.class));
+    }
+
     private void hasTransaction(TransactionEntity transactionEntity, List<Transaction> allTransactions) {
         var transaction = allTransactions.stream()
                 .filter(t -> t.getTransactionId() == transactionEntity.getId())
                 .findFirst()
                 .orElseThrow();
 
-        assertEquals(0, transactionEntity.getAmount().compareTo(transaction.getAmountToTransfer()));
-        assertEquals(transactionEntity.getReceiver().getId(), transaction.getReceiverId());
-        assertEquals(transactionEntity.getSender().getId(), transaction.getSenderId());
+        assertEquals(transactionEntity.getAmount(), transaction.getAmountToTransfer());
+        assertEquals(transactionEntity.getReceiverId(), transaction.getReceiverId());
+        assertEquals(transactionEntity.getSenderId(), transaction.getSenderId());
         assertEquals(transactionEntity.getTransactionState(), transaction.getTransactionState());
     }
 }
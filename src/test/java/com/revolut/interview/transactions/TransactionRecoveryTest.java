@@ -0,0 +1,111 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.account.AccountLedger;
+import com.revolut.interview.money.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.LongPredicate;
+
+import static com.revolut.interview.transactions.TransactionPriority.INTERACTIVE;
+import static com.revolut.interview.transactions.TransactionState.IN_PROGRESS;
+import static com.revolut.interview.transactions.TransactionState.PENDING;
+import static com.revolut.interview.transactions.TransactionState.SUCCEEDED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionRecoveryTest {
+
+    @Mock
+    private TransactionDAO transactionDAO;
+    @Mock
+    private TransactionService transactionService;
+    @Mock
+    private AccountLedger accountLedger;
+
+    private TransactionRecovery transactionRecovery;
+
+    @BeforeEach
+    void setUp() {
+        this.transactionRecovery = new TransactionRecovery(2, 4, 5000, transactionDAO, transactionService, accountLedger);
+
+        when(transactionDAO.findIdsByState(IN_PROGRESS, 0, 2)).thenReturn(List.of(3L));
+        when(transactionDAO.findIdsByState(IN_PROGRESS, 3, 2)).thenReturn(List.of());
+        when(transactionDAO.updateStates(List.of(3L), IN_PROGRESS, PENDING)).thenReturn(new boolean[]{true});
+
+        when(transactionDAO.findIdsByState(PENDING, 0, 2)).thenReturn(List.of(1L, 2L));
+        when(transactionDAO.findIdsByState(PENDING, 2, 2)).thenReturn(List.of(3L, 4L));
+        when(transactionDAO.findIdsByState(PENDING, 4, 2)).thenReturn(List.of());
+    }
+
+    @Test
+    void inProgressTransactionsShouldBeResetBeforePendingOnesAreQueued() {
+        transactionRecovery.recover();
+
+        var inOrder = inOrder(transactionDAO);
+        inOrder.verify(transactionDAO).updateStates(List.of(3L), IN_PROGRESS, PENDING);
+        inOrder.verify(transactionDAO).findIdsByState(PENDING, 0, 2);
+    }
+
+    @Test
+    void unsettledLedgerTransfersShouldBeResolvedBeforeInProgressTransactionsAreReset() {
+        when(transactionDAO.findById(5L)).thenReturn(Optional.of(transaction(SUCCEEDED)));
+        when(transactionDAO.findById(6L)).thenReturn(Optional.of(transaction(IN_PROGRESS)));
+        when(transactionDAO.findById(7L)).thenReturn(Optional.empty());
+
+        transactionRecovery.recover();
+
+        var succeeded = ArgumentCaptor.forClass(LongPredicate.class);
+        var inOrder = inOrder(accountLedger, transactionDAO);
+        inOrder.verify(accountLedger).resolveUnsettled(succeeded.capture());
+        inOrder.verify(transactionDAO).updateStates(List.of(3L), IN_PROGRESS, PENDING);
+
+        //Only a transaction that committed as succeeded keeps the money it moved in the ledger.
+        assertTrue(succeeded.getValue().test(5L));
+        assertFalse(succeeded.getValue().test(6L));
+        assertFalse(succeeded.getValue().test(7L));
+    }
+
+    @Test
+    void allPendingTransactionsShouldBeQueuedChunkByChunk() {
+        transactionRecovery.recover();
+
+        for (long transactionId = 1; transactionId <= 4; transactionId++) {
+            verify(transactionService).queue(transactionId);
+        }
+
+        var metrics = transactionRecovery.getMetrics();
+        assertEquals(1, metrics.get("resetInProgress").longValue());
+        assertEquals(4, metrics.get("requeued").longValue());
+        assertEquals(3, metrics.get("chunks").longValue());
+    }
+
+    @Test
+    void transactionThatCannotBeQueuedShouldNotStopRecovery() {
+        lenient().doThrow(new InvalidTransactionException("Not pending", 2L)).when(transactionService).queue(2L);
+
+        transactionRecovery.recover();
+
+        verify(transactionService).queue(4L);
+
+        var metrics = transactionRecovery.getMetrics();
+        assertEquals(3, metrics.get("requeued").longValue());
+        assertEquals(1, metrics.get("failed").longValue());
+    }
+
+    private static TransactionEntity transaction(TransactionState state) {
+        return new TransactionEntity(1L, 2L, Money.of("10"), state, INTERACTIVE);
+    }
+}
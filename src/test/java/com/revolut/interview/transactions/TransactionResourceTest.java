@@ -11,14 +11,18 @@ import spark.Response;
 import spark.Route;
 import spark.Service;
 
+import java.time.Instant;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -27,6 +31,8 @@ class TransactionResourceTest {
     private static final String BASE_PATH = "/api/transactions";
     @Mock
     private TransactionService transactionService;
+    @Mock
+    private TransactionExporter transactionExporter;
 
     @Mock
     private Service spark;
@@ -39,7 +45,7 @@ class TransactionResourceTest {
 
     @BeforeEach
     void setUp() {
-        this.transactionResource = new TransactionResource(transactionService);
+        this.transactionResource = new TransactionResource(transactionService, transactionExporter);
     }
 
     @Test
@@ -47,7 +53,7 @@ class TransactionResourceTest {
         var transaction1 = mock(Transaction.class);
         var transaction2 = mock(Transaction.class);
 
-        when(transactionService.getAllTransactionsForAccountId(1L)).thenReturn(List.of(transaction1, transaction2));
+        when(transactionService.getTransactionsForAccountId(1L, null, null, null, 100)).thenReturn(List.of(transaction1, transaction2));
 
         when(request.params("accountId")).thenReturn("1");
 
@@ -62,6 +68,96 @@ class TransactionResourceTest {
         assertEquals(2, allTransactions.size());
         assertTrue(allTransactions.contains(transaction1));
         assertTrue(allTransactions.contains(transaction2));
+        verify(response, never()).header(eq("Link"), any());
+    }
+
+    @Test
+    void getTransactionsShouldLinkToTheNextPageWhenThePageIsFull() throws Exception {
+        var transaction1 = mock(Transaction.class);
+        var transaction2 = mock(Transaction.class);
+
+        when(transaction2.getTransactionId()).thenReturn(7L);
+        when(transactionService.getTransactionsForAccountId(1L, 10L, null, null, 2)).thenReturn(List.of(transaction1, transaction2));
+
+        when(request.params("accountId")).thenReturn("1");
+        when(request.queryParams("limit")).thenReturn("2");
+        when(request.queryParams("afterId")).thenReturn("10");
+
+        transactionResource.register(spark);
+
+        var routeCaptor = ArgumentCaptor.forClass(Route.class);
+        verify(spark).get(eq(BASE_PATH + "/:accountId"), routeCaptor.capture());
+
+        routeCaptor.getValue().handle(request, response);
+
+        verify(response).header("Link", "<" + BASE_PATH + "/1?limit=2&afterId=7>; rel=\"next\"");
+    }
+
+    @Test
+    void getTransactionsShouldKeepTheTimeRangeInTheNextPageLink() throws Exception {
+        var from = Instant.parse("2026-01-01T00:00:00Z");
+        var transaction = mock(Transaction.class);
+
+        when(transaction.getTransactionId()).thenReturn(7L);
+        when(transactionService.getTransactionsForAccountId(1L, null, from, null, 1)).thenReturn(List.of(transaction));
+
+        when(request.params("accountId")).thenReturn("1");
+        when(request.queryParams("limit")).thenReturn("1");
+        when(request.queryParams("afterId")).thenReturn(null);
+        when(request.queryParams("from")).thenReturn("2026-01-01T00:00:00Z");
+        when(request.queryParams("to")).thenReturn(null);
+
+        transactionResource.register(spark);
+
+        var routeCaptor = ArgumentCaptor.forClass(Route.class);
+        verify(spark).get(eq(BASE_PATH + "/:accountId"), routeCaptor.capture());
+
+        routeCaptor.getValue().handle(request, response);
+
+        verify(response).header("Link", "<" + BASE_PATH + "/1?limit=1&afterId=7&from=2026-01-01T00:00:00Z>; rel=\"next\"");
+    }
+
+    @Test
+    void getTransactionsShouldRejectMalformedInstants() {
+        when(request.params("accountId")).thenReturn("1");
+        when(request.queryParams("limit")).thenReturn(null);
+        when(request.queryParams("afterId")).thenReturn(null);
+        when(request.queryParams("from")).thenReturn(null);
+        when(request.queryParams("to")).thenReturn("yesterday");
+
+        transactionResource.register(spark);
+
+        var routeCaptor = ArgumentCaptor.forClass(Route.class);
+        verify(spark).get(eq(BASE_PATH + "/:accountId"), routeCaptor.capture());
+
+        assertThrows(IllegalArgumentException.class, () -> routeCaptor.getValue().handle(request, response));
+    }
+
+    @Test
+    void getTransactionsShouldRejectLimitAboveMaximum() {
+        when(request.params("accountId")).thenReturn("1");
+        when(request.queryParams("limit")).thenReturn("1001");
+
+        transactionResource.register(spark);
+
+        var routeCaptor = ArgumentCaptor.forClass(Route.class);
+        verify(spark).get(eq(BASE_PATH + "/:accountId"), routeCaptor.capture());
+
+        assertThrows(IllegalArgumentException.class, () -> routeCaptor.getValue().handle(request, response));
+    }
+
+    @Test
+    void exportShouldRejectUnknownFormat() {
+        when(request.params("accountId")).thenReturn("1");
+        when(request.queryParams("format")).thenReturn("xml");
+
+        transactionResource.register(spark);
+
+        var routeCaptor = ArgumentCaptor.forClass(Route.class);
+        verify(spark).get(eq(BASE_PATH + "/:accountId/export"), routeCaptor.capture());
+
+        assertThrows(IllegalArgumentException.class, () -> routeCaptor.getValue().handle(request, response));
+        verifyNoInteractions(transactionExporter);
     }
 
     @Test
@@ -69,5 +165,7 @@ class TransactionResourceTest {
         transactionResource.register(spark);
 
         verify(spark).get(eq(BASE_PATH + "/:accountId"), any(Route.class));
+        verify(spark).get(eq(BASE_PATH + "/:accountId/export"), any(Route.class));
+        verify(spark).post(eq(BASE_PATH + "/parked/requeue"), any(Route.class));
     }
 }
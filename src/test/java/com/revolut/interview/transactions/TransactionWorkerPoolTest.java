@@ -0,0 +1,103 @@
+package com.revolut.interview.transactions;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionWorkerPoolTest {
+
+    private TransactionWorkerPool workerPool;
+
+    @AfterEach
+    void tearDown() {
+        workerPool.stop();
+    }
+
+    @Test
+    void tasksShouldRunOnWorkerThreads() throws InterruptedException {
+        workerPool = new TransactionWorkerPool(2, 10, 1000);
+
+        var executed = new CountDownLatch(1);
+        var threadName = new String[1];
+
+        workerPool.execute(() -> {
+            threadName[0] = Thread.currentThread().getName();
+            executed.countDown();
+        });
+
+        assertTrue(executed.await(5, SECONDS));
+        assertTrue(threadName[0].startsWith("transfer-worker-"));
+    }
+
+    @Test
+    void taskShouldRunOnCallerThreadWhenQueueIsFull() throws InterruptedException {
+        workerPool = new TransactionWorkerPool(1, 1, 1000);
+
+        var release = new CountDownLatch(1);
+        workerPool.execute(() -> await(release));
+        workerPool.execute(() -> await(release));
+
+        var callerThread = Thread.currentThread();
+        var ranOn = new Thread[1];
+        workerPool.execute(() -> ranOn[0] = Thread.currentThread());
+
+        assertEquals(callerThread, ranOn[0]);
+        assertEquals(1, workerPool.getMetrics().get("callerRuns").longValue());
+
+        release.countDown();
+    }
+
+    @Test
+    void stopShouldDrainQueuedTasks() {
+        workerPool = new TransactionWorkerPool(1, 100, 5000);
+
+        var executedCount = new AtomicInteger();
+        for (int i = 0; i < 50; i++) {
+            workerPool.execute(executedCount::incrementAndGet);
+        }
+
+        workerPool.stop();
+
+        assertEquals(50, executedCount.get());
+        assertThrows(RejectedExecutionException.class, () -> workerPool.execute(executedCount::incrementAndGet));
+    }
+
+    @Test
+    void metricsShouldReportQueueDepthAndUtilisation() throws InterruptedException {
+        workerPool = new TransactionWorkerPool(1, 10, 1000);
+
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        workerPool.execute(() -> {
+            started.countDown();
+            await(release);
+        });
+        workerPool.execute(() -> {
+        });
+
+        assertTrue(started.await(5, SECONDS));
+
+        assertEquals(1, workerPool.getQueueDepth());
+        assertEquals(1, workerPool.getMetrics().get("queueDepth").intValue());
+        assertNotEquals(0, workerPool.getUtilisation());
+
+        release.countDown();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
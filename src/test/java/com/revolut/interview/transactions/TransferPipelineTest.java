@@ -0,0 +1,182 @@
+package com.revolut.interview.transactions;
+
+import com.revolut.interview.account.AccountCache;
+import com.revolut.interview.account.AccountEntity;
+import com.revolut.interview.account.AccountShards;
+import com.revolut.interview.account.AccountsDAO;
+import com.revolut.interview.money.Money;
+import com.revolut.interview.notification.NotificationService;
+import com.revolut.interview.notification.TransactionNotification;
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import javax.inject.Provider;
+import java.util.Optional;
+
+import static com.revolut.interview.transactions.TransactionState.FAILED;
+import static com.revolut.interview.transactions.TransactionState.IN_PROGRESS;
+import static com.revolut.interview.transactions.TransactionState.PENDING;
+import static com.revolut.interview.transactions.TransactionState.SUCCEEDED;
+import static javax.persistence.LockModeType.WRITE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TransferPipelineTest {
+
+    private static final Money TEN = Money.of("10");
+
+    private static final Money BALANCE = Money.of("100");
+
+    @Mock
+    private Session session;
+    @Mock
+    private org.hibernate.Transaction dbTransaction;
+    @Mock
+    private Provider<Session> sessionProvider;
+
+    @Mock
+    private AccountsDAO accountsDAO;
+    @Mock
+    private AccountShards accountShards;
+    @Mock
+    private TransactionDAO transactionDAO;
+    @Mock
+    private NotificationService notificationService;
+    @Mock
+    private AccountCache accountCache;
+
+    private AccountEntity sender, receiver;
+
+    private TransferPipeline transferPipeline;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(sessionProvider.get()).thenReturn(session);
+        lenient().when(session.beginTransaction()).thenReturn(dbTransaction);
+
+        sender = account(1L);
+        receiver = account(2L);
+
+        lenient().when(transactionDAO.updateState(anyLong(), eq(PENDING), eq(IN_PROGRESS))).thenReturn(true);
+        lenient().when(transactionDAO.updateState(anyLong(), eq(IN_PROGRESS), any())).thenReturn(true);
+        lenient().when(accountShards.balanceOf(any(AccountEntity.class))).thenAnswer(invocation -> ((AccountEntity) invocation.getArgument(0)).getBalance());
+
+        this.transferPipeline = new TransferPipeline(8, 1000, sessionProvider, accountsDAO, accountShards, new EntityTransferEngine(accountsDAO), transactionDAO, notificationService, new TransactionCompletions(1000), accountCache);
+    }
+
+    @AfterEach
+    void tearDown() {
+        transferPipeline.stop();
+    }
+
+    @Test
+    void transferShouldMoveMoneyAndSucceed() {
+        transferPipeline.execute(new Transaction(1L, 1L, 2L, TEN, PENDING));
+
+        verify(notificationService, timeout(5000)).sendNotification(new TransactionNotification(1L, 2L, true, TEN));
+        verify(transactionDAO).updateState(1L, IN_PROGRESS, SUCCEEDED);
+
+        assertEquals(BALANCE.minus(TEN), sender.getBalance());
+        assertEquals(BALANCE.plus(TEN), receiver.getBalance());
+        verify(accountCache).invalidate(1L);
+        verify(accountCache).invalidate(2L);
+    }
+
+    @Test
+    void transferShouldFailWhenBalanceIsInsufficient() {
+        var amount = BALANCE.plus(TEN);
+        transferPipeline.execute(new Transaction(1L, 1L, 2L, amount, PENDING));
+
+        verify(notificationService, timeout(5000)).sendNotification(new TransactionNotification(1L, 2L, false, amount));
+        verify(transactionDAO).updateState(1L, IN_PROGRESS, FAILED);
+        verify(accountsDAO, never()).update(any(AccountEntity.class));
+    }
+
+    @Test
+    void laterTransfersInABatchShouldSeeEarlierDebits() {
+        //More transfers than the ring holds, which also exercises wrapping around.
+        for (long id = 1; id <= 12; id++) {
+            transferPipeline.execute(new Transaction(id, 1L, 2L, TEN, PENDING));
+        }
+
+        transferPipeline.stop();
+
+        assertEquals(Money.ZERO, sender.getBalance());
+        verify(transactionDAO, timeout(5000).times(10)).updateState(anyLong(), eq(IN_PROGRESS), eq(SUCCEEDED));
+        verify(transactionDAO, timeout(5000).times(2)).updateState(anyLong(), eq(IN_PROGRESS), eq(FAILED));
+    }
+
+    @Test
+    void transferShouldBeSkippedWhenItCannotBeClaimed() {
+        when(transactionDAO.updateState(5L, PENDING, IN_PROGRESS)).thenReturn(false);
+
+        transferPipeline.execute(new Transaction(5L, 1L, 2L, TEN, PENDING));
+        transferPipeline.stop();
+
+        verify(accountsDAO, never()).findById(anyLong(), eq(WRITE));
+        verify(notificationService, never()).sendNotification(any(TransactionNotification.class));
+    }
+
+    @Test
+    void transferShouldNotMoveMoneyWhenItsClaimIsRolledBack() {
+        //The journal stage commits first.
+        doThrow(new RuntimeException("Commit failed")).doNothing().when(dbTransaction).commit();
+
+        transferPipeline.execute(new Transaction(1L, 1L, 2L, TEN, PENDING));
+        transferPipeline.stop();
+
+        verify(dbTransaction, timeout(5000)).rollback();
+        assertEquals(BALANCE, sender.getBalance());
+        assertEquals(BALANCE, receiver.getBalance());
+        verify(transactionDAO, never()).updateState(anyLong(), eq(IN_PROGRESS), any(TransactionState.class));
+        verify(notificationService, never()).sendNotification(any(TransactionNotification.class));
+    }
+
+    @Test
+    void transferShouldBeRolledBackWhenItIsNoLongerInProgress() {
+        //Something else moved it on, so neither final state can be set.
+        when(transactionDAO.updateState(1L, IN_PROGRESS, SUCCEEDED)).thenReturn(false);
+        when(transactionDAO.updateState(1L, IN_PROGRESS, FAILED)).thenReturn(false);
+
+        transferPipeline.execute(new Transaction(1L, 1L, 2L, TEN, PENDING));
+        transferPipeline.stop();
+
+        //Once for the batch and once more applying it on its own.
+        verify(dbTransaction, timeout(5000).times(2)).rollback();
+        verify(transactionDAO).updateState(1L, IN_PROGRESS, FAILED);
+        verify(notificationService, never()).sendNotification(any(TransactionNotification.class));
+    }
+
+    @Test
+    void executeShouldBeRejectedAfterStop() {
+        transferPipeline.stop();
+
+        assertThrows(RuntimeException.class, () -> transferPipeline.execute(new Transaction(1L, 1L, 2L, TEN, PENDING)));
+    }
+
+    private AccountEntity account(long id) {
+        var account = new AccountEntity();
+        account.setId(id);
+        account.setBalance(BALANCE);
+
+        lenient().when(accountsDAO.findById(id)).thenReturn(Optional.of(account));
+        lenient().when(accountsDAO.findById(id, WRITE)).thenReturn(Optional.of(account));
+
+        return account;
+    }
+}
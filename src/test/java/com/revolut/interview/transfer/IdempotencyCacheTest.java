@@ -0,0 +1,60 @@
+package com.revolut.interview.transfer;
+
+import com.revolut.interview.transactions.TransactionState;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdempotencyCacheTest {
+
+    @Test
+    void getShouldReturnWhatWasPut() {
+        var cache = new IdempotencyCache(10, 60_000);
+        var queuedTransfer = new QueuedTransfer(1L, new CompletableFuture<>());
+
+        cache.put("key-1", queuedTransfer);
+
+        assertSame(queuedTransfer, cache.get("key-1").orElseThrow());
+        assertTrue(cache.get("key-2").isEmpty());
+        assertEquals(1L, cache.getMetrics().get("hits"));
+        assertEquals(1L, cache.getMetrics().get("misses"));
+    }
+
+    @Test
+    void oldestKeysShouldBeEvictedWhenFull() {
+        var cache = new IdempotencyCache(2, 60_000);
+
+        cache.put("key-1", new QueuedTransfer(1L, new CompletableFuture<>()));
+        cache.put("key-2", new QueuedTransfer(2L, new CompletableFuture<>()));
+        cache.put("key-3", new QueuedTransfer(3L, new CompletableFuture<>()));
+
+        assertTrue(cache.get("key-1").isEmpty());
+        assertEquals(3L, cache.get("key-3").orElseThrow().getTransactionId());
+        assertEquals(2, cache.getMetrics().get("size"));
+        assertEquals(1L, cache.getMetrics().get("evictions"));
+    }
+
+    @Test
+    void expiredKeysShouldNotBeReturned() {
+        var cache = new IdempotencyCache(10, 0);
+
+        cache.put("key-1", new QueuedTransfer(1L, new CompletableFuture<>()));
+
+        assertTrue(cache.get("key-1").isEmpty());
+    }
+
+    @Test
+    void timedOutCompletionShouldNotBeReturned() {
+        var cache = new IdempotencyCache(10, 60_000);
+        var completion = new CompletableFuture<TransactionState>();
+        completion.completeExceptionally(new RuntimeException());
+
+        cache.put("key-1", new QueuedTransfer(1L, completion));
+
+        assertTrue(cache.get("key-1").isEmpty());
+    }
+}
@@ -1,6 +1,8 @@
 package com.revolut.interview.transfer;
 
 import com.google.gson.Gson;
+import com.revolut.interview.transactions.TransactionState;
+import org.eclipse.jetty.http.HttpStatus;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -12,6 +14,11 @@ import spark.Response;
 import spark.Route;
 import spark.Service;
 
+import java.util.concurrent.CompletableFuture;
+
+import static com.revolut.interview.transactions.TransactionState.PENDING;
+import static com.revolut.interview.transactions.TransactionState.SUCCEEDED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
@@ -45,18 +52,74 @@ class TransferResourceTest {
 
     @Test
     void transferShouldSendTransferRequestToTransferService() throws Exception {
+        var transferRequest = mockTransferRequest(new CompletableFuture<>());
+
+        getTransferRoute().handle(request, response);
+        verify(transferService).transfer(transferRequest, null);
+    }
+
+    @Test
+    void transferShouldPassTheIdempotencyKeyOn() throws Exception {
         var transferRequest = mock(TransferRequest.class);
         when(gson.fromJson(anyString(), eq(TransferRequest.class))).thenReturn(transferRequest);
+        when(request.body()).thenReturn("transfer_json");
+        when(request.headers("Idempotency-Key")).thenReturn("key-1");
+        when(transferService.transfer(transferRequest, "key-1")).thenReturn(new QueuedTransfer(7L, new CompletableFuture<>()));
+
+        var transferResponse = getTransferRoute().handle(request, response);
+
+        assertEquals(new TransferResponse(7L, PENDING), transferResponse);
+    }
+
+    @Test
+    void transferShouldBeAcceptedWithTransactionIdWithoutWaiting() throws Exception {
+        mockTransferRequest(new CompletableFuture<>());
+
+        var transferResponse = getTransferRoute().handle(request, response);
+
+        assertEquals(new TransferResponse(7L, PENDING), transferResponse);
+        verify(response).status(HttpStatus.ACCEPTED_202);
+    }
+
+    @Test
+    void transferShouldAnswerWithFinalStateWhenItCompletesWithinTheWait() throws Exception {
+        mockTransferRequest(CompletableFuture.completedFuture(SUCCEEDED));
+        when(request.queryParams("waitMillis")).thenReturn("1000");
+
+        var transferResponse = getTransferRoute().handle(request, response);
+
+        assertEquals(new TransferResponse(7L, SUCCEEDED), transferResponse);
+        verify(response).status(HttpStatus.OK_200);
+    }
+
+    @Test
+    void transferShouldBeAcceptedWhenItDoesNotCompleteWithinTheWait() throws Exception {
+        mockTransferRequest(new CompletableFuture<>());
+        when(request.queryParams("waitMillis")).thenReturn("10");
+
+        var transferResponse = getTransferRoute().handle(request, response);
+
+        assertEquals(new TransferResponse(7L, PENDING), transferResponse);
+        verify(response).status(HttpStatus.ACCEPTED_202);
+    }
+
+    private TransferRequest mockTransferRequest(CompletableFuture<TransactionState> completion) {
+        var transferRequest = mock(TransferRequest.class);
+        when(gson.fromJson(anyString(), eq(TransferRequest.class))).thenReturn(transferRequest);
+        when(transferService.transfer(transferRequest, null)).thenReturn(new QueuedTransfer(7L, completion));
 
         when(request.body()).thenReturn("transfer_json");
 
+        return transferRequest;
+    }
+
+    private Route getTransferRoute() {
         transferResource.register(spark);
 
         var routeCaptor = ArgumentCaptor.forClass(Route.class);
         verify(spark).post(eq(BASE_PATH), routeCaptor.capture());
 
-        routeCaptor.getValue().handle(request, response);
-        verify(transferService).transfer(transferRequest);
+        return routeCaptor.getValue();
     }
 
     @Test
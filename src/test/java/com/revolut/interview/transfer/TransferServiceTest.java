@@ -1,8 +1,8 @@
 package com.revolut.interview.transfer;
 
 import com.revolut.interview.account.Account;
-import com.revolut.interview.account.AccountEntity;
-import com.revolut.interview.account.AccountsDAO;
+import com.revolut.interview.account.AccountCache;
+import com.revolut.interview.money.Money;
 import com.revolut.interview.transactions.TransactionDAO;
 import com.revolut.interview.transactions.TransactionEntity;
 import com.revolut.interview.transactions.TransactionService;
@@ -10,25 +10,44 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.math.BigDecimal;
+import javax.persistence.PersistenceException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
+import static com.revolut.interview.transactions.TransactionPriority.BULK;
+import static com.revolut.interview.transactions.TransactionPriority.INTERACTIVE;
 import static com.revolut.interview.transactions.TransactionState.PENDING;
+import static com.revolut.interview.transactions.TransactionState.SUCCEEDED;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class TransferServiceTest {
 
-    private static final Account SENDER = new Account(1L, BigDecimal.TEN);
-    private static final Account RECEIVER = new Account(2L, BigDecimal.ONE);
-    private static final BigDecimal MONEY_TO_TRANSFER = BigDecimal.valueOf(5);
+    private static final Account SENDER = new Account(1L, Money.of("10"));
+    private static final Account RECEIVER = new Account(2L, Money.of("1"));
+    private static final Money MONEY_TO_TRANSFER = Money.of("5");
 
     private static final TransferRequest VALID_TRANSFER_REQUEST = new TransferRequest(
             SENDER.getId(),
@@ -37,20 +56,25 @@ class TransferServiceTest {
     );
 
     @Mock
-    private AccountsDAO accountsDAO;
+    private AccountCache accountCache;
     @Mock
     private TransactionDAO transactionDAO;
     @Mock
     private TransactionService transactionHandler;
 
+    @Captor
+    private ArgumentCaptor<List<TransactionEntity>> savedCaptor;
+
     private TransferService transferService;
 
     @BeforeEach
     void setUp() {
         transferService = new TransferService(
-                accountsDAO,
+                accountCache,
                 transactionDAO,
-                transactionHandler
+                transactionHandler,
+                new IdempotencyCache(100, 60_000),
+                4
         );
 
         setUpAccounts();
@@ -96,7 +120,7 @@ class TransferServiceTest {
     @Test
     void shouldThrowExceptionWhenSenderAndReceiverAccountsAreSame() {
         assertThrows(IllegalArgumentException.class,
-                () -> transferService.transfer(new TransferRequest(1L, 1L, BigDecimal.valueOf(10)))
+                () -> transferService.transfer(new TransferRequest(1L, 1L, Money.of("10")))
         );
     }
 
@@ -109,28 +133,172 @@ class TransferServiceTest {
 
         var transactionEntity = transactionEntityCaptor.getValue();
 
-        assertEquals(MONEY_TO_TRANSFER.compareTo(transactionEntity.getAmount()), 0);
-        assertEquals(SENDER.getId(), transactionEntity.getSender().getId());
-        assertEquals(RECEIVER.getId(), transactionEntity.getReceiver().getId());
+        assertEquals(MONEY_TO_TRANSFER, transactionEntity.getAmount());
+        assertEquals(SENDER.getId(), transactionEntity.getSenderId());
+        assertEquals(RECEIVER.getId(), transactionEntity.getReceiverId());
         assertEquals(PENDING, transactionEntity.getTransactionState());
+        assertEquals(INTERACTIVE, transactionEntity.getPriority());
     }
 
-    private void setUpAccounts() {
-        var sender = new AccountEntity();
-        sender.setId(SENDER.getId());
-        sender.setBalance(SENDER.getBalance());
+    @Test
+    void transactionShouldKeepTheRequestedPriority() {
+        transferService.transfer(new TransferRequest(SENDER.getId(), RECEIVER.getId(), MONEY_TO_TRANSFER, BULK));
+
+        var transactionEntityCaptor = ArgumentCaptor.forClass(TransactionEntity.class);
+        verify(transactionDAO).save(transactionEntityCaptor.capture());
+
+        assertEquals(BULK, transactionEntityCaptor.getValue().getPriority());
+    }
+
+    @Test
+    void repeatedIdempotencyKeyShouldReturnOriginalTransferWithoutTouchingAccounts() {
+        var first = transferService.transfer(VALID_TRANSFER_REQUEST, "key-1");
+        var second = transferService.transfer(VALID_TRANSFER_REQUEST, "key-1");
+
+        assertSame(first, second);
+        verify(transactionDAO, times(1)).save(any(TransactionEntity.class));
+        verify(accountCache, times(1)).get(SENDER.getId());
+        verify(transactionDAO, times(1)).findByIdempotencyKey("key-1");
+    }
+
+    @Test
+    void idempotencyKeyShouldBeStoredOnTheTransaction() {
+        transferService.transfer(VALID_TRANSFER_REQUEST, "key-1");
 
-        var receiver = new AccountEntity();
-        receiver.setId(RECEIVER.getId());
-        receiver.setBalance(RECEIVER.getBalance());
+        var transactionEntityCaptor = ArgumentCaptor.forClass(TransactionEntity.class);
+        verify(transactionDAO).save(transactionEntityCaptor.capture());
+
+        assertEquals("key-1", transactionEntityCaptor.getValue().getIdempotencyKey());
+    }
+
+    @Test
+    void idempotencyKeyKnownToTheDatabaseShouldReturnThatTransaction() {
+        var existing = new TransactionEntity(SENDER.getId(), RECEIVER.getId(), MONEY_TO_TRANSFER, PENDING, INTERACTIVE);
+        existing.setId(42L);
+        var completion = CompletableFuture.completedFuture(SUCCEEDED);
+        when(transactionDAO.findByIdempotencyKey("key-1")).thenReturn(Optional.of(existing));
+        when(transactionHandler.completionOf(42L)).thenReturn(completion);
+
+        var queuedTransfer = transferService.transfer(VALID_TRANSFER_REQUEST, "key-1");
+
+        assertEquals(42L, queuedTransfer.getTransactionId());
+        assertSame(completion, queuedTransfer.getCompletion());
+        verify(transactionDAO, never()).save(any(TransactionEntity.class));
+        verifyNoInteractions(accountCache);
+    }
+
+    @Test
+    void concurrentRequestWithTheSameIdempotencyKeyShouldReturnTheTransactionThatWon() {
+        var winner = new TransactionEntity(SENDER.getId(), RECEIVER.getId(), MONEY_TO_TRANSFER, PENDING, INTERACTIVE);
+        winner.setId(42L);
+        when(transactionDAO.findByIdempotencyKey("key-1")).thenReturn(Optional.empty())
+                .thenReturn(Optional.of(winner));
+        doThrow(new PersistenceException("unique constraint")).when(transactionDAO).save(any(TransactionEntity.class));
+
+        var queuedTransfer = transferService.transfer(VALID_TRANSFER_REQUEST, "key-1");
+
+        assertEquals(42L, queuedTransfer.getTransactionId());
+        verify(transactionHandler, never()).queue(anyLong());
+    }
+
+    @Test
+    void repeatedIdempotencyKeyWithADifferentTransferShouldBeRejected() {
+        transferService.transfer(VALID_TRANSFER_REQUEST, "key-1");
+
+        assertThrows(IdempotencyKeyReusedException.class,
+                () -> transferService.transfer(createTransferRequest(6), "key-1")
+        );
+        verify(transactionDAO, times(1)).save(any(TransactionEntity.class));
+    }
+
+    @Test
+    void idempotencyKeyKnownToTheDatabaseForADifferentTransferShouldBeRejected() {
+        var existing = new TransactionEntity(SENDER.getId(), RECEIVER.getId(), MONEY_TO_TRANSFER, PENDING, BULK);
+        existing.setId(42L);
+        when(transactionDAO.findByIdempotencyKey("key-1")).thenReturn(Optional.of(existing));
 
+        assertThrows(IdempotencyKeyReusedException.class,
+                () -> transferService.transfer(VALID_TRANSFER_REQUEST, "key-1")
+        );
+        verify(transactionDAO, never()).save(any(TransactionEntity.class));
+    }
+
+    @Test
+    void shouldThrowExceptionWhenIdempotencyKeyIsTooLong() {
+        assertThrows(IllegalArgumentException.class,
+                () -> transferService.transfer(VALID_TRANSFER_REQUEST, "k".repeat(65))
+        );
+    }
+
+    @Test
+    void batchShouldLookUpAccountsOnceAndSaveAndQueueOnlyValidTransfers() {
+        when(accountCache.getAll(any())).thenReturn(Map.of(SENDER.getId(), SENDER, RECEIVER.getId(), RECEIVER));
+        when(transactionDAO.saveAll(any())).thenAnswer(invocation -> {
+            List<TransactionEntity> transactions = invocation.getArgument(0);
+            for (int i = 0; i < transactions.size(); i++) {
+                transactions.get(i).setId(10L + i);
+            }
+            return transactions;
+        });
+
+        var results = transferService.transferBatch(Arrays.asList(
+                VALID_TRANSFER_REQUEST,
+                new TransferRequest(100L, RECEIVER.getId(), MONEY_TO_TRANSFER),
+                createTransferRequest(200),
+                null
+        ));
+
+        assertEquals(4, results.size());
+        assertEquals(BatchTransferResult.accepted(10L, PENDING), results.get(0));
+        assertFalse(results.get(1).isAccepted());
+        assertEquals(new AccountNotFoundException(100L).getMessage(), results.get(1).getError());
+        assertFalse(results.get(2).isAccepted());
+        assertFalse(results.get(3).isAccepted());
+
+        verify(accountCache).getAll(Set.of(SENDER.getId(), RECEIVER.getId(), 100L));
+
+        verify(transactionDAO).saveAll(savedCaptor.capture());
+        assertEquals(1, savedCaptor.getValue().size());
+        verify(transactionHandler).queueAll(savedCaptor.getValue());
+    }
+
+    @Test
+    void batchLargerThanTheMaximumShouldBeRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> transferService.transferBatch(Collections.nCopies(5, VALID_TRANSFER_REQUEST))
+        );
+
+        verifyNoInteractions(transactionDAO);
+    }
+
+    @Test
+    void transferShouldBeRejectedWithoutBeingSavedOnceStopped() {
+        transferService.stop();
+
+        assertThrows(RejectedExecutionException.class, () -> transferService.transfer(VALID_TRANSFER_REQUEST));
+
+        verify(transactionDAO, never()).save(any(TransactionEntity.class));
+        verify(transactionHandler, never()).queue(anyLong());
+    }
+
+    @Test
+    void batchShouldBeRejectedWithoutBeingSavedOnceStopped() {
+        when(accountCache.getAll(any())).thenReturn(Map.of(SENDER.getId(), SENDER, RECEIVER.getId(), RECEIVER));
+        transferService.stop();
+
+        assertThrows(RejectedExecutionException.class, () -> transferService.transferBatch(List.of(VALID_TRANSFER_REQUEST)));
+
+        verify(transactionDAO, never()).saveAll(any());
+    }
+
+    private void setUpAccounts() {
         lenient()
-                .when(accountsDAO.findById(SENDER.getId()))
-                .thenReturn(Optional.of(sender));
+                .when(accountCache.get(SENDER.getId()))
+                .thenReturn(Optional.of(SENDER));
 
         lenient()
-                .when(accountsDAO.findById(RECEIVER.getId()))
-                .thenReturn(Optional.of(receiver));
+                .when(accountCache.get(RECEIVER.getId()))
+                .thenReturn(Optional.of(RECEIVER));
     }
 
     private void setUpTransactionDAO() {
@@ -141,9 +309,13 @@ class TransferServiceTest {
                     transactionEntity.setId(1L);
                     return transactionEntity;
                 });
+
+        lenient()
+                .when(transactionHandler.queue(anyLong()))
+                .thenReturn(new CompletableFuture<>());
     }
 
-    private TransferRequest createTransferRequest(double amountToTransfer) {
-        return new TransferRequest(SENDER.getId(), RECEIVER.getId(), BigDecimal.valueOf(amountToTransfer));
+    private TransferRequest createTransferRequest(long amountToTransfer) {
+        return new TransferRequest(SENDER.getId(), RECEIVER.getId(), Money.ofMinor(amountToTransfer * 100));
     }
 }